@@ -0,0 +1,87 @@
+/*
+  Check of the errors havabol --check prints for the scripts in Test-Cases/errors.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/checks/CheckOutput.java [dir ...]
+             dir is a directory of scripts to check, default Test-Cases/errors
+  Output:
+      One line for each script that has '// --check: ' lines, OK or both outputs. The exit
+      status is 1 if any output was different.
+  Notes:
+      1. Each '// --check: ' line of a script is one line --check must print for it, in order,
+         and --check must print nothing else to STDOUT. Scripts without them are not checked.
+      2. --check runs in a child JVM with the classpath of this one, from the working directory,
+         so it is run from the top of the repository, where the paths in the lines start.
+ */
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CheckOutput
+{
+    private static final String PREFIX = "// --check: ";
+
+    public static void main(String[] args) throws Exception
+    {
+        List<String> dirL = args.length > 0 ? List.of(args) : List.of("Test-Cases/errors");
+        String classPath = System.getProperty("java.class.path");
+
+        int iWrongCnt = 0;
+        for (String dir : dirL)
+        {
+            List<Path> scriptL;
+            try (Stream<Path> pathS = Files.walk(Paths.get(dir)))
+            {
+                scriptL = pathS.filter(path -> path.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+            }
+            for (Path script : scriptL)
+            {
+                List<String> expectedL = Files.readAllLines(script).stream()
+                        .filter(line -> line.startsWith(PREFIX))
+                        .map(line -> line.substring(PREFIX.length()))
+                        .collect(Collectors.toList());
+                if (expectedL.isEmpty())
+                    continue;
+
+                List<String> actualL = check(classPath, script.toString());
+                if (actualL.equals(expectedL))
+                    System.out.println("OK        " + script);
+                else
+                {
+                    System.out.println("WRONG     " + script);
+                    System.out.println("  expected:");
+                    expectedL.forEach(line -> System.out.println("    " + line));
+                    System.out.println("  actual:");
+                    actualL.forEach(line -> System.out.println("    " + line));
+                    iWrongCnt++;
+                }
+            }
+        }
+
+        if (iWrongCnt > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Runs havabol --check on a script in a child JVM and returns the lines it printed to STDOUT.
+     */
+    private static List<String> check(String classPath, String script) throws Exception
+    {
+        ArrayList<String> commandL = new ArrayList<String>();
+        commandL.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        commandL.add("-cp");
+        commandL.add(classPath);
+        commandL.add("havabol.HavaBol");
+        commandL.add("--check");
+        commandL.add(script);
+        Process process = new ProcessBuilder(commandL).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        process.waitFor();
+        return output.lines().collect(Collectors.toList());
+    }
+}
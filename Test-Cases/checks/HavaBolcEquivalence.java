@@ -0,0 +1,206 @@
+/*
+  Equivalence run of havabolc against the interpreter over Test-Cases.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/checks/HavaBolcEquivalence.java [dir ...]
+             dir is a directory of scripts to check, default Test-Cases/working and Test-Cases/errors
+  Output:
+      One line per script:
+          SAME      the translated program prints what the interpreter prints
+          REJECTED  havabolc reports a construct it does not translate
+          ERROR     havabolc reports an error in a program the interpreter stops with an error on
+          DIFFERENT the translated program prints something else, followed by both outputs
+      Then the scripts of TRANSLATED that are no longer SAME, as LOST, and the SAME scripts
+      missing from it, as NEW. The exit status is 1 if any script is DIFFERENT or LOST.
+  Notes:
+      1. Both run in a child JVM with the classpath of this one. Lines of Java stack traces are
+         left out of the comparison, since only the interpreter prints them.
+      2. havabolc finds errors before the program runs, so an error it reports is not compared
+         with the output of the interpreter, only with the interpreter failing too.
+      3. TRANSLATED lists the scripts havabolc translates, so one it stops translating fails the
+         check. A NEW script is added to the list once it is SAME.
+ */
+import havabol.CompiledProgram;
+import havabol.HavaBolEngine;
+import havabol.HavaBolc;
+import havabol.ParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+public class HavaBolcEquivalence
+{
+    private static final String CLASS_NM = "Translated";
+
+    // scripts whose translation prints what the interpreter prints
+    private static final List<String> TRANSLATED = List.of(
+            "Test-Cases/working/arrays/p4Array.txt"
+            , "Test-Cases/working/arrays/p4WithUnbound.txt"
+            , "Test-Cases/working/bounds/p6Bounds.txt"
+            , "Test-Cases/working/break/p5Break.txt"
+            , "Test-Cases/working/comments/longLines.txt"
+            , "Test-Cases/working/expression/p3SimpExpr.txt"
+            , "Test-Cases/working/expression/p4Expr.txt"
+            , "Test-Cases/working/havabol-full-test/p3Input.txt"
+            , "Test-Cases/working/havabol-full-test/p5ext.txt"
+            , "Test-Cases/working/parallel/p6ParallelFor.txt"
+            , "Test-Cases/working/strings/strings.txt"
+            , "Test-Cases/errors/Array/ArrayWithUnCoerceableSize.txt"
+            , "Test-Cases/errors/Array/ArrayWithUnCoerceableValues.txt"
+            , "Test-Cases/errors/Array/p5ArrayWithUndefinedSize.txt"
+            , "Test-Cases/errors/General/SameVariableNames.txt"
+            , "Test-Cases/errors/Unbounded/UnboundArrayWithUnCoerceableSize.txt"
+            , "Test-Cases/errors/Unbounded/UnboundArrayWithUnCoerceableValues.txt"
+            , "Test-Cases/errors/Unbounded/UnboundedArraysMAXELEM.txt"
+            , "Test-Cases/errors/Unbounded/UnboundedScalar.txt"
+            , "Test-Cases/errors/bounds/BoundsEndPastDeclared.txt"
+            , "Test-Cases/errors/bounds/BoundsHoleInRange.txt"
+            , "Test-Cases/errors/for/countingForByIncompatibleTypes.txt"
+            , "Test-Cases/errors/for/countingForCVIncompatibleTypes.txt"
+            , "Test-Cases/errors/for/countingForToIncompatibleTypes.txt"
+            , "Test-Cases/errors/parallel/parallelForMidLoopError.txt"
+            , "Test-Cases/errors/select/selectDefaultMissingColon.txt");
+
+    // an error the interpreter stopped at, its own or a Java exception
+    private static final Pattern FAILED = Pattern.compile("^(Line \\d+ ERROR|[\\w.]+(Exception|Error)\\b)"
+            , Pattern.MULTILINE);
+
+    public static void main(String[] args) throws Exception
+    {
+        List<String> dirL = args.length > 0 ? List.of(args) : List.of("Test-Cases/working", "Test-Cases/errors");
+        String classPath = System.getProperty("java.class.path");
+        Path workDir = Files.createTempDirectory("havabolc");
+
+        int iSame = 0, iRejected = 0, iError = 0, iDifferent = 0;
+        LinkedHashMap<String, String> verdictM = new LinkedHashMap<String, String>();
+        for (Path script : scripts(dirL))
+        {
+            String interpreted = run(classPath, "havabol.HavaBol", script.toString());
+
+            String verdict;
+            String translated = null;
+            try
+            {
+                CompiledProgram program = new HavaBolEngine().compile(script);
+                Path javaFile = workDir.resolve(CLASS_NM + ".java");
+                Files.write(javaFile, HavaBolc.translate(program, CLASS_NM).getBytes(StandardCharsets.UTF_8));
+                compile(javaFile, classPath, workDir);
+                translated = run(workDir + File.pathSeparator + classPath, CLASS_NM);
+                verdict = translated.equals(interpreted) ? "SAME" : "DIFFERENT";
+            }
+            catch (ParserException e)
+            {
+                String diagnostic = firstLine(e.toString());
+                if (diagnostic.contains("HAVABOLC CAN NOT TRANSLATE"))
+                    verdict = "REJECTED";
+                else if (FAILED.matcher(interpreted).find())
+                    verdict = "ERROR";
+                else
+                {
+                    verdict = "DIFFERENT";
+                    translated = e.toString();
+                }
+            }
+            catch (Exception e)
+            {
+                verdict = "DIFFERENT";
+                translated = e.toString();
+            }
+
+            System.out.println(verdict + " " + script);
+            verdictM.put(script.toString().replace(File.separatorChar, '/'), verdict);
+            switch (verdict)
+            {
+                case "SAME":     iSame++;     break;
+                case "REJECTED": iRejected++; break;
+                case "ERROR":    iError++;    break;
+                default:
+                    iDifferent++;
+                    System.out.println("  interpreter:\n" + indent(interpreted) + "  havabolc:\n" + indent(translated));
+            }
+        }
+        System.out.printf("%d same, %d rejected, %d errors, %d different%n", iSame, iRejected, iError, iDifferent);
+
+        // only the listed scripts in the directories checked are compared with the list
+        int iLost = 0;
+        for (String script : TRANSLATED)
+            if (verdictM.containsKey(script) && !verdictM.get(script).equals("SAME"))
+            {
+                System.out.println("LOST " + script + " is " + verdictM.get(script) + " now");
+                iLost++;
+            }
+        for (String script : verdictM.keySet())
+            if (verdictM.get(script).equals("SAME") && !TRANSLATED.contains(script))
+                System.out.println("NEW " + script + " translates, add it to TRANSLATED");
+        if (iDifferent > 0 || iLost > 0)
+            System.exit(1);
+    }
+
+    private static List<Path> scripts(List<String> dirL) throws Exception
+    {
+        ArrayList<Path> scriptL = new ArrayList<Path>();
+        for (String dirNm : dirL)
+            try (Stream<Path> walk = Files.walk(Paths.get(dirNm)))
+            {
+                scriptL.addAll(walk.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList()));
+            }
+        return scriptL;
+    }
+
+    /**
+     * Compiles on a thread with a large stack, since havabolc nests every operator in parentheses.
+     */
+    private static void compile(Path javaFile, String classPath, Path dir) throws Exception
+    {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        int[] iStatus = { -1 };
+        Thread thread = new Thread(null, () -> iStatus[0] = javac.run(null, messages, messages, "-nowarn"
+                , "-cp", classPath, "-d", dir.toString(), javaFile.toString()), "javac", 1L << 28);
+        thread.start();
+        thread.join();
+        if (iStatus[0] != 0)
+            throw new Exception("javac failed on " + javaFile + "\n" + messages);
+    }
+
+    /**
+     * Runs a main class in a child JVM and returns what it printed, without stack trace lines.
+     */
+    private static String run(String classPath, String... argM) throws Exception
+    {
+        ArrayList<String> commandL = new ArrayList<String>();
+        commandL.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        commandL.add("-cp");
+        commandL.add(classPath);
+        commandL.addAll(List.of(argM));
+        Process process = new ProcessBuilder(commandL).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        process.waitFor();
+        return output.lines().filter(line -> !line.startsWith("\tat ") && !line.startsWith("\t... "))
+                .map(line -> line.replaceFirst("^Exception in thread \"main\" ", "") + "\n")
+                .collect(Collectors.joining());
+    }
+
+    private static String firstLine(String text)
+    {
+        int iEnd = text.indexOf('\n');
+        return (iEnd < 0 ? text : text.substring(0, iEnd)).trim();
+    }
+
+    private static String indent(String text)
+    {
+        return text.lines().map(line -> "    " + line + "\n").collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+  Check of the statement counters kept by InterpreterMetrics.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/checks/MetricsCheck.java
+  Output:
+      One line for each script, OK or the counters that were wrong. The exit status is 1 if
+      any counter was wrong.
+  Notes:
+      1. The scripts skip statements in false if branches, else branches, and the last test of
+         a while loop, which must not be counted as executed.
+      2. TokensScanned must count each token of a script once, when it is compiled, and not
+         again while it runs. Each script is also run with HavaBolEngine.runPipelined, as
+         --pipeline does, which must give the same counters, TokensScanned included.
+ */
+import havabol.CompiledProgram;
+import havabol.HavaBolEngine;
+import havabol.InterpreterMetrics;
+import havabol.StorageManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MetricsCheck
+{
+    public static void main(String[] args) throws Exception
+    {
+        int iWrongCnt = 0;
+
+        // a false if skips all four statements of its branch
+        iWrongCnt += check("Int x=0; if x>5: x=1; x=2; print(\"a\"); print(\"b\"); endif; print(x);"
+                , counts(3, 1, 0, 1, 0, 0, 1));
+
+        // the body runs three times, the fourth test of the condition skips it
+        iWrongCnt += check("Int i=0; while i < 3: i = i + 1; endwhile; print(i);"
+                , counts(6, 1, 3, 0, 1, 0, 1));
+
+        // only one branch of an if else runs
+        iWrongCnt += check("Int i=2; if i > 1: print(\"x\"); else: print(\"y\"); i = 0; endif;"
+                , counts(3, 1, 0, 1, 0, 0, 1));
+
+        // a for runs its body once per element, a nested if inside a skipped branch is not counted
+        iWrongCnt += check("Int t=0; for k = 0 to 4: t += k; endfor; if t < 0: if t < 1: t = 1; endif; endif;"
+                , counts(7, 1, 4, 1, 0, 1, 0));
+
+        if (iWrongCnt > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Expected counters, in the order of the arguments.
+     */
+    private static Map<String, Long> counts(long lExecuted, long lDeclare, long lAssign, long lIf
+            , long lWhile, long lFor, long lFunction)
+    {
+        LinkedHashMap<String, Long> countM = new LinkedHashMap<String, Long>();
+        countM.put("StatementsExecuted", lExecuted);
+        countM.put("DeclareStatements", lDeclare);
+        countM.put("AssignStatements", lAssign);
+        countM.put("IfStatements", lIf);
+        countM.put("WhileStatements", lWhile);
+        countM.put("ForStatements", lFor);
+        countM.put("FunctionStatements", lFunction);
+        return countM;
+    }
+
+    /**
+     * Runs a script with the counters reset and compares them with the expected counts, then
+     * runs it pipelined and compares those counters with the first run. TokensScanned is compared
+     * with the count after compiling the script.
+     *
+     * @return 1 if any counter was wrong, otherwise 0
+     */
+    private static int check(String source, Map<String, Long> expectedM) throws Exception
+    {
+        InterpreterMetrics metrics = new InterpreterMetrics();
+        metrics.resetCounters();
+        CompiledProgram program = new HavaBolEngine().compile(source);
+        long lTokens = metrics.getTokensScanned();
+        program.run(new StringBuilder());
+        LinkedHashMap<String, Long> actualM = counters(metrics);
+
+        Path sourceFile = Files.createTempFile("havabol-metrics", ".txt");
+        metrics.resetCounters();
+        try
+        {
+            Files.write(sourceFile, source.getBytes());
+            new HavaBolEngine().runPipelined(sourceFile, new StorageManager(), new StringBuilder(), null, null);
+        }
+        finally
+        {
+            Files.delete(sourceFile);
+        }
+        LinkedHashMap<String, Long> pipelinedM = counters(metrics);
+
+        LinkedHashMap<String, Long> allExpectedM = new LinkedHashMap<String, Long>();
+        allExpectedM.put("TokensScanned", lTokens);
+        allExpectedM.putAll(expectedM);
+        if (actualM.equals(allExpectedM) && pipelinedM.equals(allExpectedM))
+        {
+            System.out.println("OK        " + source);
+            return 0;
+        }
+        System.out.println("WRONG     " + source + "\n  expected " + allExpectedM + "\n  actual   " + actualM
+                + "\n  pipelined " + pipelinedM);
+        return 1;
+    }
+
+    /**
+     * Returns the counters this check compares.
+     */
+    private static LinkedHashMap<String, Long> counters(InterpreterMetrics metrics)
+    {
+        LinkedHashMap<String, Long> actualM = new LinkedHashMap<String, Long>();
+        actualM.put("TokensScanned", metrics.getTokensScanned());
+        actualM.put("StatementsExecuted", metrics.getStatementsExecuted());
+        actualM.put("DeclareStatements", metrics.getDeclareStatements());
+        actualM.put("AssignStatements", metrics.getAssignStatements());
+        actualM.put("IfStatements", metrics.getIfStatements());
+        actualM.put("WhileStatements", metrics.getWhileStatements());
+        actualM.put("ForStatements", metrics.getForStatements());
+        actualM.put("FunctionStatements", metrics.getFunctionStatements());
+        return actualM;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+  Check of the execution counts reported by the statement profiler.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/checks/ProfileCheck.java
+  Output:
+      One line for each script, OK or the counts that were wrong. The exit status is 1 if
+      any count was wrong.
+  Notes:
+      1. Each script is run from a temporary directory with a profiler, and the Count column of
+         the hot spot table is compared with the number of times each line runs.
+      2. The scripts put one statement on each line. Statements skipped in false if branches and
+         the last test of a loop, and the ';' and end tokens of a body, must not be counted.
+      3. The collapsed stack file must be written next to the source, not in the working directory.
+ */
+import havabol.HavaBolEngine;
+import havabol.Profiler;
+import havabol.StorageManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+public class ProfileCheck
+{
+    public static void main(String[] args) throws Exception
+    {
+        int iWrongCnt = 0;
+
+        // the body runs three times, the fourth test of the condition skips it
+        iWrongCnt += check("Int i = 0;\nwhile i < 3:\n    i += 1;\nendwhile;\nprint(i);\n"
+                , counts(1, 1, 2, 1, 3, 3, 5, 1));
+
+        // a false if skips both statements of its branch
+        iWrongCnt += check("Int x = 0;\nif x > 5:\n    x = 1;\n    print(x);\nendif;\nprint(x);\n"
+                , counts(1, 1, 2, 1, 6, 1));
+
+        // only one branch of an if else runs
+        iWrongCnt += check("Int i = 2;\nif i > 1:\n    print(\"x\");\nelse:\n    print(\"y\");\nendif;\n"
+                , counts(1, 1, 2, 1, 3, 1));
+
+        // a for runs its body once per element, the nested if is skipped each time
+        iWrongCnt += check("Int t = 0;\nfor k = 0 to 4:\n    t += k;\n    if t < 0:\n        t = 1;\n    endif;\nendfor;\n"
+                , counts(1, 1, 2, 1, 3, 4, 4, 4));
+
+        if (iWrongCnt > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Expected counts, given as pairs of a line number and the times it runs.
+     */
+    private static Map<Integer, Long> counts(long... pairM)
+    {
+        TreeMap<Integer, Long> countM = new TreeMap<Integer, Long>();
+        for (int i = 0; i < pairM.length; i += 2)
+            countM.put((int) pairM[i], pairM[i + 1]);
+        return countM;
+    }
+
+    /**
+     * Runs a script with a profiler and compares the counts in its report with the expected counts.
+     *
+     * @return 1 if any count was wrong or the collapsed file was not beside the source, otherwise 0
+     */
+    private static int check(String source, Map<Integer, Long> expectedM) throws Exception
+    {
+        Path dir = Files.createTempDirectory("havabol-profile");
+        Path sourceFile = dir.resolve("prog.txt");
+        Files.write(sourceFile, source.getBytes());
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(report, true));
+        try
+        {
+            new HavaBolEngine().compile(sourceFile).run(new StorageManager(), new StringBuilder()
+                    , new Profiler(sourceFile.toString()));
+        }
+        finally
+        {
+            System.setErr(err);
+        }
+
+        // rows of the table start with the line number and the count
+        TreeMap<Integer, Long> actualM = new TreeMap<Integer, Long>();
+        for (String line : report.toString().split("\n"))
+        {
+            String[] fieldM = line.trim().split("\\s+");
+            if (fieldM.length > 2 && fieldM[0].matches("\\d+") && fieldM[1].matches("\\d+"))
+                actualM.put(Integer.parseInt(fieldM[0]), Long.parseLong(fieldM[1]));
+        }
+        boolean bCollapsed = Files.exists(dir.resolve("prog.txt.collapsed"));
+
+        try (Stream<Path> pathS = Files.walk(dir))
+        {
+            pathS.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+
+        String script = source.replace("\n", " ");
+        if (actualM.equals(expectedM) && bCollapsed)
+        {
+            System.out.println("OK        " + script);
+            return 0;
+        }
+        System.out.println("WRONG     " + script + "\n  expected " + expectedM + "\n  actual   " + actualM
+                + (bCollapsed ? "" : "\n  no prog.txt.collapsed beside the source"));
+        return 1;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+  Stress test of interpreters running side by side in one JVM.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/checks/StressTest.java [threads [rounds [dir]]]
+             threads is the number of threads, default the number of processors.
+             rounds is how many times each thread runs every script, default 10.
+             dir is the directory of scripts, default Test-Cases/working.
+  Output:
+      The number of runs and the time taken. Every script is first run alone, then each thread
+      runs all of them, starting at a different one so different scripts run at once, and the
+      output and error of every run is compared with the run alone. The first difference of each
+      script is printed and the exit status is 1 if there was any.
+  Notes:
+      1. Even rounds run the CompiledProgram compiled once, which all threads share, odd rounds
+         compile the script again, so both compiling and running happen on several threads.
+ */
+import havabol.CompiledProgram;
+import havabol.HavaBolEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class StressTest
+{
+    public static void main(String[] args) throws Exception
+    {
+        int iThreadCnt = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int iRoundCnt = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path dir = Paths.get(args.length > 2 ? args[2] : "Test-Cases/working");
+
+        List<Path> scriptL;
+        try (Stream<Path> walk = Files.walk(dir))
+        {
+            scriptL = walk.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+
+        // what each script does when it runs alone
+        ArrayList<CompiledProgram> programL = new ArrayList<CompiledProgram>();
+        ArrayList<String> expectedL = new ArrayList<String>();
+        for (Path script : scriptL)
+        {
+            CompiledProgram program = new HavaBolEngine().compile(script);
+            programL.add(program);
+            expectedL.add(run(program));
+        }
+
+        ConcurrentHashMap<Path, String> differentM = new ConcurrentHashMap<Path, String>();
+        AtomicInteger runCnt = new AtomicInteger();
+        ArrayList<Thread> threadL = new ArrayList<Thread>();
+        long lStart = System.nanoTime();
+        for (int t = 0; t < iThreadCnt; t++)
+        {
+            int iFirst = t;
+            Thread thread = new Thread(() ->
+            {
+                for (int iRound = 0; iRound < iRoundCnt; iRound++)
+                    for (int k = 0; k < scriptL.size(); k++)
+                    {
+                        int i = (iFirst + k) % scriptL.size();
+                        String output;
+                        try
+                        {
+                            CompiledProgram program = iRound % 2 == 0 ? programL.get(i)
+                                    : new HavaBolEngine().compile(scriptL.get(i));
+                            output = run(program);
+                        }
+                        catch (Exception e)
+                        {
+                            output = "compile failed: " + e;
+                        }
+                        if (!output.equals(expectedL.get(i)))
+                            differentM.putIfAbsent(scriptL.get(i), output);
+                        runCnt.incrementAndGet();
+                    }
+            }, "stress-" + t);
+            threadL.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threadL)
+            thread.join();
+        long lMs = (System.nanoTime() - lStart) / 1000000;
+
+        for (int i = 0; i < scriptL.size(); i++)
+            if (differentM.containsKey(scriptL.get(i)))
+                System.out.println("DIFFERENT " + scriptL.get(i) + "\n  alone:\n" + indent(expectedL.get(i))
+                        + "  on " + iThreadCnt + " threads:\n" + indent(differentM.get(scriptL.get(i))));
+        System.out.printf("%d runs of %d scripts on %d threads in %d ms, %d different%n"
+                , runCnt.get(), scriptL.size(), iThreadCnt, lMs, differentM.size());
+        if (!differentM.isEmpty())
+            System.exit(1);
+    }
+
+    /**
+     * Runs a program, returning what it printed followed by the error it stopped at, if any.
+     */
+    private static String run(CompiledProgram program)
+    {
+        StringBuilder out = new StringBuilder();
+        try
+        {
+            program.run(out);
+        }
+        catch (Exception e)
+        {
+            out.append(e).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String indent(String text)
+    {
+        return text.lines().map(line -> "    " + line + "\n").collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+  Timing check that s = s # piece stays linear in the length of s.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/perf/AppendTiming.java
+  Output:
+      The time to append N and 2N pieces of 1 KB. The exit status is 1 if doubling the pieces
+      more than triples the time, as copying the whole string on every append would.
+ */
+import havabol.CompiledProgram;
+import havabol.HavaBolEngine;
+
+public class AppendTiming
+{
+    private static final int PIECE_CNT = 4000;
+    private static final double MAX_RATIO = 3.0;
+
+    public static void main(String[] args) throws Exception
+    {
+        HavaBolEngine engine = new HavaBolEngine();
+        CompiledProgram small = engine.compile("append" + PIECE_CNT, source(PIECE_CNT));
+        CompiledProgram large = engine.compile("append" + 2 * PIECE_CNT, source(2 * PIECE_CNT));
+
+        // warm up the interpreter before timing it
+        for (int i = 0; i < 3; i++)
+            small.run(new StringBuilder());
+
+        long lSmallMs = best(small);
+        long lLargeMs = best(large);
+        double dRatio = (double) lLargeMs / Math.max(1, lSmallMs);
+        System.out.printf("%d appends: %d ms, %d appends: %d ms, ratio %.2f%n"
+                , PIECE_CNT, lSmallMs, 2 * PIECE_CNT, lLargeMs, dRatio);
+        if (dRatio > MAX_RATIO)
+        {
+            System.out.printf("FAIL: appending is not linear, ratio is over %.1f%n", MAX_RATIO);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the fastest of three runs in milliseconds.
+     */
+    private static long best(CompiledProgram program) throws Exception
+    {
+        long lBestMs = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++)
+        {
+            long lStartNanos = System.nanoTime();
+            program.run(new StringBuilder());
+            lBestMs = Math.min(lBestMs, (System.nanoTime() - lStartNanos) / 1000000);
+        }
+        return lBestMs;
+    }
+
+    /**
+     * Returns a script that appends iPieceCnt pieces of 1 KB to a String.
+     */
+    private static String source(int iPieceCnt)
+    {
+        return "String piece = \"0123456789012345678901234567890123456789012345678901234567890123\";\n"
+                + "Int k = 0;\n"
+                + "while k < 4:\n"
+                + "    piece = piece # piece;\n"
+                + "    k += 1;\n"
+                + "endwhile;\n"
+                + "String s = \"\";\n"
+                + "Int i = 0;\n"
+                + "while i < " + iPieceCnt + ":\n"
+                + "    s = s # piece;\n"
+                + "    i += 1;\n"
+                + "endwhile;\n"
+                + "print(LENGTH(s));\n";
+    }
+}
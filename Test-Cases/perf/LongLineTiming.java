@@ -0,0 +1,66 @@
+/*
+  Timing check that lexing a line stays linear in the length of the line.
+  Command Arguments:
+      javac -d out $(find src -name '*.java')
+      java -cp out Test-Cases/perf/LongLineTiming.java
+  Output:
+      The time to compile a line with a string literal, an identifier, and a comment of N and
+      2N chars each. The exit status is 1 if doubling the length more than triples the time, as
+      building a token a char at a time would.
+ */
+import havabol.HavaBolEngine;
+
+public class LongLineTiming
+{
+    private static final int CHAR_CNT = 200000;
+    private static final double MAX_RATIO = 3.0;
+
+    public static void main(String[] args) throws Exception
+    {
+        String small = source(CHAR_CNT);
+        String large = source(2 * CHAR_CNT);
+
+        // warm up the scanner before timing it
+        for (int i = 0; i < 3; i++)
+            new HavaBolEngine().compile("longLine" + CHAR_CNT, small);
+
+        long lSmallMs = best(small);
+        long lLargeMs = best(large);
+        double dRatio = (double) lLargeMs / Math.max(1, lSmallMs);
+        System.out.printf("%d char lines: %d ms, %d char lines: %d ms, ratio %.2f%n"
+                , CHAR_CNT, lSmallMs, 2 * CHAR_CNT, lLargeMs, dRatio);
+        if (dRatio > MAX_RATIO)
+        {
+            System.out.printf("FAIL: lexing is not linear, ratio is over %.1f%n", MAX_RATIO);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the fastest of three compiles in milliseconds.
+     */
+    private static long best(String source) throws Exception
+    {
+        long lBestMs = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++)
+        {
+            long lStartNanos = System.nanoTime();
+            new HavaBolEngine().compile("longLine", source);
+            lBestMs = Math.min(lBestMs, (System.nanoTime() - lStartNanos) / 1000000);
+        }
+        return lBestMs;
+    }
+
+    /**
+     * Returns a script whose lines hold a string literal with escapes and slashes, an identifier,
+     * and a comment full of quotes, each iCharCnt chars long.
+     */
+    private static String source(int iCharCnt)
+    {
+        String name = "v".repeat(iCharCnt);
+        return "String s = \"" + "ab/\\\"c".repeat(iCharCnt / 6) + "\";\n"
+                + "Int " + name + " = 3;\n"
+                + "// " + "'\"".repeat(iCharCnt / 2) + "\n"
+                + "print(LENGTH(s), " + name + ");\n";
+    }
+}
@@ -0,0 +1,220 @@
+package havabol;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The aggregate builtins SUM, MIN, MAX, AVG and COUNT over an array or a slice.
+ * <p>
+ * Unpopulated elements are skipped as for in skips them. COUNT takes an array of any type and
+ * returns the number of populated elements. The others take Int, Float or Date arrays:
+ * SUM of an Int array is an Int as a loop of + gives it, SUM of a Float array is a Float,
+ * MIN and MAX return the first smallest or largest element, and AVG is a Float, or the mean
+ * Date of a Date array. SUM of Dates is an error, as are MIN, MAX and AVG without elements.
+ * <p>
+ * Each element is read as one number, Julian days for a Date, and the reduction is a primitive
+ * loop. Arrays of PARALLEL_THRESHOLD or more elements are split in halves on the common
+ * fork-join pool and the partial results combined, so a Float SUM of a large array may round
+ * differently in the last digit from a loop that adds in order.
+ */
+final class Aggregates
+{
+    // arrays shorter than this are reduced on the calling thread
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private Aggregates()
+    {
+    }
+
+    /**
+     * Tells whether a builtin function name is one of the aggregates.
+     *
+     * @param functionName name of the builtin function
+     * @return true for SUM, MIN, MAX, AVG and COUNT
+     */
+    static boolean isAggregate(String functionName)
+    {
+        switch (functionName)
+        {
+            case "SUM": case "MIN": case "MAX": case "AVG": case "COUNT":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Computes an aggregate of an array.
+     *
+     * @param parser       Parser object which we will reference for errors
+     * @param functionName SUM, MIN, MAX, AVG or COUNT
+     * @param parameter    the array or slice passed to the function
+     * @return the aggregate
+     * @throws Exception if the parameter is not an array of a type the function takes, or MIN,
+     *                   MAX or AVG has no elements
+     */
+    static ResultValue evaluate(Parser parser, String functionName, ResultValue parameter) throws Exception
+    {
+        if (!(parameter instanceof ResultArray) || parameter.structure < ResultValue.fixedArray)
+            parser.error("ERROR: %s CAN ONLY OPERATE ON ARRAYS, PASSED '%s'", functionName, parameter.value);
+        ResultArray array = (ResultArray) parameter;
+
+        if (!functionName.equals("COUNT") && array.type != Token.INTEGER && array.type != Token.FLOAT
+                && array.type != Token.DATE)
+            parser.error("ERROR: %s CAN ONLY OPERATE ON Int, Float OR Date ARRAYS, PASSED '%s'"
+                    , functionName, array.value);
+        if (functionName.equals("SUM") && array.type == Token.DATE)
+            parser.error("ERROR: SUM CANNOT ADD THE DATES OF ARRAY '%s'", array.value);
+
+        Partial total = reduce(array.array, functionName.equals("COUNT") ? Token.VOID : array.type);
+
+        if (functionName.equals("COUNT"))
+            return new ResultValue(String.valueOf(total.iCount), Token.INTEGER);
+        if (functionName.equals("SUM"))
+        {
+            if (array.type == Token.INTEGER)
+                return new ResultValue(String.valueOf((int) total.lSum), Token.INTEGER);
+            return new ResultValue(String.valueOf(total.dSum), Token.FLOAT);
+        }
+
+        if (total.iCount == 0)
+            parser.error("ERROR: %s OF ARRAY '%s' WHICH HAS NO ELEMENTS", functionName, array.value);
+        switch (functionName)
+        {
+            case "MIN":
+                return new ResultValue(array.array.get(total.iMin).value, array.type);
+            case "MAX":
+                return new ResultValue(array.array.get(total.iMax).value, array.type);
+            default:
+                if (array.type == Token.DATE)
+                {// the mean Julian day, as a day after the first date
+                    String first = array.array.get(total.iMin).value;
+                    long lDays = Math.round((double) total.lSum / total.iCount) - HavaBolRuntime.julian(first);
+                    return new ResultValue(HavaBolRuntime.adjustDate(first, (int) lDays), Token.DATE);
+                }
+                double dSum = array.type == Token.INTEGER ? total.lSum : total.dSum;
+                return new ResultValue(String.valueOf(dSum / total.iCount), Token.FLOAT);
+        }
+    }
+
+    /**
+     * Reduces the populated elements, in parallel when there are many.
+     *
+     * @param elementL elements of the array, null where unpopulated
+     * @param iType    type of the elements, or Token.VOID to only count them
+     * @return the reduction of all the elements
+     */
+    private static Partial reduce(ElementList elementL, int iType)
+    {
+        if (elementL.populated() < PARALLEL_THRESHOLD)
+            return Partial.of(elementL, iType, 0, elementL.size());
+        // a sparse list sorts its subscripts on the first nextIndex, do that before the tasks share it
+        elementL.nextIndex(0);
+        return ForkJoinPool.commonPool().invoke(new Reduce(elementL, iType, 0, elementL.size()));
+    }
+
+    /**
+     * Count, sums and positions of the smallest and largest element of a range of an array.
+     */
+    private static final class Partial
+    {
+        int iCount;
+        long lSum;          // Int elements and Julian days of Dates
+        double dSum;        // Float elements
+        int iMin = -1, iMax = -1;
+        double dMin, dMax;
+
+        static Partial of(ElementList elementL, int iType, int iLo, int iHi)
+        {
+            Partial part = new Partial();
+            for (int i = elementL.nextIndex(iLo); i >= 0 && i < iHi; i = elementL.nextIndex(i + 1))
+            {
+                ResultValue elem = elementL.get(i);
+                part.iCount++;
+                double dValue;
+                switch (iType)
+                {
+                    case Token.INTEGER:
+                        int iValue = Integer.parseInt(elem.value);
+                        part.lSum += iValue;
+                        dValue = iValue;
+                        break;
+                    case Token.FLOAT:
+                        dValue = Double.parseDouble(elem.value);
+                        part.dSum += dValue;
+                        break;
+                    case Token.DATE:
+                        int iDays = HavaBolRuntime.julian(elem.value);
+                        part.lSum += iDays;
+                        dValue = iDays;
+                        break;
+                    default:
+                        continue;
+                }
+                // strict comparisons keep the first of equal elements
+                if (part.iMin < 0 || dValue < part.dMin)
+                {
+                    part.iMin = i;
+                    part.dMin = dValue;
+                }
+                if (part.iMax < 0 || dValue > part.dMax)
+                {
+                    part.iMax = i;
+                    part.dMax = dValue;
+                }
+            }
+            return part;
+        }
+
+        /**
+         * Adds the partial result of the range after this one.
+         */
+        Partial merge(Partial right)
+        {
+            iCount += right.iCount;
+            lSum += right.lSum;
+            dSum += right.dSum;
+            if (right.iMin >= 0 && (iMin < 0 || right.dMin < dMin))
+            {
+                iMin = right.iMin;
+                dMin = right.dMin;
+            }
+            if (right.iMax >= 0 && (iMax < 0 || right.dMax > dMax))
+            {
+                iMax = right.iMax;
+                dMax = right.dMax;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Splits a range of elements in halves until they are under the threshold.
+     */
+    @SuppressWarnings("serial")
+    private static final class Reduce extends RecursiveTask<Partial>
+    {
+        private final ElementList elementL;
+        private final int iType, iLo, iHi;
+
+        Reduce(ElementList elementL, int iType, int iLo, int iHi)
+        {
+            this.elementL = elementL;
+            this.iType = iType;
+            this.iLo = iLo;
+            this.iHi = iHi;
+        }
+
+        @Override
+        protected Partial compute()
+        {
+            if (iHi - iLo < PARALLEL_THRESHOLD)
+                return Partial.of(elementL, iType, iLo, iHi);
+            int iMid = (iLo + iHi) >>> 1;
+            Reduce right = new Reduce(elementL, iType, iMid, iHi);
+            right.fork();
+            Partial left = new Reduce(elementL, iType, iLo, iMid).compute();
+            return left.merge(right.join());
+        }
+    }
+}
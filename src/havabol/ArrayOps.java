@@ -0,0 +1,291 @@
+package havabol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Element-wise operators on Int and Float arrays: a + b, a * 2.0, -a, a < b.
+ * <p>
+ * An operand may be an array or a scalar, and at least one is an array. As in Utilities, the
+ * type of the left operand is the type of the result and the right operand is coerced to it, so
+ * each element of the result is what the scalar operator gives for the elements. Comparisons
+ * give a Bool array. Two arrays are combined over the length of the shorter one, and an array is
+ * used up to its last populated element; an unpopulated element before that is an error.
+ * <p>
+ * The operands are read once into int or double columns and the operator runs as one loop over
+ * the columns, which HotSpot compiles to SIMD instructions where the CPU has them. The result is
+ * an unnamed fixed array that can be assigned to an array or iterated by for in.
+ */
+final class ArrayOps
+{
+    private ArrayOps()
+    {
+    }
+
+    /**
+     * Tells whether an operator works element by element when an operand is an array.
+     *
+     * @param operator the operator
+     * @return true for + - * / ^ and the comparisons
+     */
+    static boolean isElementWise(String operator)
+    {
+        switch (operator)
+        {
+            case "+": case "-": case "*": case "/": case "^":
+            case "<": case ">": case "<=": case ">=": case "==": case "!=":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Applies an operator to each element of its array operands.
+     *
+     * @param parser   Parser object which we will reference for errors
+     * @param first    left operand, an array or a scalar
+     * @param second   right operand, an array or a scalar
+     * @param operator one of the operators isElementWise accepts
+     * @return the array of results
+     * @throws Exception if an operand is not numeric, an element is unpopulated or does not
+     *                   coerce, or an Int is divided by zero
+     */
+    static ResultArray evaluate(Parser parser, ResultValue first, ResultValue second, String operator)
+            throws Exception
+    {
+        int iType = first.type;
+        if (iType != Token.INTEGER && iType != Token.FLOAT)
+            parser.error("ERROR: '%s' ON ARRAYS NEEDS Int OR Float OPERANDS, NOT '%s'", operator, first.value);
+
+        int iLen = Integer.MAX_VALUE;
+        if (first.structure >= ResultValue.fixedArray)
+            iLen = extent((ResultArray) first);
+        if (second.structure >= ResultValue.fixedArray)
+        {
+            if (second.type != Token.INTEGER && second.type != Token.FLOAT)
+                parser.error("ERROR: '%s' ON ARRAYS NEEDS Int OR Float OPERANDS, NOT '%s'", operator, second.value);
+            iLen = Math.min(iLen, extent((ResultArray) second));
+        }
+
+        ArrayList<ResultValue> resultL = new ArrayList<ResultValue>(iLen);
+        if (iType == Token.INTEGER)
+        {
+            int[] xM = ints(parser, first, iLen);
+            int[] yM = ints(parser, second, iLen);
+            if (isComparison(operator))
+                bools(compare(operator, xM, yM, iLen), resultL);
+            else
+            {
+                int[] rM = arith(operator.charAt(0), xM, yM, iLen);
+                for (int i = 0; i < iLen; i++)
+                    resultL.add(new ResultValue(String.valueOf(rM[i]), Token.INTEGER));
+            }
+        }
+        else
+        {
+            double[] xM = doubles(parser, first, iLen);
+            double[] yM = doubles(parser, second, iLen);
+            if (isComparison(operator))
+                bools(compare(operator, xM, yM, iLen), resultL);
+            else
+            {
+                double[] rM = arith(operator.charAt(0), xM, yM, iLen);
+                for (int i = 0; i < iLen; i++)
+                    resultL.add(new ResultValue(String.valueOf(rM[i]), Token.FLOAT));
+            }
+        }
+
+        int iResultType = isComparison(operator) ? Token.BOOLEAN : iType;
+        return new ResultArray(first.value + " " + operator + " " + second.value, resultL, iResultType
+                , ResultValue.fixedArray, iLen, iLen, iLen);
+    }
+
+    private static boolean isComparison(String operator)
+    {
+        return operator.charAt(0) == '<' || operator.charAt(0) == '>' || operator.charAt(0) == '='
+                || operator.charAt(0) == '!';
+    }
+
+    /**
+     * Returns the number of elements up to the last populated one.
+     */
+    private static int extent(ResultArray array)
+    {
+        int iLen = array.array.size();
+        while (iLen > 0 && array.array.get(iLen - 1) == null)
+            iLen--;
+        return iLen;
+    }
+
+    /**
+     * Reads an operand as Ints, coercing it as Utilities.toInteger does. A scalar is repeated.
+     */
+    private static int[] ints(Parser parser, ResultValue operand, int iLen) throws Exception
+    {
+        int[] valueM = new int[iLen];
+        if (operand.structure < ResultValue.fixedArray)
+        {
+            Arrays.fill(valueM, Integer.parseInt(Utilities.toInteger(parser, operand)));
+            return valueM;
+        }
+        ResultArray array = (ResultArray) operand;
+        for (int i = 0; i < iLen; i++)
+            valueM[i] = Integer.parseInt(Utilities.toInteger(parser, element(parser, array, i)));
+        return valueM;
+    }
+
+    /**
+     * Reads an operand as Floats, coercing it as Utilities.toFloat does. A scalar is repeated.
+     */
+    private static double[] doubles(Parser parser, ResultValue operand, int iLen) throws Exception
+    {
+        double[] valueM = new double[iLen];
+        if (operand.structure < ResultValue.fixedArray)
+        {
+            Arrays.fill(valueM, Double.parseDouble(Utilities.toFloat(parser, operand)));
+            return valueM;
+        }
+        ResultArray array = (ResultArray) operand;
+        for (int i = 0; i < iLen; i++)
+            valueM[i] = Double.parseDouble(Utilities.toFloat(parser, element(parser, array, i)));
+        return valueM;
+    }
+
+    private static ResultValue element(Parser parser, ResultArray array, int i) throws Exception
+    {
+        ResultValue elem = array.array.get(i);
+        if (elem == null)
+            parser.error("ERROR: INDEX '%d' IS UNINITIALIZED FOR ARRAY '%s'", i, array.value);
+        return elem;
+    }
+
+    private static void bools(boolean[] rM, ArrayList<ResultValue> resultL)
+    {
+        for (boolean b : rM)
+            resultL.add(new ResultValue(b ? "T" : "F", Token.BOOLEAN));
+    }
+
+    // the loops below have no calls or branches in their bodies so HotSpot can vectorize them
+
+    private static int[] arith(char operator, int[] xM, int[] yM, int iLen)
+    {
+        int[] rM = new int[iLen];
+        switch (operator)
+        {
+            case '+':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] + yM[i];
+                break;
+            case '-':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] - yM[i];
+                break;
+            case '*':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] * yM[i];
+                break;
+            case '/':
+                // an Int division by zero throws, as it does for scalars
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] / yM[i];
+                break;
+            default:
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = (int) Math.pow(xM[i], yM[i]);
+        }
+        return rM;
+    }
+
+    private static double[] arith(char operator, double[] xM, double[] yM, int iLen)
+    {
+        double[] rM = new double[iLen];
+        switch (operator)
+        {
+            case '+':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] + yM[i];
+                break;
+            case '-':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] - yM[i];
+                break;
+            case '*':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] * yM[i];
+                break;
+            case '/':
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] / yM[i];
+                break;
+            default:
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = Math.pow(xM[i], yM[i]);
+        }
+        return rM;
+    }
+
+    private static boolean[] compare(String operator, int[] xM, int[] yM, int iLen)
+    {
+        boolean[] rM = new boolean[iLen];
+        switch (operator)
+        {
+            case "<":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] < yM[i];
+                break;
+            case ">":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] > yM[i];
+                break;
+            case "<=":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] <= yM[i];
+                break;
+            case ">=":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] >= yM[i];
+                break;
+            case "==":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] == yM[i];
+                break;
+            default:
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] != yM[i];
+        }
+        return rM;
+    }
+
+    private static boolean[] compare(String operator, double[] xM, double[] yM, int iLen)
+    {
+        boolean[] rM = new boolean[iLen];
+        switch (operator)
+        {
+            case "<":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] < yM[i];
+                break;
+            case ">":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] > yM[i];
+                break;
+            case "<=":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] <= yM[i];
+                break;
+            case ">=":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] >= yM[i];
+                break;
+            case "==":
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] == yM[i];
+                break;
+            default:
+                for (int i = 0; i < iLen; i++)
+                    rM[i] = xM[i] != yM[i];
+        }
+        return rM;
+    }
+}
@@ -0,0 +1,256 @@
+package havabol;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The SORT, SORTDESC and BSEARCH builtins and the binary search of in and notin.
+ * <p>
+ * Int and Float elements are ordered by value, Dates by day and Strings lexically. SORT and
+ * SORTDESC sort an array in place, moving its populated elements to the front and the
+ * unpopulated ones after them, and return the array. Int and Date elements are sorted as longs
+ * holding the key and the position of the element so the elements keep their text, Floats as
+ * doubles, and Strings with a comparator. Arrays of Aggregates.PARALLEL_THRESHOLD or more
+ * elements are sorted with Arrays.parallelSort.
+ * <p>
+ * A sorted array remembers its order in ResultArray.iSortOrder until it is next assigned, and
+ * while it does, in and notin search it in log time.
+ */
+final class ArraySort
+{
+    private ArraySort()
+    {
+    }
+
+    /**
+     * Tells whether a builtin function name is SORT or SORTDESC.
+     *
+     * @param functionName name of the builtin function
+     * @return true for SORT and SORTDESC
+     */
+    static boolean isSort(String functionName)
+    {
+        return functionName.equals("SORT") || functionName.equals("SORTDESC");
+    }
+
+    /**
+     * Sorts an array in place.
+     *
+     * @param parser       Parser object which we will reference for errors
+     * @param functionName SORT for ascending order, SORTDESC for descending
+     * @param parameter    the array passed to the function
+     * @return the sorted array
+     * @throws Exception if the parameter is not an Int, Float, Date or String array
+     */
+    static ResultArray sort(Parser parser, String functionName, ResultValue parameter) throws Exception
+    {
+        ResultArray array = sortable(parser, functionName, parameter);
+        boolean bDescending = functionName.equals("SORTDESC");
+        ElementList elementL = array.array;
+
+        int iLen = elementL.populated();
+        int[] indexM = new int[iLen];
+        ResultValue[] elemM = new ResultValue[iLen];
+        for (int i = 0, iIndex = elementL.nextIndex(0); i < iLen; i++, iIndex = elementL.nextIndex(iIndex + 1))
+        {
+            indexM[i] = iIndex;
+            elemM[i] = elementL.get(iIndex);
+        }
+        boolean bParallel = iLen >= Aggregates.PARALLEL_THRESHOLD;
+        switch (array.type)
+        {
+            case Token.INTEGER:
+            case Token.DATE:
+            {// key in the high half, position in the low half
+                long[] keyM = new long[iLen];
+                for (int i = 0; i < iLen; i++)
+                {
+                    int iKey = intKey(elemM[i], array.type);
+                    keyM[i] = (long) (bDescending ? ~iKey : iKey) << 32 | i;
+                }
+                if (bParallel)
+                    Arrays.parallelSort(keyM);
+                else
+                    Arrays.sort(keyM);
+                ResultValue[] sortedM = new ResultValue[iLen];
+                for (int i = 0; i < iLen; i++)
+                    sortedM[i] = elemM[(int) keyM[i]];
+                elemM = sortedM;
+                break;
+            }
+            case Token.FLOAT:
+            {
+                double[] keyM = new double[iLen];
+                for (int i = 0; i < iLen; i++)
+                    keyM[i] = Double.parseDouble(elemM[i].value);
+                if (bParallel)
+                    Arrays.parallelSort(keyM);
+                else
+                    Arrays.sort(keyM);
+                for (int i = 0; i < iLen; i++)
+                    elemM[i] = new ResultValue(Double.toString(keyM[bDescending ? iLen - 1 - i : i]), Token.FLOAT);
+                break;
+            }
+            default:
+            {
+                Comparator<ResultValue> byValue = Comparator.comparing(elem -> elem.value);
+                if (bDescending)
+                    byValue = byValue.reversed();
+                if (bParallel)
+                    Arrays.parallelSort(elemM, byValue);
+                else
+                    Arrays.sort(elemM, byValue);
+            }
+        }
+
+        for (int i = 0; i < iLen; i++)
+            elementL.set(i, elemM[i]);
+        for (int iIndex : indexM)
+            if (iIndex >= iLen)
+                elementL.set(iIndex, null);
+        array.iSortOrder = bDescending ? ResultArray.descending : ResultArray.ascending;
+        return array;
+    }
+
+    /**
+     * Finds a value in a sorted array.
+     * <p>
+     * An array not sorted by SORT or SORTDESC is checked once to be in order and then
+     * remembered as sorted.
+     *
+     * @param parser Parser object which we will reference for errors
+     * @param array  the array to search
+     * @param key    the value to find, coerced to the type of the array
+     * @return the Int position of the first element equal to the value, -1 if there is none
+     * @throws Exception if the array is not sortable or not sorted, or the value does not coerce
+     */
+    static ResultValue bsearch(Parser parser, ResultValue array, ResultValue key) throws Exception
+    {
+        ResultArray sorted = sortable(parser, "BSEARCH", array);
+        if (sorted.iSortOrder == 0)
+        {
+            sorted.iSortOrder = order(sorted);
+            if (sorted.iSortOrder == 0)
+                parser.error("ERROR: BSEARCH NEEDS A SORTED ARRAY, '%s' IS NOT SORTED", sorted.value);
+        }
+
+        ResultValue value = new ResultValue(coerce(parser, key, sorted.type), sorted.type);
+        return new ResultValue(String.valueOf(search(sorted, value)), Token.INTEGER);
+    }
+
+    /**
+     * Binary search of in and notin.
+     *
+     * @param list the array searched, which must have iSortOrder set
+     * @param item the value to find, of the type of the array
+     * @return true if an element equals the value
+     */
+    static boolean contains(ResultArray list, ResultValue item)
+    {
+        return search(list, item) >= 0;
+    }
+
+    /**
+     * Tells whether in and notin can search an array for an item with contains.
+     *
+     * @param list the array
+     * @param item the value to find
+     * @return true if the array is sorted and the item compares in the same order
+     */
+    static boolean canSearch(ResultArray list, ResultValue item)
+    {
+        return list.iSortOrder != 0 && item.type == list.type && item.structure == ResultValue.primitive;
+    }
+
+    private static ResultArray sortable(Parser parser, String functionName, ResultValue parameter) throws Exception
+    {
+        if (!(parameter instanceof ResultArray) || parameter.structure < ResultValue.fixedArray)
+            parser.error("ERROR: %s CAN ONLY OPERATE ON ARRAYS, PASSED '%s'", functionName, parameter.value);
+        ResultArray array = (ResultArray) parameter;
+        if (array.type != Token.INTEGER && array.type != Token.FLOAT && array.type != Token.DATE
+                && array.type != Token.STRING)
+            parser.error("ERROR: %s CAN ONLY OPERATE ON Int, Float, Date OR String ARRAYS, PASSED '%s'"
+                    , functionName, array.value);
+        return array;
+    }
+
+    /**
+     * Returns the order of an array whose populated elements come first, or 0 if it has none.
+     */
+    private static int order(ResultArray array)
+    {
+        ElementList elementL = array.array;
+        int iLen = elementL.populated();
+        if (elementL.nextIndex(iLen) >= 0)
+            // an element after the first iLen, so one of those is unpopulated
+            return 0;
+
+        boolean bAscending = true, bDescending = true;
+        for (int i = 1; i < iLen && (bAscending || bDescending); i++)
+        {
+            int iCmp = compare(elementL.get(i - 1), elementL.get(i), array.type);
+            if (iCmp > 0)
+                bAscending = false;
+            if (iCmp < 0)
+                bDescending = false;
+        }
+        if (bAscending)
+            return ResultArray.ascending;
+        return bDescending ? ResultArray.descending : 0;
+    }
+
+    /**
+     * Returns the position of the first element equal to a value in a sorted array, or -1.
+     */
+    private static int search(ResultArray array, ResultValue value)
+    {
+        ElementList elementL = array.array;
+        int iLo = 0, iHi = elementL.populated();
+        while (iLo < iHi)
+        {// the first element not before the value is in [iLo, iHi]
+            int iMid = (iLo + iHi) >>> 1;
+            if (compare(elementL.get(iMid), value, array.type) * array.iSortOrder < 0)
+                iLo = iMid + 1;
+            else
+                iHi = iMid;
+        }
+        if (iLo < elementL.populated() && compare(elementL.get(iLo), value, array.type) == 0)
+            return iLo;
+        return -1;
+    }
+
+    private static int compare(ResultValue elem1, ResultValue elem2, int iType)
+    {
+        switch (iType)
+        {
+            case Token.INTEGER:
+                return Integer.compare(Integer.parseInt(elem1.value), Integer.parseInt(elem2.value));
+            case Token.FLOAT:
+                return Double.compare(Double.parseDouble(elem1.value), Double.parseDouble(elem2.value));
+            default:    // a Date is yyyy-mm-dd, so its text is in order of days
+                return elem1.value.compareTo(elem2.value);
+        }
+    }
+
+    private static int intKey(ResultValue elem, int iType)
+    {
+        if (iType == Token.DATE)
+            return HavaBolRuntime.julian(elem.value);
+        return Integer.parseInt(elem.value);
+    }
+
+    private static String coerce(Parser parser, ResultValue key, int iType) throws Exception
+    {
+        switch (iType)
+        {
+            case Token.INTEGER:
+                return Utilities.toInteger(parser, key);
+            case Token.FLOAT:
+                return Utilities.toFloat(parser, key);
+            case Token.DATE:
+                return Utilities.toDate(parser, key);
+            default:
+                return key.value;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package havabol;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks the syntax of many HavaBol sources in one JVM, for --check.
+ * <p>
+ * Each file is compiled and checked by SyntaxChecker without running it. The files are spread
+ * over a fixed pool of one thread per processor; every compile has its own Scanner and tokens,
+ * so they share no state. Each error is printed on one line of STDOUT as
+ * <pre>
+ *     file:line: message
+ * </pre>
+ * in the order of the files, with line 0 when the error has no line. A summary with the number
+ * of files, errors, and the time taken is printed to STDERR.
+ * <p>
+ * Only the files in a directory whose names match a glob, *.txt unless --glob gives another, are
+ * checked, so Java sources or notes kept next to the scripts are left out. Files named on the
+ * command line are always checked.
+ */
+final class BatchCheck
+{
+    static final String DEFAULT_GLOB = "*.txt";
+
+    private BatchCheck()
+    {
+    }
+
+    /**
+     * Checks every file given and the files in the directory trees given whose names match glob.
+     *
+     * @param pathL files and directories to check
+     * @param glob  pattern the names of the files in a directory must match, such as *.txt
+     * @param out   where the errors are printed
+     * @param err   where the summary is printed
+     * @return the number of errors found
+     * @throws Exception if a directory can not be read or the check is interrupted
+     */
+    static int check(List<Path> pathL, String glob, PrintStream out, PrintStream err) throws Exception
+    {
+        long lStartNanos = System.nanoTime();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        ArrayList<Path> fileL = new ArrayList<Path>();
+        for (Path path : pathL)
+            fileL.addAll(sources(path, matcher));
+
+        int iThreadCnt = Math.max(1, Math.min(fileL.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(iThreadCnt, r ->
+        {
+            Thread t = new Thread(r, "havabol-check");
+            t.setDaemon(true);
+            return t;
+        });
+
+        int iErrorCnt = 0;
+        int iBadFileCnt = 0;
+        try
+        {
+            ArrayList<Future<List<String>>> resultL = new ArrayList<Future<List<String>>>();
+            for (Path file : fileL)
+                resultL.add(executor.submit(() -> checkFile(file)));
+
+            // print in the order of the files, whichever finishes first
+            for (Future<List<String>> result : resultL)
+            {
+                List<String> lineL = result.get();
+                for (String line : lineL)
+                    out.println(line);
+                iErrorCnt += lineL.size();
+                if (!lineL.isEmpty())
+                    iBadFileCnt++;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        err.printf("checked %d files in %d ms: %d errors in %d files%n", fileL.size()
+                , (System.nanoTime() - lStartNanos) / 1000000, iErrorCnt, iBadFileCnt);
+        return iErrorCnt;
+    }
+
+    /**
+     * Returns the file itself, or the regular files under a directory whose names match, in name
+     * order, leaving out hidden ones.
+     */
+    private static List<Path> sources(Path path, PathMatcher matcher) throws IOException
+    {
+        if (!Files.isDirectory(path))
+            return List.of(path);
+
+        try (Stream<Path> walk = Files.walk(path))
+        {
+            return walk.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().startsWith("."))
+                    .filter(p -> matcher.matches(p.getFileName()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Compiles one file and returns a diagnostic line for each of its errors.
+     */
+    private static List<String> checkFile(Path file)
+    {
+        ArrayList<String> lineL = new ArrayList<String>();
+        try
+        {
+            ArrayList<String> sourceLineM = Scanner.readSource(new java.util.Scanner(file.toFile()));
+            if (sourceLineM.isEmpty())
+                throw new HBException("Empty source file:" + file);
+            for (Exception e : new CompiledProgram(file.toString(), sourceLineM).getSyntaxErrors())
+                lineL.add(diagnostic(file, e));
+        }
+        catch (Exception e)
+        {// the file can not be read, is empty, or starts with an invalid token
+            lineL.add(diagnostic(file, e));
+        }
+        return lineL;
+    }
+
+    /**
+     * Formats an error as file:line: message, with the message on one line.
+     */
+    static String diagnostic(Path file, Exception e)
+    {
+        int iLineNr = 0;
+        String message;
+        if (e instanceof ParserException)
+        {
+            iLineNr = ((ParserException) e).iLineNr;
+            message = ((ParserException) e).diagnostic;
+        }
+        else
+        {
+            if (e instanceof HBException)
+                iLineNr = ((HBException) e).iLineNr;
+            message = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return file + ":" + iLineNr + ": " + message.replaceAll("\\s*\\n\\s*", " ").trim();
+    }
+}
@@ -0,0 +1,68 @@
+package havabol;
+
+import java.util.HashMap;
+
+/**
+ * Subscripts of one run of a counting for loop that are checked once for the whole loop.
+ * <p>
+ * LoopInvariants sets boundsFor on each arr[i] in the body of 'for i = start to end:' when the
+ * body assigns neither arr nor i. The first time such a subscript is read, start and end are
+ * checked once against the declared and populated length of the array. If they are within it,
+ * Parser.getOperand reads arr[i] directly for the rest of the loop, taking the usual path only
+ * for an element that was never assigned. If they are not, or the loop does not count up, every
+ * access takes the usual path, which reports the same errors as before at the iteration that
+ * fails.
+ */
+final class BoundsProof
+{
+    private final Token forToken;       // the for loop
+    int iIndex;                         // value of the control variable in this iteration
+    private final int iStart, iEnd;     // the control variable goes from iStart up to before iEnd
+    private final boolean bCountsUp;    // false if the loop could leave that range
+    private HashMap<String, ResultArray> provenM;   // arrays checked so far, null for those that failed
+
+    BoundsProof(Token forToken, int iStart, int iEnd, int iStep)
+    {
+        this.forToken = forToken;
+        this.iStart = iStart;
+        this.iEnd = iEnd;
+        this.bCountsUp = iStep > 0;
+        this.iIndex = iStart;
+    }
+
+    /**
+     * Tells whether a subscript's boundsFor is this loop. The Scanner hands out copies of the
+     * tokens, so the for token is matched by its position.
+     */
+    boolean isLoop(Token boundsFor)
+    {
+        return boundsFor.iSourceLineNr == forToken.iSourceLineNr && boundsFor.iColPos == forToken.iColPos;
+    }
+
+    /**
+     * Returns the array if every subscript of the loop is in range, otherwise null.
+     *
+     * @param name  name of the array
+     * @param entry what the storage manager has for the name now
+     * @return entry as a ResultArray, or null if it must be checked on each access
+     */
+    ResultArray array(String name, ResultValue entry)
+    {
+        if (provenM == null)
+            provenM = new HashMap<String, ResultArray>();
+        if (!provenM.containsKey(name))
+            provenM.put(name, inRange(entry) ? (ResultArray) entry : null);
+
+        // the body assigns none of these arrays, so only the one that was checked passes
+        ResultArray array = provenM.get(name);
+        return array == entry ? array : null;
+    }
+
+    private boolean inRange(ResultValue entry)
+    {
+        if (!bCountsUp || iStart < 0 || !(entry instanceof ResultArray) || entry.structure == ResultValue.primitive)
+            return false;
+        ResultArray array = (ResultArray) entry;
+        return iEnd <= array.array.size() && (array.iDeclaredLen == -1 || iEnd <= array.iDeclaredLen);
+    }
+}
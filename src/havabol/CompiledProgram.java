@@ -0,0 +1,425 @@
+package havabol;
+
+import havabol.SymbolTable.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A HavaBol program whose source has already been read and broken into tokens.
+ * <p>
+ * CompiledProgram objects are created by HavaBolEngine and never change after that, so one
+ * program can be run any number of times, and from several threads at once. Every run gets its
+ * own SymbolTable, Scanner, and Parser; the StorageManager is either new or supplied by the caller.
+ */
+public final class CompiledProgram
+{
+    // sources of fewer lines than this are lexed on the calling thread
+    static final int PARALLEL_LINES = 1 << 13;
+    // lines lexed by one task of a parallel lex
+    private static final int CHUNK_LINES = 1 << 11;
+
+    final String sourceFileNm;              // source file name, used for error messages
+    final ArrayList<String> sourceLineM;    // source lines as they were when the tokens were built
+    private final Token[] tokenM;           // every token of the program, ending with EOF
+    private final int[] lineStartM;         // index into tokenM of the first token on or after each line
+    private final Exception lexError;       // error found while building the token after the last one, or null
+    private final List<Exception> syntaxErrorL;     // errors found by SyntaxChecker and lexError, in source order
+    private final LoopCompiler loopCompiler = new LoopCompiler(this);  // hot loops compiled by runs with bJit
+
+    /**
+     * CompiledProgram constructor that builds every token of the source.
+     * <p>
+     * The tokens are built by a Scanner working through the lines. An error on a later token
+     * is saved and only thrown when a run reaches that token, as it would be without compiling.
+     * TypeInference then marks the arithmetic whose types are known, LoopInvariants the loop
+     * operands that need not be evaluated every iteration, and SyntaxChecker finds the
+     * syntax errors.
+     * <p>
+     * No token spans lines, since a string literal ends on its line and so does a comment, so a
+     * source of PARALLEL_LINES or more lines is split into chunks of lines that are lexed at the
+     * same time on the common fork-join pool. If a chunk has an invalid token, or the source has
+     * no tokens, the source is lexed again by one Scanner so the error is the one it raises.
+     *
+     * @param sourceFileNm name of the source, used for error messages
+     * @param sourceLineM  lines of the source
+     * @throws Exception if the source is empty or the first token is invalid
+     */
+    CompiledProgram(String sourceFileNm, ArrayList<String> sourceLineM) throws Exception
+    {
+        this.sourceFileNm = sourceFileNm;
+        this.sourceLineM = sourceLineM;
+
+        ArrayList<Token> tokenL = null;
+        Exception error = null;
+        if (sourceLineM.size() >= PARALLEL_LINES)
+            tokenL = ForkJoinPool.commonPool().invoke(new Lex(sourceFileNm, sourceLineM, 0, sourceLineM.size()));
+        if (tokenL == null || tokenL.get(0).primClassif == Token.EOF)
+        {
+            // the scanner leaves the first token in nextToken
+            Scanner lexer = new Scanner(sourceFileNm, sourceLineM, new SymbolTable());
+            tokenL = new ArrayList<Token>();
+            error = lex(lexer, tokenL);
+        }
+
+        this.tokenM = tokenL.toArray(new Token[tokenL.size()]);
+        this.lexError = error;
+        this.lineStartM = buildLineStarts(tokenM, sourceLineM.size());
+        TypeInference.annotate(this.tokenM);
+        LoopInvariants.annotate(this.tokenM);
+        this.syntaxErrorL = checkSyntax();
+    }
+
+    /**
+     * CompiledProgram constructor for tokens that were built and annotated before, such as by
+     * ProgramCache, so TypeInference, LoopInvariants, and SyntaxChecker are not run again.
+     *
+     * @param sourceFileNm name of the source, used for error messages
+     * @param sourceLineM  lines of the source as they were after building the tokens
+     * @param tokenM       every token of the program, ending with EOF, with the marks of the passes
+     * @param syntaxErrorL the errors SyntaxChecker found in the tokens, in source order
+     */
+    CompiledProgram(String sourceFileNm, ArrayList<String> sourceLineM, Token[] tokenM
+            , List<? extends Exception> syntaxErrorL)
+    {
+        this.sourceFileNm = sourceFileNm;
+        this.sourceLineM = sourceLineM;
+        this.tokenM = tokenM;
+        this.lexError = null;
+        this.lineStartM = buildLineStarts(tokenM, sourceLineM.size());
+        this.syntaxErrorL = Collections.unmodifiableList(new ArrayList<Exception>(syntaxErrorL));
+    }
+
+    /**
+     * Returns the syntax errors of the tokens, followed by the lexical error if there is one.
+     */
+    private List<Exception> checkSyntax()
+    {
+        ArrayList<Exception> errorL = new ArrayList<Exception>(SyntaxChecker.check(tokenM, sourceFileNm));
+        if (lexError != null)
+            errorL.add(lexError);
+        return Collections.unmodifiableList(errorL);
+    }
+
+    /**
+     * Saves the tokens of a Scanner until EOF or an invalid token.
+     *
+     * @param lexer  scanner whose nextToken is the first token
+     * @param tokenL list the tokens are added to, ending with EOF unless there was an error
+     * @return the error raised by the invalid token, or null
+     */
+    private static Exception lex(Scanner lexer, ArrayList<Token> tokenL)
+    {
+        while (true)
+        {
+            tokenL.add(lexer.nextToken);
+            if (lexer.nextToken.primClassif == Token.EOF)
+                return null;
+
+            try
+            {
+                lexer.getNext();
+            }
+            catch (Exception e)
+            {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Lexes a range of lines, splitting it in halves until they are CHUNK_LINES or fewer.
+     */
+    @SuppressWarnings("serial")
+    private static final class Lex extends RecursiveTask<ArrayList<Token>>
+    {
+        private final String sourceFileNm;
+        private final ArrayList<String> sourceLineM;
+        private final int iFirstLineNr, iEndLineNr;
+
+        Lex(String sourceFileNm, ArrayList<String> sourceLineM, int iFirstLineNr, int iEndLineNr)
+        {
+            this.sourceFileNm = sourceFileNm;
+            this.sourceLineM = sourceLineM;
+            this.iFirstLineNr = iFirstLineNr;
+            this.iEndLineNr = iEndLineNr;
+        }
+
+        /**
+         * Returns the tokens of the lines ending with EOF, or null if one is invalid.
+         */
+        @Override
+        protected ArrayList<Token> compute()
+        {
+            if (iEndLineNr - iFirstLineNr <= CHUNK_LINES)
+            {
+                ArrayList<Token> tokenL = new ArrayList<Token>();
+                try
+                {
+                    Scanner lexer = new Scanner(sourceFileNm, sourceLineM, new SymbolTable()
+                            , iFirstLineNr, iEndLineNr);
+                    if (lex(lexer, tokenL) != null)
+                        return null;
+                }
+                catch (Exception e)
+                {
+                    return null;
+                }
+                return tokenL;
+            }
+
+            int iMid = (iFirstLineNr + iEndLineNr) >>> 1;
+            Lex right = new Lex(sourceFileNm, sourceLineM, iMid, iEndLineNr);
+            right.fork();
+            ArrayList<Token> tokenL = new Lex(sourceFileNm, sourceLineM, iFirstLineNr, iMid).compute();
+            ArrayList<Token> rightL = right.join();
+            if (tokenL == null || rightL == null)
+                return null;
+            // the EOF of the left half is where the right half starts
+            tokenL.remove(tokenL.size() - 1);
+            tokenL.addAll(rightL);
+            return tokenL;
+        }
+    }
+
+    /**
+     * Determines for every source line the index of the first token on or after it.
+     *
+     * @param tokenM tokens of the program
+     * @param iLineCnt number of source lines
+     * @return array of token indexes, one more than the number of lines
+     */
+    private static int[] buildLineStarts(Token[] tokenM, int iLineCnt)
+    {
+        int[] lineStartM = new int[iLineCnt + 1];
+        // the EOF token has no position, so it only counts as being after every line
+        int iLast = tokenM.length;
+        if (iLast > 0 && tokenM[iLast - 1].primClassif == Token.EOF)
+            iLast--;
+
+        int i = 0;
+        for (int iLine = 0; iLine <= iLineCnt; iLine++)
+        {
+            while (i < iLast && tokenM[i].iSourceLineNr < iLine)
+                i++;
+            lineStartM[iLine] = i;
+        }
+        return lineStartM;
+    }
+
+    /**
+     * Returns the token at the given index.
+     * <p>
+     * The token is shared by every run and must not be changed. If an error was found while
+     * building this token, the error is thrown now.
+     *
+     * @param iTokenNr index of the token
+     * @return the token
+     * @throws Exception the error found while building the token
+     */
+    Token getToken(int iTokenNr) throws Exception
+    {
+        if (iTokenNr >= tokenM.length)
+        {
+            if (lexError != null)
+                throw lexError;
+            // past EOF, keep returning EOF
+            return tokenM[tokenM.length - 1];
+        }
+        return tokenM[iTokenNr];
+    }
+
+    /**
+     * Returns the number of tokens, including EOF.
+     *
+     * @return number of tokens
+     */
+    int getTokenCount()
+    {
+        return tokenM.length;
+    }
+
+    /**
+     * Tells whether an invalid token was found while building the tokens.
+     *
+     * @return true if a run will end with a lexical error
+     */
+    boolean hasLexError()
+    {
+        return lexError != null;
+    }
+
+    /**
+     * Finds the first token that starts at or after the given position.
+     * <p>
+     * This is the token the Scanner would build if it started reading at that position.
+     *
+     * @param iSourceLineNr line number of the position
+     * @param iColPos column of the position
+     * @return index of the token
+     */
+    int indexOf(int iSourceLineNr, int iColPos)
+    {
+        if (iSourceLineNr < 0)
+            iSourceLineNr = 0;
+        if (iSourceLineNr >= lineStartM.length)
+            iSourceLineNr = lineStartM.length - 1;
+
+        int i = lineStartM[iSourceLineNr];
+        int iEnd = lineStartM[Math.min(iSourceLineNr + 1, lineStartM.length - 1)];
+        while (i < iEnd && tokenM[i].iColPos < iColPos)
+            i++;
+        return i;
+    }
+
+    /**
+     * Returns every syntax error of the program, found once when it was compiled.
+     * <p>
+     * A run still raises the first of them when it reaches it, as it would without compiling, but
+     * only a program without errors runs without checking its syntax as it goes.
+     *
+     * @return the errors in source order, empty if there are none
+     */
+    public List<Exception> getSyntaxErrors()
+    {
+        return syntaxErrorL;
+    }
+
+    /**
+     * Returns the name of the source this program was compiled from.
+     *
+     * @return source file name
+     */
+    public String getSourceFileNm()
+    {
+        return sourceFileNm;
+    }
+
+    /**
+     * Runs the program with new variable storage.
+     *
+     * @param out where the output of print is appended
+     * @throws Exception any error raised while running the program
+     */
+    public void run(Appendable out) throws Exception
+    {
+        run(new StorageManager(), out);
+    }
+
+    /**
+     * Runs the program using the given variable storage.
+     * <p>
+     * Variables already in the StorageManager can be used by the program without being declared,
+     * and the values left by the program stay in it afterwards.
+     *
+     * @param storageManager variable storage for this run, only this run may use it until it returns
+     * @param out where the output of print is appended
+     * @throws Exception any error raised while running the program
+     */
+    public void run(StorageManager storageManager, Appendable out) throws Exception
+    {
+        run(storageManager, out, null);
+    }
+
+    /**
+     * Runs the program using the given variable storage, profiling it from the start.
+     * <p>
+     * A profile is reported to STDERR when the run ends if the profiler was given or the program
+     * turned it on with 'debug Profile on'.
+     *
+     * @param storageManager variable storage for this run, only this run may use it until it returns
+     * @param out where the output of print is appended
+     * @param profiler profiler to use from the first statement, or null
+     * @throws Exception any error raised while running the program
+     */
+    public void run(StorageManager storageManager, Appendable out, Profiler profiler) throws Exception
+    {
+        run(storageManager, out, profiler, null);
+    }
+
+    /**
+     * Runs the program using the given variable storage and profiler, recording the output of
+     * debug Token, Expr, and Assign into a trace instead of printing it.
+     *
+     * @param storageManager variable storage for this run, only this run may use it until it returns
+     * @param out where the output of print is appended
+     * @param profiler profiler to use from the first statement, or null
+     * @param trace recorder for debug output, or null to print it to STDOUT; the caller closes it
+     * @throws Exception any error raised while running the program
+     */
+    public void run(StorageManager storageManager, Appendable out, Profiler profiler, TraceRecorder trace)
+            throws Exception
+    {
+        run(storageManager, out, profiler, trace, false);
+    }
+
+    /**
+     * Runs the program like run(storageManager, out, profiler, trace), optionally compiling its
+     * hot loops.
+     * <p>
+     * With bJit, a while or counting for loop that runs LoopCompiler.THRESHOLD iterations is
+     * compiled, if its body is simple arithmetic, and finished by the compiled code. Compiled
+     * loops are kept with the program and used again by later runs.
+     *
+     * @param storageManager variable storage for this run, only this run may use it until it returns
+     * @param out where the output of print is appended
+     * @param profiler profiler to use from the first statement, or null
+     * @param trace recorder for debug output, or null to print it to STDOUT; the caller closes it
+     * @param bJit true to compile hot loops
+     * @throws Exception any error raised while running the program
+     */
+    public void run(StorageManager storageManager, Appendable out, Profiler profiler, TraceRecorder trace
+            , boolean bJit) throws Exception
+    {
+        SymbolTable symbolTable = new SymbolTable();
+        Scanner scan = new Scanner(this, symbolTable);
+        scan.trace = trace;
+        Parser parser = new Parser(symbolTable, storageManager, scan, out);
+        if (bJit)
+            parser.loopCompiler = loopCompiler;
+        // the syntax was checked once, so the statements need not check it again
+        parser.bVerified = syntaxErrorL.isEmpty();
+
+        if (profiler != null)
+        {
+            parser.profiler = profiler;
+            profiler.bEnabled = true;
+        }
+        runStatements(scan, parser, sourceLineM);
+    }
+
+    /**
+     * Runs the statements of a parser's source from its scanner's current token until EOF.
+     * <p>
+     * A profile is reported to STDERR when the run ends if the parser has a profiler.
+     *
+     * @param scan        scanner of the parser
+     * @param parser      parser to run the statements with
+     * @param sourceLineM lines of the source, used in the profile
+     * @throws Exception any error raised while running the program
+     */
+    static void runStatements(Scanner scan, Parser parser, ArrayList<String> sourceLineM) throws Exception
+    {
+        ResultValue res;
+        try
+        {
+            // begin parsing file
+            while (scan.currentToken.primClassif != Token.EOF)
+            {
+                res = parser.statement(true);
+
+                if (res.type == Token.END)
+                    parser.error("ERROR: OUT OF PLACE TOKEN '%s'\n\t" +
+                                      "TOKEN NOT VALID HERE", res.terminatingStr);
+            }
+        }
+        finally
+        {
+            if (parser.profiler != null)
+                parser.profiler.report(sourceLineM, System.err);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package havabol;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The elements of an array, null where an element is unpopulated.
+ * <p>
+ * A list is dense, a slot for every subscript, until it grows past SPARSE_MIN slots with less
+ * than one in eight of them populated, as u[5000000] = 1 does. It then keeps only the populated
+ * elements in an open-addressing map from subscript to element and grows without allocating.
+ * Once a quarter of its slots are populated it goes back to being dense. Either way get(i) of
+ * an unpopulated subscript below size() is null, so callers see an ArrayList padded with nulls.
+ * <p>
+ * nextIndex steps through the populated subscripts in order without visiting the unpopulated
+ * ones, for for in and the aggregates.
+ * <p>
+ * A list is not thread safe, except between share() and unshare(), when set() may run on several
+ * threads at distinct subscripts, as parallel for does.
+ */
+final class ElementList extends AbstractList<ResultValue> implements RandomAccess
+{
+    // lists of fewer slots than this stay dense
+    static final int SPARSE_MIN = 4096;
+    private static final int EMPTY = -1;
+
+    private ResultValue[] slotM;    // dense layout, null when sparse
+    private int[] keyM;             // sparse layout: subscripts, EMPTY where free
+    private ResultValue[] valueM;   //   and their elements
+    private int[] sortedM;          //   populated subscripts in order, null until nextIndex needs them
+    private int iSize;              // highest subscript + 1
+    private int iCount;             // populated elements
+    private boolean bShared;        // between share() and unshare(), set() writes only its slot
+
+    /**
+     * Creates an empty list.
+     */
+    ElementList()
+    {
+        slotM = new ResultValue[10];
+    }
+
+    /**
+     * Creates a list of the given elements, which may include nulls.
+     *
+     * @param elementL the elements
+     */
+    ElementList(List<ResultValue> elementL)
+    {
+        slotM = elementL.toArray(new ResultValue[Math.max(10, elementL.size())]);
+        iSize = elementL.size();
+        for (int i = 0; i < iSize; i++)
+            if (slotM[i] != null)
+                iCount++;
+    }
+
+    /**
+     * Returns a list as an ElementList, wrapping it unless it already is one.
+     *
+     * @param elementL the elements, may be null
+     * @return the ElementList, null if elementL is null
+     */
+    static ElementList of(List<ResultValue> elementL)
+    {
+        if (elementL == null || elementL instanceof ElementList)
+            return (ElementList) elementL;
+        return new ElementList(elementL);
+    }
+
+    @Override
+    public int size()
+    {
+        return iSize;
+    }
+
+    /**
+     * Returns the number of elements that are not null.
+     *
+     * @return the populated elements
+     */
+    int populated()
+    {
+        return iCount;
+    }
+
+    @Override
+    public ResultValue get(int i)
+    {
+        checkIndex(i);
+        if (slotM != null)
+            return slotM[i];
+        int iSlot = find(i);
+        return keyM[iSlot] == EMPTY ? null : valueM[iSlot];
+    }
+
+    @Override
+    public ResultValue set(int i, ResultValue elem)
+    {
+        checkIndex(i);
+        ResultValue old;
+        if (slotM != null)
+        {
+            old = slotM[i];
+            slotM[i] = elem;
+            if (bShared)
+                return old;
+        }
+        else
+            old = elem == null ? removeKey(i) : putKey(i, elem);
+        if (old == null && elem != null)
+            iCount++;
+        else if (old != null && elem == null)
+            iCount--;
+        if (slotM == null && iCount * 4L >= iSize)
+            toDense();
+        return old;
+    }
+
+    @Override
+    public void add(int i, ResultValue elem)
+    {
+        if (i < 0 || i > iSize)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + iSize);
+        if (i == iSize)
+            setSize(iSize + 1);
+        else
+        {// shift the elements after i up one
+            toDense();
+            setSize(iSize + 1);
+            System.arraycopy(slotM, i, slotM, i + 1, iSize - 1 - i);
+            slotM[i] = null;
+        }
+        set(i, elem);
+    }
+
+    @Override
+    public ResultValue remove(int i)
+    {
+        checkIndex(i);
+        toDense();
+        ResultValue old = slotM[i];
+        System.arraycopy(slotM, i + 1, slotM, i, iSize - 1 - i);
+        slotM[--iSize] = null;
+        if (old != null)
+            iCount--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear()
+    {
+        slotM = new ResultValue[10];
+        keyM = null;
+        valueM = null;
+        sortedM = null;
+        iSize = 0;
+        iCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Grows the list with unpopulated elements to the given size, going sparse if few of them
+     * would be populated.
+     *
+     * @param iNewSize the size, ignored if the list is already that long
+     */
+    void setSize(int iNewSize)
+    {
+        if (iNewSize <= iSize)
+            return;
+        modCount++;
+        if (slotM == null)
+        {
+            iSize = iNewSize;
+            return;
+        }
+        if (iNewSize >= SPARSE_MIN && iCount * 8L < iNewSize)
+        {
+            toSparse();
+            iSize = iNewSize;
+            return;
+        }
+        if (iNewSize > slotM.length)
+            slotM = Arrays.copyOf(slotM, Math.max(iNewSize, slotM.length + (slotM.length >> 1)));
+        iSize = iNewSize;
+    }
+
+    /**
+     * Makes the list dense with a slot for every subscript below the given size, and stops counting
+     * the populated elements in set(), so set() at distinct subscripts only writes its own slot
+     * and may run on several threads until unshare().
+     *
+     * @param iNewSize the size, ignored if the list is already that long
+     */
+    void share(int iNewSize)
+    {
+        toDense();
+        if (iNewSize > slotM.length)
+            slotM = Arrays.copyOf(slotM, iNewSize);
+        iSize = Math.max(iSize, iNewSize);
+        bShared = true;
+    }
+
+    /**
+     * Ends share(), counting the populated elements again.
+     */
+    void unshare()
+    {
+        bShared = false;
+        iCount = 0;
+        for (int i = 0; i < iSize; i++)
+            if (slotM[i] != null)
+                iCount++;
+        modCount++;
+    }
+
+    /**
+     * Returns the first populated subscript at or after a subscript.
+     *
+     * @param iFrom subscript to start at
+     * @return the subscript, -1 if no element from iFrom on is populated
+     */
+    int nextIndex(int iFrom)
+    {
+        if (slotM != null)
+        {
+            for (int i = Math.max(iFrom, 0); i < iSize; i++)
+                if (slotM[i] != null)
+                    return i;
+            return -1;
+        }
+        if (sortedM == null)
+        {
+            sortedM = new int[iCount];
+            int iLen = 0;
+            for (int key : keyM)
+                if (key != EMPTY)
+                    sortedM[iLen++] = key;
+            Arrays.sort(sortedM);
+        }
+        int iPos = Arrays.binarySearch(sortedM, iFrom);
+        if (iPos < 0)
+            iPos = -iPos - 1;
+        return iPos < sortedM.length ? sortedM[iPos] : -1;
+    }
+
+    private void checkIndex(int i)
+    {
+        if (i < 0 || i >= iSize)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + iSize);
+    }
+
+    /**
+     * Returns the slot of a subscript in the map, or the EMPTY slot where it would go.
+     */
+    private int find(int key)
+    {
+        int iMask = keyM.length - 1;
+        int iSlot = home(key, iMask);
+        while (keyM[iSlot] != EMPTY && keyM[iSlot] != key)
+            iSlot = (iSlot + 1) & iMask;
+        return iSlot;
+    }
+
+    private static int home(int key, int iMask)
+    {
+        int iHash = key * 0x9E3779B9;
+        return (iHash ^ iHash >>> 16) & iMask;
+    }
+
+    private ResultValue putKey(int key, ResultValue elem)
+    {
+        int iSlot = find(key);
+        if (keyM[iSlot] == key)
+        {
+            ResultValue old = valueM[iSlot];
+            valueM[iSlot] = elem;
+            return old;
+        }
+        keyM[iSlot] = key;
+        valueM[iSlot] = elem;
+        sortedM = null;
+        // keep the map at most half full, iCount is updated by set
+        if ((iCount + 1) * 2 > keyM.length)
+            rehash(keyM.length * 2);
+        return null;
+    }
+
+    private ResultValue removeKey(int key)
+    {
+        int iSlot = find(key);
+        if (keyM[iSlot] == EMPTY)
+            return null;
+        ResultValue old = valueM[iSlot];
+        sortedM = null;
+
+        // move later keys of the probe run back over the hole
+        int iMask = keyM.length - 1;
+        int iHole = iSlot;
+        for (int i = (iSlot + 1) & iMask; keyM[i] != EMPTY; i = (i + 1) & iMask)
+        {
+            int iHome = home(keyM[i], iMask);
+            if (((i - iHome) & iMask) >= ((i - iHole) & iMask))
+            {
+                keyM[iHole] = keyM[i];
+                valueM[iHole] = valueM[i];
+                iHole = i;
+            }
+        }
+        keyM[iHole] = EMPTY;
+        valueM[iHole] = null;
+        return old;
+    }
+
+    private void rehash(int iCapacity)
+    {
+        int[] oldKeyM = keyM;
+        ResultValue[] oldValueM = valueM;
+        keyM = new int[iCapacity];
+        Arrays.fill(keyM, EMPTY);
+        valueM = new ResultValue[iCapacity];
+        for (int i = 0; i < oldKeyM.length; i++)
+            if (oldKeyM[i] != EMPTY)
+            {
+                int iSlot = find(oldKeyM[i]);
+                keyM[iSlot] = oldKeyM[i];
+                valueM[iSlot] = oldValueM[i];
+            }
+    }
+
+    private void toSparse()
+    {
+        keyM = new int[Math.max(16, Integer.highestOneBit(Math.max(1, iCount)) << 2)];
+        Arrays.fill(keyM, EMPTY);
+        valueM = new ResultValue[keyM.length];
+        for (int i = 0; i < iSize; i++)
+            if (slotM[i] != null)
+            {
+                int iSlot = find(i);
+                keyM[iSlot] = i;
+                valueM[iSlot] = slotM[i];
+            }
+        slotM = null;
+        sortedM = null;
+    }
+
+    private void toDense()
+    {
+        if (slotM != null)
+            return;
+        slotM = new ResultValue[Math.max(10, iSize)];
+        for (int i = 0; i < keyM.length; i++)
+            if (keyM[i] != EMPTY)
+                slotM[keyM[i]] = valueM[i];
+        keyM = null;
+        valueM = null;
+        sortedM = null;
+    }
+}
@@ -4,20 +4,26 @@ import java.util.ArrayList;
 
 public class HBException extends Exception
 {
+    public int iLineNr;     // line of the error counting from 1, 0 if it has no line
+
     /**
-     * HBException constructor that takes in error message, token string, and the source file line list
+     * HBException constructor that takes in error message, token string, the scanner's current token,
+     * and the source file line list
      * <p>
-     * Invokes super to print the error and accesses line and column number from the Token class.
+     * Invokes super to print the error and accesses line and column number from the given Token, which
+     * belongs to the Scanner that raised the error.
      *
      * @param error contains the error message to be printed
      * @param token contains the token that caused the error
+     * @param currentToken the current token of the Scanner that raised the error
      * @param sourceLineM contains the list of lines from the source file
      */
-    public HBException (String error, String token, ArrayList<String> sourceLineM)
+    public HBException (String error, String token, Token currentToken, ArrayList<String> sourceLineM)
     {
         super(error
-                + "\n\t(Line: " + Scanner.currentToken.iSourceLineNr + " Column: " + Scanner.currentToken.iColPos + ")"
-                + "\n\tError:" + token + " >" + sourceLineM.get(Scanner.currentToken.iSourceLineNr));
+                + "\n\t(Line: " + currentToken.iSourceLineNr + " Column: " + currentToken.iColPos + ")"
+                + "\n\tError:" + token + " >" + sourceLineM.get(currentToken.iSourceLineNr));
+        this.iLineNr = currentToken.iSourceLineNr + 1;
     }
 
     /**
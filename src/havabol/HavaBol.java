@@ -1,53 +1,146 @@
 /*
   This is a simple driver for the havabol language interpreter.
   Command Arguments:
-      java havabol.HavaBol arg1
+      java havabol.HavaBol [--cache dir] [--profile] [--trace file] [--jit] [--pipeline] [--check [--glob pattern]] [--jmx] arg1 ...
              arg1 is the havabol source file name.
+             --cache dir keeps the tokens of compiled sources in dir, so an unchanged
+             source is not scanned again on the next run.
+             --profile times every statement, as if the source started with debug Profile on.
+             --trace file records the output of debug Token, Expr, Assign, and Hoist on in a binary
+             file instead of printing it, java havabol.TraceDecoder file prints it.
+             --jit compiles while and for loops that do simple arithmetic once they get hot.
+             --pipeline lexes the source on another thread while it runs instead of compiling it
+             first, which suits long straight-line scripts; --cache and --jit are not used with it.
+             --check checks the syntax of every source file given and every file in the
+             directories given, without running them, on one thread per processor. Each error
+             is printed to STDOUT as file:line: message, a summary with the time taken is printed
+             to STDERR, and the exit status is 1 if there were any errors. Only files whose names
+             match the --glob pattern, *.txt by default, are checked in a directory.
+             --jmx registers the interpreter counters over JMX as havabol:type=Interpreter.
+             Starting the platform MBean server adds to the start up time, so it is off unless asked for.
   Output:
       Anything sent to STDOUT will be printed to the terminal
       debug <option> on prints the STDOUT values, variables, tokens, etc. to STDOUT
+      With --jmx, interpreter counters are available over JMX as havabol:type=Interpreter.
+      debug Profile on prints a table of the slowest lines to STDERR at exit and writes
+      <source>.collapsed for flame graph tools
   Notes:
-      1. This creates a SymbolTable, StorageManager, scanner, and parser objects
-         for use in interpreting the havabol source code.
+      1. This compiles the source with a HavaBolEngine, which creates a SymbolTable,
+         StorageManager, scanner, and parser objects for use in interpreting the havabol source code.
       2. This uses both the student's Parser class and Scanner class to get
          each token from the input file.
          It uses the getNext method until it returns an empty string.
       3. If the Scanner raises an exception, this driver prints
          information about the exception and terminates.
       4. The token is printed using the Token::printToken() method in debugging.
+      5. The state of a run lives in the SymbolTable, StorageManager, Scanner, and Parser
+         objects created for it. The only static state is constant tables and the InterpreterMetrics
+         counters, which every run adds to, so several interpreters may run on separate threads in
+         the same JVM as long as each set of objects stays on one thread.
+         Test-Cases/checks/StressTest.java runs the working scripts that way.
  */
 package havabol;
 
-import havabol.SymbolTable.SymbolTable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 
 public class HavaBol
 {
     public static void main(String[] args)
     {
-        // Create the SymbolTable and storage manager
-        SymbolTable symbolTable = new SymbolTable();
-        StorageManager storageManager = new StorageManager();
-        try
+        String sourceFileNm = null;
+        String cacheDirNm = null;
+        boolean bProfile = false;
+        String traceFileNm = null;
+        boolean bJit = false;
+        boolean bPipeline = false;
+        boolean bCheck = false;
+        boolean bJmx = false;
+        String globStr = BatchCheck.DEFAULT_GLOB;
+        ArrayList<Path> checkL = new ArrayList<Path>();     // sources and directories given to --check
+        for (int i = 0; i < args.length; i++)
         {
-            // create scanner and parser objects
-            Scanner scan = new Scanner(args[0], symbolTable);
-            Parser parser = new Parser(symbolTable, storageManager, scan);
-            ResultValue res;
+            if (args[i].equals("--cache") && i + 1 < args.length)
+                cacheDirNm = args[++i];
+            else if (args[i].equals("--profile"))
+                bProfile = true;
+            else if (args[i].equals("--trace") && i + 1 < args.length)
+                traceFileNm = args[++i];
+            else if (args[i].equals("--jit"))
+                bJit = true;
+            else if (args[i].equals("--pipeline"))
+                bPipeline = true;
+            else if (args[i].equals("--check"))
+                bCheck = true;
+            else if (args[i].equals("--jmx"))
+                bJmx = true;
+            else if (args[i].equals("--glob") && i + 1 < args.length)
+                globStr = args[++i];
+            else
+            {
+                sourceFileNm = args[i];
+                checkL.add(Paths.get(args[i]));
+            }
+        }
 
-            // begin parsing file
-            while (scan.currentToken.primClassif != Token.EOF)
+        if (bCheck)
+        {// only check the syntax of the sources
+            try
             {
-                res = parser.statement(true);
+                if (BatchCheck.check(checkL, globStr, System.out, System.err) > 0)
+                    System.exit(1);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
 
-                if (res.type == Token.END)
-                    parser.error("ERROR: OUT OF PLACE TOKEN '%s'\n\t" +
-                                      "TOKEN NOT VALID HERE", res.terminatingStr);
+        if (bJmx)
+            // counters can be watched with JConsole while the script runs
+            InterpreterMetrics.register();
+
+        TraceRecorder trace = null;
+        try
+        {
+            ProgramCache cache = cacheDirNm == null ? null : new ProgramCache(Paths.get(cacheDirNm));
+            if (traceFileNm != null)
+                trace = new TraceRecorder(Paths.get(traceFileNm));
+
+            if (bPipeline)
+            {// lex the source while running it, printing to STDOUT
+                Profiler profiler = bProfile ? new Profiler(Paths.get(sourceFileNm).toString()) : null;
+                new HavaBolEngine().runPipelined(Paths.get(sourceFileNm), new StorageManager(), System.out
+                        , profiler, trace);
+                return;
             }
 
+            // compile the source and run it, printing to STDOUT
+            CompiledProgram program = new HavaBolEngine(cache).compile(Paths.get(sourceFileNm));
+            Profiler profiler = bProfile ? new Profiler(program.getSourceFileNm()) : null;
+            program.run(new StorageManager(), System.out, profiler, trace, bJit);
         }
         catch (Exception e)
         {
             e.printStackTrace();
         }
+        finally
+        {
+            // write what is left in the trace, even after an error
+            if (trace != null)
+            {
+                try
+                {
+                    trace.close();
+                }
+                catch (Exception e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+  Thin client for HavaBolServer, used in place of java havabol.HavaBol.
+  Command Arguments:
+      java havabol.HavaBolClient [-socket socketPath] arg1
+             arg1 is the havabol source file name, or - to read the source from STDIN
+             socketPath is the socket of the server, default the one HavaBolServer uses
+  Output:
+      The output of the script is sent to STDOUT and errors to STDERR.
+      The exit status is 0 if the script ran without error, otherwise 1.
+  Notes:
+      1. If no server is listening, the script is run in this JVM instead.
+ */
+package havabol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class HavaBolClient
+{
+    public static void main(String[] args)
+    {
+        String socketNm = null;
+        String sourceFileNm = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-socket") && i + 1 < args.length)
+                socketNm = args[++i];
+            else
+                sourceFileNm = args[i];
+        }
+        if (sourceFileNm == null)
+        {
+            System.err.println("usage: java havabol.HavaBolClient [-socket socketPath] sourceFile|-");
+            System.exit(2);
+        }
+
+        SocketChannel channel;
+        try
+        {
+            Path socketPath = socketNm != null ? Paths.get(socketNm) : HavaBolServer.defaultSocket();
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        }
+        catch (IOException e)
+        {// no server, run it here
+            System.exit(runLocal(sourceFileNm));
+            return;
+        }
+
+        try
+        {
+            System.exit(runRemote(channel, sourceFileNm));
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sends the script to the server and copies its output until the exit status arrives.
+     *
+     * @param channel connection to the server
+     * @param sourceFileNm source file name, or - for STDIN
+     * @return exit status of the script
+     * @throws IOException if the connection fails
+     */
+    private static int runRemote(SocketChannel channel, String sourceFileNm) throws IOException
+    {
+        try (SocketChannel ch = channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch))))
+        {
+            // the server does not open files, so the source is read here
+            out.writeByte(HavaBolServer.REQ_SOURCE);
+            if (sourceFileNm.equals("-"))
+            {
+                HavaBolServer.writeString(out, "<stdin>");
+                HavaBolServer.writeString(out, readAll(System.in));
+            }
+            else
+            {
+                HavaBolServer.writeString(out, sourceFileNm);
+                HavaBolServer.writeString(out, new String(Files.readAllBytes(Paths.get(sourceFileNm))
+                        , Charset.defaultCharset()));
+            }
+            out.flush();
+
+            while (true)
+            {
+                byte kind = in.readByte();
+                if (kind == HavaBolServer.RSP_EXIT)
+                    return in.readInt();
+                PrintStream dest = kind == HavaBolServer.RSP_ERR ? System.err : System.out;
+                // a single print may be longer than any request, the server is trusted with it
+                dest.print(HavaBolServer.readString(in, Integer.MAX_VALUE));
+                dest.flush();
+            }
+        }
+    }
+
+    /**
+     * Runs the script in this JVM, the same way HavaBol.main does.
+     *
+     * @param sourceFileNm source file name, or - for STDIN
+     * @return exit status of the script
+     */
+    private static int runLocal(String sourceFileNm)
+    {
+        try
+        {
+            HavaBolEngine engine = new HavaBolEngine();
+            CompiledProgram program;
+            if (sourceFileNm.equals("-"))
+                program = engine.compile("<stdin>", readAll(System.in));
+            else
+            {
+                Path sourceFile = Paths.get(sourceFileNm);
+                program = engine.compile(sourceFile);
+            }
+            program.run(System.out);
+            return 0;
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    /**
+     * Reads a whole stream as UTF-8 text.
+     *
+     * @param in stream to read
+     * @return the text
+     * @throws IOException if the read fails
+     */
+    private static String readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        in.transferTo(bytes);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
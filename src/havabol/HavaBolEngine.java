@@ -0,0 +1,127 @@
+package havabol;
+
+import havabol.SymbolTable.SymbolTable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Entry point for running HavaBol from other Java code.
+ * <p>
+ * A source is compiled once into a CompiledProgram, which can then be run as many times as needed
+ * without reading or scanning the source again:
+ * <pre>
+ *     CompiledProgram program = new HavaBolEngine().compile(Paths.get("script.txt"));
+ *     StringBuilder out = new StringBuilder();
+ *     program.run(out);
+ * </pre>
+ * The engine keeps no state between compiles and can be shared by several threads. An engine
+ * given a ProgramCache skips scanning source files that were compiled before.
+ * <p>
+ * A source that is only run once can instead be run with runPipelined, which lexes it on another
+ * thread while it runs.
+ */
+public class HavaBolEngine
+{
+    // engine and language version reported by HavaBolScriptEngineFactory, ProgramCache has its own FORMAT_VERSION
+    public static final String VERSION = "1.1";
+
+    private final ProgramCache cache;               // saved compiled programs, or null
+
+    /**
+     * HavaBolEngine constructor without a cache.
+     */
+    public HavaBolEngine()
+    {
+        this(null);
+    }
+
+    /**
+     * HavaBolEngine constructor
+     *
+     * @param cache cache used by compile(Path), or null to always scan the source
+     */
+    public HavaBolEngine(ProgramCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Compiles the HavaBol source file at the given path.
+     *
+     * @param sourceFile path of the source file
+     * @return the compiled program
+     * @throws Exception if the file can not be read, is empty, or starts with an invalid token
+     */
+    public CompiledProgram compile(Path sourceFile) throws Exception
+    {
+        if (cache != null)
+            return cache.compile(sourceFile);
+
+        ArrayList<String> sourceLineM = Scanner.readSource(new java.util.Scanner(sourceFile.toFile()));
+        return new CompiledProgram(sourceFile.toString(), sourceLineM);
+    }
+
+    /**
+     * Compiles HavaBol source text.
+     *
+     * @param source the source text
+     * @return the compiled program
+     * @throws Exception if the source is empty or starts with an invalid token
+     */
+    public CompiledProgram compile(String source) throws Exception
+    {
+        return compile("<string>", source);
+    }
+
+    /**
+     * Compiles HavaBol source text, using the given name in error messages.
+     *
+     * @param sourceFileNm name of the source used in error messages
+     * @param source the source text
+     * @return the compiled program
+     * @throws Exception if the source is empty or starts with an invalid token
+     */
+    public CompiledProgram compile(String sourceFileNm, String source) throws Exception
+    {
+        ArrayList<String> sourceLineM = Scanner.readSource(new java.util.Scanner(source));
+        return new CompiledProgram(sourceFileNm, sourceLineM);
+    }
+
+    /**
+     * Runs the HavaBol source file at the given path once, lexing it on another thread while it runs.
+     * <p>
+     * Nothing is compiled or cached, so the statements at the start of a long script run while the
+     * rest of it is still being lexed. Types are not inferred and loops are not compiled.
+     *
+     * @param sourceFile     path of the source file
+     * @param storageManager variable storage for this run, only this run may use it until it returns
+     * @param out            where the output of print is appended
+     * @param profiler       profiler to use from the first statement, or null
+     * @param trace          recorder for debug output, or null to print it to STDOUT; the caller closes it
+     * @throws Exception if the file can not be read, or any error raised while lexing or running it
+     */
+    public void runPipelined(Path sourceFile, StorageManager storageManager, Appendable out, Profiler profiler
+            , TraceRecorder trace) throws Exception
+    {
+        ArrayList<String> sourceLineM = Scanner.readSource(new java.util.Scanner(sourceFile.toFile()));
+        TokenPipeline pipeline = new TokenPipeline(sourceFile.toString(), sourceLineM);
+        try
+        {
+            SymbolTable symbolTable = new SymbolTable();
+            Scanner scan = new Scanner(pipeline, symbolTable);
+            scan.trace = trace;
+            Parser parser = new Parser(symbolTable, storageManager, scan, out);
+            if (profiler != null)
+            {
+                parser.profiler = profiler;
+                profiler.bEnabled = true;
+            }
+            CompiledProgram.runStatements(scan, parser, sourceLineM);
+        }
+        finally
+        {
+            pipeline.close();
+        }
+    }
+}
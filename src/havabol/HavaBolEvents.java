@@ -0,0 +1,171 @@
+package havabol;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for HavaBol programs.
+ * <p>
+ * All events are disabled by default. Turn them on in a JFR settings file or on the command line, e.g.
+ * <pre>
+ *     java -XX:StartFlightRecording:filename=run.jfr,+havabol.HavaBolStatement#enabled=true havabol.HavaBol script.txt
+ * </pre>
+ * The Parser checks isRecording() before creating an event, so the event classes are not even loaded
+ * unless a recording is running, then checks isEnabled() on the event. Java stack traces are not
+ * recorded, the source file and line say where in the HavaBol program the event happened.
+ */
+public final class HavaBolEvents
+{
+    // set by the listener while any recording is running
+    private static volatile boolean bRecording = false;
+    private static boolean bListening = false;
+
+    private HavaBolEvents()
+    {
+    }
+
+    /**
+     * Returns whether a JFR recording is running.
+     * <p>
+     * Until something starts Flight Recorder this is one read of a static field. Once it has been
+     * started, from the command line or later with jcmd, a listener keeps track of its recordings.
+     *
+     * @return true if events may be recorded
+     */
+    static boolean isRecording()
+    {
+        if (!FlightRecorder.isInitialized())
+            return false;
+        if (!bListening)
+            listen();
+        return bRecording;
+    }
+
+    /**
+     * Starts following the state of the recordings, once per JVM.
+     */
+    private static synchronized void listen()
+    {
+        if (bListening)
+            return;
+        FlightRecorder.addListener(new FlightRecorderListener()
+        {
+            @Override
+            public void recordingStateChanged(Recording recording)
+            {
+                bRecording = anyRunning();
+            }
+        });
+        bRecording = anyRunning();
+        bListening = true;
+    }
+
+    private static boolean anyRunning()
+    {
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings())
+            if (recording.getState() == RecordingState.RUNNING)
+                return true;
+        return false;
+    }
+
+    /**
+     * One statement executed by Parser.statement().
+     */
+    @Name("havabol.HavaBolStatement")
+    @Label("HavaBol Statement")
+    @Category("HavaBol")
+    @Description("A statement executed by the interpreter")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Statement extends Event
+    {
+        @Label("Source File")
+        String sourceFile;
+
+        @Label("Line")
+        int line;
+
+        @Label("Statement")
+        @Description("First token of the statement")
+        String statement;
+    }
+
+    /**
+     * One pass through the body of a while or for loop.
+     */
+    @Name("havabol.HavaBolLoopIteration")
+    @Label("HavaBol Loop Iteration")
+    @Category("HavaBol")
+    @Description("One execution of the body of a while or for loop")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class LoopIteration extends Event
+    {
+        @Label("Source File")
+        String sourceFile;
+
+        @Label("Line")
+        @Description("Line of the while or for")
+        int line;
+
+        @Label("Loop")
+        String loop;
+    }
+
+    /**
+     * A call of a builtin function, from a statement or an expression.
+     */
+    @Name("havabol.HavaBolBuiltinCall")
+    @Label("HavaBol Builtin Call")
+    @Category("HavaBol")
+    @Description("A call of a builtin function such as print or LENGTH")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class BuiltinCall extends Event
+    {
+        @Label("Source File")
+        String sourceFile;
+
+        @Label("Line")
+        int line;
+
+        @Label("Function")
+        String function;
+    }
+
+    /**
+     * An unbounded array made longer to store to a subscript past its end.
+     */
+    @Name("havabol.HavaBolArrayResize")
+    @Label("HavaBol Array Resize")
+    @Category("HavaBol")
+    @Description("An unbounded array grown to store past its end")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class ArrayResize extends Event
+    {
+        @Label("Source File")
+        String sourceFile;
+
+        @Label("Line")
+        int line;
+
+        @Label("Array")
+        String array;
+
+        @Label("Old Length")
+        int oldLength;
+
+        @Label("New Length")
+        int newLength;
+    }
+}
@@ -0,0 +1,820 @@
+package havabol;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Runtime library of the Java classes written by HavaBolc.
+ * <p>
+ * A translated program keeps its Int, Float, and Bool variables in int, double, and boolean
+ * locals, its String and Date variables in Strings, and its arrays in the Array classes below,
+ * each of which holds a primitive array. The methods here do what Utilities does to ResultValue
+ * strings in the cases a typed local can not do by itself: coercing text, arithmetic whose left
+ * operand is a String, subscripts, in and notin, and the date functions. The date arithmetic is
+ * shared with Utilities, so the interpreter and translated programs agree on it.
+ * <p>
+ * Errors are thrown as RuntimeError, with the message the interpreter gives for them.
+ */
+public final class HavaBolRuntime
+{
+    // Bool literals; they are not compile time constants, so javac does not reject the code after 'while T:'
+    public static final boolean T = Boolean.TRUE.booleanValue();
+    public static final boolean F = !T;
+
+    private static final int[] DAYS_PER_MONTH = { 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private HavaBolRuntime()
+    {
+    }
+
+    /**
+     * Error raised by a translated program while it runs.
+     */
+    @SuppressWarnings("serial")
+    public static final class RuntimeError extends RuntimeException
+    {
+        public RuntimeError(String fmt, Object... varArgs)
+        {
+            super(String.format(fmt, varArgs));
+        }
+    }
+
+    /**
+     * Returns the value of a variable declared inside a statement, failing as the interpreter
+     * does if its declaration has not run.
+     *
+     * @param bDeclared whether the declaration ran
+     * @param name      name of the variable
+     */
+    public static int declared(boolean bDeclared, String name, int iValue)
+    {
+        checkDeclared(bDeclared, name);
+        return iValue;
+    }
+
+    public static double declared(boolean bDeclared, String name, double dValue)
+    {
+        checkDeclared(bDeclared, name);
+        return dValue;
+    }
+
+    public static boolean declared(boolean bDeclared, String name, boolean bValue)
+    {
+        checkDeclared(bDeclared, name);
+        return bValue;
+    }
+
+    /**
+     * The same for a String, a Date, or an array.
+     */
+    public static <T> T declared(boolean bDeclared, String name, T value)
+    {
+        checkDeclared(bDeclared, name);
+        return value;
+    }
+
+    private static void checkDeclared(boolean bDeclared, String name)
+    {
+        if (!bDeclared)
+            throw new RuntimeError("ERROR: VARIABLE '%s' NOT YET DECLARED", name);
+    }
+
+    /**
+     * Coerces text to an Int as Utilities.toInteger does, truncating a Float.
+     *
+     * @param value text to coerce
+     * @return the Int
+     */
+    public static int toInt(String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            // not an Int, try a Float
+        }
+        try
+        {
+            return (int) Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new RuntimeError("ERROR: CANNOT COERCE '%s' AS INT", value);
+        }
+    }
+
+    /**
+     * Coerces text to a Float as Utilities.toFloat does.
+     *
+     * @param value text to coerce
+     * @return the Float
+     */
+    public static double toFloat(String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new RuntimeError("ERROR: CANNOT COERCE '%s' AS FLOAT", value);
+        }
+    }
+
+    /**
+     * Coerces text to a Bool as Utilities.toBoolean does. Only "T" and "F" are Bools.
+     *
+     * @param value text to coerce
+     * @return the Bool
+     */
+    public static boolean toBool(String value)
+    {
+        if (value.equals("T"))
+            return true;
+        if (value.equals("F"))
+            return false;
+        throw new RuntimeError("ERROR: CANNOT COERCE '%s' AS BOOL", value);
+    }
+
+    /**
+     * Coerces text to a Date as Utilities.toDate does. A Date is a valid yyyy-mm-dd.
+     *
+     * @param value text to coerce
+     * @return the Date
+     */
+    public static String toDate(String value)
+    {
+        if (!value.matches("^[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]$"))
+            throw new RuntimeError("ERROR: CANNOT COERCE %s AS DATE", value);
+        String error = dateError(value);
+        if (error != null)
+            throw new RuntimeError("%s", error);
+        return value;
+    }
+
+    /**
+     * Returns the text of a Bool, "T" or "F".
+     */
+    public static String str(boolean value)
+    {
+        return value ? "T" : "F";
+    }
+
+    /**
+     * + - * / ^ with a String left operand, as the String case of Utilities.add and the others.
+     * <p>
+     * The operands are Floats if the left one contains a '.', Ints otherwise, and the result is
+     * the text of the number.
+     *
+     * @param operator one of + - * / ^
+     * @param first    left operand
+     * @param second   right operand
+     * @return text of the result
+     */
+    public static String arith(char operator, String first, String second)
+    {
+        if (first.contains("."))
+        {
+            double x = toFloat(first);
+            double y = toFloat(second);
+            switch (operator)
+            {
+                case '+': return String.valueOf(x + y);
+                case '-': return String.valueOf(x - y);
+                case '*': return String.valueOf(x * y);
+                case '/': return String.valueOf(x / y);
+                default:  return String.valueOf(Math.pow(x, y));
+            }
+        }
+        int i = toInt(first);
+        int j = toInt(second);
+        switch (operator)
+        {
+            case '+': return String.valueOf(i + j);
+            case '-': return String.valueOf(i - j);
+            case '*': return String.valueOf(i * j);
+            case '/': return String.valueOf(i / j);
+            default:  return String.valueOf((int) Math.pow(i, j));
+        }
+    }
+
+    /**
+     * Returns one char of a String as a String, as a subscript of a String variable does.
+     * A negative subscript counts from the end.
+     *
+     * @param value  the String
+     * @param iIndex subscript
+     * @return the char
+     */
+    public static String charAt(String value, int iIndex)
+    {
+        if (iIndex == -1)
+            iIndex = value.length() - 1;
+        else if (iIndex < 0)
+        {
+            if (iIndex < value.length() * -1)
+                throw new RuntimeError("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
+                        , iIndex, value.length() * -1);
+            iIndex += value.length();
+        }
+        if (value.length() - 1 < iIndex)
+            throw new RuntimeError("ERROR: INDEX '%d' , OUT OF BOUNDS FOR STRING '%s'", iIndex, value);
+        return String.valueOf(value.charAt(iIndex));
+    }
+
+    /**
+     * Tells whether an Int is in a list, comparing it with each element coerced to an Int.
+     *
+     * @param item  value to look for
+     * @param listM text of the elements, null for the ones that were never assigned
+     * @return true if it is there
+     */
+    public static boolean in(int item, String[] listM)
+    {
+        for (String element : listM)
+            if (element != null && toInt(element) == item)
+                return true;
+        return false;
+    }
+
+    /**
+     * Tells whether a Float is in a list, comparing it with each element coerced to a Float.
+     */
+    public static boolean in(double item, String[] listM)
+    {
+        for (String element : listM)
+            if (element != null && toFloat(element) == item)
+                return true;
+        return false;
+    }
+
+    /**
+     * Tells whether the text of a String, Bool, or Date is in a list.
+     */
+    public static boolean in(String item, String[] listM)
+    {
+        for (String element : listM)
+            if (element != null && item.compareTo(element) == 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks that a date has a valid month and day, and a Feb 29 a leap year.
+     * <p>
+     * The date is yyyy-mm-dd; text that is not throws the exception of the failed parse.
+     *
+     * @param date the date
+     * @return the message of the first error found, or null if the date is valid
+     */
+    static String dateError(String date)
+    {
+        int iYear = Integer.parseInt(date.substring(0, 4));
+        int iMonth = Integer.parseInt(date.substring(5, 7));
+        int iDay = Integer.parseInt(date.substring(8));
+
+        if (iMonth < 1 || iMonth > 12)
+            return String.format("ERROR: '%d' IS AN INVALID MONTH, MUST BE 1-12", iMonth);
+        if (iDay < 1 || iDay > DAYS_PER_MONTH[iMonth - 1])
+            return String.format("ERROR: '%d' IS AN INVALID DAY IN '%d', MUST BE 1-%d"
+                    , iDay, iMonth, DAYS_PER_MONTH[iMonth - 1]);
+        // divisible by 4, and not by 100 unless also by 400
+        if (iDay == 29 && iMonth == 2 && !(iYear % 4 == 0 && (iYear % 100 != 0 || iYear % 400 == 0)))
+            return String.format("ERROR: '%d' IS/WAS/WILL NOT (BE) A LEAP YEAR", iYear);
+        return null;
+    }
+
+    /**
+     * Converts a date to a UTSA Julian Days value, the number of days since 0000-03-01 counting
+     * that day as 1. See Utilities.DateToJulian.
+     *
+     * @param date the date, yyyy-mm-dd
+     * @return the number of days
+     */
+    static int julian(String date)
+    {
+        int iYear = Integer.parseInt(date.substring(0, 4));
+        int iMonth = Integer.parseInt(date.substring(5, 7));
+        int iDay = Integer.parseInt(date.substring(8));
+
+        // months are counted from March, so Jan and Feb belong to the year before
+        if (iMonth > 2)
+            iMonth -= 3;
+        else
+        {
+            iMonth += 9;
+            iYear--;
+        }
+        return 365 * iYear
+                + iYear / 4 - iYear / 100 + iYear / 400
+                + (iMonth * 306 + 5) / 10
+                + iDay;
+    }
+
+    /**
+     * Returns the date the given number of days after a date.
+     *
+     * @param date  the date, yyyy-mm-dd
+     * @param iDays days to add, negative to go back
+     * @return the new date, yyyy-mm-dd
+     */
+    static String adjustDate(String date, int iDays)
+    {
+        int iYear = Integer.parseInt(date.substring(0, 4));
+        int iMonth = Integer.parseInt(date.substring(5, 7));
+        int iDay = Integer.parseInt(date.substring(8));
+
+        Calendar calendar = new GregorianCalendar(iYear, iMonth - 1, iDay);
+        calendar.add(Calendar.DAY_OF_MONTH, iDays);
+        return new SimpleDateFormat("yyyy-MM-dd").format(calendar.getTime());
+    }
+
+    /**
+     * dateDiff builtin: the days from the second date to the first.
+     */
+    public static int dateDiff(String date1, String date2)
+    {
+        checkDate(date1);
+        checkDate(date2);
+        return julian(date1) - julian(date2);
+    }
+
+    /**
+     * dateAge builtin: the whole years from the second date to the first.
+     */
+    public static int dateAge(String date1, String date2)
+    {
+        int iMonth = Integer.parseInt(date1.substring(5, 7));
+        int iDay = Integer.parseInt(date1.substring(8));
+        int iMonth2 = Integer.parseInt(date2.substring(5, 7));
+        int iDay2 = Integer.parseInt(date2.substring(8));
+        int iDiff = Integer.parseInt(date1.substring(0, 4)) - Integer.parseInt(date2.substring(0, 4));
+        checkDate(date1);
+        checkDate(date2);
+
+        int iCompare = date1.compareTo(date2);
+        if (iCompare < 0)
+        {// first date is earlier
+            if ((iMonth2 == iMonth && iDay2 < iDay) || iMonth2 < iMonth)
+                iDiff++;
+        }
+        else if (iCompare > 0)
+        {// first date is later
+            if ((iMonth2 == iMonth && iDay2 > iDay) || iMonth2 > iMonth)
+                iDiff--;
+        }
+        else
+            iDiff = 0;
+        return iDiff;
+    }
+
+    /**
+     * dateAdj builtin: the date the given number of days after a date.
+     */
+    public static String dateAdj(String date, int iDays)
+    {
+        checkDate(date);
+        return adjustDate(date, iDays);
+    }
+
+    private static void checkDate(String date)
+    {
+        String error = dateError(date);
+        if (error != null)
+            throw new RuntimeError("%s", error);
+    }
+
+    /**
+     * An array of a translated program. The elements are in the primitive array of the subclass
+     * for the element type; bSetM tells which of them were assigned, as the null elements of a
+     * ResultArray do. An unbounded array, whose iDeclaredLen is UNBOUND, grows to a subscript
+     * that is assigned, as Parser.subscript grows its ElementList, and reading past its end
+     * fails as reading past the end of the ElementList does.
+     * <p>
+     * iPopulatedLen and iNegSub change the way they do in Parser, so ELEM() and negative
+     * subscripts give what the interpreter gives.
+     */
+    public abstract static class Array
+    {
+        public static final int UNBOUND = -1;
+
+        final String name;
+        final int iDeclaredLen;     // declared number of elements, UNBOUND for an unbounded array
+        int iSize;                  // number of elements, the length of the ElementList
+        int iPopulatedLen;
+        int iNegSub;                // -iNegSub is the smallest negative subscript allowed
+        int iSetCnt;                // number of elements assigned
+        boolean[] bSetM;            // may be longer than iSize, as the primitive array is
+
+        /**
+         * Array constructor
+         *
+         * @param name         name of the array, used in error messages
+         * @param iDeclaredLen declared number of elements, UNBOUND for an unbounded array
+         * @param iValueCnt    number of values in the value list, 0 if there is none
+         */
+        Array(String name, int iDeclaredLen, int iValueCnt)
+        {
+            this.name = name;
+            this.iDeclaredLen = iDeclaredLen;
+            this.iSize = iDeclaredLen == UNBOUND ? iValueCnt : iDeclaredLen;
+            this.bSetM = new boolean[iSize];
+            for (int i = 0; i < iValueCnt; i++)
+                bSetM[i] = true;
+            this.iSetCnt = iValueCnt;
+            this.iPopulatedLen = iValueCnt;
+            this.iNegSub = iValueCnt == 0 && iDeclaredLen != UNBOUND ? -(iDeclaredLen + 1) : iValueCnt;
+        }
+
+        /**
+         * Returns the length to allocate for an array declaration, checking it as declareStmt
+         * and declareArray do.
+         *
+         * @param iDeclaredLen declared length, 0 for 'name[] = values'
+         * @param iValueCnt    number of values in the value list
+         */
+        static int length(String name, int iDeclaredLen, int iValueCnt)
+        {
+            if (iDeclaredLen < 0)
+                throw new RuntimeError("ERROR: ARRAY SIZE HAVE TO BE POSITIVE");
+            if (iDeclaredLen > 0 && iValueCnt > iDeclaredLen)
+                throw new RuntimeError("ERROR: CANNOT DECLARE MORE THAN '%d' INTO ARRAY '%s'", iDeclaredLen, name);
+            return Math.max(iDeclaredLen, iValueCnt);
+        }
+
+        /**
+         * ELEM builtin
+         */
+        public int elem()
+        {
+            return iPopulatedLen;
+        }
+
+        /**
+         * MAXELEM builtin, which the interpreter rejects for an unbounded array.
+         */
+        public int maxElem()
+        {
+            if (iDeclaredLen == UNBOUND)
+                throw new RuntimeError("INCORRECT PARAMETER FOR MAXELEM");
+            return iDeclaredLen;
+        }
+
+        /**
+         * Returns the number of elements, which a for in loop and in go through.
+         */
+        public int size()
+        {
+            return iSize;
+        }
+
+        /**
+         * Tells whether the element at a subscript from 0 to size() - 1 was assigned.
+         */
+        public boolean isSet(int iIndex)
+        {
+            return bSetM[iIndex];
+        }
+
+        /**
+         * Returns the subscript of an element that is read, checking that it was assigned.
+         *
+         * @param iIndex subscript, negative to count from the end
+         * @return index into the primitive array
+         */
+        public int get(int iIndex)
+        {
+            iIndex = fromEnd(iIndex);
+            if (iDeclaredLen != UNBOUND && iIndex >= iDeclaredLen)
+                throw new RuntimeError("ERROR: CANNOT REFERENCE AN INDEX GREATER THAN OR EQUAL TO '%d' FOR ARRAY"
+                        + " '%s'", iDeclaredLen, name);
+            checkIndex(iIndex);
+            if (!bSetM[iIndex])
+                throw new RuntimeError("ERROR: INDEX '%d' IS UNINITIALIZED FOR ARRAY '%s'", iIndex, name);
+            return iIndex;
+        }
+
+        /**
+         * Returns the subscript of an element about to be assigned, growing an unbounded array
+         * to it. stored must be called once the element holds its value.
+         *
+         * @param iIndex subscript, negative to count from the end
+         * @return index into the primitive array
+         */
+        public int set(int iIndex)
+        {
+            if (iDeclaredLen != UNBOUND && iIndex >= iDeclaredLen)
+                throw new RuntimeError("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
+            iIndex = fromEnd(iIndex);
+            if (iIndex >= iSize)
+                grow(iIndex + 1);
+            checkIndex(iIndex);
+            return iIndex;
+        }
+
+        /**
+         * Marks an element assigned by set and counts the populated elements again, as
+         * Parser.assignIndex does.
+         *
+         * @param iIndex index into the primitive array returned by set
+         */
+        public void stored(int iIndex)
+        {
+            if (!bSetM[iIndex])
+            {
+                bSetM[iIndex] = true;
+                iSetCnt++;
+            }
+            iPopulatedLen = iSetCnt;
+            iNegSub = iDeclaredLen + 1;
+        }
+
+        private int fromEnd(int iIndex)
+        {
+            if (iIndex >= 0)
+                return iIndex;
+            if (iIndex < iNegSub * -1)
+                throw new RuntimeError("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
+                        , iIndex, iNegSub * -1);
+            return iIndex + (iDeclaredLen == UNBOUND ? iPopulatedLen : iDeclaredLen);
+        }
+
+        /**
+         * Fails on an index outside the elements as ElementList does.
+         */
+        private void checkIndex(int iIndex)
+        {
+            if (iIndex < 0 || iIndex >= iSize)
+                throw new IndexOutOfBoundsException("Index: " + iIndex + ", Size: " + iSize);
+        }
+
+        /**
+         * Makes an unbounded array iNewSize elements long, doubling the primitive array when it
+         * is too short so a run of assignments past the end is not quadratic.
+         */
+        private void grow(int iNewSize)
+        {
+            if (iNewSize > bSetM.length)
+            {
+                int iCapacity = Math.max(iNewSize, 2 * bSetM.length);
+                bSetM = Arrays.copyOf(bSetM, iCapacity);
+                resize(iCapacity);
+            }
+            iSize = iNewSize;
+        }
+
+        /**
+         * Assigns a scalar to every element, as 'name = value' does.
+         *
+         * @param value text of the value, coerced to the element type
+         */
+        public void fill(String value)
+        {
+            if (iDeclaredLen == UNBOUND)
+                throw new RuntimeError("ERROR: CANNOT ASSIGN A SCALAR TO AN UNBOUNDED ARRAY");
+            for (int i = 0; i < iDeclaredLen; i++)
+            {
+                setText(i, value);
+                bSetM[i] = true;
+            }
+            iSetCnt = iDeclaredLen;
+            iPopulatedLen = 1;
+            iNegSub = 1;
+        }
+
+        /**
+         * Copies the elements of another array, as 'name = other' does. Copying stops when this
+         * array is full, unless it is unbounded, or the other one has no more elements.
+         *
+         * @param source array to copy
+         */
+        public void copy(Array source)
+        {
+            int iCnt = iDeclaredLen == UNBOUND ? source.iPopulatedLen : Math.min(iDeclaredLen, source.iPopulatedLen);
+            for (int i = 0; i < iCnt; i++)
+            {
+                // Parser reads the element from the ElementList of the other array
+                source.checkIndex(i);
+                String text = source.text(source.get(i));
+                if (i >= iSize)
+                    grow(i + 1);
+                setText(i, text);
+                if (!bSetM[i])
+                {
+                    bSetM[i] = true;
+                    iSetCnt++;
+                }
+            }
+
+            // Parser counts from 1
+            iPopulatedLen = iSetCnt + 1;
+            iNegSub = iSetCnt + 1;
+        }
+
+        /**
+         * Returns the text of every element, null for the ones never assigned, for in and notin.
+         */
+        public String[] texts()
+        {
+            String[] textM = new String[iSize];
+            for (int i = 0; i < iSize; i++)
+                if (bSetM[i])
+                    textM[i] = text(i);
+            return textM;
+        }
+
+        /**
+         * Returns the text of the element at an index of the primitive array.
+         */
+        abstract String text(int i);
+
+        /**
+         * Coerces text to the element type and stores it at an index of the primitive array.
+         */
+        abstract void setText(int i, String value);
+
+        /**
+         * Makes the primitive array iCapacity elements long, keeping the elements.
+         */
+        abstract void resize(int iCapacity);
+    }
+
+    /**
+     * Array of Int
+     */
+    public static final class IntArray extends Array
+    {
+        public int[] elementM;
+
+        public IntArray(String name, int iDeclaredLen, int... valueM)
+        {
+            super(name, length(name, iDeclaredLen, valueM.length), valueM.length);
+            elementM = Arrays.copyOf(valueM, iSize);
+        }
+
+        private IntArray(String name, int[] valueM)
+        {
+            super(name, UNBOUND, valueM.length);
+            elementM = valueM;
+        }
+
+        /**
+         * Returns an unbounded array holding the values.
+         */
+        public static IntArray unbound(String name, int... valueM)
+        {
+            return new IntArray(name, valueM);
+        }
+
+        String text(int i)
+        {
+            return String.valueOf(elementM[i]);
+        }
+
+        void setText(int i, String value)
+        {
+            elementM[i] = toInt(value);
+        }
+
+        void resize(int iCapacity)
+        {
+            elementM = Arrays.copyOf(elementM, iCapacity);
+        }
+    }
+
+    /**
+     * Array of Float
+     */
+    public static final class FloatArray extends Array
+    {
+        public double[] elementM;
+
+        public FloatArray(String name, int iDeclaredLen, double... valueM)
+        {
+            super(name, length(name, iDeclaredLen, valueM.length), valueM.length);
+            elementM = Arrays.copyOf(valueM, iSize);
+        }
+
+        private FloatArray(String name, double[] valueM)
+        {
+            super(name, UNBOUND, valueM.length);
+            elementM = valueM;
+        }
+
+        /**
+         * Returns an unbounded array holding the values.
+         */
+        public static FloatArray unbound(String name, double... valueM)
+        {
+            return new FloatArray(name, valueM);
+        }
+
+        String text(int i)
+        {
+            return String.valueOf(elementM[i]);
+        }
+
+        void setText(int i, String value)
+        {
+            elementM[i] = toFloat(value);
+        }
+
+        void resize(int iCapacity)
+        {
+            elementM = Arrays.copyOf(elementM, iCapacity);
+        }
+    }
+
+    /**
+     * Array of Bool
+     */
+    public static final class BoolArray extends Array
+    {
+        public boolean[] elementM;
+
+        public BoolArray(String name, int iDeclaredLen, boolean... valueM)
+        {
+            super(name, length(name, iDeclaredLen, valueM.length), valueM.length);
+            elementM = Arrays.copyOf(valueM, iSize);
+        }
+
+        private BoolArray(String name, boolean[] valueM)
+        {
+            super(name, UNBOUND, valueM.length);
+            elementM = valueM;
+        }
+
+        /**
+         * Returns an unbounded array holding the values.
+         */
+        public static BoolArray unbound(String name, boolean... valueM)
+        {
+            return new BoolArray(name, valueM);
+        }
+
+        String text(int i)
+        {
+            return str(elementM[i]);
+        }
+
+        void setText(int i, String value)
+        {
+            elementM[i] = toBool(value);
+        }
+
+        void resize(int iCapacity)
+        {
+            elementM = Arrays.copyOf(elementM, iCapacity);
+        }
+    }
+
+    /**
+     * Array of String or of Date
+     */
+    public static final class StringArray extends Array
+    {
+        public String[] elementM;
+        private final boolean bDate;
+
+        public StringArray(String name, boolean bDate, int iDeclaredLen, String... valueM)
+        {
+            super(name, length(name, iDeclaredLen, valueM.length), valueM.length);
+            this.bDate = bDate;
+            elementM = Arrays.copyOf(valueM, iSize);
+        }
+
+        private StringArray(String name, boolean bDate, String[] valueM)
+        {
+            super(name, UNBOUND, valueM.length);
+            this.bDate = bDate;
+            elementM = valueM;
+        }
+
+        /**
+         * Returns an unbounded array holding the values.
+         */
+        public static StringArray unbound(String name, boolean bDate, String... valueM)
+        {
+            return new StringArray(name, bDate, valueM);
+        }
+
+        String text(int i)
+        {
+            return elementM[i];
+        }
+
+        void setText(int i, String value)
+        {
+            elementM[i] = bDate ? toDate(value) : value;
+        }
+
+        void resize(int iCapacity)
+        {
+            elementM = Arrays.copyOf(elementM, iCapacity);
+        }
+    }
+}
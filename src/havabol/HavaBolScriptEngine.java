@@ -0,0 +1,226 @@
+package havabol;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * javax.script adapter for HavaBol.
+ * <p>
+ * Bindings in ENGINE_SCOPE are copied into the StorageManager before a run, so the script can use
+ * them as variables without declaring them, and their values are copied back afterwards. Variables
+ * declared by the script stay local to the run, so the same script can be evaluated again. Output of print goes to
+ * the writer of the ScriptContext. eval always returns null.
+ */
+public class HavaBolScriptEngine extends AbstractScriptEngine implements Compilable
+{
+    private final ScriptEngineFactory factory;
+    private final HavaBolEngine engine = new HavaBolEngine();
+
+    /**
+     * HavaBolScriptEngine constructor
+     *
+     * @param factory factory that created this engine
+     */
+    HavaBolScriptEngine(ScriptEngineFactory factory)
+    {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException
+    {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException
+    {
+        return compile(reader).eval(context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException
+    {
+        try
+        {
+            return new HavaBolCompiledScript(engine.compile(script));
+        }
+        catch (Exception e)
+        {
+            throw toScriptException(e);
+        }
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException
+    {
+        // read the whole script, keeping the line breaks
+        StringBuilder source = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(script))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+                source.append(line).append('\n');
+        }
+        catch (Exception e)
+        {
+            throw toScriptException(e);
+        }
+        return compile(source.toString());
+    }
+
+    @Override
+    public Bindings createBindings()
+    {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory()
+    {
+        return factory;
+    }
+
+    /**
+     * Wraps an interpreter error as a ScriptException.
+     *
+     * @param e the error
+     * @return ScriptException with e as its cause
+     */
+    private static ScriptException toScriptException(Exception e)
+    {
+        if (e instanceof ScriptException)
+            return (ScriptException) e;
+        // ParserException and HBException keep their text in toString()
+        ScriptException se = new ScriptException(e.toString());
+        se.initCause(e);
+        return se;
+    }
+
+    /**
+     * Converts a binding value to a HavaBol primitive value.
+     *
+     * @param value value of the binding
+     * @return ResultValue holding the value
+     */
+    static ResultValue toResultValue(Object value)
+    {
+        if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte)
+            return new ResultValue(value.toString(), Token.INTEGER);
+        if (value instanceof Double || value instanceof Float)
+            return new ResultValue(value.toString(), Token.FLOAT);
+        if (value instanceof Boolean)
+            return new ResultValue(((Boolean) value) ? "T" : "F", Token.BOOLEAN);
+        return new ResultValue(String.valueOf(value), Token.STRING);
+    }
+
+    /**
+     * Converts a HavaBol primitive value to a binding value.
+     *
+     * @param res the value
+     * @return Long, Double, Boolean, or String
+     */
+    static Object fromResultValue(ResultValue res)
+    {
+        switch (res.type)
+        {
+            case Token.INTEGER:
+                try
+                {
+                    return Long.valueOf(res.value);
+                }
+                catch (NumberFormatException e)
+                {// leave it as text
+                    return res.value;
+                }
+            case Token.FLOAT:
+                try
+                {
+                    return Double.valueOf(res.value);
+                }
+                catch (NumberFormatException e)
+                {// leave it as text
+                    return res.value;
+                }
+            case Token.BOOLEAN:
+                return res.value.equals("T");
+            default:
+                return res.value;
+        }
+    }
+
+    /**
+     * A CompiledProgram together with the engine that compiled it.
+     */
+    private class HavaBolCompiledScript extends CompiledScript
+    {
+        private final CompiledProgram program;
+
+        HavaBolCompiledScript(CompiledProgram program)
+        {
+            this.program = program;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException
+        {
+            Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            StorageManager storageManager = new StorageManager();
+
+            // seed the variables from the bindings
+            if (bindings != null)
+            {
+                for (Map.Entry<String, Object> entry : bindings.entrySet())
+                {
+                    if (entry.getKey().startsWith("javax.script."))
+                        continue;
+                    storageManager.putEntry(entry.getKey(), toResultValue(entry.getValue()));
+                }
+            }
+
+            Writer writer = context.getWriter();
+            try
+            {
+                program.run(storageManager, writer);
+                writer.flush();
+            }
+            catch (Exception e)
+            {
+                throw toScriptException(e);
+            }
+
+            // copy the seeded variables back to the bindings
+            if (bindings != null)
+            {
+                for (Map.Entry<String, Object> entry : bindings.entrySet())
+                {
+                    ResultValue res = storageManager.sT.get(entry.getKey());
+                    if (res != null && res.structure == ResultValue.primitive)
+                    {
+                        res.flush();
+                        entry.setValue(fromResultValue(res));
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public ScriptEngine getEngine()
+        {
+            return HavaBolScriptEngine.this;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package havabol;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ScriptEngineFactory for HavaBol, registered under the name "havabol".
+ * <p>
+ * Listed in META-INF/services so javax.script.ScriptEngineManager can find it.
+ */
+public class HavaBolScriptEngineFactory implements ScriptEngineFactory
+{
+    @Override
+    public String getEngineName()
+    {
+        return "HavaBol";
+    }
+
+    @Override
+    public String getEngineVersion()
+    {
+        return HavaBolEngine.VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions()
+    {
+        return Collections.singletonList("hb");
+    }
+
+    @Override
+    public List<String> getMimeTypes()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<String> getNames()
+    {
+        return Collections.singletonList("havabol");
+    }
+
+    @Override
+    public String getLanguageName()
+    {
+        return "HavaBol";
+    }
+
+    @Override
+    public String getLanguageVersion()
+    {
+        return HavaBolEngine.VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key)
+    {
+        switch (key)
+        {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.NAME:
+                return getNames().get(0);
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args)
+    {
+        // HavaBol has no objects, only builtin functions
+        return m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay)
+    {
+        return "print(\"" + toDisplay + "\");";
+    }
+
+    @Override
+    public String getProgram(String... statements)
+    {
+        StringBuilder program = new StringBuilder();
+        for (String statement : statements)
+            program.append(statement).append('\n');
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine()
+    {
+        return new HavaBolScriptEngine(this);
+    }
+}
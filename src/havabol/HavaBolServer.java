@@ -0,0 +1,366 @@
+/*
+  Long running HavaBol interpreter that takes scripts over a Unix domain socket, so the JVM
+  only starts once and the JIT stays warm between scripts.
+  Command Arguments:
+      java havabol.HavaBolServer [socketPath]
+             socketPath is the socket file to listen on, default havabol.sock in $XDG_RUNTIME_DIR,
+             or in /tmp/havabol-<user> when that is not set
+  Protocol:
+      Request:  'S' name source        run the source text, name is used in error messages
+      Response: any number of 'O' text frames (print output) and 'E' text frames (error output),
+                then 'X' status, where status is 0 if the script ran without error, otherwise 1.
+      Strings are sent as an int byte count followed by the UTF-8 bytes. The server refuses a
+      request string of more than MAX_REQUEST_BYTES bytes.
+  Notes:
+      1. Every request runs on its own thread with its own SymbolTable, StorageManager, Scanner,
+         and Parser, so scripts can not see each other's variables.
+      2. debug output still goes to the STDOUT of the server.
+      3. The socket is only open to the user running the server: it is bound in a new directory
+         only that user can enter, made 0600, and then renamed to socketPath, so it is never
+         reachable with the permissions of the umask. The default one is also in a directory only
+         that user can enter. The client reads a source file
+         itself and sends its text, so the server never opens files for a client.
+      4. The server only replaces a socket file at socketPath that no server answers on. It
+         refuses to start if a server is listening there or the path is not a socket.
+ */
+package havabol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HavaBolServer
+{
+    static final String SOCKET_NM = "havabol.sock";
+
+    // request kinds
+    static final byte REQ_SOURCE = 'S';
+    // response frame kinds
+    static final byte RSP_OUT = 'O';
+    static final byte RSP_ERR = 'E';
+    static final byte RSP_EXIT = 'X';
+    // longest name or source a client may send
+    static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+
+    private final Path socketPath;
+    private Object socketKey;                       // file key of the socket this server bound
+    private final HavaBolEngine engine = new HavaBolEngine();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r ->
+    {
+        Thread t = new Thread(r, "havabol-request");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * HavaBolServer constructor
+     *
+     * @param socketPath socket file to listen on
+     */
+    public HavaBolServer(Path socketPath)
+    {
+        this.socketPath = socketPath;
+    }
+
+    public static void main(String[] args)
+    {
+        try
+        {
+            Path socketPath = args.length > 0 ? Paths.get(args[0]) : defaultSocket();
+            new HavaBolServer(socketPath).serve();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Listens on the socket and runs every request on its own thread. Does not return
+     * unless the socket fails.
+     *
+     * @throws IOException if the socket can not be created or accepted from
+     */
+    public void serve() throws IOException
+    {
+        InterpreterMetrics.register();
+
+        // a socket file left by a server that did not shut down cleanly blocks the bind
+        removeStaleSocket(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX))
+        {
+            bind(server);
+            socketKey = attributes(socketPath).fileKey();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::removeSocket));
+
+            while (true)
+            {
+                SocketChannel client = server.accept();
+                executor.execute(() -> handle(client));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            removeSocket();
+        }
+    }
+
+    /**
+     * Binds the server to socketPath. The socket file takes its permissions from the umask, so it
+     * is bound in a new directory closed to other users, made 0600 there, and only then renamed
+     * into place, which keeps the bound socket.
+     *
+     * @param server channel to bind
+     * @throws IOException if the socket can not be bound or moved to socketPath
+     */
+    private void bind(ServerSocketChannel server) throws IOException
+    {
+        Path parent = socketPath.toAbsolutePath().getParent();
+        Path privateDir = Files.createTempDirectory(parent, ".havabol"
+                , PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        Path boundPath = privateDir.resolve(SOCKET_NM);
+        try
+        {
+            server.bind(UnixDomainSocketAddress.of(boundPath));
+            Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+            Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(boundPath);
+            Files.delete(privateDir);
+        }
+    }
+
+    /**
+     * Returns the default socket, havabol.sock in $XDG_RUNTIME_DIR, or else in /tmp/havabol-user,
+     * which is created if needed and must belong to this user and be closed to everyone else.
+     *
+     * @return path of the default socket
+     * @throws IOException if the directory can not be created or is open to other users
+     */
+    static Path defaultSocket() throws IOException
+    {
+        String runtimeDirNm = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDirNm != null && !runtimeDirNm.isEmpty())
+            return Paths.get(runtimeDirNm, SOCKET_NM);
+
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "havabol-" + System.getProperty("user.name"));
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS))
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+
+        Set<PosixFilePermission> permS = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)
+                || !Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).getName().equals(System.getProperty("user.name"))
+                || !PosixFilePermissions.toString(permS).substring(3).equals("------"))
+            throw new IOException(dir + " is not a private directory of this user");
+        return dir.resolve(SOCKET_NM);
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException
+    {
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Removes a socket file that no server answers on, so it can be bound again.
+     *
+     * @param socketPath path to bind
+     * @throws IOException if the path is not a socket, or a server is listening on it
+     */
+    private static void removeStaleSocket(Path socketPath) throws IOException
+    {
+        if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS))
+            return;
+        // sockets are neither files, directories, nor links
+        if (!attributes(socketPath).isOther())
+            throw new IOException(socketPath + " exists and is not a socket");
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX))
+        {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        }
+        catch (IOException e)
+        {// nobody answers, it was left behind
+            Files.delete(socketPath);
+            return;
+        }
+        throw new IOException("a server is already listening on " + socketPath);
+    }
+
+    /**
+     * Removes the socket this server bound, unless something else has replaced it since.
+     */
+    private void removeSocket()
+    {
+        try
+        {
+            if (socketKey != null && socketKey.equals(attributes(socketPath).fileKey()))
+                Files.delete(socketPath);
+        }
+        catch (IOException e)
+        {// already gone, nothing left to do
+        }
+    }
+
+    /**
+     * Reads one request from the client, runs it, and sends back the output and exit status.
+     *
+     * @param client connection to the client
+     */
+    private void handle(SocketChannel client)
+    {
+        try (SocketChannel channel = client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))))
+        {
+            FrameAppender output = new FrameAppender(out);
+            int iStatus = 0;
+            try
+            {
+                byte kind = in.readByte();
+                if (kind != REQ_SOURCE)
+                    throw new IOException("unknown request kind '" + (char) kind + "'");
+                String sourceFileNm = readString(in, MAX_REQUEST_BYTES);
+                CompiledProgram program = engine.compile(sourceFileNm, readString(in, MAX_REQUEST_BYTES));
+
+                program.run(output);
+            }
+            catch (Exception e)
+            {// report it like HavaBol.main would, and keep the server alive
+                output.flush();
+                StringWriter trace = new StringWriter();
+                e.printStackTrace(new PrintWriter(trace));
+                writeFrame(out, RSP_ERR, trace.toString());
+                iStatus = 1;
+            }
+            output.flush();
+            out.writeByte(RSP_EXIT);
+            out.writeInt(iStatus);
+            out.flush();
+        }
+        catch (IOException e)
+        {// the client went away, nothing to report to
+        }
+    }
+
+    /**
+     * Reads a string sent as a byte count followed by UTF-8 bytes.
+     *
+     * @param in        stream to read
+     * @param iMaxBytes largest byte count accepted
+     * @return the string
+     * @throws IOException if the byte count is negative or over iMaxBytes, or the stream ends early
+     */
+    static String readString(DataInputStream in, int iMaxBytes) throws IOException
+    {
+        int iByteCnt = in.readInt();
+        if (iByteCnt < 0 || iByteCnt > iMaxBytes)
+            throw new IOException("string of " + iByteCnt + " bytes, the limit is " + iMaxBytes);
+        byte[] bytes = new byte[iByteCnt];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a string as a byte count followed by UTF-8 bytes.
+     *
+     * @param out stream to write
+     * @param str the string
+     * @throws IOException if the write fails
+     */
+    static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a response frame of the given kind.
+     *
+     * @param out stream to write
+     * @param kind RSP_OUT or RSP_ERR
+     * @param str text of the frame
+     * @throws IOException if the write fails
+     */
+    static void writeFrame(DataOutputStream out, byte kind, String str) throws IOException
+    {
+        out.writeByte(kind);
+        writeString(out, str);
+    }
+
+    /**
+     * Appendable given to the Parser for print output. Collects the text and sends it to
+     * the client in RSP_OUT frames as it grows.
+     */
+    private static class FrameAppender implements Appendable
+    {
+        private static final int FRAME_SIZE = 8192;
+        private final DataOutputStream out;
+        private final StringBuilder buffer = new StringBuilder();
+
+        FrameAppender(DataOutputStream out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException
+        {
+            buffer.append(csq);
+            if (buffer.length() >= FRAME_SIZE)
+                flush();
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException
+        {
+            return append(csq.subSequence(start, end));
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException
+        {
+            return append(String.valueOf(c));
+        }
+
+        /**
+         * Sends the collected text, if any, and flushes the stream so the client sees it now.
+         *
+         * @throws IOException if the write fails
+         */
+        void flush() throws IOException
+        {
+            if (buffer.length() == 0)
+                return;
+            writeFrame(out, RSP_OUT, buffer.toString());
+            buffer.setLength(0);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,1598 @@
+/*
+  Ahead-of-time translator from HavaBol to Java.
+  Command Arguments:
+      java havabol.HavaBolc [-d dir] [-source] arg1
+             arg1 is the havabol source file name.
+             -d dir writes the output into dir instead of the current directory.
+             -source only writes the Java source, without compiling it.
+  Output:
+      Name.java and Name.class, where Name is the source file name without its extension, made
+      into a class name. java -cp dir:<havabol classes> Name runs the program; of the havabol
+      classes it only uses HavaBolRuntime.
+      An error in the program is printed to STDERR as the interpreter prints it, with the line of
+      the statement that failed.
+  Notes:
+      1. Variables become typed locals: Int int, Float double, Bool boolean, String and Date String.
+         Arrays become the HavaBolRuntime array classes, which hold a primitive array and grow
+         one that is unbounded.
+      2. Expressions are typed as Utilities evaluates them, the left operand deciding the type of an
+         operator, so the translated program prints what the interpreter prints.
+      3. Declarations, assignments including += -= *= /= and array elements, print, if, while,
+         counting for, for in, parallel for as an ordinary for once its body passes the check of
+         the interpreter, select, break, continue, LENGTH, SPACES, ELEM, MAXELEM, and the date
+         functions are translated.
+         Slices, operators on arrays, the other builtins, for from, def, debug, assignment to a
+         char of a String, and Int literals that are not written as Java would write them, such
+         as 007, are reported as errors.
+      4. A variable declared inside a statement has a flag telling whether its declaration ran.
+         The interpreter fails on a declaration of a variable that exists each time it passes
+         over it, run or not: in a branch not taken, in the other cases of a select and in its
+         default, which never runs, in the rest of a loop body after a break or continue, and in
+         the body once more when the loop condition ends the loop. The translated program checks
+         the flags at the same points.
+      5. What the translated program can not do as the interpreter does is reported as an error
+         too: declaring a variable again with another type after a declaration inside a
+         statement, and assigning a variable to a variable of another type, both of which change
+         the type of the variable.
+         Test-Cases/checks/HavaBolcEquivalence.java runs both over the Test-Cases scripts and
+         lists the scripts that translate.
+ */
+package havabol;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+public class HavaBolc
+{
+    // Java words a HavaBol variable can not be named in the translated code
+    private static final HashSet<String> RESERVED = new HashSet<String>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const"
+            , "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float"
+            , "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native"
+            , "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp"
+            , "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void"
+            , "volatile", "while", "true", "false", "null", "var", "yield", "record"
+            , "args", "System", "String", "Math", "Integer", "Double", "HavaBolRuntime"));
+
+    private final CompiledProgram program;
+    private final LinkedHashMap<String, Var> varM = new LinkedHashMap<String, Var>();
+    private StringBuilder out = new StringBuilder();
+    private int iIndent = 2;
+    private int iPos = 0;               // next token to translate
+    private int iLoopDepth = 0;         // loops around the statement being translated
+    private boolean bNested = false;    // translating the statements inside a statement
+    private int iTempCnt = 0;           // names of temporary locals
+
+    public static void main(String[] args)
+    {
+        String sourceFileNm = null;
+        String dirNm = ".";
+        boolean bSourceOnly = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-d") && i + 1 < args.length)
+                dirNm = args[++i];
+            else if (args[i].equals("-source"))
+                bSourceOnly = true;
+            else
+                sourceFileNm = args[i];
+        }
+
+        try
+        {
+            Path source = Paths.get(sourceFileNm);
+            String className = className(source);
+            CompiledProgram program = new HavaBolEngine().compile(source);
+
+            Path javaFile = Paths.get(dirNm, className + ".java");
+            Files.createDirectories(javaFile.toAbsolutePath().getParent());
+            Files.write(javaFile, translate(program, className).getBytes(StandardCharsets.UTF_8));
+            if (!bSourceOnly)
+                compile(javaFile, dirNm);
+        }
+        catch (Exception e)
+        {
+            System.err.println(e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Translates a compiled program into the source of a Java class.
+     *
+     * @param program   the program
+     * @param className name of the class, which is in the unnamed package
+     * @return the Java source
+     * @throws Exception a ParserException for an error in the program or a construct that is not
+     *                   translated, or the lexical error of the program
+     */
+    public static String translate(CompiledProgram program, String className) throws Exception
+    {
+        HavaBolc translator = new HavaBolc(program);
+        translator.statements(null);
+        return translator.classSource(className);
+    }
+
+    /**
+     * Makes the name of a source file into a class name, "p5Break.txt" into "P5Break".
+     *
+     * @param source path of the source file
+     * @return the class name
+     */
+    static String className(Path source)
+    {
+        String name = source.getFileName().toString();
+        if (name.lastIndexOf('.') > 0)
+            name = name.substring(0, name.lastIndexOf('.'));
+
+        StringBuilder className = new StringBuilder();
+        for (char c : name.toCharArray())
+            className.append(Character.isLetterOrDigit(c) || c == '_' ? c : '_');
+        if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0)))
+            className.insert(0, '_');
+        className.setCharAt(0, Character.toUpperCase(className.charAt(0)));
+        return className.toString();
+    }
+
+    /**
+     * Compiles a translated program with the compiler of the running JDK.
+     *
+     * @param javaFile the Java source
+     * @param dirNm    where to write the class
+     * @throws Exception if there is no compiler or the source does not compile
+     */
+    private static void compile(Path javaFile, String dirNm) throws Exception
+    {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null)
+            throw new Exception("no Java compiler in this runtime, compile " + javaFile + " with javac");
+        if (javac.run(null, null, null, "-cp", System.getProperty("java.class.path")
+                , "-d", dirNm, javaFile.toString()) != 0)
+            throw new Exception("javac failed on " + javaFile);
+    }
+
+    private HavaBolc(CompiledProgram program)
+    {
+        this.program = program;
+    }
+
+    /**
+     * A variable of the program and the local that holds it.
+     */
+    private static final class Var
+    {
+        final String name;
+        final String javaName;
+        final int iType;            // Token.INTEGER to Token.DATE, for an array the element type
+        final boolean bArray;
+        final boolean bUnbound;     // an unbounded array
+        final boolean bNested;      // declared inside a statement, so it exists once that declaration ran
+
+        Var(String name, int iType, boolean bArray, boolean bUnbound, boolean bNested)
+        {
+            this.name = name;
+            this.javaName = javaName(name);
+            this.iType = iType;
+            this.bArray = bArray;
+            this.bUnbound = bUnbound;
+            this.bNested = bNested;
+        }
+    }
+
+    /**
+     * Statements translated on their own, so they can be put together with the checks of the
+     * statements the interpreter passes over without running them.
+     */
+    private static final class Block
+    {
+        final String code;
+        final boolean bJumped;      // ends in a break or continue, so nothing can follow it
+        final int iStart, iEnd;     // positions of its first token and the word ending it
+
+        Block(String code, boolean bJumped, int iStart, int iEnd)
+        {
+            this.code = code;
+            this.bJumped = bJumped;
+            this.iStart = iStart;
+            this.iEnd = iEnd;
+        }
+    }
+
+    /**
+     * A translated expression: the Java code of its value and the HavaBol type of that value.
+     */
+    private static final class Expr
+    {
+        final int iType;
+        final String code;
+        final String literal;       // spelling of a literal, which is its text in a String
+        final Var array;            // the array, if the expression is just an array variable
+        final Var scalar;           // the variable, if the expression is just a scalar variable
+
+        Expr(int iType, String code)
+        {
+            this(iType, code, null, null);
+        }
+
+        Expr(int iType, String code, String literal, Var array)
+        {
+            this(iType, code, literal, array, null);
+        }
+
+        Expr(int iType, String code, String literal, Var array, Var scalar)
+        {
+            this.iType = iType;
+            this.code = code;
+            this.literal = literal;
+            this.array = array;
+            this.scalar = scalar;
+        }
+    }
+
+    /**
+     * Assembles the class around the translated statements. Every variable is a local of run(),
+     * declared at its top, because a HavaBol variable is visible after its declaration wherever
+     * that is.
+     */
+    private String classSource(String className)
+    {
+        StringBuilder source = new StringBuilder();
+        source.append("// Translated from ").append(program.getSourceFileNm()).append(" by havabolc\n");
+        source.append("import havabol.HavaBolRuntime;\n\n");
+        source.append("public class ").append(className).append("\n{\n");
+        source.append("    static int $line;                   // source line of the statement running\n\n");
+        source.append("    public static void main(String[] args)\n    {\n");
+        source.append("        try\n        {\n            run();\n        }\n");
+        source.append("        catch (HavaBolRuntime.RuntimeError e)\n        {\n");
+        source.append("            System.out.flush();\n");
+        source.append("            System.err.println(\"Line \" + $line + \" \" + e.getMessage() + \",\\n\\tFile: \"\n");
+        source.append("                    + ").append(javaString(program.getSourceFileNm())).append(");\n");
+        source.append("            System.exit(1);\n        }\n    }\n\n");
+        source.append("    static void run()\n    {\n");
+        for (Var var : varM.values())
+        {
+            source.append("        ").append(javaType(var)).append(' ').append(var.javaName)
+                    .append(" = ").append(initialValue(var)).append(";\n");
+            if (var.bNested)
+                source.append("        boolean ").append(declaredFlag(var.name)).append(" = false;\n");
+        }
+        if (!varM.isEmpty())
+            source.append('\n');
+        source.append(out);
+        source.append("    }\n}\n");
+        return source.toString();
+    }
+
+    private static String javaType(Var var)
+    {
+        if (var.bArray)
+            switch (var.iType)
+            {
+                case Token.INTEGER: return "HavaBolRuntime.IntArray";
+                case Token.FLOAT:   return "HavaBolRuntime.FloatArray";
+                case Token.BOOLEAN: return "HavaBolRuntime.BoolArray";
+                default:            return "HavaBolRuntime.StringArray";
+            }
+        return javaType(var.iType);
+    }
+
+    private static String javaType(int iType)
+    {
+        switch (iType)
+        {
+            case Token.INTEGER: return "int";
+            case Token.FLOAT:   return "double";
+            case Token.BOOLEAN: return "boolean";
+            default:            return "String";
+        }
+    }
+
+    private static String initialValue(Var var)
+    {
+        if (var.bArray)
+            return "null";
+        switch (var.iType)
+        {
+            case Token.INTEGER: return "0";
+            case Token.FLOAT:   return "0.0";
+            case Token.BOOLEAN: return "false";
+            default:            return "\"\"";
+        }
+    }
+
+    /**
+     * Adds a line of Java at the current indentation.
+     */
+    private void line(String fmt, Object... varArgs)
+    {
+        for (int i = 0; i < iIndent; i++)
+            out.append("    ");
+        out.append(String.format(fmt, varArgs)).append('\n');
+    }
+
+    private void open()
+    {
+        line("{");
+        iIndent++;
+    }
+
+    private void close()
+    {
+        iIndent--;
+        line("}");
+    }
+
+    private String temp()
+    {
+        return "$" + (++iTempCnt);
+    }
+
+    private Token peek() throws Exception
+    {
+        return program.getToken(iPos);
+    }
+
+    private Token next() throws Exception
+    {
+        return program.getToken(iPos++);
+    }
+
+    private boolean peekIs(String tokenStr) throws Exception
+    {
+        return peek().tokenStr.equals(tokenStr) && peek().primClassif != Token.OPERAND;
+    }
+
+    private void expect(String tokenStr) throws Exception
+    {
+        if (!peekIs(tokenStr))
+            error("ERROR: EXPECTED '%s' BUT FOUND '%s'", tokenStr, peek().tokenStr);
+        iPos++;
+    }
+
+    /**
+     * Reports an error at the token being translated, as Parser.error does.
+     */
+    private void error(String fmt, Object... varArgs) throws Exception
+    {
+        Token token = program.getToken(Math.max(iPos - 1, 0));
+        throw new ParserException(token.iSourceLineNr + 1, String.format(fmt, varArgs), program.getSourceFileNm());
+    }
+
+    private void unsupported(String what) throws Exception
+    {
+        error("ERROR: HAVABOLC CAN NOT TRANSLATE %s", what);
+    }
+
+    /**
+     * Adds a variable declared at the top level of the program, giving it a local.
+     */
+    private Var declare(Token name, int iType, boolean bArray) throws Exception
+    {
+        return declare(name, iType, bArray, false, false);
+    }
+
+    /**
+     * Adds a variable, giving it a local, and a flag telling whether its declaration ran if it
+     * is declared inside a statement. Declaring it again after that returns the same variable,
+     * since the flag then tells whether either declaration ran.
+     */
+    private Var declare(Token name, int iType, boolean bArray, boolean bUnbound, boolean bNested) throws Exception
+    {
+        Var old = varM.get(name.tokenStr);
+        if (old != null && !old.bNested)
+            error("ERROR: '%s' IS ALREADY DEFINED", name.tokenStr);
+        if (old != null)
+        {
+            if (old.iType != iType || old.bArray != bArray || old.bUnbound != bUnbound)
+                unsupported("declaring '" + name.tokenStr + "' with another type after a declaration inside a statement");
+            return old;
+        }
+        Var var = new Var(name.tokenStr, iType, bArray, bUnbound, bNested);
+        varM.put(name.tokenStr, var);
+        return var;
+    }
+
+    /**
+     * Returns the name of the local holding a variable.
+     */
+    private static String javaName(String name)
+    {
+        return RESERVED.contains(name) ? name + "_" : name;
+    }
+
+    /**
+     * Returns the name of the local telling whether the declaration of a variable declared
+     * inside a statement ran.
+     */
+    private static String declaredFlag(String name)
+    {
+        return javaName(name) + "$declared";
+    }
+
+    /**
+     * Returns the code reading a variable. A variable declared inside a statement fails as the
+     * interpreter fails on it until its declaration has run.
+     */
+    private static String ref(Var var)
+    {
+        if (!var.bNested)
+            return var.javaName;
+        return "HavaBolRuntime.declared(" + declaredFlag(var.name) + ", " + javaString(var.name) + ", " + var.javaName + ")";
+    }
+
+    /**
+     * Fails, as the interpreter does when it reaches a declaration, run or not, if the variable
+     * declared inside a statement was declared already.
+     */
+    private void checkNotDeclared(Token name)
+    {
+        line("if (%s)", declaredFlag(name.tokenStr));
+        open();
+        line("$line = %d;", name.iSourceLineNr + 1);
+        line("throw new HavaBolRuntime.RuntimeError(%s);", javaString("ERROR: '" + name.tokenStr + "' IS ALREADY DEFINED"));
+        close();
+    }
+
+    /**
+     * Adds the checks of the declarations in statements the interpreter passes over without
+     * running them: the branch of an if not taken, the other cases of a select and its default,
+     * a loop body once more when the loop ends by its condition, and the rest of a loop body
+     * after a break or continue. Passing over a declaration fails if the variable exists.
+     *
+     * @param iFrom position of the first token passed over
+     * @param iTo   position after the last one
+     */
+    private void checkSkipped(int iFrom, int iTo) throws Exception
+    {
+        for (int i = iFrom; i < iTo; i++)
+        {
+            Token token = program.getToken(i);
+            if (token.primClassif == Token.CONTROL && token.subClassif == Token.DECLARE)
+                checkNotDeclared(program.getToken(i + 1));
+        }
+    }
+
+    /**
+     * Tells whether tokens hold a declaration.
+     */
+    private boolean hasDeclaration(int iFrom, int iTo) throws Exception
+    {
+        for (int i = iFrom; i < iTo; i++)
+            if (program.getToken(i).primClassif == Token.CONTROL && program.getToken(i).subClassif == Token.DECLARE)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the position of the end word of the innermost loop around a token.
+     */
+    private int loopEnd(int iFrom) throws Exception
+    {
+        int iDepth = 0;
+        for (int i = iFrom; ; i++)
+        {
+            Token token = program.getToken(i);
+            if (token.primClassif == Token.EOF)
+                return i;
+            if (token.primClassif != Token.CONTROL)
+                continue;
+            switch (token.tokenStr)
+            {
+                case "if":
+                case "while":
+                case "for":
+                case "select":
+                    iDepth++;
+                    break;
+                case "endif":
+                case "endselect":
+                    // at depth 0 it ends an if or select around the token
+                    if (iDepth > 0)
+                        iDepth--;
+                    break;
+                case "endwhile":
+                case "endfor":
+                    if (iDepth == 0)
+                        return i;
+                    iDepth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The interpreter assigns a variable by storing the value of the other variable itself, and
+     * coerces that value in place, so the variable assigned from takes the type of the one
+     * assigned to. A local keeps its type, so that assignment is not translated.
+     */
+    private void checkShared(Expr value, int iType) throws Exception
+    {
+        if (value.scalar != null && value.iType != iType)
+            unsupported("assigning '" + value.scalar.name + "' to a variable of another type, which retypes '"
+                    + value.scalar.name + "'");
+    }
+
+    private Var variable(Token name) throws Exception
+    {
+        Var var = varM.get(name.tokenStr);
+        if (var == null)
+            error("ERROR: VARIABLE '%s' NOT YET DECLARED", name.tokenStr);
+        return var;
+    }
+
+    /**
+     * Translates statements up to one of the terminating words, which is left as the next
+     * token, or up to EOF if terminatingStr is null.
+     *
+     * @return true if they end in a break or continue
+     */
+    private boolean statements(String terminatingStr) throws Exception
+    {
+        StringBuilder saved = out;
+        boolean bSavedNested = bNested;
+        bNested = terminatingStr != null;
+        boolean bJumped = false;
+        while (true)
+        {
+            Token token = peek();
+            if (token.primClassif == Token.EOF)
+            {
+                if (terminatingStr != null)
+                    error("ERROR: EXPECTED '%s' BEFORE END OF FILE"
+                            , terminatingStr.substring(terminatingStr.lastIndexOf(' ') + 1));
+                break;
+            }
+            if (token.primClassif == Token.CONTROL && token.subClassif == Token.END
+                    && !token.tokenStr.equals("break") && !token.tokenStr.equals("continue"))
+            {
+                if (terminatingStr == null || !(" " + terminatingStr + " ").contains(" " + token.tokenStr + " "))
+                    error("ERROR: UNEXPECTED '%s'", token.tokenStr);
+                break;
+            }
+
+            // javac rejects statements after a break or continue, and they never run
+            if (statement())
+            {
+                out = new StringBuilder();
+                bJumped = true;
+            }
+        }
+        out = saved;
+        bNested = bSavedNested;
+        return bJumped;
+    }
+
+    /**
+     * Translates statements up to one of the terminating words on their own, one level deeper
+     * than the current line.
+     */
+    private Block block(String terminatingStr) throws Exception
+    {
+        StringBuilder saved = out;
+        out = new StringBuilder();
+        int iStart = iPos;
+        iIndent++;
+        boolean bJumped = statements(terminatingStr);
+        iIndent--;
+        Block block = new Block(out.toString(), bJumped, iStart, iPos);
+        out = saved;
+        return block;
+    }
+
+    /**
+     * Translates one statement.
+     *
+     * @return true if it was a break or continue, or an if all of whose branches end in one
+     */
+    private boolean statement() throws Exception
+    {
+        Token token = next();
+        if (!token.tokenStr.equals("break") && !token.tokenStr.equals("continue"))
+            line("$line = %d;", token.iSourceLineNr + 1);
+        switch (token.primClassif)
+        {
+            case Token.CONTROL:
+                if (token.subClassif == Token.DECLARE)
+                    declaration(token);
+                else if (token.tokenStr.equals("if"))
+                    return ifStmt();
+                else if (token.tokenStr.equals("while"))
+                    whileStmt();
+                else if (token.tokenStr.equals("for"))
+                    forStmt();
+                else if (token.tokenStr.equals("parallel"))
+                {// the interpreter only runs bodies whose iterations are independent, so in order is the same
+                    expect("for");
+                    checkParallel();
+                    forStmt();
+                }
+                else if (token.tokenStr.equals("select"))
+                    selectStmt();
+                else if (token.tokenStr.equals("break") || token.tokenStr.equals("continue"))
+                {
+                    if (iLoopDepth == 0)
+                        error("ERROR: ENCOUNTERED '%s' OUTSIDE OF LOOP", token.tokenStr);
+                    expect(";");
+                    // the interpreter passes over the rest of the loop body
+                    checkSkipped(iPos, loopEnd(iPos));
+                    line("%s;", token.tokenStr);
+                    return true;
+                }
+                else
+                    unsupported("'" + token.tokenStr + "'");
+                break;
+            case Token.FUNCTION:
+                if (!token.tokenStr.equals("print"))
+                    unsupported("a call of '" + token.tokenStr + "' as a statement");
+                printStmt();
+                break;
+            case Token.OPERAND:
+                if (token.subClassif != Token.IDENTIFIER)
+                    error("ERROR: %s IS NOT A VALID TARGET VARIABLE FOR ASSIGNMENT", token.tokenStr);
+                assignStmt(token);
+                break;
+            case Token.DEBUG:
+                unsupported("debug statements");
+                break;
+            default:
+                error("ERROR: UNEXPECTED '%s'", token.tokenStr);
+        }
+        return false;
+    }
+
+    /**
+     * Type Name [= expr]; and the array declarations Type Name[len] [= values]; and
+     * Type Name[] = values;
+     */
+    private void declaration(Token typeToken) throws Exception
+    {
+        int iType;
+        switch (typeToken.tokenStr)
+        {
+            case "Int":    iType = Token.INTEGER; break;
+            case "Float":  iType = Token.FLOAT;   break;
+            case "Bool":   iType = Token.BOOLEAN; break;
+            case "String": iType = Token.STRING;  break;
+            default:       iType = Token.DATE;
+        }
+
+        Token name = next();
+        if (name.primClassif != Token.OPERAND || name.subClassif != Token.IDENTIFIER)
+            error("ERROR: %s SHOULD BE AN OPERAND FOR DECLARATION", name.tokenStr);
+        Var old = varM.get(name.tokenStr);
+        if (old != null && !old.bNested)
+            error("ERROR: '%s' IS ALREADY DEFINED", name.tokenStr);
+        if (bNested || old != null)
+        {// the interpreter declares it each time the declaration runs, failing on the second pass of a loop
+            checkNotDeclared(name);
+            line("%s = true;", declaredFlag(name.tokenStr));
+        }
+
+        if (!peekIs("["))
+        {
+            Var var = declare(name, iType, false, false, bNested);
+            if (peekIs("="))
+            {
+                iPos++;
+                Expr value = expression();
+                checkShared(value, iType);
+                line("%s = %s;", var.javaName, coerce(value, iType));
+            }
+            expect(";");
+            return;
+        }
+
+        // array
+        iPos++;
+        String lengthCode = "0";
+        boolean bUnbound = peek().tokenStr.equals("unbound");
+        if (bUnbound)
+            iPos++;
+        else if (!peekIs("]"))
+        {
+            if (peek().subClassif == Token.IDENTIFIER)
+            {// the interpreter looks a variable starting the length up itself
+                Var length = varM.get(peek().tokenStr);
+                if (length == null)
+                    error("ERROR: '%s' IS NOT DEFINED", peek().tokenStr);
+                if (length.bNested)
+                    line("if (!%s) throw new HavaBolRuntime.RuntimeError(%s);", declaredFlag(length.name)
+                            , javaString("ERROR: '" + length.name + "' IS NOT DEFINED"));
+            }
+            lengthCode = intOf(expression());
+        }
+        expect("]");
+        Var var = declare(name, iType, true, bUnbound, bNested);
+        if (peekIs(";"))
+        {
+            if (lengthCode.equals("0") && !bUnbound)
+                error("ERROR: CANNOT DECLARE ARRAY WITHOUT LENGTH IF VALUE LIST NOT GIVEN");
+            iPos++;
+            line("%s = %s;", var.javaName, newArray(var, name, lengthCode, new ArrayList<String>()));
+            return;
+        }
+        expect("=");
+
+        ArrayList<String> valueL = new ArrayList<String>();
+        Expr value = expression();
+        if (value.array != null)
+        {// copy of another array
+            if (lengthCode.equals("0"))
+                unsupported("copying an array into an array declared without a length");
+            expect(";");
+            line("%s = %s;", var.javaName, newArray(var, name, lengthCode, valueL));
+            line("%s.copy(%s);", var.javaName, ref(value.array));
+            return;
+        }
+        valueL.add(coerce(value, iType));
+        while (peekIs(","))
+        {
+            iPos++;
+            valueL.add(coerce(expression(), iType));
+        }
+        expect(";");
+        line("%s = %s;", var.javaName, newArray(var, name, lengthCode, valueL));
+    }
+
+    private String newArray(Var var, Token name, String lengthCode, List<String> valueL)
+    {
+        StringBuilder code = new StringBuilder(var.bUnbound ? javaType(var) + ".unbound(" : "new " + javaType(var) + "(")
+                .append(javaString(name.tokenStr));
+        if (var.iType == Token.STRING || var.iType == Token.DATE)
+            code.append(", ").append(var.iType == Token.DATE);
+        if (!var.bUnbound)
+            code.append(", ").append(lengthCode);
+        for (String value : valueL)
+            code.append(", ").append(value);
+        return code.append(')').toString();
+    }
+
+    /**
+     * name = expr; name[index] = expr; and the same with += -= *= /=
+     * <p>
+     * Assigning a scalar to an array sets every element, assigning an array copies it.
+     */
+    private void assignStmt(Token name) throws Exception
+    {
+        Var var = varM.get(name.tokenStr);
+        if (var == null)
+            error("ERROR: ASSIGN REQUIRES THAT '%s' BE DECLARED", name.tokenStr);
+        if (var.bNested)
+            line("if (!%s) throw new HavaBolRuntime.RuntimeError(%s);", declaredFlag(var.name)
+                    , javaString("ERROR: VARIABLE " + var.name + " NOT YET DECLARED"));
+
+        String indexCode = null;
+        if (peekIs("["))
+        {
+            iPos++;
+            if (peekIs("~"))
+                unsupported("slices");
+            indexCode = intOf(expression());
+            if (peekIs("~"))
+                unsupported("slices");
+            expect("]");
+        }
+
+        Token operator = next();
+        String op = operator.tokenStr;
+        if (operator.primClassif != Token.OPERATOR
+                || !(op.equals("=") || op.equals("+=") || op.equals("-=") || op.equals("*=") || op.equals("/=")))
+            error("ERROR: ASSIGN EXPECTED AN OPERATOR BUT FOUND %s", op);
+        Expr value = expression();
+        expect(";");
+
+        if (!var.bArray)
+        {
+            if (indexCode != null)
+            {
+                if (var.iType == Token.STRING)
+                    unsupported("assignment to a char of a String");
+                error("ERROR: THIS TYPE CANNOT BE INDEXED");
+            }
+            if (!op.equals("="))
+                value = arithmetic(op.charAt(0), new Expr(var.iType, var.javaName), value);
+            else
+                checkShared(value, var.iType);
+            line("%s = %s;", var.javaName, coerce(value, var.iType));
+        }
+        else if (indexCode == null)
+        {
+            if (!op.equals("="))
+                unsupported("'" + op + "' on a whole array");
+            // in the last statement the interpreter has reached EOF once it has the value, so it
+            // reports its errors on line 1 and fails after the assignment, not finding the ';'
+            boolean bLast = peek().primClassif == Token.EOF;
+            if (bLast)
+                line("$line = 1;");
+            if (value.array != null)
+                line("%s.copy(%s);", var.javaName, ref(value.array));
+            else
+                line("%s.fill(%s);", var.javaName, strOf(value));
+            if (bLast)
+                line("throw new HavaBolRuntime.RuntimeError(%s);", javaString("ERROR: CAN ONLY HAVE ONE ARGUMENT WHEN USING ARRAY TO "
+                        + (value.array != null ? "ARRAY" : "SCALAR") + " ASSIGNMENT"));
+        }
+        else if (op.equals("="))
+        {// the interpreter checks the index once it has the value, and set can grow an unbounded array
+            String index = temp(), element = temp();
+            line("int %s = %s;", index, indexCode);
+            line("%s %s = %s;", javaType(var.iType), element, coerce(value, var.iType));
+            line("%s = %s.set(%s);", index, var.javaName, index);
+            line("%s.elementM[%s] = %s;", var.javaName, index, element);
+            line("%s.stored(%s);", var.javaName, index);
+        }
+        else
+        {
+            String index = temp();
+            line("int %s = %s.get(%s);", index, var.javaName, indexCode);
+            String element = var.javaName + ".elementM[" + index + "]";
+            line("%s = %s;", element, coerce(arithmetic(op.charAt(0), new Expr(var.iType, element), value), var.iType));
+            line("%s.stored(%s);", var.javaName, index);
+        }
+    }
+
+    /**
+     * print(expr, ...); prints the text of each value followed by a space.
+     */
+    private void printStmt() throws Exception
+    {
+        expect("(");
+        StringBuilder text = new StringBuilder();
+        if (!peekIs(")"))
+        {
+            do
+            {
+                text.append(strOf(expression())).append(" + \" \" + ");
+            } while (peekIs(",") && next() != null);
+            text.setLength(text.length() - " + ".length());
+        }
+        expect(")");
+        expect(";");
+        line("System.out.println(%s);", text);
+    }
+
+    /**
+     * if cond: ... [else: ...] endif;
+     * <p>
+     * Each branch checks the declarations of the branch not taken.
+     *
+     * @return true if both branches end in a break or continue
+     */
+    private boolean ifStmt() throws Exception
+    {
+        String condCode = condition(expression());
+        expect(":");
+        Block thenBlock = block("else endif");
+        Block elseBlock = null;
+        if (peekIs("else"))
+        {
+            iPos++;
+            expect(":");
+            elseBlock = block("endif");
+        }
+        expect("endif");
+        expect(";");
+
+        line("if (%s)", condCode);
+        open();
+        out.append(thenBlock.code);
+        if (elseBlock != null && !thenBlock.bJumped)
+            checkSkipped(elseBlock.iStart, elseBlock.iEnd);
+        close();
+        if (elseBlock != null || hasDeclaration(thenBlock.iStart, thenBlock.iEnd))
+        {
+            line("else");
+            open();
+            checkSkipped(thenBlock.iStart, thenBlock.iEnd);
+            if (elseBlock != null)
+                out.append(elseBlock.code);
+            close();
+        }
+        return elseBlock != null && thenBlock.bJumped && elseBlock.bJumped;
+    }
+
+    private void whileStmt() throws Exception
+    {
+        Expr cond = expression();
+        expect(":");
+        loop("while (%s)", condition(cond), "endwhile");
+    }
+
+    /**
+     * Translates the statements of a loop up to its end word and writes the loop around them,
+     * after the Java lines given.
+     * <p>
+     * The interpreter passes over the body once more when the condition ends the loop, so a body
+     * with declarations tests the condition inside the loop and checks them before leaving.
+     *
+     * @param headerFmt the Java loop line, with %s for its condition
+     */
+    private void loop(String headerFmt, String condCode, String endStr, String... prologueM) throws Exception
+    {
+        iLoopDepth++;
+        Block body = block(endStr);
+        iLoopDepth--;
+        expect(endStr);
+        expect(";");
+
+        boolean bDeclares = hasDeclaration(body.iStart, body.iEnd);
+        line(headerFmt, bDeclares ? "true" : condCode);
+        open();
+        if (bDeclares)
+        {
+            line("if (!(%s))", condCode);
+            open();
+            checkSkipped(body.iStart, body.iEnd);
+            line("break;");
+            close();
+        }
+        for (String prologue : prologueM)
+            line("%s", prologue);
+        out.append(body.code);
+        close();
+    }
+
+    /**
+     * Rejects the body of a parallel for as the interpreter does before running it, since the
+     * ordinary for it becomes would run any body. Assumes the next token is the control variable.
+     */
+    private void checkParallel() throws Exception
+    {
+        Token name = peek();
+        int iColon = iPos;
+        while (!program.getToken(iColon).tokenStr.equals(":") && program.getToken(iColon).primClassif != Token.EOF)
+            iColon++;
+
+        // the tokens up to the matching endfor, as ParallelFor collects them
+        ArrayList<Token> bodyL = new ArrayList<Token>();
+        int iDepth = 0;
+        for (int k = iColon + 1; program.getToken(k).primClassif != Token.EOF; k++)
+        {
+            Token token = program.getToken(k);
+            if (token.primClassif == Token.CONTROL && token.tokenStr.equals("for"))
+                iDepth++;
+            else if (token.primClassif == Token.CONTROL && token.tokenStr.equals("endfor") && iDepth-- == 0)
+                break;
+            bodyL.add(token);
+        }
+
+        new ParallelFor(name.tokenStr, program.getToken(iPos + 1).tokenStr.equals("="), variable ->
+                {
+                    Var var = varM.get(variable);
+                    if (var == null || !var.bArray)
+                        return ResultValue.primitive;
+                    return var.bUnbound ? ResultValue.unboundedArray : ResultValue.fixedArray;
+                }, program.getSourceFileNm()).check(bodyL);
+    }
+
+    /**
+     * for cv = start to end [by incr]: and for item in array-or-String:
+     */
+    private void forStmt() throws Exception
+    {
+        Token name = next();
+        if (name.subClassif != Token.IDENTIFIER)
+            error("ERROR: EXPECTED CONTROL VARIABLE BUT FOUND %s", name.tokenStr);
+
+        if (peekIs("="))
+        {
+            iPos++;
+            // an undeclared control variable is declared as an Int
+            Var cv = varM.containsKey(name.tokenStr) ? varM.get(name.tokenStr) : declare(name, Token.INTEGER, false);
+            if (cv.bArray || cv.iType != Token.INTEGER)
+                unsupported("a control variable that is not an Int");
+            if (cv.bNested)
+                unsupported("a control variable declared inside a statement");
+            String startCode = intOf(expression());
+            expect("to");
+            String endCode = limit(expression());
+            String incrCode = "1";
+            if (peekIs("by"))
+            {
+                iPos++;
+                incrCode = limit(expression());
+            }
+            expect(":");
+
+            // the Parser counts with its own int and adds the increment to the variable after each pass
+            String i = temp(), end = temp(), incr = temp();
+            loop(String.format("for (int %s = %s = %s, %s = %s, %s = %s; %%s; %s += %s, %s += %s)"
+                    , i, cv.javaName, startCode, end, endCode, incr, incrCode, i, incr, cv.javaName, incr)
+                    , i + " < " + end, "endfor");
+        }
+        else if (peekIs("in"))
+        {
+            iPos++;
+            Expr source = expression();
+            expect(":");
+            if (source.array != null)
+            {
+                Var array = source.array;
+                Var item = varM.containsKey(name.tokenStr) ? varM.get(name.tokenStr) : declare(name, array.iType, false);
+                if (item.bArray)
+                    error("ERROR: '%s' IS AN ARRAY", name.tokenStr);
+                if (item.bNested)
+                    unsupported("a for item declared inside a statement");
+                // elements that were never assigned are skipped, those the body adds are not
+                String a = temp(), k = temp();
+                line("%s %s = %s;", javaType(array), a, ref(array));
+                loop("for (int " + k + " = 0; %s; " + k + "++)", k + " < " + a + ".size()", "endfor"
+                        , "if (!" + a + ".isSet(" + k + "))", "    continue;"
+                        , item.javaName + " = " + coerce(new Expr(array.iType, a + ".elementM[" + k + "]"), item.iType) + ";");
+                return;
+            }
+
+            Var item = varM.containsKey(name.tokenStr) ? varM.get(name.tokenStr) : declare(name, Token.STRING, false);
+            if (item.bArray || item.iType != Token.STRING)
+                unsupported("a for over a String whose item is not a String");
+            if (item.bNested)
+                unsupported("a for item declared inside a statement");
+            String text = temp(), k = temp();
+            line("String %s = %s;", text, strOf(source));
+            loop("for (int " + k + " = 0; %s; " + k + "++)", k + " < " + text + ".length()", "endfor"
+                    , item.javaName + " = String.valueOf(" + text + ".charAt(" + k + "));");
+        }
+        else if (peek().tokenStr.equals("from"))
+            unsupported("for from");
+        else
+            error("ERROR: EXPECTED '=', 'in', OR 'from' BUT FOUND '%s'", peek().tokenStr);
+    }
+
+    /**
+     * select expr: when value, ...: ... endselect;
+     * <p>
+     * The cases become an if else chain, so a break or continue in them leaves the loop around
+     * the select, as it does in the interpreter.
+     */
+    private void selectStmt() throws Exception
+    {
+        Expr selected = expression();
+        expect(":");
+        if (selected.array != null)
+            error("ERROR: CAN NOT SELECT ON ARRAY '%s'", selected.array.name);
+        String var = temp();
+        line("%s %s = %s;", javaType(selected.iType), var, selected.code);
+        Expr value = new Expr(selected.iType, var, selected.literal, null);
+
+        ArrayList<String> condL = new ArrayList<String>();
+        ArrayList<Block> whenL = new ArrayList<Block>();
+        while (peekIs("when"))
+        {
+            iPos++;
+            StringBuilder cond = new StringBuilder();
+            do
+            {
+                if (cond.length() > 0)
+                    cond.append(" || ");
+                cond.append(compare("==", value, expression()).code);
+            } while (peekIs(",") && next() != null);
+            expect(":");
+            condL.add(cond.toString());
+            whenL.add(block("when default endselect"));
+        }
+        int iEnd = iPos;
+        if (peekIs("default"))
+        {// the interpreter never runs the statements of default, it only passes over them, nor
+         // wants the ':' after it when it runs the select
+            iPos++;
+            if (peekIs(":"))
+                iPos++;
+            block("endselect");
+        }
+        expect("endselect");
+        expect(";");
+
+        // a case passes over the others and default, the cases before it are tested first
+        for (int i = 0; i < whenL.size(); i++)
+        {
+            Block when = whenL.get(i);
+            line("%s (%s)", i == 0 ? "if" : "else if", condL.get(i));
+            open();
+            checkSkipped(whenL.get(0).iStart, when.iStart);
+            out.append(when.code);
+            if (!when.bJumped)
+                checkSkipped(when.iEnd, iPos);
+            close();
+        }
+        int iStart = whenL.isEmpty() ? iEnd : whenL.get(0).iStart;
+        if (hasDeclaration(iStart, iPos))
+        {
+            if (!whenL.isEmpty())
+            {
+                line("else");
+                open();
+            }
+            checkSkipped(iStart, iPos);
+            if (!whenL.isEmpty())
+                close();
+        }
+    }
+
+    /**
+     * expression := not-expr { ('and' | 'or') not-expr }
+     * <p>
+     * The levels below follow getPrecedence of the Parser: and, or loosest, then not, the
+     * comparisons with in and notin, #, + -, * /, ^ which is right associative, and unary minus.
+     */
+    private Expr expression() throws Exception
+    {
+        Expr left = notExpr();
+        while (isOperator("and") || isOperator("or"))
+        {
+            String op = next().tokenStr;
+            Expr right = notExpr();
+            String leftCode = null;
+            if (left.iType == Token.BOOLEAN)
+                leftCode = left.code;
+            else if (left.iType == Token.STRING)
+                leftCode = "\"T\".equals(" + left.code + ")";
+            else
+                error("ERROR: CANNOT COERCE '%s' TO BOOLEAN", describe(left));
+            // both operands are always evaluated
+            left = new Expr(Token.BOOLEAN, "(" + leftCode + (op.equals("and") ? " & " : " | ") + boolOf(right) + ")");
+        }
+        return left;
+    }
+
+    private Expr notExpr() throws Exception
+    {
+        if (!isOperator("not"))
+            return comparison();
+        iPos++;
+        Expr operand = notExpr();
+        if (operand.iType == Token.BOOLEAN)
+            return new Expr(Token.BOOLEAN, "(!" + operand.code + ")");
+        if (operand.iType == Token.STRING)
+            return new Expr(Token.BOOLEAN, "(!\"T\".equals(" + operand.code + "))");
+        error("ERROR: CANNOT COERCE '%s' TO BOOLEAN", describe(operand));
+        return null;
+    }
+
+    private Expr comparison() throws Exception
+    {
+        Expr left = concatenation();
+        while (true)
+        {
+            Token operator = peek();
+            String op = operator.tokenStr;
+            if (operator.primClassif != Token.OPERATOR)
+                return left;
+            if (op.equals("in") || op.equals("notin"))
+            {
+                iPos++;
+                left = in(op, left, list());
+            }
+            else if (op.equals("<") || op.equals(">") || op.equals("<=") || op.equals(">=")
+                    || op.equals("==") || op.equals("!="))
+            {
+                iPos++;
+                left = compare(op, left, concatenation());
+            }
+            else
+                return left;
+        }
+    }
+
+    /**
+     * A comparison, coercing the right operand to the type of the left one as Utilities does.
+     */
+    private Expr compare(String op, Expr left, Expr right) throws Exception
+    {
+        checkScalars(op, left, right);
+        switch (left.iType)
+        {
+            case Token.INTEGER:
+                return new Expr(Token.BOOLEAN, "(" + left.code + " " + op + " " + intOf(right) + ")");
+            case Token.FLOAT:
+                return new Expr(Token.BOOLEAN, "(" + left.code + " " + op + " " + floatOf(right) + ")");
+            case Token.STRING:
+                return new Expr(Token.BOOLEAN, "(" + strOf(left) + ".compareTo(" + strOf(right) + ") " + op + " 0)");
+            case Token.DATE:
+                return new Expr(Token.BOOLEAN, "(" + strOf(left) + ".compareTo(HavaBolRuntime.toDate("
+                        + strOf(right) + ")) " + op + " 0)");
+            case Token.BOOLEAN:
+                if (!op.equals("==") && !op.equals("!="))
+                    error("ERROR: CAN NOT PERFORM '%s' COMPARISON ON 'Bool' TYPE", op);
+                return new Expr(Token.BOOLEAN, "(" + strOf(left) + ".compareTo(" + strOf(right) + ") " + op + " 0)");
+            default:
+                error("ERROR: CAN NOT COMPARE ARRAY '%s'", describe(left));
+                return null;
+        }
+    }
+
+    /**
+     * The list on the right of in or notin: an array, or { value, ... }. Returns the code of
+     * the texts of its elements.
+     */
+    private String list() throws Exception
+    {
+        if (!peekIs("{"))
+        {
+            Expr list = concatenation();
+            if (list.array == null)
+                error("ERROR: EXPECTED AN ARRAY OR A LIST FOR 'in', FOUND '%s'", describe(list));
+            return ref(list.array) + ".texts()";
+        }
+
+        iPos++;
+        StringBuilder code = new StringBuilder("new String[] {");
+        if (!peekIs("}"))
+        {
+            do
+            {
+                code.append(strOf(expression())).append(", ");
+            } while (peekIs(",") && next() != null);
+            code.setLength(code.length() - 2);
+        }
+        expect("}");
+        return code.append('}').toString();
+    }
+
+    private Expr in(String op, Expr item, String listCode) throws Exception
+    {
+        String itemCode;
+        switch (item.iType)
+        {
+            case Token.INTEGER:
+            case Token.FLOAT:
+                itemCode = item.code;
+                break;
+            default:
+                itemCode = strOf(item);
+        }
+        String code = "HavaBolRuntime.in(" + itemCode + ", " + listCode + ")";
+        return new Expr(Token.BOOLEAN, op.equals("in") ? code : "(!" + code + ")");
+    }
+
+    /**
+     * concatenation := sum { '#' sum }
+     */
+    private Expr concatenation() throws Exception
+    {
+        Expr left = sum();
+        while (isOperator("#"))
+        {
+            iPos++;
+            Expr right = sum();
+            left = new Expr(Token.STRING, "(" + strOf(left) + " + " + strOf(right) + ")");
+        }
+        return left;
+    }
+
+    private Expr sum() throws Exception
+    {
+        Expr left = product();
+        while (isOperator("+") || isOperator("-"))
+        {
+            char op = next().tokenStr.charAt(0);
+            left = arithmetic(op, left, product());
+        }
+        return left;
+    }
+
+    private Expr product() throws Exception
+    {
+        Expr left = power();
+        while (isOperator("*") || isOperator("/"))
+        {
+            char op = next().tokenStr.charAt(0);
+            left = arithmetic(op, left, power());
+        }
+        return left;
+    }
+
+    /**
+     * power := unary [ '^' power ]
+     * <p>
+     * Unary minus binds tighter than ^, so -2 ^ 2 is 4 as in the Parser.
+     */
+    private Expr power() throws Exception
+    {
+        Expr base = unary();
+        if (!isOperator("^"))
+            return base;
+        iPos++;
+        return arithmetic('^', base, power());
+    }
+
+    /**
+     * Unary minus is the Int -1 times the operand, so its value is always an Int.
+     */
+    private Expr unary() throws Exception
+    {
+        if (!isOperator("-"))
+            return primary();
+        iPos++;
+        Expr operand = unary();
+        checkScalars("-", operand, operand);
+        return new Expr(Token.INTEGER, "(-1 * " + intOf(operand) + ")");
+    }
+
+    /**
+     * The interpreter applies an arithmetic operator or a comparison with an array operand to
+     * each element, which is not translated.
+     */
+    private void checkScalars(String op, Expr left, Expr right) throws Exception
+    {
+        Var array = left.array != null ? left.array : right.array;
+        if (array != null)
+            unsupported("'" + op + "' on the elements of array '" + array.name + "'");
+    }
+
+    private Expr primary() throws Exception
+    {
+        Token token = next();
+        if (token.primClassif == Token.SEPARATOR && token.tokenStr.equals("("))
+        {
+            Expr inner = expression();
+            expect(")");
+            return inner;
+        }
+        if (token.primClassif == Token.FUNCTION)
+            return builtin(token);
+        if (token.primClassif != Token.OPERAND)
+            error("ERROR: EXPECTED OPERAND BUT FOUND '%s'", token.tokenStr);
+
+        switch (token.subClassif)
+        {
+            case Token.INTEGER:
+                // a literal keeps its spelling when it is assigned, so only plain ones are typed
+                try
+                {
+                    if (String.valueOf(Integer.parseInt(token.tokenStr)).equals(token.tokenStr))
+                        return new Expr(Token.INTEGER, token.tokenStr, token.tokenStr, null);
+                }
+                catch (NumberFormatException e)
+                {
+                    // reported below
+                }
+                unsupported("the Int literal " + token.tokenStr);
+                return null;
+            case Token.FLOAT:
+                double dValue = Double.parseDouble(token.tokenStr);
+                String code = Double.isInfinite(dValue) ? "Double.POSITIVE_INFINITY" : Double.toString(dValue);
+                return new Expr(Token.FLOAT, code, token.tokenStr, null);
+            case Token.BOOLEAN:
+                return new Expr(Token.BOOLEAN, "HavaBolRuntime." + token.tokenStr, token.tokenStr, null);
+            case Token.STRING:
+            case Token.DATE:
+                return new Expr(token.subClassif, javaString(token.tokenStr), token.tokenStr, null);
+            default:
+                break;
+        }
+
+        Var var = variable(token);
+        if (!peekIs("["))
+        {
+            if (var.bArray)
+                return new Expr(0, ref(var), null, var);
+            return new Expr(var.iType, ref(var), null, null, var);
+        }
+
+        iPos++;
+        if (peekIs("~"))
+            unsupported("slices");
+        String indexCode = intOf(expression());
+        if (peekIs("~"))
+            unsupported("slices");
+        expect("]");
+        if (var.bArray)
+            return new Expr(var.iType, ref(var) + ".elementM[" + var.javaName + ".get(" + indexCode + ")]");
+        if (var.iType != Token.STRING)
+            error("ERROR: THIS TYPE CANNOT BE INDEXED");
+        return new Expr(Token.STRING, "HavaBolRuntime.charAt(" + ref(var) + ", " + indexCode + ")");
+    }
+
+    /**
+     * LENGTH, SPACES, ELEM, MAXELEM, dateDiff, dateAge, and dateAdj.
+     */
+    private Expr builtin(Token function) throws Exception
+    {
+        expect("(");
+        Expr arg = expression();
+        Expr value = null;
+        switch (function.tokenStr)
+        {
+            case "LENGTH":
+                value = new Expr(Token.INTEGER, strOf(arg) + ".length()");
+                break;
+            case "SPACES":
+                value = new Expr(Token.BOOLEAN, "(" + strOf(arg) + ".trim().length() == 0)");
+                break;
+            case "ELEM":
+            case "MAXELEM":
+                if (arg.array == null)
+                    error("ERROR: ELEM CAN ONLY OPERATE ON ARRAYS, PASSED '%s'", describe(arg));
+                value = new Expr(Token.INTEGER, ref(arg.array)
+                        + (function.tokenStr.equals("ELEM") ? ".elem()" : ".maxElem()"));
+                break;
+            case "dateDiff":
+            case "dateAge":
+                expect(",");
+                value = new Expr(Token.INTEGER, "HavaBolRuntime." + function.tokenStr + "(" + strOf(arg)
+                        + ", " + strOf(expression()) + ")");
+                break;
+            case "dateAdj":
+                expect(",");
+                value = new Expr(Token.DATE, "HavaBolRuntime.dateAdj(" + strOf(arg) + ", "
+                        + limit(expression()) + ")");
+                break;
+            default:
+                unsupported("a call of '" + function.tokenStr + "'");
+        }
+        expect(")");
+        return value;
+    }
+
+    /**
+     * + - * / ^ with the type of the left operand, the right one coerced to it, as Utilities does.
+     */
+    private Expr arithmetic(char op, Expr left, Expr right) throws Exception
+    {
+        checkScalars(String.valueOf(op), left, right);
+        switch (left.iType)
+        {
+            case Token.INTEGER:
+                if (op == '^')
+                    return new Expr(Token.INTEGER, "((int) Math.pow(" + left.code + ", " + intOf(right) + "))");
+                return new Expr(Token.INTEGER, "(" + left.code + " " + op + " " + intOf(right) + ")");
+            case Token.FLOAT:
+                if (op == '^')
+                    return new Expr(Token.FLOAT, "Math.pow(" + left.code + ", " + floatOf(right) + ")");
+                return new Expr(Token.FLOAT, "(" + left.code + " " + op + " " + floatOf(right) + ")");
+            case Token.STRING:
+                return new Expr(Token.STRING, "HavaBolRuntime.arith('" + op + "', " + strOf(left) + ", "
+                        + strOf(right) + ")");
+            default:
+                error("ERROR: CAN NOT PERFORM '%c' ON '%s'", op, describe(left));
+                return null;
+        }
+    }
+
+    /**
+     * The value of an expression as an Int, as Utilities.toInteger makes it.
+     */
+    private String intOf(Expr value) throws Exception
+    {
+        switch (value.iType)
+        {
+            case Token.INTEGER: return value.code;
+            case Token.FLOAT:   return "((int) " + value.code + ")";
+            default:            return "HavaBolRuntime.toInt(" + strOf(value) + ")";
+        }
+    }
+
+    /**
+     * The value of an expression as a Float, as Utilities.toFloat makes it.
+     */
+    private String floatOf(Expr value) throws Exception
+    {
+        switch (value.iType)
+        {
+            case Token.FLOAT:   return value.code;
+            case Token.INTEGER: return "((double) " + value.code + ")";
+            default:            return "HavaBolRuntime.toFloat(" + strOf(value) + ")";
+        }
+    }
+
+    private String boolOf(Expr value) throws Exception
+    {
+        if (value.iType == Token.BOOLEAN)
+            return value.code;
+        return "HavaBolRuntime.toBool(" + strOf(value) + ")";
+    }
+
+    /**
+     * The text of the value, which is what ResultValue.value holds in the interpreter.
+     */
+    private String strOf(Expr value) throws Exception
+    {
+        if (value.array != null)
+            error("ERROR: ARRAY '%s' CAN NOT BE USED AS A VALUE", value.array.name);
+        if (value.literal != null)
+            return javaString(value.literal);
+        switch (value.iType)
+        {
+            case Token.INTEGER:
+            case Token.FLOAT:
+                return "String.valueOf(" + value.code + ")";
+            case Token.BOOLEAN:
+                return "HavaBolRuntime.str(" + value.code + ")";
+            default:
+                return value.code;
+        }
+    }
+
+    /**
+     * The value converted to the type of a variable, as Parser.assign does.
+     */
+    private String coerce(Expr value, int iType) throws Exception
+    {
+        switch (iType)
+        {
+            case Token.INTEGER: return intOf(value);
+            case Token.FLOAT:   return floatOf(value);
+            case Token.BOOLEAN: return boolOf(value);
+            case Token.STRING:  return strOf(value);
+            default:
+                // a Date variable already holds a valid date
+                if (value.iType == Token.DATE && value.literal == null)
+                    return value.code;
+                return "HavaBolRuntime.toDate(" + strOf(value) + ")";
+        }
+    }
+
+    /**
+     * The condition of an if or while, which is true if its text is "T".
+     */
+    private String condition(Expr cond) throws Exception
+    {
+        if (cond.iType == Token.BOOLEAN)
+            return cond.code;
+        if (cond.iType == Token.STRING)
+            return "\"T\".equals(" + cond.code + ")";
+        error("ERROR: CONDITION '%s' IS NOT A Bool", describe(cond));
+        return null;
+    }
+
+    /**
+     * An Int for a for loop limit or a dateAdj argument, which the Parser reads with parseInt.
+     */
+    private String limit(Expr value) throws Exception
+    {
+        if (value.iType == Token.INTEGER)
+            return value.code;
+        if (value.iType == Token.STRING)
+            return "Integer.parseInt(" + value.code + ")";
+        unsupported("a limit that is not an Int");
+        return null;
+    }
+
+    private boolean isOperator(String op) throws Exception
+    {
+        return peek().primClassif == Token.OPERATOR && peek().tokenStr.equals(op);
+    }
+
+    private static String describe(Expr value)
+    {
+        if (value.array != null)
+            return value.array.name;
+        return value.literal != null ? value.literal : value.code;
+    }
+
+    /**
+     * Writes text as a Java string literal.
+     */
+    private static String javaString(String text)
+    {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray())
+        {
+            switch (c)
+            {
+                case '"':  literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n");  break;
+                case '\t': literal.append("\\t");  break;
+                case '\r': literal.append("\\r");  break;
+                default:
+                    if (c < ' ' || c > '~')
+                        literal.append(String.format("\\u%04x", (int) c));
+                    else
+                        literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,205 @@
+package havabol;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters kept by the interpreter while it runs, exposed over JMX as havabol:type=Interpreter.
+ * <p>
+ * The counters are static LongAdders. Interpreters running on different threads add to their own
+ * cells instead of fighting over one value, so counting costs about as much as incrementing a field.
+ * JMX reads add up the cells, so the values can be watched from JConsole while a script runs.
+ * <p>
+ * The counters always count, but the MBean is only registered by HavaBol --jmx and by HavaBolServer,
+ * since starting the platform MBean server is slow next to a short script. Statements are counted
+ * when they run, not when a false if or a finished loop skips over them.
+ */
+public class InterpreterMetrics implements InterpreterMetricsMBean
+{
+    public static final String OBJECT_NAME = "havabol:type=Interpreter";
+
+    // rough heap size of one array element: the list slot, the ResultValue, and a short value String
+    static final int ARRAY_ELEMENT_BYTES = 80;
+
+    // indexes into statements, one for each kind of statement
+    static final int STMT_DECLARE = 0;
+    static final int STMT_ASSIGN = 1;
+    static final int STMT_IF = 2;
+    static final int STMT_WHILE = 3;
+    static final int STMT_FOR = 4;
+    static final int STMT_SELECT = 5;
+    static final int STMT_FUNCTION = 6;
+    static final int STMT_DEBUG = 7;
+
+    // tokens built from the source lines, not each time the interpreter reads a compiled or pipelined one
+    static final LongAdder tokensScanned = new LongAdder();
+    static final LongAdder[] statements = newAdders(8);
+    static final LongAdder expressionsEvaluated = new LongAdder();
+    static final LongAdder storageReads = new LongAdder();
+    static final LongAdder storageWrites = new LongAdder();
+    static final LongAdder arrayElementsAllocated = new LongAdder();
+    static final LongAdder printLines = new LongAdder();
+    static final LongAdder printChars = new LongAdder();    // chars printed with line separators, the bytes depend on the output charset
+    static final LongAdder coercionFailures = new LongAdder();
+
+    private static boolean bRegistered = false;
+
+    /**
+     * Registers the MBean with the platform MBean server, once per JVM.
+     * <p>
+     * Failing to register only means the counters can't be seen, so errors are printed and ignored.
+     */
+    public static synchronized void register()
+    {
+        if (bRegistered)
+            return;
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(new InterpreterMetrics(), name);
+            bRegistered = true;
+        }
+        catch (Exception e)
+        {
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    private static LongAdder[] newAdders(int iCnt)
+    {
+        LongAdder[] adders = new LongAdder[iCnt];
+        for (int i = 0; i < iCnt; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    @Override
+    public long getTokensScanned()
+    {
+        return tokensScanned.sum();
+    }
+
+    @Override
+    public long getStatementsExecuted()
+    {
+        long lTotal = 0;
+        for (LongAdder adder : statements)
+            lTotal += adder.sum();
+        return lTotal;
+    }
+
+    @Override
+    public long getDeclareStatements()
+    {
+        return statements[STMT_DECLARE].sum();
+    }
+
+    @Override
+    public long getAssignStatements()
+    {
+        return statements[STMT_ASSIGN].sum();
+    }
+
+    @Override
+    public long getIfStatements()
+    {
+        return statements[STMT_IF].sum();
+    }
+
+    @Override
+    public long getWhileStatements()
+    {
+        return statements[STMT_WHILE].sum();
+    }
+
+    @Override
+    public long getForStatements()
+    {
+        return statements[STMT_FOR].sum();
+    }
+
+    @Override
+    public long getSelectStatements()
+    {
+        return statements[STMT_SELECT].sum();
+    }
+
+    @Override
+    public long getFunctionStatements()
+    {
+        return statements[STMT_FUNCTION].sum();
+    }
+
+    @Override
+    public long getDebugStatements()
+    {
+        return statements[STMT_DEBUG].sum();
+    }
+
+    @Override
+    public long getExpressionsEvaluated()
+    {
+        return expressionsEvaluated.sum();
+    }
+
+    @Override
+    public long getStorageReads()
+    {
+        return storageReads.sum();
+    }
+
+    @Override
+    public long getStorageWrites()
+    {
+        return storageWrites.sum();
+    }
+
+    @Override
+    public long getArrayElementsAllocated()
+    {
+        return arrayElementsAllocated.sum();
+    }
+
+    @Override
+    public long getArrayBytesEstimated()
+    {
+        return arrayElementsAllocated.sum() * ARRAY_ELEMENT_BYTES;
+    }
+
+    @Override
+    public long getPrintLines()
+    {
+        return printLines.sum();
+    }
+
+    @Override
+    public long getPrintChars()
+    {
+        return printChars.sum();
+    }
+
+    @Override
+    public long getCoercionFailures()
+    {
+        return coercionFailures.sum();
+    }
+
+    @Override
+    public void resetCounters()
+    {
+        tokensScanned.reset();
+        for (LongAdder adder : statements)
+            adder.reset();
+        expressionsEvaluated.reset();
+        storageReads.reset();
+        storageWrites.reset();
+        arrayElementsAllocated.reset();
+        printLines.reset();
+        printChars.reset();
+        coercionFailures.reset();
+    }
+}
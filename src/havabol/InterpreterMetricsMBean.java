@@ -0,0 +1,36 @@
+package havabol;
+
+/**
+ * Management interface of InterpreterMetrics, shown by JConsole under havabol:type=Interpreter.
+ * <p>
+ * Every value is a total for all interpreter runs in the JVM since it started or since resetCounters().
+ */
+public interface InterpreterMetricsMBean
+{
+    long getTokensScanned();
+
+    long getStatementsExecuted();
+    long getDeclareStatements();
+    long getAssignStatements();
+    long getIfStatements();
+    long getWhileStatements();
+    long getForStatements();
+    long getSelectStatements();
+    long getFunctionStatements();
+    long getDebugStatements();
+
+    long getExpressionsEvaluated();
+
+    long getStorageReads();
+    long getStorageWrites();
+
+    long getArrayElementsAllocated();
+    long getArrayBytesEstimated();
+
+    long getPrintLines();
+    long getPrintChars();
+
+    long getCoercionFailures();
+
+    void resetCounters();
+}
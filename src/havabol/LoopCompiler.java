@@ -0,0 +1,878 @@
+package havabol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Second execution tier for hot while and counting for loops, turned on with the --jit flag.
+ * <p>
+ * The Parser counts the iterations it interprets of every loop. When a loop reaches THRESHOLD,
+ * its tokens are compiled into a tree of small Java objects that work on int and double slots
+ * instead of ResultValue strings, and the rest of the loop runs on that tree, which HotSpot then
+ * compiles like any other Java code. A loop is compiled once per program and shared by every run.
+ * <p>
+ * Only loops whose bodies are arithmetic on Int and Float variables are compiled: assignments,
+ * +=, -=, *=, /=, if, and nested while and counting for loops, with + - * /, unary minus,
+ * comparisons, and, and or. Anything else, such as print, arrays, strings, or break, leaves the
+ * loop to the interpreter. The compiled code follows the coercion rules of Utilities exactly.
+ * <p>
+ * Before each iteration the slots are saved. If an iteration fails, for instance an Int division
+ * by zero, the slots are put back, stored in the variables, and the interpreter runs that
+ * iteration again, raising the error the normal way. The same happens if the variables no longer
+ * have the types the loop was compiled for. A loop that deoptimizes MAX_DEOPTS times is left to
+ * the interpreter.
+ */
+final class LoopCompiler
+{
+    static final int THRESHOLD = 100;       // iterations interpreted before a loop is compiled
+    private static final int MAX_DEOPTS = 3;
+
+    // saved for loops that can not be compiled, so they are only looked at once
+    private static final CompiledLoop NOT_COMPILABLE = new CompiledLoop();
+
+    private final CompiledProgram program;
+    private final ConcurrentHashMap<Integer, CompiledLoop> loopM = new ConcurrentHashMap<Integer, CompiledLoop>();
+
+    /**
+     * LoopCompiler constructor
+     *
+     * @param program the program whose loops are compiled
+     */
+    LoopCompiler(CompiledProgram program)
+    {
+        this.program = program;
+    }
+
+    /**
+     * Returns the compiled form of the loop starting at a token, compiling it the first time.
+     *
+     * @param iTokenNr       index of the 'while' or 'for' token
+     * @param storageManager variables of the run, whose types the loop is compiled for
+     * @return the compiled loop, or null if it can not be compiled or deoptimized too often
+     */
+    CompiledLoop get(int iTokenNr, StorageManager storageManager)
+    {
+        CompiledLoop loop = loopM.get(iTokenNr);
+        if (loop == null)
+        {
+            try
+            {
+                loop = new Builder(storageManager).loop(iTokenNr);
+            }
+            catch (Exception e)
+            {// not a loop this tier handles
+                loop = NOT_COMPILABLE;
+            }
+            loopM.putIfAbsent(iTokenNr, loop);
+        }
+        if (loop == NOT_COMPILABLE || loop.deoptCnt.get() >= MAX_DEOPTS)
+            return null;
+        return loop;
+    }
+
+    /**
+     * Values of the variables of a compiled loop while it runs. Each variable has one slot, in iM
+     * if it is an Int and in dM if it is a Float.
+     */
+    static final class Frame
+    {
+        final int[] iM;
+        final double[] dM;
+        final boolean[] dirtyM;     // the variable was assigned and has to be stored
+
+        Frame(int iSlotCnt)
+        {
+            iM = new int[iSlotCnt];
+            dM = new double[iSlotCnt];
+            dirtyM = new boolean[iSlotCnt];
+        }
+
+        void copyTo(Frame frame)
+        {
+            System.arraycopy(iM, 0, frame.iM, 0, iM.length);
+            System.arraycopy(dM, 0, frame.dM, 0, dM.length);
+            System.arraycopy(dirtyM, 0, frame.dirtyM, 0, dirtyM.length);
+        }
+    }
+
+    interface IntNode
+    {
+        int eval(Frame f);
+    }
+
+    interface FloatNode
+    {
+        double eval(Frame f);
+    }
+
+    interface BoolNode
+    {
+        boolean eval(Frame f);
+    }
+
+    interface StmtNode
+    {
+        void exec(Frame f);
+    }
+
+    /**
+     * A loop compiled by the Builder.
+     */
+    static final class CompiledLoop
+    {
+        private final String[] nameM;     // variable of each slot
+        private final int[] typeM;        // Token.INTEGER or Token.FLOAT for each slot
+        private final BoolNode cond;      // condition of a while loop, null for a for loop
+        private final StmtNode body;
+        private final int iCvSlot;        // slot of the control variable of a for loop, -1 for a while loop
+        private final boolean bCvAssigned; // the body of the for loop assigns its control variable
+        final AtomicInteger deoptCnt = new AtomicInteger();
+
+        private CompiledLoop()
+        {
+            this(new String[0], new int[0], null, null, -1, false);
+        }
+
+        private CompiledLoop(String[] nameM, int[] typeM, BoolNode cond, StmtNode body, int iCvSlot
+                , boolean bCvAssigned)
+        {
+            this.nameM = nameM;
+            this.typeM = typeM;
+            this.cond = cond;
+            this.body = body;
+            this.iCvSlot = iCvSlot;
+            this.bCvAssigned = bCvAssigned;
+        }
+
+        /**
+         * Runs the rest of a while loop whose condition was just found to be true.
+         *
+         * @param storageManager variables of the run
+         * @return true if the loop ended, false if the interpreter has to run the current iteration
+         * @throws Exception if a variable can not be read
+         */
+        boolean runWhile(StorageManager storageManager) throws Exception
+        {
+            Frame f = load(storageManager);
+            if (f == null)
+                return false;
+
+            Frame save = new Frame(nameM.length);
+            try
+            {
+                do
+                {
+                    f.copyTo(save);
+                    body.exec(f);
+                } while (cond.eval(f));
+            }
+            catch (RuntimeException e)
+            {// let the interpreter run the failed iteration again and report the error
+                deoptCnt.incrementAndGet();
+                store(storageManager, save);
+                return false;
+            }
+            store(storageManager, f);
+            return true;
+        }
+
+        /**
+         * Runs the rest of a counting for loop, starting with an iteration it was about to do.
+         *
+         * @param storageManager variables of the run
+         * @param i              value of the loop counter for the next iteration
+         * @param ev             end value of the loop
+         * @param iv             increment of the loop
+         * @return the loop counter at the end, or of the iteration the interpreter has to run
+         * @throws Exception if a variable can not be read
+         */
+        int runFor(StorageManager storageManager, int i, int ev, int iv) throws Exception
+        {
+            // an assigned control variable gets a new entry, which the in place update below can not follow
+            if (bCvAssigned)
+                return i;
+            Frame f = load(storageManager);
+            if (f == null)
+                return i;
+
+            Frame save = new Frame(nameM.length);
+            try
+            {
+                for (; i < ev; i += iv)
+                {
+                    f.copyTo(save);
+                    body.exec(f);
+                    f.iM[iCvSlot] += iv;
+                }
+            }
+            catch (RuntimeException e)
+            {// let the interpreter run the failed iteration again and report the error
+                deoptCnt.incrementAndGet();
+                store(storageManager, save);
+                return i;
+            }
+            store(storageManager, f);
+            return i;
+        }
+
+        /**
+         * Reads the variables into a new frame.
+         *
+         * @param storageManager variables of the run
+         * @return the frame, or null if a variable no longer has the type the loop was compiled for
+         * @throws Exception if a variable can not be read
+         */
+        private Frame load(StorageManager storageManager) throws Exception
+        {
+            Frame f = new Frame(nameM.length);
+            ResultValue[] entryM = new ResultValue[nameM.length];
+            try
+            {
+                for (int i = 0; i < nameM.length; i++)
+                {
+                    ResultValue entry = storageManager.getEntry(nameM[i]);
+                    if (entry == null || entry.type != typeM[i] || entry.structure != ResultValue.primitive)
+                        return deopt();
+                    entryM[i] = entry;
+                    if (typeM[i] == Token.INTEGER)
+                        f.iM[i] = Integer.parseInt(entry.value);
+                    else
+                        f.dM[i] = Double.parseDouble(entry.value);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return deopt();
+            }
+
+            // the for loop updates its control variable in place, which changes every variable sharing it
+            for (int i = 0; iCvSlot >= 0 && i < nameM.length; i++)
+                if (i != iCvSlot && entryM[i] == entryM[iCvSlot])
+                    return deopt();
+            return f;
+        }
+
+        private Frame deopt()
+        {
+            deoptCnt.incrementAndGet();
+            return null;
+        }
+
+        /**
+         * Stores the assigned variables of a frame, and the control variable of a for loop.
+         *
+         * @param storageManager variables of the run
+         * @param f              the frame
+         * @throws Exception if a variable can not be read
+         */
+        private void store(StorageManager storageManager, Frame f) throws Exception
+        {
+            for (int i = 0; i < nameM.length; i++)
+            {
+                if (i == iCvSlot)
+                {// updated in place, as forStmt does
+                    ResultValue entry = storageManager.getEntry(nameM[i]);
+                    entry.value = String.valueOf(f.iM[i]);
+                    storageManager.putEntry(nameM[i], entry);
+                }
+                else if (f.dirtyM[i])
+                {
+                    String value = typeM[i] == Token.INTEGER ? String.valueOf(f.iM[i]) : String.valueOf(f.dM[i]);
+                    storageManager.putEntry(nameM[i], new ResultValue(value, typeM[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown by the Builder when it finds something it does not compile.
+     */
+    @SuppressWarnings("serial")
+    private static final class NotCompilable extends Exception
+    {
+        NotCompilable()
+        {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * An expression being compiled. Exactly one of the nodes is set, according to the type.
+     */
+    private static final class Expr
+    {
+        final int iType;
+        final IntNode i;
+        final FloatNode d;
+        final BoolNode b;
+        boolean bVariable;      // the expression is just a variable, so its value is the variable's entry
+
+        Expr(IntNode i)
+        {
+            this(Token.INTEGER, i, null, null);
+        }
+
+        Expr(FloatNode d)
+        {
+            this(Token.FLOAT, null, d, null);
+        }
+
+        Expr(BoolNode b)
+        {
+            this(Token.BOOLEAN, null, null, b);
+        }
+
+        private Expr(int iType, IntNode i, FloatNode d, BoolNode b)
+        {
+            this.iType = iType;
+            this.i = i;
+            this.d = d;
+            this.b = b;
+        }
+    }
+
+    /**
+     * Compiles one loop. Recursive descent over the tokens that mirrors the statements and the
+     * operator precedence of the Parser, throwing NotCompilable for anything else.
+     */
+    private final class Builder
+    {
+        private final StorageManager storageManager;
+        private final HashMap<String, Integer> slotM = new HashMap<String, Integer>();
+        private final ArrayList<String> nameL = new ArrayList<String>();
+        private final ArrayList<Integer> typeL = new ArrayList<Integer>();
+        private final ArrayList<Integer> assignedL = new ArrayList<Integer>();
+        private int iPos;
+
+        Builder(StorageManager storageManager)
+        {
+            this.storageManager = storageManager;
+        }
+
+        /**
+         * Compiles the while or counting for loop starting at a token.
+         */
+        CompiledLoop loop(int iTokenNr) throws Exception
+        {
+            iPos = iTokenNr;
+            Token loopToken = next();
+            BoolNode cond = null;
+            int iCvSlot = -1;
+            if (loopToken.tokenStr.equals("while"))
+            {
+                cond = cond();
+                expect(":");
+            }
+            else if (loopToken.tokenStr.equals("for"))
+            {
+                // the header was already run by the interpreter, only the control variable is needed
+                iCvSlot = slot(next(), Token.INTEGER);
+                if (!peek().tokenStr.equals("="))
+                    throw new NotCompilable();
+                while (!peek().tokenStr.equals(":") && peek().primClassif != Token.EOF)
+                    iPos++;
+                expect(":");
+            }
+            else
+                throw new NotCompilable();
+
+            String endStr = loopToken.tokenStr.equals("while") ? "endwhile" : "endfor";
+            StmtNode body = statements(endStr);
+            expect(endStr);
+            expect(";");
+
+            int[] typeM = new int[typeL.size()];
+            for (int i = 0; i < typeM.length; i++)
+                typeM[i] = typeL.get(i);
+            return new CompiledLoop(nameL.toArray(new String[nameL.size()]), typeM, cond, body, iCvSlot
+                    , assignedL.contains(iCvSlot));
+        }
+
+        private Token peek() throws Exception
+        {
+            return program.getToken(iPos);
+        }
+
+        private Token next() throws Exception
+        {
+            return program.getToken(iPos++);
+        }
+
+        private void expect(String tokenStr) throws Exception
+        {
+            if (!next().tokenStr.equals(tokenStr))
+                throw new NotCompilable();
+        }
+
+        private boolean isOperator(Token token, String operator)
+        {
+            return token.primClassif == Token.OPERATOR && token.tokenStr.equals(operator);
+        }
+
+        /**
+         * Returns the slot of a variable, giving it one the first time. The variable has to be
+         * an Int or Float that is not an array.
+         *
+         * @param name   token of the variable
+         * @param iNeeded the type it must have, or 0 for Int or Float
+         */
+        private int slot(Token name, int iNeeded) throws Exception
+        {
+            if (name.primClassif != Token.OPERAND || name.subClassif != Token.IDENTIFIER)
+                throw new NotCompilable();
+            Integer iSlot = slotM.get(name.tokenStr);
+            if (iSlot == null)
+            {
+                ResultValue entry = storageManager.getEntry(name.tokenStr);
+                if (entry == null || entry.structure != ResultValue.primitive
+                        || (entry.type != Token.INTEGER && entry.type != Token.FLOAT))
+                    throw new NotCompilable();
+                iSlot = nameL.size();
+                slotM.put(name.tokenStr, iSlot);
+                nameL.add(name.tokenStr);
+                typeL.add(entry.type);
+            }
+            if (iNeeded != 0 && typeL.get(iSlot) != iNeeded)
+                throw new NotCompilable();
+            return iSlot;
+        }
+
+        /**
+         * Compiles statements up to one of the terminating words, which is left as the next token.
+         */
+        private StmtNode statements(String terminatingStr) throws Exception
+        {
+            ArrayList<StmtNode> stmtL = new ArrayList<StmtNode>();
+            while (true)
+            {
+                Token token = peek();
+                if (token.primClassif == Token.CONTROL && token.subClassif == Token.END)
+                {
+                    if (!(" " + terminatingStr + " ").contains(" " + token.tokenStr + " "))
+                        throw new NotCompilable();
+                    break;
+                }
+                stmtL.add(statement());
+            }
+
+            StmtNode[] stmtM = stmtL.toArray(new StmtNode[stmtL.size()]);
+            if (stmtM.length == 1)
+                return stmtM[0];
+            return f -> {
+                for (StmtNode stmt : stmtM)
+                    stmt.exec(f);
+            };
+        }
+
+        private StmtNode statement() throws Exception
+        {
+            Token token = next();
+            if (token.primClassif == Token.OPERAND)
+            {
+                StmtNode stmt = assignment(token);
+                expect(";");
+                return stmt;
+            }
+            if (token.primClassif != Token.CONTROL || token.subClassif != Token.FLOW)
+                throw new NotCompilable();
+
+            switch (token.tokenStr)
+            {
+                case "if":
+                    return ifStmt();
+                case "while":
+                    return whileStmt();
+                case "for":
+                    return forStmt();
+                default:
+                    throw new NotCompilable();
+            }
+        }
+
+        /**
+         * name = expr, or name op= expr
+         */
+        private StmtNode assignment(Token name) throws Exception
+        {
+            int iSlot = slot(name, 0);
+            int iType = typeL.get(iSlot);
+            Token operator = next();
+            if (operator.primClassif != Token.OPERATOR)
+                throw new NotCompilable();
+
+            Expr value = expression();
+            switch (operator.tokenStr)
+            {
+                case "=":
+                    // assign() coerces the variable's own entry when the value is a variable, changing both
+                    if (value.bVariable)
+                        throw new NotCompilable();
+                    break;
+                case "+=":
+                case "-=":
+                case "*=":
+                case "/=":
+                    value = arithmetic(operator.tokenStr.substring(0, 1), variable(iSlot), value);
+                    break;
+                default:
+                    throw new NotCompilable();
+            }
+
+            assignedL.add(iSlot);
+            if (iType == Token.INTEGER)
+            {
+                IntNode node = toInt(value);
+                return f -> {
+                    f.iM[iSlot] = node.eval(f);
+                    f.dirtyM[iSlot] = true;
+                };
+            }
+            FloatNode node = toFloat(value);
+            return f -> {
+                f.dM[iSlot] = node.eval(f);
+                f.dirtyM[iSlot] = true;
+            };
+        }
+
+        private StmtNode ifStmt() throws Exception
+        {
+            BoolNode cond = cond();
+            expect(":");
+            StmtNode thenPart = statements("else endif");
+            StmtNode elsePart = null;
+            if (peek().tokenStr.equals("else"))
+            {
+                iPos++;
+                expect(":");
+                elsePart = statements("endif");
+            }
+            expect("endif");
+            expect(";");
+
+            if (elsePart == null)
+                return f -> {
+                    if (cond.eval(f))
+                        thenPart.exec(f);
+                };
+            StmtNode elseStmt = elsePart;
+            return f -> {
+                if (cond.eval(f))
+                    thenPart.exec(f);
+                else
+                    elseStmt.exec(f);
+            };
+        }
+
+        private StmtNode whileStmt() throws Exception
+        {
+            BoolNode cond = cond();
+            expect(":");
+            StmtNode body = statements("endwhile");
+            expect("endwhile");
+            expect(";");
+            return f -> {
+                while (cond.eval(f))
+                    body.exec(f);
+            };
+        }
+
+        /**
+         * for cv = expr to expr [by expr]: ... endfor;
+         * <p>
+         * Like forStmt: the start is assigned to the control variable, the end and increment are
+         * evaluated once, and the control variable is incremented after each iteration.
+         */
+        private StmtNode forStmt() throws Exception
+        {
+            Token cvToken = peek();
+            int iCvSlot = slot(cvToken, Token.INTEGER);
+            iPos++;
+            if (!isOperator(peek(), "="))
+                throw new NotCompilable();
+            StmtNode start = assignment(cvToken);
+            expect("to");
+            IntNode end = intValue(expression());
+            IntNode step = null;
+            if (peek().tokenStr.equals("by"))
+            {
+                iPos++;
+                step = intValue(expression());
+            }
+            expect(":");
+            StmtNode body = statements("endfor");
+            expect("endfor");
+            expect(";");
+
+            IntNode stepNode = step;
+            return f -> {
+                start.exec(f);
+                int ev = end.eval(f);
+                int iv = stepNode == null ? 1 : stepNode.eval(f);
+                for (int i = f.iM[iCvSlot]; i < ev; i += iv)
+                {
+                    body.exec(f);
+                    f.iM[iCvSlot] += iv;
+                }
+            };
+        }
+
+        /**
+         * Integer.parseInt of the value, as forStmt does for the end and increment.
+         */
+        private IntNode intValue(Expr value) throws Exception
+        {
+            if (value.iType != Token.INTEGER)
+                throw new NotCompilable();
+            return value.i;
+        }
+
+        private BoolNode cond() throws Exception
+        {
+            Expr cond = expression();
+            if (cond.iType != Token.BOOLEAN)
+                throw new NotCompilable();
+            return cond.b;
+        }
+
+        /**
+         * expression := comparison { ('and' | 'or') comparison }
+         * <p>
+         * and and or have the same precedence and both operands are always evaluated.
+         */
+        private Expr expression() throws Exception
+        {
+            Expr left = comparison();
+            while (isOperator(peek(), "and") || isOperator(peek(), "or"))
+            {
+                boolean bAnd = next().tokenStr.equals("and");
+                Expr right = comparison();
+                if (left.iType != Token.BOOLEAN || right.iType != Token.BOOLEAN)
+                    throw new NotCompilable();
+                BoolNode a = left.b;
+                BoolNode b = right.b;
+                left = bAnd ? new Expr((BoolNode) f -> a.eval(f) & b.eval(f))
+                            : new Expr((BoolNode) f -> a.eval(f) | b.eval(f));
+            }
+            return left;
+        }
+
+        /**
+         * comparison := sum [ compare-operator sum ]
+         * <p>
+         * The right operand is coerced to the type of the left one, as Utilities does.
+         */
+        private Expr comparison() throws Exception
+        {
+            Expr left = sum();
+            Token operator = peek();
+            String op = operator.tokenStr;
+            if (operator.primClassif != Token.OPERATOR
+                    || !(op.equals("<") || op.equals(">") || op.equals("<=") || op.equals(">=")
+                         || op.equals("==") || op.equals("!=")))
+                return left;
+            iPos++;
+            Expr right = sum();
+
+            if (left.iType == Token.INTEGER)
+            {
+                IntNode a = left.i;
+                IntNode b = toInt(right);
+                switch (op)
+                {
+                    case "<":  return new Expr((BoolNode) f -> a.eval(f) < b.eval(f));
+                    case ">":  return new Expr((BoolNode) f -> a.eval(f) > b.eval(f));
+                    case "<=": return new Expr((BoolNode) f -> a.eval(f) <= b.eval(f));
+                    case ">=": return new Expr((BoolNode) f -> a.eval(f) >= b.eval(f));
+                    case "==": return new Expr((BoolNode) f -> a.eval(f) == b.eval(f));
+                    default:   return new Expr((BoolNode) f -> a.eval(f) != b.eval(f));
+                }
+            }
+            if (left.iType == Token.FLOAT)
+            {
+                FloatNode a = left.d;
+                FloatNode b = toFloat(right);
+                switch (op)
+                {
+                    case "<":  return new Expr((BoolNode) f -> a.eval(f) < b.eval(f));
+                    case ">":  return new Expr((BoolNode) f -> a.eval(f) > b.eval(f));
+                    case "<=": return new Expr((BoolNode) f -> a.eval(f) <= b.eval(f));
+                    case ">=": return new Expr((BoolNode) f -> a.eval(f) >= b.eval(f));
+                    case "==": return new Expr((BoolNode) f -> a.eval(f) == b.eval(f));
+                    default:   return new Expr((BoolNode) f -> a.eval(f) != b.eval(f));
+                }
+            }
+            throw new NotCompilable();
+        }
+
+        /**
+         * sum := product { ('+' | '-') product }
+         */
+        private Expr sum() throws Exception
+        {
+            Expr left = product();
+            while (isOperator(peek(), "+") || isOperator(peek(), "-"))
+                left = arithmetic(next().tokenStr, left, product());
+            return left;
+        }
+
+        /**
+         * product := unary { ('*' | '/') unary }
+         */
+        private Expr product() throws Exception
+        {
+            Expr left = unary();
+            while (isOperator(peek(), "*") || isOperator(peek(), "/"))
+                left = arithmetic(next().tokenStr, left, unary());
+            return left;
+        }
+
+        /**
+         * unary := '-' unary | primary
+         * <p>
+         * The Parser only takes '-' as unary minus after an operator, ',' or '(', and evaluates it
+         * as the Int -1 times the operand.
+         */
+        private Expr unary() throws Exception
+        {
+            Token token = peek();
+            if (!isOperator(token, "-"))
+                return primary();
+
+            Token prev = program.getToken(iPos - 1);
+            Token following = program.getToken(iPos + 1);
+            if (!(prev.primClassif == Token.OPERATOR || prev.tokenStr.equals(",") || prev.tokenStr.equals("("))
+                    || !(following.primClassif == Token.OPERAND || following.tokenStr.equals("(")))
+                throw new NotCompilable();
+            iPos++;
+            IntNode operand = toInt(unary());
+            return new Expr((IntNode) f -> -1 * operand.eval(f));
+        }
+
+        /**
+         * primary := Int literal | Float literal | variable | '(' sum ')'
+         * <p>
+         * Only arithmetic is compiled inside parentheses, where the Parser does not handle
+         * comparisons, and, or or.
+         */
+        private Expr primary() throws Exception
+        {
+            Token token = next();
+            if (token.tokenStr.equals("(") && token.primClassif == Token.SEPARATOR)
+            {
+                Expr inner = sum();
+                expect(")");
+                return inner;
+            }
+            if (token.primClassif != Token.OPERAND)
+                throw new NotCompilable();
+
+            switch (token.subClassif)
+            {
+                case Token.INTEGER:
+                    int iValue;
+                    try
+                    {
+                        iValue = Integer.parseInt(token.tokenStr);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new NotCompilable();
+                    }
+                    // an assigned literal keeps its spelling, so only plain ones are compiled
+                    if (!String.valueOf(iValue).equals(token.tokenStr))
+                        throw new NotCompilable();
+                    return new Expr((IntNode) f -> iValue);
+                case Token.FLOAT:
+                    double dValue;
+                    try
+                    {
+                        dValue = Double.parseDouble(token.tokenStr);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new NotCompilable();
+                    }
+                    return new Expr((FloatNode) f -> dValue);
+                case Token.IDENTIFIER:
+                    if (peek().tokenStr.equals("[") || peek().tokenStr.equals("("))
+                        throw new NotCompilable();
+                    Expr variable = variable(slot(token, 0));
+                    variable.bVariable = true;
+                    return variable;
+                default:
+                    throw new NotCompilable();
+            }
+        }
+
+        private Expr variable(int iSlot)
+        {
+            if (typeL.get(iSlot) == Token.INTEGER)
+                return new Expr((IntNode) f -> f.iM[iSlot]);
+            return new Expr((FloatNode) f -> f.dM[iSlot]);
+        }
+
+        /**
+         * + - * / with the result type of the left operand, as Utilities.add, sub, mul, and div.
+         */
+        private Expr arithmetic(String op, Expr left, Expr right) throws Exception
+        {
+            if (left.iType == Token.INTEGER)
+            {
+                IntNode a = left.i;
+                IntNode b = toInt(right);
+                switch (op)
+                {
+                    case "+": return new Expr((IntNode) f -> a.eval(f) + b.eval(f));
+                    case "-": return new Expr((IntNode) f -> a.eval(f) - b.eval(f));
+                    case "*": return new Expr((IntNode) f -> a.eval(f) * b.eval(f));
+                    default:  return new Expr((IntNode) f -> a.eval(f) / b.eval(f));
+                }
+            }
+            if (left.iType == Token.FLOAT)
+            {
+                FloatNode a = left.d;
+                FloatNode b = toFloat(right);
+                switch (op)
+                {
+                    case "+": return new Expr((FloatNode) f -> a.eval(f) + b.eval(f));
+                    case "-": return new Expr((FloatNode) f -> a.eval(f) - b.eval(f));
+                    case "*": return new Expr((FloatNode) f -> a.eval(f) * b.eval(f));
+                    default:  return new Expr((FloatNode) f -> a.eval(f) / b.eval(f));
+                }
+            }
+            throw new NotCompilable();
+        }
+
+        /**
+         * The value as Utilities.toInteger makes it: a Float is truncated.
+         */
+        private IntNode toInt(Expr value) throws Exception
+        {
+            if (value.iType == Token.INTEGER)
+                return value.i;
+            if (value.iType == Token.FLOAT)
+            {
+                FloatNode d = value.d;
+                return f -> (int) d.eval(f);
+            }
+            throw new NotCompilable();
+        }
+
+        /**
+         * The value as Utilities.toFloat makes it.
+         */
+        private FloatNode toFloat(Expr value) throws Exception
+        {
+            if (value.iType == Token.FLOAT)
+                return value.d;
+            if (value.iType == Token.INTEGER)
+            {
+                IntNode i = value.i;
+                return f -> (double) i.eval(f);
+            }
+            throw new NotCompilable();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package havabol;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Pass over the tokens of a compiled program that finds what does not change while a loop runs,
+ * such as the ELEM(arr) * 2 of 'while i &lt; ELEM(arr) * 2:'.
+ * <p>
+ * Each while and for loop owns the conditions and assignments of its body that are not inside a
+ * nested loop, and a while loop also owns its condition. In a condition, of a while or of an if,
+ * the comparisons and 'and' and 'or' outside of parentheses split it into operands. Every other
+ * operator binds tighter, so each operand is a whole operand of the comparison or logical
+ * operator next to it. In an assignment 'x = ...;' or 'x[i] = ...;' the operand is the whole
+ * value. An operand qualifies when it is more than one token, has no comparison, 'not', 'in' or
+ * 'notin', and uses only variables the loop never assigns and builtins that only read their
+ * arguments. The token before it, the 'while', 'if', comparison, 'and', 'or' or '=', gets
+ * hoistLast set to the last token of the operand and iHoistNr set to a number unique in the
+ * loop. Parser evaluates the operand the first time it is reached after the loop is entered
+ * and only skips over it after that.
+ * <p>
+ * A variable counts as assigned if the loop has it before an assignment operator, before a
+ * subscript that is assigned, after a declaration, as the control variable of a for, as an
+ * argument of SORT or SORTDESC, or as the whole value assigned to another variable, which
+ * shares the value and may retype it. Arrays are copied when assigned, so assigning one array
+ * never changes another. A loop that calls a user function is left alone, since the function
+ * may assign a global. The header of a for is evaluated once anyway, and parallel for bodies
+ * run on other Parsers, so neither is looked at.
+ * <p>
+ * The pass also looks at counting for loops. In 'for i = 0 to ELEM(arr):', a subscript arr[i] of
+ * an array the body never assigns, where the body does not assign i either, gets boundsFor set to
+ * the for token. The array can then neither change size nor lose an element while the loop runs,
+ * and i only takes the values from the start to the end of the loop, so BoundsProof checks those
+ * subscripts once for the whole range when the loop starts instead of on every access.
+ */
+final class LoopInvariants
+{
+    // builtins whose result depends only on their arguments and that print nothing,
+    // dateAge is left out since it prints when the first date is the later one
+    private static final HashSet<String> PURE = new HashSet<String>(Arrays.asList(
+            "LENGTH", "MAXLENGTH", "SPACES", "ELEM", "MAXELEM", "SUM", "MIN", "MAX", "AVG", "COUNT"
+            , "BSEARCH", "dateDiff", "dateAdj"));
+    private static final String COMPARE = " < > <= >= == != ";
+    private static final String LOGICAL = " and or not in notin ";
+    private static final String ASSIGN = " = += -= *= /= ^= ";
+
+    private LoopInvariants()
+    {
+    }
+
+    /**
+     * Sets hoistLast on the token before every invariant operand of a loop, and boundsFor on the
+     * subscripts of counting for loops that can be checked once.
+     *
+     * @param tokenM every token of the program, ending with EOF
+     */
+    static void annotate(Token[] tokenM)
+    {
+        for (int i = 0; i < tokenM.length; i++)
+        {
+            if (tokenM[i].primClassif != Token.CONTROL)
+                continue;
+            if (tokenM[i].tokenStr.equals("while"))
+                annotateLoop(tokenM, i, "endwhile");
+            else if (tokenM[i].tokenStr.equals("for") && (i == 0 || !tokenM[i - 1].tokenStr.equals("parallel")))
+            {
+                annotateLoop(tokenM, i, "endfor");
+                if (i + 2 < tokenM.length
+                        && tokenM[i + 2].primClassif == Token.OPERATOR && tokenM[i + 2].tokenStr.equals("="))
+                    annotateFor(tokenM, i);
+            }
+        }
+    }
+
+    /**
+     * Marks the invariant operands owned by the while or for loop starting at iLoop.
+     */
+    private static void annotateLoop(Token[] tokenM, int iLoop, String endStr)
+    {
+        // the header ends at ':', the body at the matching end
+        int iColon = colonAfter(tokenM, iLoop);
+        int iEnd = iColon < 0 ? -1 : matchingEnd(tokenM, iColon + 1, tokenM[iLoop].tokenStr, endStr);
+        if (iEnd < 0 || callsUser(tokenM, iLoop + 1, iEnd))
+            return;
+
+        HashSet<String> assignedS = assigned(tokenM, iLoop, iEnd);
+        int[] iHoistCnt = new int[1];           // numbers given to the operands of this loop so far
+        if (endStr.equals("endwhile"))
+            annotateCondition(tokenM, iLoop, iColon, assignedS, iHoistCnt);
+
+        for (int i = iColon + 1; i < iEnd; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif == Token.CONTROL
+                    && (token.tokenStr.equals("while") || token.tokenStr.equals("for")))
+            {// a nested loop owns what is in it
+                int iNestedColon = colonAfter(tokenM, i);
+                int iNestedEnd = iNestedColon < 0 ? -1 : matchingEnd(tokenM, iNestedColon + 1, token.tokenStr
+                        , token.tokenStr.equals("while") ? "endwhile" : "endfor");
+                if (iNestedEnd < 0)
+                    return;
+                i = iNestedEnd;
+            }
+            else if (token.primClassif == Token.CONTROL && token.tokenStr.equals("if"))
+            {
+                int iIfColon = colonAfter(tokenM, i);
+                if (iIfColon < 0)
+                    return;
+                annotateCondition(tokenM, i, iIfColon, assignedS, iHoistCnt);
+                i = iIfColon;
+            }
+            else if (token.primClassif == Token.OPERAND && token.subClassif == Token.IDENTIFIER
+                    && (isSeparator(tokenM[i - 1], ";") || isSeparator(tokenM[i - 1], ":")))
+            {// an assignment statement, its value runs from after the '=' to the ';'
+                int iAssign = afterSubscript(tokenM, i + 1, iEnd);
+                if (iAssign >= iEnd || tokenM[iAssign].primClassif != Token.OPERATOR
+                        || !tokenM[iAssign].tokenStr.equals("="))
+                    continue;
+                int iSemi = iAssign + 1;
+                while (iSemi < iEnd && !isSeparator(tokenM[iSemi], ";"))
+                    iSemi++;
+                if (iSemi < iEnd)
+                    mark(tokenM, iAssign, iSemi, assignedS, iHoistCnt);
+                i = iSemi;
+            }
+        }
+    }
+
+    /**
+     * Marks the invariant operands of the condition after the 'while' or 'if' at iStart.
+     */
+    private static void annotateCondition(Token[] tokenM, int iStart, int iColon, HashSet<String> assignedS
+            , int[] iHoistCnt)
+    {
+        // split at the comparisons and logical operators outside of parentheses
+        int iBefore = iStart;                   // token before the operand being looked at
+        int iDepth = 0;
+        for (int i = iStart + 1; i < iColon; i++)
+        {
+            Token token = tokenM[i];
+            if (isSeparator(token, "(") || isSeparator(token, "["))
+                iDepth++;
+            else if (isSeparator(token, ")") || isSeparator(token, "]"))
+                iDepth--;
+            else if (iDepth == 0 && token.primClassif == Token.OPERATOR
+                    && (COMPARE.contains(" " + token.tokenStr + " ")
+                        || token.tokenStr.equals("and") || token.tokenStr.equals("or")))
+            {
+                mark(tokenM, iBefore, i, assignedS, iHoistCnt);
+                iBefore = i;
+            }
+        }
+        mark(tokenM, iBefore, iColon, assignedS, iHoistCnt);
+    }
+
+    /**
+     * Marks the operand strictly between iBefore and iAfter if it is invariant and worth saving.
+     */
+    private static void mark(Token[] tokenM, int iBefore, int iAfter, HashSet<String> assignedS
+            , int[] iHoistCnt)
+    {
+        // a single operand is as cheap to evaluate as the saved value
+        if (iAfter - iBefore < 3)
+            return;
+
+        for (int i = iBefore + 1; i < iAfter; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif == Token.FUNCTION && !PURE.contains(token.tokenStr))
+                return;
+            if (token.primClassif == Token.OPERAND && token.subClassif == Token.IDENTIFIER
+                    && assignedS.contains(token.tokenStr))
+                return;
+            if (token.primClassif == Token.OPERATOR
+                    && (COMPARE.contains(" " + token.tokenStr + " ") || LOGICAL.contains(" " + token.tokenStr + " ")))
+                return;
+            if (token.primClassif != Token.OPERAND && token.primClassif != Token.OPERATOR
+                    && token.primClassif != Token.FUNCTION
+                    && !isSeparator(token, "(") && !isSeparator(token, ")")
+                    && !isSeparator(token, "[") && !isSeparator(token, "]") && !isSeparator(token, ","))
+                return;
+        }
+        tokenM[iBefore].hoistLast = tokenM[iAfter - 1];
+        tokenM[iBefore].iHoistNr = iHoistCnt[0]++;
+    }
+
+    /**
+     * Sets boundsFor on the subscripts by the control variable of the counting for starting at iFor.
+     */
+    private static void annotateFor(Token[] tokenM, int iFor)
+    {
+        int iColon = colonAfter(tokenM, iFor);
+        int iEnd = iColon < 0 ? -1 : matchingEnd(tokenM, iColon + 1, "for", "endfor");
+        if (iEnd < 0 || callsUser(tokenM, iColon + 1, iEnd))
+            return;
+
+        String cvStr = tokenM[iFor + 1].tokenStr;
+        HashSet<String> assignedS = assigned(tokenM, iColon + 1, iEnd);
+        if (assignedS.contains(cvStr))
+            return;
+
+        for (int i = iColon + 1; i + 4 <= iEnd; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif == Token.OPERAND && token.subClassif == Token.IDENTIFIER
+                    && isSeparator(tokenM[i + 1], "[")
+                    && tokenM[i + 2].primClassif == Token.OPERAND && tokenM[i + 2].tokenStr.equals(cvStr)
+                    && isSeparator(tokenM[i + 3], "]")
+                    && !assignedS.contains(token.tokenStr))
+                token.boundsFor = tokenM[iFor];
+        }
+    }
+
+    /**
+     * Returns the index of the ':' ending the header of the block at iBlock, or -1.
+     */
+    private static int colonAfter(Token[] tokenM, int iBlock)
+    {
+        for (int i = iBlock + 1; i < tokenM.length; i++)
+        {
+            if (isSeparator(tokenM[i], ":"))
+                return i;
+            if (isSeparator(tokenM[i], ";") || tokenM[i].primClassif == Token.EOF)
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the end token that closes a body starting at iStart, or -1.
+     */
+    private static int matchingEnd(Token[] tokenM, int iStart, String beginStr, String endStr)
+    {
+        int iDepth = 0;
+        for (int i = iStart; i < tokenM.length; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif != Token.CONTROL)
+                continue;
+            if (token.tokenStr.equals(beginStr))
+                iDepth++;
+            else if (token.tokenStr.equals(endStr) && iDepth-- == 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether the tokens from iStart up to iEnd call a user function, which may assign a global.
+     */
+    private static boolean callsUser(Token[] tokenM, int iStart, int iEnd)
+    {
+        for (int i = iStart; i < iEnd; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif == Token.FUNCTION && token.subClassif == Token.USER)
+                return true;
+            if (token.primClassif == Token.OPERAND && token.subClassif == Token.IDENTIFIER
+                    && isSeparator(tokenM[i + 1], "("))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of the variables the tokens from iStart up to iEnd may assign.
+     */
+    private static HashSet<String> assigned(Token[] tokenM, int iStart, int iEnd)
+    {
+        HashSet<String> assignedS = new HashSet<String>();
+        for (int i = iStart; i < iEnd; i++)
+        {
+            Token token = tokenM[i];
+            Token next = tokenM[i + 1];
+            if (token.primClassif == Token.CONTROL
+                    && (token.subClassif == Token.DECLARE || token.tokenStr.equals("for")))
+                // a declared variable or the control variable of a for
+                assignedS.add(next.tokenStr);
+            else if (token.primClassif == Token.FUNCTION
+                    && (token.tokenStr.equals("SORT") || token.tokenStr.equals("SORTDESC")))
+            {// sorted in place
+                for (int j = i + 1; j < iEnd && !isSeparator(tokenM[j], ";"); j++)
+                    assignedS.add(tokenM[j].tokenStr);
+            }
+            else if (token.primClassif == Token.OPERAND && token.subClassif == Token.IDENTIFIER)
+            {
+                // skip a subscript to find what follows it
+                int j = afterSubscript(tokenM, i + 1, iEnd);
+                if (j <= iEnd && tokenM[j].primClassif == Token.OPERATOR
+                        && ASSIGN.contains(" " + tokenM[j].tokenStr + " "))
+                    assignedS.add(token.tokenStr);
+            }
+            else if (token.primClassif == Token.OPERATOR && token.tokenStr.equals("=")
+                    && next.primClassif == Token.OPERAND && next.subClassif == Token.IDENTIFIER
+                    && i + 2 <= iEnd && isSeparator(tokenM[i + 2], ";"))
+                // the variable assigned shares this value and may retype it
+                assignedS.add(next.tokenStr);
+        }
+        return assignedS;
+    }
+
+    /**
+     * Returns the index of the token after the subscript starting at i, or i if there is none.
+     */
+    private static int afterSubscript(Token[] tokenM, int i, int iEnd)
+    {
+        if (i >= iEnd || !isSeparator(tokenM[i], "["))
+            return i;
+        int j = i;
+        for (int iDepth = 0; j < iEnd; j++)
+        {
+            if (isSeparator(tokenM[j], "["))
+                iDepth++;
+            else if (isSeparator(tokenM[j], "]") && --iDepth == 0)
+                break;
+        }
+        return j + 1;
+    }
+
+    private static boolean isSeparator(Token token, String tokenStr)
+    {
+        return token.primClassif == Token.SEPARATOR && token.tokenStr.equals(tokenStr);
+    }
+}
@@ -0,0 +1,439 @@
+package havabol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs the iterations of a 'parallel for' on the common ForkJoinPool.
+ * <p>
+ * The header is that of a counting for, a for in, or a for from. The iterations are split into
+ * contiguous chunks, and each chunk runs on its own Parser, Scanner, and StorageManager frame. A
+ * frame holds the same arrays as the program, so element assignments reach them, and copies of
+ * its other variables, so the control variable and scalar assignments stay in the chunk.
+ * <p>
+ * Before running, the body is checked for dependences between iterations. The body may not
+ * declare variables, break, continue, call user functions, or use debug. A scalar it assigns must
+ * be assigned with '=' by a statement directly in the body before any other use, which makes it
+ * private to the iteration; after the loop it has the value of the last iteration. An array it
+ * assigns must be a fixed array assigned only at the control variable of a counting for,
+ * a[i] = ..., and read only as a[i].
+ * <p>
+ * What a chunk prints is kept and printed in the order of the chunks, so the output is that of
+ * the sequential loop. If iterations fail, the output up to the first failing iteration is
+ * printed and its error is thrown, as the sequential loop would.
+ */
+final class ParallelFor
+{
+    private final Parser parser;
+    private final String cvStr;             // control variable
+    private final int iCvType;
+    private final int iStart, iIncr;        // values of a counting for
+    private final ArrayList<String> valueL; // values of the other forms, null for a counting for
+    private final int iIterCnt;
+    private final ToIntFunction<String> structureOf;   // structure of a variable when not running, else null
+    private final String sourceFileNm;
+
+    private final HashSet<String> privateS = new HashSet<String>();    // scalars private to an iteration
+    private final HashSet<String> arrayS = new HashSet<String>();      // arrays assigned by element
+
+    /**
+     * ParallelFor constructor for a counting for
+     *
+     * @param parser  the Parser running the loop
+     * @param cvStr   the control variable
+     * @param iCvType type of the control variable
+     * @param iStart  first value of the control variable
+     * @param iEnd    value the control variable stays below
+     * @param iIncr   increment, which is positive
+     */
+    ParallelFor(Parser parser, String cvStr, int iCvType, int iStart, int iEnd, int iIncr)
+    {
+        this.parser = parser;
+        this.cvStr = cvStr;
+        this.iCvType = iCvType;
+        this.iStart = iStart;
+        this.iIncr = iIncr;
+        this.valueL = null;
+        this.iIterCnt = iStart < iEnd ? (int) (((long) iEnd - iStart + iIncr - 1) / iIncr) : 0;
+        this.structureOf = null;
+        this.sourceFileNm = parser.scan.sourceFileNm;
+    }
+
+    /**
+     * ParallelFor constructor for a for in or for from
+     *
+     * @param parser  the Parser running the loop
+     * @param cvStr   the control variable
+     * @param iCvType type of the control variable
+     * @param valueL  values of the control variable
+     */
+    ParallelFor(Parser parser, String cvStr, int iCvType, ArrayList<String> valueL)
+    {
+        this.parser = parser;
+        this.cvStr = cvStr;
+        this.iCvType = iCvType;
+        this.iStart = 0;
+        this.iIncr = 0;
+        this.valueL = valueL;
+        this.iIterCnt = valueL.size();
+        this.structureOf = null;
+        this.sourceFileNm = parser.scan.sourceFileNm;
+    }
+
+    /**
+     * ParallelFor constructor for checking a body without running it, as havabolc does
+     *
+     * @param cvStr        the control variable
+     * @param bCounting    true for a counting for, false for a for in or for from
+     * @param structureOf  structure of a variable, ResultValue.primitive if it is not declared
+     * @param sourceFileNm source file name, used for error messages
+     */
+    ParallelFor(String cvStr, boolean bCounting, ToIntFunction<String> structureOf, String sourceFileNm)
+    {
+        this.parser = null;
+        this.cvStr = cvStr;
+        this.iCvType = 0;
+        this.iStart = 0;
+        this.iIncr = 0;
+        this.valueL = bCounting ? null : new ArrayList<String>();
+        this.iIterCnt = 0;
+        this.structureOf = structureOf;
+        this.sourceFileNm = sourceFileNm;
+    }
+
+    /**
+     * Returns the structure of a variable, ResultValue.primitive if it is not declared.
+     */
+    private int structure(String name) throws Exception
+    {
+        if (structureOf != null)
+            return structureOf.applyAsInt(name);
+        ResultValue entry = parser.storageManager.getEntry(name);
+        return entry == null ? ResultValue.primitive : entry.structure;
+    }
+
+    /**
+     * Checks the body and runs every iteration. The Scanner of the Parser is left at the ':'
+     * ending the header.
+     *
+     * @param colonToken the ':' ending the header
+     * @throws Exception an error in the body, or the error of the first iteration that failed
+     */
+    void run(Token colonToken) throws Exception
+    {
+        check(body(colonToken));
+
+        // debug output and the profiler follow one statement at a time, so they get the sequential loop
+        if (iIterCnt < 2 || parser.scan.bShowToken || parser.scan.bShowExpr || parser.scan.bShowAssign
+                || (parser.profiler != null && parser.profiler.bEnabled))
+        {
+            for (int k = 0; k < iIterCnt; k++)
+            {
+                putCv(parser.storageManager, k);
+                parser.scan.setTo(colonToken);
+                checkEnd(parser, parser.statements(true, "endfor"));
+            }
+            if (iIterCnt > 0)
+                parser.scan.setTo(colonToken);
+        }
+        else
+            runParallel(colonToken);
+
+        // the control variable ends as the sequential loop leaves it
+        if (valueL == null)
+            parser.storageManager.putEntry(cvStr, new ResultValue(
+                    String.valueOf((int) (iStart + (long) iIterCnt * iIncr)), iCvType, ResultValue.primitive, ";"));
+        else if (iIterCnt > 0)
+            putCv(parser.storageManager, iIterCnt - 1);
+    }
+
+    private void runParallel(Token colonToken) throws Exception
+    {
+        int iChunkCnt = Math.min(iIterCnt, ForkJoinPool.getCommonPoolParallelism() * 4);
+        Chunk[] chunkM = new Chunk[iChunkCnt];
+        for (int c = 0; c < iChunkCnt; c++)
+            chunkM[c] = new Chunk(colonToken, (int) ((long) iIterCnt * c / iChunkCnt)
+                    , (int) ((long) iIterCnt * (c + 1) / iChunkCnt));
+
+        // the chunks store to the arrays at distinct subscripts, which only a dense list allows
+        for (String name : arrayS)
+        {
+            ResultArray array = (ResultArray) parser.storageManager.getEntry(name);
+            array.array.share(array.iDeclaredLen);
+        }
+        try
+        {
+            ForkJoinPool.commonPool().invoke(new Split(chunkM, 0, iChunkCnt));
+        }
+        finally
+        {
+            for (String name : arrayS)
+                ((ResultArray) parser.storageManager.getEntry(name)).array.unshare();
+        }
+
+        for (Chunk chunk : chunkM)
+        {
+            parser.out.append(chunk.out);
+            if (chunk.failure != null)
+                throw chunk.failure;
+        }
+
+        // private scalars keep the values of the last iteration
+        StorageManager last = chunkM[iChunkCnt - 1].frame;
+        for (String name : privateS)
+            if (last.getEntry(name) != null)
+                parser.storageManager.putEntry(name, last.getEntry(name));
+
+        // count the populated elements as assignIndex does
+        for (String name : arrayS)
+        {
+            ResultArray array = (ResultArray) parser.storageManager.getEntry(name);
+            parser.storageManager.putEntry(name, new ResultArray(name, array.array, array.type, array.structure
+                    , array.array.populated(), array.iDeclaredLen, array.iDeclaredLen + 1));
+        }
+    }
+
+    /**
+     * Stores the value the control variable has in an iteration.
+     */
+    private void putCv(StorageManager storageManager, int k)
+    {
+        String value = valueL == null ? String.valueOf((int) (iStart + (long) k * iIncr)) : valueL.get(k);
+        storageManager.putEntry(cvStr, new ResultValue(value, iCvType, ResultValue.primitive, ";"));
+    }
+
+    /**
+     * Makes sure an iteration ended on 'endfor;'.
+     */
+    private static void checkEnd(Parser parser, ResultValue resCond) throws Exception
+    {
+        if (!resCond.terminatingStr.equals("endfor") || !parser.scan.nextToken.tokenStr.equals(";"))
+            parser.error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
+    }
+
+    /**
+     * Returns the tokens of the body, from the one after the ':' up to the matching 'endfor'.
+     */
+    private ArrayList<Token> body(Token colonToken) throws Exception
+    {
+        ArrayList<Token> bodyL = new ArrayList<Token>();
+        Scanner scan = parser.scan.fork(colonToken);
+        int iDepth = 0;
+        while (true)
+        {
+            scan.getNext();
+            Token token = scan.currentToken;
+            if (token.primClassif == Token.EOF)
+                error(colonToken, "ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
+            if (token.primClassif == Token.CONTROL && token.tokenStr.equals("for"))
+                iDepth++;
+            else if (token.primClassif == Token.CONTROL && token.tokenStr.equals("endfor") && iDepth-- == 0)
+                return bodyL;
+            bodyL.add(token);
+        }
+    }
+
+    /**
+     * Finds the private scalars and the arrays assigned by element, and rejects a body whose
+     * iterations depend on each other.
+     *
+     * @param bodyL tokens of the body
+     * @throws Exception a ParserException at the first token that is not allowed
+     */
+    void check(ArrayList<Token> bodyL) throws Exception
+    {
+        ArrayList<Integer> targetL = new ArrayList<Integer>();     // index of each assigned name
+        HashMap<String, Integer> firstM = new HashMap<String, Integer>();
+        int iDepth = 0;
+
+        for (int k = 0; k < bodyL.size(); k++)
+        {
+            Token token = bodyL.get(k);
+            if (token.primClassif == Token.CONTROL)
+            {
+                if (token.subClassif == Token.DECLARE)
+                    error(token, "ERROR: 'parallel for' CAN NOT DECLARE '%s', DECLARE IT BEFORE THE LOOP"
+                            , at(bodyL, k + 1).tokenStr);
+                if (token.tokenStr.equals("break") || token.tokenStr.equals("continue") || token.tokenStr.equals("def"))
+                    error(token, "ERROR: '%s' IS NOT ALLOWED IN A 'parallel for'", token.tokenStr);
+                if (token.tokenStr.equals("for"))
+                {// a nested for assigns its control variable
+                    String name = at(bodyL, k + 1).tokenStr;
+                    if (iDepth == 0 && !firstM.containsKey(name) && !readsBefore(bodyL, k + 1, name))
+                        privateS.add(name);
+                    targetL.add(k + 1);
+                    firstM.putIfAbsent(name, k + 1);
+                }
+                if (token.subClassif == Token.FLOW && !token.tokenStr.equals("by") && !token.tokenStr.equals("to")
+                        && !token.tokenStr.equals("parallel"))
+                    iDepth++;
+                else if (token.tokenStr.startsWith("end"))
+                    iDepth--;
+                continue;
+            }
+            // SORT rearranges a whole array, which the other chunks may be reading
+            if (token.primClassif == Token.DEBUG || (token.primClassif == Token.FUNCTION && token.subClassif == Token.USER)
+                    || ArraySort.isSort(token.tokenStr))
+                error(token, "ERROR: '%s' IS NOT ALLOWED IN A 'parallel for'", token.tokenStr);
+            if (token.subClassif != Token.IDENTIFIER)
+                continue;
+
+            firstM.putIfAbsent(token.tokenStr, k);
+            if (startsStatement(bodyL, k))
+                targetL.add(k);
+            if (iDepth == 0 && startsStatement(bodyL, k) && at(bodyL, k + 1).tokenStr.equals("=")
+                    && firstM.get(token.tokenStr) == k && !readsBefore(bodyL, k, token.tokenStr))
+                privateS.add(token.tokenStr);
+        }
+
+        // every assignment must be to a private scalar or to an element of the control variable
+        for (int k : targetL)
+        {
+            Token name = bodyL.get(k);
+            if (name.tokenStr.equals(cvStr))
+                error(name, "ERROR: 'parallel for' CAN NOT ASSIGN ITS CONTROL VARIABLE '%s'", cvStr);
+            int iStructure = structure(name.tokenStr);
+            if (iStructure == ResultValue.primitive)
+            {
+                if (!privateS.contains(name.tokenStr))
+                    error(name, "ERROR: 'parallel for' ASSIGNS '%s', WHICH IS SHARED BY ITS ITERATIONS"
+                            , name.tokenStr);
+                continue;
+            }
+            if (valueL != null)
+                error(name, "ERROR: 'parallel for' OVER VALUES CAN NOT ASSIGN ELEMENTS OF '%s'", name.tokenStr);
+            if (!isCvElement(bodyL, k))
+                error(name, "ERROR: 'parallel for' CAN ONLY ASSIGN '%s[%s]', THE ELEMENT OF ITS CONTROL VARIABLE"
+                        , name.tokenStr, cvStr);
+            if (iStructure != ResultValue.fixedArray)
+                error(name, "ERROR: 'parallel for' CAN NOT ASSIGN ELEMENTS OF UNBOUNDED ARRAY '%s'", name.tokenStr);
+            arrayS.add(name.tokenStr);
+        }
+
+        // and the arrays it assigns are only read at the same element
+        for (int k = 0; k < bodyL.size(); k++)
+        {
+            Token token = bodyL.get(k);
+            if (token.subClassif == Token.IDENTIFIER && token.primClassif == Token.OPERAND
+                    && arrayS.contains(token.tokenStr) && !isCvElement(bodyL, k))
+                error(token, "ERROR: 'parallel for' READS '%s', WHOSE ELEMENTS IT ASSIGNS", token.tokenStr);
+        }
+    }
+
+    /**
+     * Tells whether the identifier at the index is the first token of a statement.
+     */
+    private static boolean startsStatement(ArrayList<Token> bodyL, int k)
+    {
+        if (k == 0)
+            return true;
+        String prevStr = bodyL.get(k - 1).tokenStr;
+        return bodyL.get(k - 1).primClassif == Token.SEPARATOR && (prevStr.equals(";") || prevStr.equals(":"));
+    }
+
+    /**
+     * Tells whether the statement or for header assigning the name at the index also uses the name.
+     */
+    private static boolean readsBefore(ArrayList<Token> bodyL, int k, String name)
+    {
+        for (int i = k + 1; i < bodyL.size() && !bodyL.get(i).tokenStr.equals(";")
+                && !bodyL.get(i).tokenStr.equals(":"); i++)
+            if (bodyL.get(i).subClassif == Token.IDENTIFIER && bodyL.get(i).tokenStr.equals(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Tells whether the array name at the index is subscripted by the control variable of a
+     * counting for, as in a[i].
+     */
+    private boolean isCvElement(ArrayList<Token> bodyL, int k)
+    {
+        return valueL == null && at(bodyL, k + 1).tokenStr.equals("[")
+                && at(bodyL, k + 2).subClassif == Token.IDENTIFIER && at(bodyL, k + 2).tokenStr.equals(cvStr)
+                && at(bodyL, k + 3).tokenStr.equals("]");
+    }
+
+    private static Token at(ArrayList<Token> bodyL, int k)
+    {
+        return k < bodyL.size() ? bodyL.get(k) : new Token("");
+    }
+
+    private void error(Token token, String fmt, Object... varArgs) throws Exception
+    {
+        throw new ParserException(token.iSourceLineNr + 1, String.format(fmt, varArgs), sourceFileNm);
+    }
+
+    /**
+     * Iterations iFrom to iTo - 1, run by one Parser, and what they printed.
+     */
+    private final class Chunk
+    {
+        final Token colonToken;
+        final int iFrom, iTo;
+        final StringBuilder out = new StringBuilder();
+        StorageManager frame;
+        Exception failure;                  // error of the iteration that failed, if one did
+
+        Chunk(Token colonToken, int iFrom, int iTo)
+        {
+            this.colonToken = colonToken;
+            this.iFrom = iFrom;
+            this.iTo = iTo;
+        }
+
+        void run()
+        {
+            try
+            {
+                frame = parser.storageManager.frame();
+                Parser worker = new Parser(parser.symbolTable, frame, parser.scan.fork(colonToken), out);
+                worker.loopCompiler = parser.loopCompiler;
+                worker.bVerified = parser.bVerified;
+                for (int k = iFrom; k < iTo; k++)
+                {
+                    putCv(frame, k);
+                    worker.scan.setTo(colonToken);
+                    checkEnd(worker, worker.statements(true, "endfor"));
+                }
+            }
+            catch (Exception e)
+            {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Splits the chunks in halves until each task runs one.
+     */
+    @SuppressWarnings("serial")
+    private static final class Split extends RecursiveAction
+    {
+        private final Chunk[] chunkM;
+        private final int iLo, iHi;
+
+        Split(Chunk[] chunkM, int iLo, int iHi)
+        {
+            this.chunkM = chunkM;
+            this.iLo = iLo;
+            this.iHi = iHi;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (iHi - iLo == 1)
+            {
+                chunkM[iLo].run();
+                return;
+            }
+            int iMid = (iLo + iHi) >>> 1;
+            invokeAll(new Split(chunkM, iLo, iMid), new Split(chunkM, iMid, iHi));
+        }
+    }
+}
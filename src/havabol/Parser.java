@@ -3,12 +3,17 @@ package havabol;
 import havabol.SymbolTable.STIdentifier;
 import havabol.SymbolTable.SymbolTable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.regex.Pattern;
 
 /*
  * This is the simple Parser class for the HavaBol programming language.
  * All errors and exceptions are thrown up to the calling method and output to stderr from there.
+ *
+ * Thread safety: a Parser, and the SymbolTable, StorageManager, and Scanner it was given, make up
+ * one interpreter instance. An instance is not thread safe and must be confined to one thread.
+ * No state is shared between instances, so separate instances may run on separate threads.
  */
 public class Parser
 {
@@ -17,6 +22,14 @@ public class Parser
     public StorageManager storageManager;
     public Scanner scan;
     public Token control;
+    public Appendable out;
+    public Profiler profiler;               // null until profiling is turned on
+    LoopCompiler loopCompiler;              // compiles hot loops, null unless the run asked for it
+    boolean bVerified;                      // SyntaxChecker found no errors, so the syntax is not checked again
+    private boolean bArgument;              // the next expression is a function argument, see argument()
+    private ResultValue[] hoistValueM;      // operands LoopInvariants found invariant in the innermost loop, by iHoistNr
+    private Token hoistStop;                // last token of the operand the next expression() evaluates, if hoisting
+    private BoundsProof bounds;             // innermost counting for running, null outside of one
 
     /**
      * Parser constructor that takes in the symbolTable, storageManager, and Scanner
@@ -30,13 +43,199 @@ public class Parser
      * @param scan object that contains our source file and will aid in parsing the file
      */
     public Parser(SymbolTable symbolTable, StorageManager storageManager, Scanner scan)
+    {
+        this(symbolTable, storageManager, scan, System.out);
+    }
+
+    /**
+     * Parser constructor that also takes in where the output of print should go.
+     *
+     * @param symbolTable object that contains symbol definitions for our programming language
+     * @param storageManager object that contains all user specified variables and their values and types
+     * @param scan object that contains our source file and will aid in parsing the file
+     * @param out object that the lines written by print are appended to
+     */
+    public Parser(SymbolTable symbolTable, StorageManager storageManager, Scanner scan, Appendable out)
     {
         this.symbolTable = symbolTable;
         this.storageManager = storageManager;
         this.scan = scan;
+        this.out = out;
         control = null;
     }
 
+    /**
+     * Executes the next statement, timing it when the profiler is on or a JFR recording
+     * has the HavaBolStatement event enabled. Like the InterpreterMetrics counters, only statements
+     * that run are recorded, not ones a false if or a finished loop skips over, nor the ';', end
+     * tokens, and EOF that statements() fetches as statements.
+     * <p>
+     * With both off this costs two field reads, so statements run as fast as without them.
+     *
+     * @param bExec Tells the statement function whether we need to execute the code we find or
+     *              just look at it
+     * @return the ResultValue returned by execStatement
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    public ResultValue statement(Boolean bExec) throws Exception
+    {
+        if (!bExec || ((profiler == null || !profiler.bEnabled) && !HavaBolEvents.isRecording())
+                || !startsStatement(scan.nextToken))
+            return execStatement(bExec);
+
+        HavaBolEvents.Statement event = null;
+        if (HavaBolEvents.isRecording())
+        {
+            event = new HavaBolEvents.Statement();
+            if (!event.isEnabled())
+                event = null;
+        }
+        // keep our own reference so the exit is recorded even if the statement turns profiling off
+        Profiler prof = profiler != null && profiler.bEnabled ? profiler : null;
+        if (prof == null && event == null)
+            return execStatement(bExec);
+
+        int iSourceLineNr = scan.nextToken.iSourceLineNr;
+        String statementStr = scan.nextToken.tokenStr;
+        if (prof != null)
+            prof.enter(iSourceLineNr);
+        if (event != null)
+            event.begin();
+        try
+        {
+            return execStatement(bExec);
+        }
+        finally
+        {
+            if (prof != null)
+                prof.exit();
+            if (event != null)
+            {
+                event.end();
+                if (event.shouldCommit())
+                {
+                    event.sourceFile = scan.sourceFileNm;
+                    event.line = iSourceLineNr + 1;
+                    event.statement = statementStr;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether a token starts a statement that execStatement() counts when it runs.
+     *
+     * @param token first token of the statement
+     * @return true for declarations, flow statements, assignments, function calls, and debug
+     */
+    private static boolean startsStatement(Token token)
+    {
+        switch (token.primClassif)
+        {
+            case Token.CONTROL:
+                return token.subClassif == Token.DECLARE || token.subClassif == Token.FLOW;
+            case Token.OPERAND:
+            case Token.FUNCTION:
+            case Token.DEBUG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Executes the body of a while or for loop once, recording a HavaBolLoopIteration event if a
+     * JFR recording has it enabled.
+     *
+     * @param loopToken the 'while' or 'for' token of the loop
+     * @param endTerm   the token that ends the body, 'endwhile' or 'endfor'
+     * @return the ResultValue returned by statements
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue loopBody(Token loopToken, String endTerm) throws Exception
+    {
+        if (!HavaBolEvents.isRecording())
+            return statements(true, endTerm);
+        HavaBolEvents.LoopIteration event = new HavaBolEvents.LoopIteration();
+        if (!event.isEnabled())
+            return statements(true, endTerm);
+
+        event.begin();
+        try
+        {
+            return statements(true, endTerm);
+        }
+        finally
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.sourceFile = scan.sourceFileNm;
+                event.line = loopToken.iSourceLineNr + 1;
+                event.loop = loopToken.tokenStr;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled form of a hot loop, if it has one and compiled code may run now.
+     * <p>
+     * Compiled loops do not go through statement(), so they are not used while debug output,
+     * the profiler, or the HavaBolStatement or HavaBolLoopIteration events are on.
+     *
+     * @param loopToken the 'while' or 'for' token of the loop
+     * @return the compiled loop, or null to keep interpreting it
+     */
+    private LoopCompiler.CompiledLoop compiledLoop(Token loopToken)
+    {
+        if (scan.bShowToken || scan.bShowExpr || scan.bShowAssign
+                || (profiler != null && profiler.bEnabled)
+                || (HavaBolEvents.isRecording() && (new HavaBolEvents.Statement().isEnabled()
+                        || new HavaBolEvents.LoopIteration().isEnabled())))
+            return null;
+
+        int iTokenNr = scan.indexOf(loopToken);
+        if (iTokenNr < 0)
+            return null;
+        return loopCompiler.get(iTokenNr, storageManager);
+    }
+
+    /**
+     * Grows an unbounded array with empty elements until the subscript is inside it, recording a
+     * HavaBolArrayResize event if a JFR recording has it enabled.
+     *
+     * @param resArray the array
+     * @param iIndex   subscript that is about to be stored to
+     */
+    private void growArray(ResultArray resArray, int iIndex)
+    {
+        int iOldLen = resArray.array.size();
+        if (iIndex < iOldLen)
+            return;
+
+        if (!HavaBolEvents.isRecording())
+        {// the new elements are unpopulated, ElementList goes sparse if most of them are
+            resArray.array.setSize(iIndex + 1);
+            return;
+        }
+
+        HavaBolEvents.ArrayResize event = new HavaBolEvents.ArrayResize();
+        event.begin();
+        resArray.array.setSize(iIndex + 1);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.sourceFile = scan.sourceFileNm;
+            event.line = scan.currentToken.iSourceLineNr + 1;
+            event.array = resArray.name;
+            event.oldLength = iOldLen;
+            event.newLength = resArray.array.size();
+            event.commit();
+        }
+    }
+
     /**
      * This method gets the next token from the source file line using Scanner::getNext().
      * Then it goes through a switch statement to determine what to do with the given token.
@@ -49,7 +248,7 @@ public class Parser
      *         the calculated ResultValue
      * @throws Exception generic Exception type to handle any processing errors
      */
-    public ResultValue statement(Boolean bExec) throws Exception
+    private ResultValue execStatement(Boolean bExec) throws Exception
     {
         // advance token
         scan.getNext();
@@ -69,16 +268,40 @@ public class Parser
                 { // control token found, so determine the sub type for proper execution
                     // DECLARE, FLOW, END, defaults to error
                     case Token.DECLARE:
+                        if (bExec)
+                            InterpreterMetrics.statements[InterpreterMetrics.STMT_DECLARE].increment();
                         return declareStmt(bExec);
                     case Token.FLOW:
                         if (scan.currentToken.tokenStr.equals("if"))
+                        {
+                            if (bExec)
+                                InterpreterMetrics.statements[InterpreterMetrics.STMT_IF].increment();
                             return ifStmt(bExec);
+                        }
                         else if (scan.currentToken.tokenStr.equals("while"))
+                        {
+                            if (bExec)
+                                InterpreterMetrics.statements[InterpreterMetrics.STMT_WHILE].increment();
                             return whileStmt(bExec);
+                        }
                         else if (scan.currentToken.tokenStr.equals("for"))
+                        {
+                            if (bExec)
+                                InterpreterMetrics.statements[InterpreterMetrics.STMT_FOR].increment();
                             return forStmt(bExec);
+                        }
+                        else if (scan.currentToken.tokenStr.equals("parallel"))
+                        {
+                            if (bExec)
+                                InterpreterMetrics.statements[InterpreterMetrics.STMT_FOR].increment();
+                            return parallelForStmt(bExec);
+                        }
                         else if (scan.currentToken.tokenStr.equals("select"))
+                        {
+                            if (bExec)
+                                InterpreterMetrics.statements[InterpreterMetrics.STMT_SELECT].increment();
                             return selectStmt(bExec);
+                        }
                         break;
                     case Token.END:
                         // end token so return
@@ -91,13 +314,19 @@ public class Parser
                 }
                 break;
             case Token.OPERAND:
+                if (bExec)
+                    InterpreterMetrics.statements[InterpreterMetrics.STMT_ASSIGN].increment();
                 return assignStmt(bExec);
             case Token.FUNCTION:
+                if (bExec)
+                    InterpreterMetrics.statements[InterpreterMetrics.STMT_FUNCTION].increment();
                 return function(bExec);
             case Token.OPERATOR:
             case Token.SEPARATOR:
                 break;
             case Token.DEBUG:
+                if (bExec)
+                    InterpreterMetrics.statements[InterpreterMetrics.STMT_DEBUG].increment();
                 switch ( scan.getNext() )
                 {// debug token found, determine which to change
                     case "Token":
@@ -163,8 +392,53 @@ public class Parser
                                 error("ERROR: HAS TO BE EITHER 'on' OR 'off' ");
                         }
                         break;
+                    case "Hoist":
+                        scan.currentToken.primClassif = Token.DEBUG;
+
+                        switch (scan.getNext())
+                        {// are we turning on or off
+                            case "on":
+                                scan.currentToken.primClassif = Token.DEBUG;
+                                if (!scan.getNext().equals(";"))
+                                    error("MISSING ';' ");
+                                scan.bShowHoist = true;
+                                break;
+                            case "off":
+                                scan.currentToken.primClassif = Token.DEBUG;
+                                if (!scan.getNext().equals(";"))
+                                    error("MISSING ';'");
+                                scan.bShowHoist = false;
+                                break;
+                            default:
+                                error("ERROR: HAS TO BE EITHER 'on' OR 'off' ");
+                        }
+                        break;
+                    case "Profile":
+                        scan.currentToken.primClassif = Token.DEBUG;
+
+                        switch (scan.getNext())
+                        {// are we turning on or off
+                            case "on":
+                                scan.currentToken.primClassif = Token.DEBUG;
+                                if (!scan.getNext().equals(";"))
+                                    error("MISSING ';'");
+                                if (profiler == null)
+                                    profiler = new Profiler(scan.sourceFileNm);
+                                profiler.bEnabled = true;
+                                break;
+                            case "off":
+                                scan.currentToken.primClassif = Token.DEBUG;
+                                if (!scan.getNext().equals(";"))
+                                    error("MISSING ';'");
+                                if (profiler != null)
+                                    profiler.bEnabled = false;
+                                break;
+                            default:
+                                error("ERROR: HAS TO BE EITHER 'on' OR 'off' ");
+                        }
+                        break;
                     default:
-                        error("ERROR: HAS TO BE EITHER 'Expr', 'Assign', OR 'Token' " +
+                        error("ERROR: HAS TO BE EITHER 'Expr', 'Assign', 'Token', 'Hoist', OR 'Profile' " +
                                 "                       AND FOUND " + scan.currentToken.tokenStr);
                 }
                 break;
@@ -349,9 +623,8 @@ public class Parser
                                 , identifier.primClassif, dclType
                                 , ResultValue.fixedArray, 1, 1));
                         //create a random array that equals the length
-                        ArrayList<ResultValue> garbo = new ArrayList<>();
-                        for (int z = 0; z < length; z++)
-                            garbo.add(null);
+                        ElementList garbo = new ElementList();
+                        garbo.setSize(length);
                         //store in storagemanager
                         storageManager.putEntry(variableStr, new ResultArray(identifier.tokenStr,
                                 garbo, dclType, structure, 0, length, (length + 1) * -1));
@@ -367,9 +640,8 @@ public class Parser
                                 , identifier.primClassif, dclType
                                 , ResultValue.fixedArray, 1, 1));
                         //create a random array that equals the length
-                        ArrayList<ResultValue> garbo = new ArrayList<>();
-                        for (int z = 0; z < length; z++)
-                            garbo.add(null);
+                        ElementList garbo = new ElementList();
+                        garbo.setSize(length);
                         //put entry into storagemanager
                         storageManager.putEntry(variableStr, new ResultArray(identifier.tokenStr, garbo, dclType, structure, 0, length, (length+1)*-1));
 
@@ -656,16 +928,11 @@ public class Parser
                 resArray = new ResultArray(variableStr, expressionVals, type, ResultValue.fixedArray, --iAmt, declared, iAmt);
 
             //check for debug to be on
-            if (scan.bShowAssign) {
-                System.out.print("\t\t...Variable Name: " + variableStr + " Values:");
-                for (ResultValue z : resArray.array)
-                    System.out.print(" " + z.value);
-                System.out.println();
-            }
+            if (scan.bShowAssign)
+                traceAssignArray(variableStr, resArray);
 
             //fill with garbage to be able to assign
-            while (resArray.array.size() < declared)
-                resArray.array.add(null);
+            resArray.array.setSize(declared);
             //add into storage manager
             storageManager.putEntry(variableStr, resArray);
 
@@ -706,7 +973,7 @@ public class Parser
 
             try
             {
-                leftType = storageManager.getEntry(scan.currentToken.tokenStr).type;
+                leftType = storageManager.getTarget(scan.currentToken.tokenStr).type;
             }
             catch (Exception e)
             {
@@ -721,7 +988,7 @@ public class Parser
         variableStr = scan.currentToken.tokenStr;
 
         // pull storage manager entry of variable
-        res = storageManager.getEntry(variableStr);
+        res = storageManager.getTarget(variableStr);
 
         //if the reference is not in symbol table while executing
         if(res == null && bExec)
@@ -752,510 +1019,23 @@ public class Parser
                 else
                     iIndex2 = Integer.parseInt(Utilities.toInteger(this, expression(false)));
                 scan.getNext();
-
-            }
-            //advance from the right bracket to the operator
-            scan.getNext();
-            //turn on the flag that says we are assigning an index or slice
-            bIndex = true;
-        }
-
-        // make sure current token is an operator
-        if (scan.currentToken.primClassif != Token.OPERATOR)
-            error("ERROR: ASSIGN EXPECTED AN OPERATOR BUT FOUND %s", scan.currentToken.tokenStr);
-
-        // determine what kind of operation to execute
-        switch (scan.currentToken.tokenStr)
-        {
-            case "=":
-                //if executing
-                if (bExec)
-                {
-                    // check to see if array or not
-                    switch (res.structure)
-                    {
-                        case ResultValue.primitive:
-                            //not an array, so do basic assign
-                            ResultValue res1;
-                            if (bIndex == false)
-                            {
-                                res1 = assign(variableStr, expression(false), leftType);
-
-                                // TEMP
-                                if (scan.currentToken.primClassif != Token.OPERAND)
-                                    scan.getNext();
-                            }
-                            else
-                            {
-                                ResultValue newSubString = expression(false);
-                                String value = storageManager.getEntry(variableStr).value;
-
-                                if (iIndex == -1)
-                                {
-                                    iIndex = value.length() - 1;
-                                }
-                                if (iIndex > value.length() - 1)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                String newValue;
-                                //If assignment goes into string slice
-                                if(iIndex2 == 0)
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                //Do regular assignment
-                                else
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
-
-                                ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                res1 = assign(variableStr, finalString, leftType);
-
-                            }
-                            return res1;
-                        case ResultValue.unboundedArray:
-                        case ResultValue.fixedArray:
-                            // this means that more than one index is being changed, so change array
-                            if (bIndex == false)
-                                resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                            // this means only one index
-                            else
-                            {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                        //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-
-                                ResultValue indexVal = expression(false);
-                                resA = assignIndex(variableStr, leftType, iIndex, indexVal);
-                            }
-                            return resA;
-                        default:
-                            error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
-                    }
-                }
-                //not executing
-                else
-                    skipTo(scan.currentToken.tokenStr, ";");
-                break;
-            // see parsing part 2
-            case "+=":
-                //execute
-                if (bExec)
-                {
-                    // check to see if array or not
-                    switch (res.structure)
-                    {
-                        case ResultValue.primitive:
-                            //not an array, so do basic assign
-                            ResultValue res1;
-                            if (bIndex == false)
-                            {
-                                ResultValue resPlus = Utilities.add(this, res, expression(false));
-
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                                // TEMP
-                                if (scan.currentToken.primClassif != Token.OPERAND)
-                                    scan.getNext();
-                            }
-                            else
-                            {
-                                ResultValue newSubString = expression(false);
-                                String value = storageManager.getEntry(variableStr).value;
-
-                                if (iIndex == -1)
-                                {
-                                    iIndex = value.length() - 1;
-                                }
-                                if (iIndex > value.length() - 1)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                String newValue;
-                                //If assignment goes into string slice
-                                if(iIndex2 == 0)
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                    //Do regular assignment
-                                else
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
-
-                                ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                ResultValue resPlus = Utilities.add(this, res, finalString);
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                            }
-                            return res1;
-                        case ResultValue.unboundedArray:
-                        case ResultValue.fixedArray:
-                            // this means that more than one index is being changed, so change array
-                            if (bIndex == false)
-                                error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
-                                //resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                                // this means only one index
-                            else
-                            {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                            //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-                                ResultValue newIndexVal = expression(false);
-                                ResultValue oldIndexVal = ((ResultArray) res).array.get(iIndex);
-                                newIndexVal = Utilities.add(this, oldIndexVal, newIndexVal);
-                                resA = assignIndex(variableStr, leftType, iIndex, newIndexVal);
-                            }
-                            return resA;
-                        default:
-                            error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
-                    }
-                }
-                //not executing
-                else
-                    skipTo(scan.currentToken.tokenStr, ";");
-                break;
-            case "-=":
-                //execute
-                if (bExec)
-                {
-                    // check to see if array or not
-                    switch (res.structure)
-                    {
-                        case ResultValue.primitive:
-                            //not an array, so do basic assign
-                            ResultValue res1;
-                            if (bIndex == false)
-                            {
-                                ResultValue resPlus = Utilities.sub(this, res, expression(false));
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                                // TEMP
-                                if (scan.currentToken.primClassif != Token.OPERAND)
-                                    scan.getNext();
-                            }
-                            else
-                            {
-                                ResultValue newSubString = expression(false);
-                                String value = storageManager.getEntry(variableStr).value;
-
-                                if (iIndex == -1)
-                                {
-                                    iIndex = value.length() - 1;
-                                }
-                                if (iIndex > value.length() - 1)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                String newValue;
-                                //If assignment goes into string slice
-                                if(iIndex2 == 0)
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                    //Do regular assignment
-                                else
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
-
-                                ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                ResultValue resPlus = Utilities.sub(this, res, finalString);
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                            }
-                            return res1;
-                        case ResultValue.unboundedArray:
-                        case ResultValue.fixedArray:
-                            // this means that more than one index is being changed, so change array
-                            if (bIndex == false)
-                                error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
-                                //resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                                // this means only one index
-                            else
-                            {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                            //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-                                ResultValue newIndexVal = expression(false);
-                                ResultValue oldIndexVal = ((ResultArray) res).array.get(iIndex);
-                                newIndexVal = Utilities.sub(this, oldIndexVal, newIndexVal);
-                                resA = assignIndex(variableStr, leftType, iIndex, newIndexVal);
-                            }
-                            return resA;
-                        default:
-                            error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
-                    }
-                }
-                //not executing
-                else
-                    skipTo(scan.currentToken.tokenStr, ";");
-                break;
-            case "*=":
-                if (bExec)
-                {
-                    // check to see if array or not
-                    switch (res.structure)
-                    {
-                        case ResultValue.primitive:
-                            //not an array, so do basic assign
-                            ResultValue res1;
-                            if (bIndex == false)
-                            {
-                                ResultValue resPlus = Utilities.mul(this, res, expression(false));
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                                // TEMP
-                                if (scan.currentToken.primClassif != Token.OPERAND)
-                                    scan.getNext();
-                            }
-                            else
-                            {
-                                ResultValue newSubString = expression(false);
-                                String value = storageManager.getEntry(variableStr).value;
-
-                                if (iIndex == -1)
-                                {
-                                    iIndex = value.length() - 1;
-                                }
-                                if (iIndex > value.length() - 1)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                String newValue;
-                                //If assignment goes into string slice
-                                if(iIndex2 == 0)
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                    //Do regular assignment
-                                else
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
-
-                                ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                ResultValue resPlus = Utilities.mul(this, res, finalString);
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                            }
-                            return res1;
-                        case ResultValue.unboundedArray:
-                        case ResultValue.fixedArray:
-                            // this means that more than one index is being changed, so change array
-                            if (bIndex == false)
-                                error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
-                                //resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                                // this means only one index
-                            else
-                            {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                            //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-                                ResultValue newIndexVal = expression(false);
-                                ResultValue oldIndexVal = ((ResultArray) res).array.get(iIndex);
-                                newIndexVal = Utilities.mul(this, oldIndexVal, newIndexVal);
-                                resA = assignIndex(variableStr, leftType, iIndex, newIndexVal);
-                            }
-                            return resA;
-                        default:
-                            error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
-                    }
-                }
-                //not executing
-                else
-                    skipTo(scan.currentToken.tokenStr, ";");
-                break;
-            case "/=":
-                //execute
-                if (bExec)
-                {
-                    // check to see if array or not
-                    switch (res.structure)
-                    {
-                        case ResultValue.primitive:
-                            //not an array, so do basic assign
-                            ResultValue res1;
-                            if (bIndex == false)
-                            {
-                                ResultValue resPlus = Utilities.div(this, res, expression(false));
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                                // TEMP
-                                if (scan.currentToken.primClassif != Token.OPERAND)
-                                    scan.getNext();
-                            }
-                            else
-                            {
-                                ResultValue newSubString = expression(false);
-                                String value = storageManager.getEntry(variableStr).value;
-
-                                if (iIndex == -1)
-                                {
-                                    iIndex = value.length() - 1;
-                                }
-                                if (iIndex > value.length() - 1)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                String newValue;
-                                //If assignment goes into string slice
-                                if(iIndex2 == 0)
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                    //Do regular assignment
-                                else
-                                    newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
-
-                                ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                ResultValue resPlus = Utilities.div(this, res, finalString);
-                                res1 = assign(variableStr, resPlus, leftType);
-
-                            }
-                            return res1;
-                        case ResultValue.unboundedArray:
-                        case ResultValue.fixedArray:
-                            // this means that more than one index is being changed, so change array
-                            if (bIndex == false)
-                                error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
-                                //resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                                // this means only one index
-                            else
-                            {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                            //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-                                ResultValue newIndexVal = expression(false);
-                                ResultValue oldIndexVal = ((ResultArray) res).array.get(iIndex);
-                                newIndexVal = Utilities.div(this, oldIndexVal, newIndexVal);
-                                resA = assignIndex(variableStr, leftType, iIndex, newIndexVal);
-                            }
-                            return resA;
-                        default:
-                            error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
-                    }
-                }
-                //not executing
-                else
-                    skipTo(scan.currentToken.tokenStr, ";");
-                break;
-            case "^=":
-                //execute
+
+            }
+            //advance from the right bracket to the operator
+            scan.getNext();
+            //turn on the flag that says we are assigning an index or slice
+            bIndex = true;
+        }
+
+        // make sure current token is an operator
+        if (scan.currentToken.primClassif != Token.OPERATOR)
+            error("ERROR: ASSIGN EXPECTED AN OPERATOR BUT FOUND %s", scan.currentToken.tokenStr);
+
+        // determine what kind of operation to execute
+        switch (scan.currentToken.tokenStr)
+        {
+            case "=":
+                //if executing
                 if (bExec)
                 {
                     // check to see if array or not
@@ -1266,8 +1046,13 @@ public class Parser
                             ResultValue res1;
                             if (bIndex == false)
                             {
-                                ResultValue resPlus = Utilities.exp(this, res, expression(false));
-                                res1 = assign(variableStr, resPlus, leftType);
+                                // type TypeInference proved for the value, if any
+                                int iStaticType = scan.currentToken.iStaticType;
+                                if (leftType == Token.STRING && scan.nextToken.tokenStr.equals(variableStr)
+                                        && appendsToItself())
+                                    res1 = appendAssign(variableStr, res);
+                                else
+                                    res1 = assign(variableStr, expression(false), leftType, iStaticType);
 
                                 // TEMP
                                 if (scan.currentToken.primClassif != Token.OPERAND)
@@ -1285,17 +1070,28 @@ public class Parser
                                 if (iIndex > value.length() - 1)
                                     error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
 
+                                int iEnd = iIndex2 == 0 ? iIndex + 1 : iIndex2;
+                                if (leftType == Token.STRING && iIndex >= 0 && iIndex <= iEnd && iEnd <= value.length())
+                                {// replace the characters in place
+                                    res1 = ownString(variableStr, res);
+                                    res1.edit().replace(iIndex, iEnd, newSubString.value);
+                                    res1.terminatingStr = newSubString.terminatingStr;
+                                    storageManager.putEntry(variableStr, res1);
+                                    if (scan.bShowAssign)
+                                        traceAssign(variableStr, storageManager.getEntry(variableStr));
+                                    return res1;
+                                }
+
                                 String newValue;
                                 //If assignment goes into string slice
                                 if(iIndex2 == 0)
                                     newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
-                                    //Do regular assignment
+                                //Do regular assignment
                                 else
                                     newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
 
                                 ResultValue finalString = new ResultValue(newValue, Token.STRING);
-                                ResultValue resPlus = Utilities.exp(this, res, finalString);
-                                res1 = assign(variableStr, resPlus, leftType);
+                                res1 = assign(variableStr, finalString, leftType);
 
                             }
                             return res1;
@@ -1303,45 +1099,13 @@ public class Parser
                         case ResultValue.fixedArray:
                             // this means that more than one index is being changed, so change array
                             if (bIndex == false)
-                                error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
-                                //resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
-                                // this means only one index
+                                resA = assignArray(variableStr, leftType, ((ResultArray)res).iDeclaredLen);
+                            // this means only one index
                             else
                             {
-                                //check to see if index requested is in bounds
-                                if (res.structure != ResultValue.unboundedArray && iIndex >= ((ResultArray) res).iDeclaredLen)
-                                    error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
-
-                                //if index is negative
-                                if (iIndex < 0)
-                                {
-                                    //check to see if negative subscript is not valid
-                                    if (iIndex < ((ResultArray) res).iNegSub * -1) {
-                                        error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
-                                                , iIndex, ((ResultArray) res).iNegSub * -1);
-                                    }
-                                    //subscript is in bounds
-                                    else
-                                    {
-                                        //fixed array
-                                        if (((ResultArray) res).iDeclaredLen != -1)
-                                            //add declared length in order to get positive subscript
-                                            iIndex += ((ResultArray) res).iDeclaredLen;
-                                            //unbounded
-                                        else
-                                            //add populated length to get positive subscript
-                                            iIndex += ((ResultArray) res).iPopulatedLen;
-                                    }
-                                }
-                                //unbounded
-                                if (((ResultArray) res).iDeclaredLen == -1)
-                                    //while the index is greater than the size, add garbage
-                                    while (iIndex >= ((ResultArray) res).array.size())
-                                        ((ResultArray) res).array.add(null);
-                                ResultValue newIndexVal = expression(false);
-                                ResultValue oldIndexVal = ((ResultArray) res).array.get(iIndex);
-                                newIndexVal = Utilities.exp(this, oldIndexVal, newIndexVal);
-                                resA = assignIndex(variableStr, leftType, iIndex, newIndexVal);
+                                iIndex = subscript((ResultArray) res, iIndex);
+                                ResultValue indexVal = expression(false);
+                                resA = assignIndex(variableStr, leftType, iIndex, indexVal);
                             }
                             return resA;
                         default:
@@ -1352,6 +1116,19 @@ public class Parser
                 else
                     skipTo(scan.currentToken.tokenStr, ";");
                 break;
+            // see parsing part 2
+            case "+=":
+            case "-=":
+            case "*=":
+            case "/=":
+            case "^=":
+                //execute
+                if (bExec)
+                    return compoundAssign(variableStr, res, leftType, bIndex, iIndex, iIndex2);
+                //not executing
+                else
+                    skipTo(scan.currentToken.tokenStr, ";");
+                break;
             default:
                 error("ERROR: EXPECTED ASSIGNMENT OPERATOR BUT FOUND %s", scan.currentToken.tokenStr);
         }
@@ -1360,6 +1137,299 @@ public class Parser
                 , scan.currentToken.tokenStr);
     }
 
+    /**
+     * This method executes a compound assignment, +=, -=, *=, /= or ^=, to a variable, one of
+     * its characters or one of its elements.
+     * <p>
+     * An Int or Float variable or element combined with an Int or Float value is computed on int
+     * or double and written back to its slot, see updateInPlace and updateElement. Anything else
+     * goes through the Utilities operator and assign as before.
+     * <p>
+     * Assumes the current token is the operator.
+     *
+     * @param variableStr name of the variable assigned
+     * @param res the variable's ResultValue
+     * @param leftType declared type of the variable
+     * @param bIndex true if a character or element is assigned
+     * @param iIndex subscript of the character or element, or start of the slice
+     * @param iIndex2 end of the slice, 0 if not a slice
+     * @return ResultValue object that contains the final result of execution
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue compoundAssign(String variableStr, ResultValue res, int leftType, boolean bIndex
+            , int iIndex, int iIndex2) throws Exception
+    {
+        char operator = scan.currentToken.tokenStr.charAt(0);
+        // getTarget left any appended text in the buffer, and the operator reads the value
+        res.flush();
+
+        // check to see if array or not
+        switch (res.structure)
+        {
+            case ResultValue.primitive:
+                //not an array, so do basic assign
+                ResultValue res1;
+                if (bIndex == false)
+                {
+                    ResultValue operand = expression(false);
+                    res1 = updateInPlace(variableStr, res, leftType, operator, operand);
+                    if (res1 == null)
+                        res1 = assign(variableStr, operate(operator, res, operand), leftType);
+
+                    // TEMP
+                    if (scan.currentToken.primClassif != Token.OPERAND)
+                        scan.getNext();
+                }
+                else
+                {
+                    ResultValue newSubString = expression(false);
+                    String value = storageManager.getEntry(variableStr).value;
+
+                    if (iIndex == -1)
+                    {
+                        iIndex = value.length() - 1;
+                    }
+                    if (iIndex > value.length() - 1)
+                        error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
+
+                    String newValue;
+                    //If assignment goes into string slice
+                    if(iIndex2 == 0)
+                        newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex + 1);
+                        //Do regular assignment
+                    else
+                        newValue = value.substring(0, iIndex) + newSubString.value + value.substring(iIndex2, value.length());
+
+                    ResultValue finalString = new ResultValue(newValue, Token.STRING);
+                    res1 = assign(variableStr, operate(operator, res, finalString), leftType);
+                }
+                return res1;
+            case ResultValue.unboundedArray:
+            case ResultValue.fixedArray:
+                // this means that more than one index is being changed, so change array
+                if (bIndex == false)
+                    error("ERROR: CANNOT PREFORM THIS OPERATION ON ARRAY");
+                ResultArray resA = (ResultArray) res;
+                iIndex = subscript(resA, iIndex);
+                ResultValue operand = expression(false);
+                ResultValue oldIndexVal = resA.array.get(iIndex);
+                if (updateElement(variableStr, resA, leftType, iIndex, operator, operand))
+                    return resA;
+                return assignIndex(variableStr, leftType, iIndex, operate(operator, oldIndexVal, operand));
+            default:
+                error("ERROR: STRUCTURE TYPE '%d' IS NOT ALLOWED ON '%s'", res.structure, res.value);
+        }
+        return null;
+    }
+
+    /**
+     * Applies the operator of a compound assignment with the Utilities operators.
+     */
+    private ResultValue operate(char operator, ResultValue firstOp, ResultValue secondOp) throws Exception
+    {
+        switch (operator)
+        {
+            case '+':
+                return Utilities.add(this, firstOp, secondOp);
+            case '-':
+                return Utilities.sub(this, firstOp, secondOp);
+            case '*':
+                return Utilities.mul(this, firstOp, secondOp);
+            case '/':
+                return Utilities.div(this, firstOp, secondOp);
+            default:
+                return Utilities.exp(this, firstOp, secondOp);
+        }
+    }
+
+    /**
+     * This method does a compound assignment to an Int or Float variable by writing the new value
+     * into the variable's ResultValue, without the Utilities operator, a new ResultValue or the
+     * coercion of assign.
+     * <p>
+     * The first update clones the ResultValue, since another variable may hold the same one,
+     * and marks the clone bOwned. It stays marked until StorageManager.getEntry hands it out,
+     * so a loop of count += 1 with no other reads of count updates one object.
+     *
+     * @param variableStr name of the variable
+     * @param res the variable's ResultValue
+     * @param leftType declared type of the variable
+     * @param operator first character of the operator
+     * @param operand value of the right side
+     * @return the updated ResultValue, or null if the types need the Utilities operator
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue updateInPlace(String variableStr, ResultValue res, int leftType, char operator
+            , ResultValue operand) throws Exception
+    {
+        String value = arith(operator, res, leftType, operand);
+        if (value == null)
+            return null;
+
+        if (! res.bOwned)
+        {
+            res = res.clone();
+            res.bOwned = true;
+            storageManager.putEntry(variableStr, res);
+        }
+        res.value = value;
+        // statements() looks at it, as it would at the result of assign
+        res.terminatingStr = ";";
+
+        // check for debug on
+        if (scan.bShowAssign)
+            traceAssign(variableStr, res);
+        return res;
+    }
+
+    /**
+     * This method does a compound assignment to a populated Int or Float element by storing the
+     * new element in its slot, as assignIndex does, without the copy and ResultArray assignIndex
+     * makes.
+     *
+     * @param variableStr name of the array
+     * @param resA the array
+     * @param leftType declared type of the array
+     * @param iIndex subscript of the element
+     * @param operator first character of the operator
+     * @param operand value of the right side
+     * @return true if the element was updated, false if the types need the Utilities operator
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private boolean updateElement(String variableStr, ResultArray resA, int leftType, int iIndex
+            , char operator, ResultValue operand) throws Exception
+    {
+        ResultValue oldIndexVal = resA.array.get(iIndex);
+        if (oldIndexVal == null || scan.nextToken.primClassif != Token.SEPARATOR)
+            return false;
+        String value = arith(operator, oldIndexVal, leftType, operand);
+        if (value == null)
+            return false;
+        if (!scan.nextToken.tokenStr.equals(";"))
+            error("ERROR: MISSING ';' TERMINATOR");
+
+        ResultValue resExpr = new ResultValue(value, leftType);
+        resA.array.set(iIndex, resExpr);
+        // what the ResultArray assignIndex stores would have
+        resA.iPopulatedLen = resA.array.populated();
+        resA.iNegSub = resA.iDeclaredLen + 1;
+        resA.iSortOrder = 0;
+
+        //check if debugger is on
+        if (scan.bShowAssign)
+            traceAssignIndex(variableStr, iIndex, resExpr);
+        return true;
+    }
+
+    /**
+     * Computes an Int or Float compound assignment on int or double, with the coercions of the
+     * Utilities operators.
+     *
+     * @param operator first character of the operator
+     * @param target current value of the variable or element
+     * @param leftType declared type of the variable or array
+     * @param operand value of the right side
+     * @return the new value, or null unless target has type leftType, which is Int or Float, and
+     * operand is an Int or Float that parses as an int or double
+     */
+    private static String arith(char operator, ResultValue target, int leftType, ResultValue operand)
+    {
+        if (target.type != leftType || operand.structure != ResultValue.primitive
+                || (operand.type != Token.INTEGER && operand.type != Token.FLOAT))
+            return null;
+        try
+        {
+            switch (leftType)
+            {
+                case Token.INTEGER:
+                {// a Float operand is truncated as Utilities.toInteger does
+                    int x = Integer.parseInt(target.value);
+                    int y = operand.type == Token.INTEGER ? Integer.parseInt(operand.value)
+                            : (int) Double.parseDouble(operand.value);
+                    switch (operator)
+                    {
+                        case '+':
+                            return String.valueOf(x + y);
+                        case '-':
+                            return String.valueOf(x - y);
+                        case '*':
+                            return String.valueOf(x * y);
+                        case '/':
+                            return String.valueOf(x / y);
+                        default:
+                            return String.valueOf((int) Math.pow(x, y));
+                    }
+                }
+                case Token.FLOAT:
+                {
+                    double x = Double.parseDouble(target.value);
+                    double y = Double.parseDouble(operand.value);
+                    switch (operator)
+                    {
+                        case '+':
+                            return String.valueOf(x + y);
+                        case '-':
+                            return String.valueOf(x - y);
+                        case '*':
+                            return String.valueOf(x * y);
+                        case '/':
+                            return String.valueOf(x / y);
+                        default:
+                            return String.valueOf(Math.pow(x, y));
+                    }
+                }
+                default:
+                    return null;
+            }
+        }
+        catch (NumberFormatException e)
+        {// an Int past the range of int, let the Utilities coercions handle it
+            return null;
+        }
+    }
+
+    /**
+     * Returns the position in an array of a subscript being assigned, after checking it is in
+     * bounds, counting a negative subscript from the end, and growing an unbounded array to it.
+     *
+     * @param resA the array
+     * @param iIndex the subscript
+     * @return the position of the element
+     * @throws Exception if the subscript is out of bounds
+     */
+    private int subscript(ResultArray resA, int iIndex) throws Exception
+    {
+        //check to see if index requested is in bounds
+        if (resA.structure != ResultValue.unboundedArray && iIndex >= resA.iDeclaredLen)
+            error("ERROR: '%d' IS OUT OF BOUNDS", iIndex);
+
+        //if index is negative
+        if (iIndex < 0)
+        {
+            //check to see if negative subscript is not valid
+            if (iIndex < resA.iNegSub * -1) {
+                error("ERROR: CANNOT ACCESS INDEX '%d', MAX NEGATIVE SUBSCRIPT IS '%d'"
+                        , iIndex, resA.iNegSub * -1);
+            }
+            //subscript is in bounds
+            else
+            {
+                //fixed array
+                if (resA.iDeclaredLen != -1)
+                    //add declared length in order to get positive subscript
+                    iIndex += resA.iDeclaredLen;
+                //unbounded
+                else
+                    //add populated length to get positive subscript
+                    iIndex += resA.iPopulatedLen;
+            }
+        }
+        //unbounded
+        if (resA.iDeclaredLen == -1)
+            growArray(resA, iIndex);
+        return iIndex;
+    }
+
     /**
      * This method will assign the ResultValue object returned by expr() to the
      * variable string specified. The variable string will be the key.
@@ -1374,40 +1444,145 @@ public class Parser
      */
     private ResultValue assign(String variableStr, ResultValue resExpr, int type) throws Exception
     {
-        switch (type)
-        {// determine the type of value to assign to variable
-            case Token.INTEGER:
-                resExpr.value = Utilities.toInteger(this, resExpr);
-                resExpr.type = Token.INTEGER;
-                break;
-            case Token.FLOAT:
-                resExpr.value = Utilities.toFloat(this, resExpr);
-                resExpr.type = Token.FLOAT;
-                break;
-            case Token.BOOLEAN:
-                resExpr.value = Utilities.toBoolean(this, resExpr);
-                resExpr.type = Token.BOOLEAN;
-                break;
-            case Token.STRING:
-                resExpr.type = Token.STRING;
-                break;
-            case Token.DATE:
-                resExpr.value = Utilities.toDate(this, resExpr);
-                resExpr.type = Token.DATE;
-                break;
-            default:
-                error("ERROR: ASSIGN TYPE '%s' IS NOT A RECOGNIZED TYPE", variableStr);
-        }
+        return assign(variableStr, resExpr, type, 0);
+    }
+
+    /**
+     * This method assigns a value like assign(variableStr, resExpr, type), skipping the coercion
+     * when TypeInference proved the value already has the type in coerced form.
+     *
+     * @param variableStr contains the string of the variable we are assigning a value to
+     * @param resExpr ResultValue object that contains the value of the expression
+     * @param type Token type which we will be assigning
+     * @param iStaticType type TypeInference proved for the value, 0 if unknown
+     * @return ResultValue object that contains the final result of execution
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue assign(String variableStr, ResultValue resExpr, int type, int iStaticType) throws Exception
+    {
+        // a String with an edit buffer belongs to its variable, so store a copy of it
+        if (resExpr.buffer != null)
+            resExpr = resExpr.clone();
+
+        // the coercion is skipped only if the value really has the proven type
+        if (iStaticType != type || resExpr.type != type)
+            switch (type)
+            {// determine the type of value to assign to variable
+                case Token.INTEGER:
+                    resExpr.value = Utilities.toInteger(this, resExpr);
+                    resExpr.type = Token.INTEGER;
+                    break;
+                case Token.FLOAT:
+                    resExpr.value = Utilities.toFloat(this, resExpr);
+                    resExpr.type = Token.FLOAT;
+                    break;
+                case Token.BOOLEAN:
+                    resExpr.value = Utilities.toBoolean(this, resExpr);
+                    resExpr.type = Token.BOOLEAN;
+                    break;
+                case Token.STRING:
+                    resExpr.type = Token.STRING;
+                    break;
+                case Token.DATE:
+                    resExpr.value = Utilities.toDate(this, resExpr);
+                    resExpr.type = Token.DATE;
+                    break;
+                default:
+                    error("ERROR: ASSIGN TYPE '%s' IS NOT A RECOGNIZED TYPE", variableStr);
+            }
+
         // assign value to the variable and return result value
         storageManager.putEntry(variableStr, resExpr);
 
         // check for debug on
         if(scan.bShowAssign)
-            System.out.println("\t\t...Variable Name: " + variableStr + " Value: " + resExpr.value);
+            traceAssign(variableStr, resExpr);
 
         return resExpr;
     }
 
+    /**
+     * Tells whether the assignment at the current '=' has the form s = s # expr, where the
+     * concatenation with s is the last operation, so its value is s with expr appended.
+     * <p>
+     * Assumes the current token is '=' and the next one is the variable assigned, and leaves the
+     * scanner there.
+     *
+     * @return true if the value can be appended to the variable
+     * @throws Exception
+     */
+    private boolean appendsToItself() throws Exception
+    {
+        Token assignToken = scan.currentToken;
+        scan.getNext();
+        Token concatToken = scan.nextToken;
+        boolean bAppend = concatToken.tokenStr.equals("#");
+        int iDepth = 0;
+        while (bAppend && !scan.nextToken.tokenStr.equals(";") && scan.nextToken.primClassif != Token.EOF)
+        {
+            scan.getNext();
+            Token token = scan.currentToken;
+            if (token.tokenStr.equals("(") || token.tokenStr.equals("["))
+                iDepth++;
+            else if (token.tokenStr.equals(")") || token.tokenStr.equals("]"))
+                iDepth--;
+            else if (iDepth == 0 && token != concatToken && token.primClassif == Token.OPERATOR
+                    && !token.tokenStr.equals("#")
+                    && getPrecedence(token, false) >= getPrecedence(concatToken, false))
+                // s # a < b compares s # a to b
+                bAppend = false;
+        }
+        scan.setTo(assignToken);
+        return bAppend;
+    }
+
+    /**
+     * This method assigns s = s # expr by appending expr to the buffer of s, so building a
+     * string a piece at a time does not copy it for every piece.
+     * <p>
+     * Assumes appendsToItself() is true for the current '='.
+     *
+     * @param variableStr name of the String variable
+     * @param target      the variable's ResultValue
+     * @return ResultValue object of the variable
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue appendAssign(String variableStr, ResultValue target) throws Exception
+    {
+        // skip the variable to the '#', expression starts after it
+        scan.getNext();
+        scan.getNext();
+        ResultValue piece = expression(false);
+
+        ResultValue res = ownString(variableStr, target);
+        res.edit().append(piece.value);
+        res.terminatingStr = piece.terminatingStr;
+        storageManager.putEntry(variableStr, res);
+
+        if (scan.bShowAssign)
+            traceAssign(variableStr, storageManager.getEntry(variableStr));
+        return res;
+    }
+
+    /**
+     * Returns the ResultValue of a String variable for editing in place. The first edit stores a
+     * copy, since another variable assigned from this one may hold the same ResultValue.
+     *
+     * @param variableStr name of the String variable
+     * @param target      the variable's ResultValue
+     * @return a ResultValue that only this variable holds
+     * @throws CloneNotSupportedException never, ResultValue is Cloneable
+     */
+    private ResultValue ownString(String variableStr, ResultValue target) throws CloneNotSupportedException
+    {
+        if (target.buffer != null)
+            return target;
+        ResultValue res = target.clone();
+        res.type = Token.STRING;
+        storageManager.putEntry(variableStr, res);
+        return res;
+    }
+
     /**
      * This method will assign the ResultValue objects returned by expression() to the
      * variable specified in order to add it to the StorageManager. The variable string will be the key.
@@ -1428,7 +1603,9 @@ public class Parser
         //the populated length
         int len = 1;
         //this is for operands (aka scalar assignment with variables and constants) and array to array assignment
-        if (scan.nextToken.primClassif == Token.OPERAND)
+        //an element-wise expression may also start with a unary minus or a parenthesis
+        if (scan.nextToken.primClassif == Token.OPERAND
+         || scan.nextToken.tokenStr.equals("-") || scan.nextToken.tokenStr.equals("("))
         {
             //iterate through for loop
             int i;
@@ -1505,13 +1682,8 @@ public class Parser
                     resArray = new ResultArray(variableStr, array1.array, type, ResultValue.fixedArray, len, declared, len);
 
                 //check if debugger is on
-                if(scan.bShowAssign)
-                {
-                    System.out.print("\t\t...Variable Name: " + variableStr + " Values:");
-                    for(ResultValue z : resArray.array)
-                        System.out.print(" " + z.value);
-                    System.out.println();
-                }
+                if (scan.bShowAssign)
+                    traceAssignArray(variableStr, resArray);
                 //add into storage manager
                 storageManager.putEntry(variableStr, resArray);
 
@@ -1548,7 +1720,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1569,7 +1741,7 @@ public class Parser
                             {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1590,7 +1762,7 @@ public class Parser
                             {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1610,7 +1782,7 @@ public class Parser
                             {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1631,7 +1803,7 @@ public class Parser
                             {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1643,11 +1815,8 @@ public class Parser
                             error("ERROR: ASSIGN TYPE '%s' IS NOT A RECOGNIZED TYPE", variableStr);
                     }
                 }
-                //go through the arraylist to count which ones are populated
-                for(ResultValue res : array1.array)
-                    //if not null, increment length
-                    if(res!=null)
-                        len++;
+                //count which ones are populated
+                len += array1.array.populated();
                 //if next token is not ';', then an error
                 if (!scan.nextToken.tokenStr.equals(";"))
                     error("ERROR: CAN ONLY HAVE ONE ARGUMENT WHEN USING ARRAY TO ARRAY ASSIGNMENT");
@@ -1660,13 +1829,8 @@ public class Parser
                     resArray = new ResultArray(variableStr, array1.array, type, ResultValue.fixedArray, len, declared, len);
 
                 //check if debugger is on
-                if(scan.bShowAssign)
-                {
-                    System.out.print("\t\t...Variable Name: " + variableStr + " Values:");
-                    for(ResultValue z : resArray.array)
-                        System.out.print(" " + z.value);
-                    System.out.println();
-                }
+                if (scan.bShowAssign)
+                    traceAssignArray(variableStr, resArray);
 
                 //add into storagemanager
                 storageManager.putEntry(variableStr, resArray);
@@ -1764,8 +1928,7 @@ public class Parser
                 }
                 //check if debugger is on
                 if (scan.bShowAssign)
-                    System.out.println("\t\t...Variable Name: " + variableStr
-                            + " Index: " + index + " Value: " + resExpr.value);
+                    traceAssignIndex(variableStr, index, resExpr);
             }
             //splice
             else if (value2.structure == ResultValue.fixedArray && value2.value.equals("Splice")) {
@@ -1800,7 +1963,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1830,7 +1993,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1860,7 +2023,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1889,7 +2052,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1919,7 +2082,7 @@ public class Parser
                             else {
                                 //if null, declare
                                 if (array1.array == null)
-                                    array1.array = new ArrayList<>();
+                                    array1.array = new ElementList();
                                 //if the array list corresponding to unbounded array is smaller than index, add null
                                 if (array1.array.size() <= i)
                                     array1.array.add(i, null);
@@ -1937,11 +2100,8 @@ public class Parser
                     }
                 }
 
-                //go through the arraylist to count which ones are populated
-                for (ResultValue res : array1.array)
-                    //if not null, increment length
-                    if (res != null)
-                        len++;
+                //count which ones are populated
+                len += array1.array.populated();
                 //if next token is not ';', then an error
                 if (!scan.nextToken.tokenStr.equals(";"))
                     error("ERROR: CAN ONLY HAVE ONE ARGUMENT WHEN USING ARRAY TO ARRAY ASSIGNMENT");
@@ -1954,12 +2114,8 @@ public class Parser
                     resArray = new ResultArray(variableStr, array1.array, type, ResultValue.fixedArray, len, array1.iDeclaredLen, len);
 
                 //check if debugger is on
-                if (scan.bShowAssign) {
-                    System.out.print("\t\t...Variable Name: " + variableStr + " Values:");
-                    for (ResultValue z : resArray.array)
-                        System.out.print(" " + z.value);
-                    System.out.println();
-                }
+                if (scan.bShowAssign)
+                    traceAssignArray(variableStr, resArray);
 
                 //add into storagemanager
                 storageManager.putEntry(variableStr, resArray);
@@ -1971,10 +2127,7 @@ public class Parser
                 error("ERROR: CANNOT ASSIGN STRUCTURE '%d' INTO AN INDEX", value2.structure);
             }
             //count populated values
-            for (ResultValue res : array1.array)
-                //increment length if not null
-                if (res != null)
-                    iLen++;
+            iLen = array1.array.populated();
             /*create ResultArray to return*/
             //unbound
             if (array1.iDeclaredLen == -1)
@@ -2010,12 +2163,19 @@ public class Parser
      */
     public ResultValue expression(Boolean infunc) throws Exception
     {
-        Stack outPutStack = new Stack<ResultValue>();         // Stack for Result values
-        Stack stack = new Stack<Token>();                     // Stack for operator tokens
+        Stack<ResultValue> outPutStack = new Stack<ResultValue>();  // Stack for Result values
+        Stack<Token> stack = new Stack<Token>();              // Stack for operator tokens
         Token poppedOperator;                                 // Operator and operand tokens
         ResultValue firstResValue, secondResValue, res;       // Result value for operands and final result
         Boolean bFound;                                       // Boolean to determine if we found left paren
         Boolean bCategory = false;                            // Boolean to check proper infix notation
+        boolean bArg = bArgument;                             // a ')' with no '(' ends the expression
+        int iOpen = 0;                                        // '(' and functions not yet closed
+
+        Token stopToken = hoistStop;                          // last token of a hoisted operand being evaluated
+        bArgument = false;
+        hoistStop = null;
+        InterpreterMetrics.expressionsEvaluated.increment();
 
         //DELETE THIS
         //System.out.println(scan.currentToken.tokenStr + " Token going into Expression");
@@ -2027,14 +2187,26 @@ public class Parser
                 && (scan.currentToken.tokenStr.equals("print") || scan.currentToken.tokenStr.startsWith("date")))
             scan.getNext();
 
-        // Advance to start of expression.
-        if(scan.currentToken.primClassif != Token.FUNCTION
-                || scan.currentToken.tokenStr.equals("print")
-                || scan.currentToken.tokenStr.startsWith("date"))
+        // control token used to check for unary minus, and return at desired token.
+        Token prevToken;
+
+        if (stopToken == null && scan.currentToken.hoistLast != null && !scan.bShowExpr)
+        {// the operand at the start does not change while the loop runs
+            outPutStack.push(hoistedOperand());
+            bCategory = true;
+            prevToken = scan.currentToken;
             scan.getNext();
+        }
+        else
+        {
+            // Advance to start of expression.
+            if(scan.currentToken.primClassif != Token.FUNCTION
+                    || scan.currentToken.tokenStr.equals("print")
+                    || scan.currentToken.tokenStr.startsWith("date"))
+                scan.getNext();
 
-        // control token used to check for unary minus, and return at desired token.
-        Token prevToken = scan.currentToken;
+            prevToken = scan.currentToken;
+        }
 
         //DELETE THIS
         //System.out.println(scan.currentToken.tokenStr + " Token before  Expression WHILE");
@@ -2048,6 +2220,10 @@ public class Parser
            || scan.currentToken.primClassif == Token.FUNCTION   // check for functions
            || "()".contains(scan.currentToken.tokenStr))        // check if its separator
         {
+            if (bArg && iOpen == 0 && scan.currentToken.tokenStr.equals(")"))
+                // closing paren of the function call this argument is in
+                break;
+
             if(scan.currentToken.primClassif == Token.EOF)
                 error("ERROR: MISSING SEPARATOR");
 
@@ -2138,28 +2314,28 @@ public class Parser
                             {
                                 // check precedence
                                 if(getPrecedence(scan.currentToken, false)
-                                 < getPrecedence((Token)stack.peek(), true))
+                                 < getPrecedence(stack.peek(), true))
                                     // precedence of current operator is higher, break
                                     break;
                                 else if(!stack.empty())
                                 {   // stack is not empty and precedence is right, evaluate
 
                                     // pop operator and operands
-                                    poppedOperator = (Token)stack.pop();
-                                    firstResValue = (ResultValue) outPutStack.pop();
+                                    poppedOperator = stack.pop();
+                                    firstResValue = outPutStack.pop();
 
                                     if (poppedOperator.tokenStr.equals("u-"))
                                         // we have unary minus so we only need one operand
                                         res = (evaluate(new ResultValue("-1", Token.INTEGER)
                                                 , firstResValue, "*"));
                                     else if (poppedOperator.tokenStr.equals("not"))
-                                        res = (evaluate(null, (ResultValue) outPutStack.pop()
+                                        res = (evaluate(null, outPutStack.pop()
                                                 , poppedOperator.tokenStr));
 
                                     else
                                     {
-                                        secondResValue = (ResultValue) outPutStack.pop();
-                                        res = evaluate(secondResValue, firstResValue, poppedOperator.tokenStr);
+                                        secondResValue = outPutStack.pop();
+                                        res = binaryOp(poppedOperator, secondResValue, firstResValue);
                                     }
                                     // push value back to top of output stack
                                     outPutStack.push(res);
@@ -2171,6 +2347,12 @@ public class Parser
                     }
                     // we are now expecting an operand
                     bCategory = false;
+
+                    if (stopToken == null && scan.currentToken.hoistLast != null && !scan.bShowExpr)
+                    {// the operand after the operator does not change while the loop runs
+                        outPutStack.push(hoistedOperand());
+                        bCategory = true;
+                    }
                     break;
 
 
@@ -2190,8 +2372,16 @@ public class Parser
                         bCategory = true;
                         break;
                     }
+                    // BSEARCH has two arguments
+                    if(scan.currentToken.tokenStr.equals("BSEARCH"))
+                    {
+                        outPutStack.push(bsearch());
+                        bCategory = true;
+                        break;
+                    }
 
                     stack.push(scan.currentToken);
+                    iOpen++;
                     if(scan.nextToken.tokenStr.equals("("))
                         scan.getNext();
                     else
@@ -2205,6 +2395,7 @@ public class Parser
 
                         case "(":
                             stack.push(scan.currentToken);
+                            iOpen++;
                             break;
                         case ")":
                             //Check if this is the last ")" in the function call
@@ -2213,7 +2404,7 @@ public class Parser
 
                             //DELETE THIS IF WE REMOVE DATES
                             //if(infunc && stack.isEmpty())
-                            //    return (ResultValue) outPutStack.pop();
+                            //    return outPutStack.pop();
                                 //break;
 
                             // right parenthesis found, set flag false until we find matching left paren
@@ -2222,16 +2413,17 @@ public class Parser
                             // loop through stack until matching left paren is found
                             while (!stack.empty())
                             {// stack is not empty and left paren not found, pop top of stack
-                                poppedOperator = (Token)stack.pop();
+                                poppedOperator = stack.pop();
                                 //Handle functions in stack. This only works with single parameter funcs
                                 if (poppedOperator.tokenStr.equals("(")
                                  || poppedOperator.primClassif == Token.FUNCTION)
                                 {   // left paren found, set flag to true, check for func delimiter, and break
                                     bFound = true;
+                                    iOpen--;
                                     //Check for function, and get result value
                                     if(poppedOperator.primClassif == Token.FUNCTION)
                                     {
-                                        ResultValue temp = (ResultValue) outPutStack.pop();
+                                        ResultValue temp = outPutStack.pop();
                                         outPutStack.push(builtInFuncs(poppedOperator, temp));
                                     }
                                     // not in a function and left paren found, leave while loop
@@ -2241,19 +2433,19 @@ public class Parser
                                 else if (poppedOperator.tokenStr.equals("u-"))
                                     // we have unary minus, apply it to operand
                                     outPutStack.push(evaluate(new ResultValue("-1", Token.INTEGER)
-                                            , (ResultValue) outPutStack.pop(), "*"));
+                                            , outPutStack.pop(), "*"));
                                 else if (poppedOperator.tokenStr.equals("not"))
-                                    outPutStack.push(evaluate(null, (ResultValue) outPutStack.pop()
+                                    outPutStack.push(evaluate(null, outPutStack.pop()
                                             , "not"));
 
                                 else
                                 {// not a left paren, work with stack
                                     // get the first two operands for our operator
-                                    firstResValue = (ResultValue)outPutStack.pop();
-                                    secondResValue = (ResultValue)outPutStack.pop();
+                                    firstResValue = outPutStack.pop();
+                                    secondResValue = outPutStack.pop();
 
                                     // evaluate and push result back to stack
-                                    res = evaluate(secondResValue, firstResValue, poppedOperator.tokenStr);
+                                    res = binaryOp(poppedOperator, secondResValue, firstResValue);
                                     outPutStack.push(res);
                                 }
                             }
@@ -2272,6 +2464,10 @@ public class Parser
             }
             // set previous token to the current token
             prevToken = scan.currentToken;
+            if (stopToken != null && prevToken.iSourceLineNr == stopToken.iSourceLineNr
+                    && prevToken.iColPos == stopToken.iColPos)
+                // end of the hoisted operand
+                break;
             scan.getNext();
         }
 
@@ -2280,7 +2476,7 @@ public class Parser
         // this should get the last result value
         while(!stack.empty())
         {
-            poppedOperator = (Token)stack.pop();
+            poppedOperator = stack.pop();
             if (poppedOperator.tokenStr.equals("(")) {
                 // unmatched left parentesis
                 error("ERROR: UNMATCHED RIGHT PARENTHESIS FOR EXPRESSION");
@@ -2288,31 +2484,31 @@ public class Parser
             else if (poppedOperator.tokenStr.equals("u-"))
                 // we have unary minus
                 outPutStack.push(evaluate(new ResultValue("-1", Token.INTEGER)
-                                            , (ResultValue) outPutStack.pop(), "*"));
+                                            , outPutStack.pop(), "*"));
             else if (poppedOperator.tokenStr.equals("not"))
-                outPutStack.push(evaluate(null, (ResultValue) outPutStack.pop()
+                outPutStack.push(evaluate(null, outPutStack.pop()
                                                                     , poppedOperator.tokenStr));
             else
             {   // evaluate normally
                 //Catch missing clsoing paren for func call
                 if(poppedOperator.primClassif == Token.FUNCTION)
                     error("ERROR: FUNCTION '%s' MISSING CLOSING ')'", poppedOperator.tokenStr);
-                ResultValue resvalue = (ResultValue) outPutStack.pop();
+                ResultValue resvalue = outPutStack.pop();
                 //Check for missing operand.
                 if(outPutStack.isEmpty())
                     error("ERROR: EXPECTED OPERAND");
-                ResultValue res2value = (ResultValue) outPutStack.pop();
-                outPutStack.push(evaluate(res2value, resvalue, poppedOperator.tokenStr));
+                ResultValue res2value = outPutStack.pop();
+                outPutStack.push(binaryOp(poppedOperator, res2value, resvalue));
             }
         }
 
         // final value
-            res = (ResultValue) outPutStack.pop();
+            res = outPutStack.pop();
 
 
             if (scan.bShowExpr)
                 // debug Expr on
-                System.out.println("\t\t...Result Value: " + res.value);
+                traceExpr(res);
 
             scan.setTo(prevToken);
             res.terminatingStr = scan.nextToken.tokenStr;
@@ -2325,7 +2521,32 @@ public class Parser
 
     }
 
-
+
+    /**
+     * This method evaluates an operator popped from the expression stack.
+     * <p>
+     * If TypeInference found the type of both operands, the arithmetic is done without the type
+     * dispatch of evaluate() as long as the operands really have that type.
+     *
+     * @param operator operator token, whose iStaticType is the inferred type or 0
+     * @param firstResValue first operand
+     * @param secondResValue second operand
+     * @return Result value of operation
+     * @throws Exception
+     */
+    private ResultValue binaryOp(Token operator, ResultValue firstResValue, ResultValue secondResValue)
+                                                                                        throws Exception
+    {
+        if (operator.iStaticType != 0)
+        {
+            ResultValue res = Utilities.arith(operator.tokenStr.charAt(0), firstResValue, secondResValue
+                    , operator.iStaticType);
+            if (res != null)
+                return res;
+        }
+        return evaluate(firstResValue, secondResValue, operator.tokenStr);
+    }
+
     /**
      *
      * This method recieves two operands and an operator and returns the resulting value
@@ -2338,6 +2559,12 @@ public class Parser
     public ResultValue evaluate(ResultValue firstResValue, ResultValue secondResValue, String operator)
                                                                                         throws Exception
     {
+        // an array operand applies the operator to each element
+        if ( firstResValue != null && ArrayOps.isElementWise(operator)
+          && ( firstResValue.structure >= ResultValue.fixedArray
+            || secondResValue.structure >= ResultValue.fixedArray ) )
+            return ArrayOps.evaluate(this, firstResValue, secondResValue, operator);
+
         //Result value for return value
         ResultValue res = new ResultValue();
 
@@ -2514,7 +2741,7 @@ public class Parser
                     szTerminatingString = control.tokenStr;
 
                     // make sure control token is ended with a ';'
-                    if (! scan.getNext().equals(";"))
+                    if (! scan.getNext().equals(";") && !bVerified)
                         error("ERROR: EXPECTED ';' AFTER '%s'"
                                 , control.tokenStr, control.iSourceLineNr+1);
 
@@ -2524,7 +2751,7 @@ public class Parser
                 // what ended the statements after the true part? else or endif
                 if (resCond.terminatingStr.equals("else"))
                 {// has an else
-                    if (! scan.getNext().equals(":"))
+                    if (! scan.getNext().equals(":") && !bVerified)
                         error("ERROR: EXPECTED ':' AFTER ELSE");
 
                     resCond = statements(false, "endif");
@@ -2537,7 +2764,7 @@ public class Parser
                 // check for else
                 if (resCond.terminatingStr.equals("else"))
                 { // if it is an 'else', execute
-                    if (! scan.getNext().equals(":"))
+                    if (! scan.getNext().equals(":") && !bVerified)
                         error("ERROR: EXPECTED ':' AFTER ELSE");
 
                     resCond = statements(true, "endif");
@@ -2548,7 +2775,7 @@ public class Parser
                         szTerminatingString = control.tokenStr;
 
                         // make sure control token is ended with a ';'
-                        if (! scan.getNext().equals(";"))
+                        if (! scan.getNext().equals(";") && !bVerified)
                             error("ERROR: EXPECTED ';' AFTER '%s' ON LINE %d"
                                     , control.tokenStr, control.iSourceLineNr+1);
 
@@ -2572,7 +2799,7 @@ public class Parser
             // if the statements terminated with an 'else', we need to parse statements
             if (resCond.terminatingStr.equals("else"))
             { // it is an else, so we need to skip statements
-                if (! scan.getNext().equals(":"))
+                if (! scan.getNext().equals(":") && !bVerified)
                     error("ERROR: EXPECTED ':' AFTER ELSE");
 
                 // ignore false part
@@ -2581,7 +2808,7 @@ public class Parser
         }
 
         // did we have an 'endif;'?
-        if (!resCond.terminatingStr.equals("endif") || !scan.nextToken.tokenStr.equals(";"))
+        if (!bVerified && (!resCond.terminatingStr.equals("endif") || !scan.nextToken.tokenStr.equals(";")))
             error("ERROR: EXPECTED 'endif;' FOR 'if' EXPRESSION");
 
         return new ResultValue("", Token.SEPARATOR, ResultValue.primitive, szTerminatingString);
@@ -2608,45 +2835,64 @@ public class Parser
         {// we are executing, not ignoring
             Token whileToken = scan.currentToken;
 
-            // make sure that we don't have a break or continue outside of a loop
-            if ( control != null )
-                error("ERROR: ENCOUNTERED '%s' OUTSIDE OF LOOP\n\tLINE %d"
-                        , control.tokenStr, control.iSourceLineNr+1);
+            // an enclosing loop keeps its hoisted operands, this one starts without
+            ResultValue[] outerHoistValueM = hoistValueM;
+            hoistValueM = null;
+            try
+            {
+                // make sure that we don't have a break or continue outside of a loop
+                if ( control != null )
+                    error("ERROR: ENCOUNTERED '%s' OUTSIDE OF LOOP\n\tLINE %d"
+                            , control.tokenStr, control.iSourceLineNr+1);
 
-            // evaluate expression
-            resCond = expression(false);
+                // evaluate expression
+                resCond = expression(false);
+                int iIterCnt = 0;       // iterations interpreted, counted for the loop compiler
 
-            while (resCond.value.equals("T"))
-            {// did the condition return true?
-                resCond = statements(true, "endwhile");
+                while (resCond.value.equals("T"))
+                {// did the condition return true?
+                    // a hot loop is finished by compiled code, unless it deoptimizes
+                    if (loopCompiler != null && ++iIterCnt == LoopCompiler.THRESHOLD)
+                    {
+                        LoopCompiler.CompiledLoop loop = compiledLoop(whileToken);
+                        if (loop != null && loop.runWhile(storageManager))
+                            break;
+                    }
 
-                // did statements() end on a break or continue?
-                if (resCond.terminatingStr.equals("break") || resCond.terminatingStr.equals("continue"))
-                {
-                    if (! scan.getNext().equals(";"))
-                        error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
+                    resCond = loopBody(whileToken, "endwhile");
 
-                    control = null;
+                    // did statements() end on a break or continue?
+                    if (resCond.terminatingStr.equals("break") || resCond.terminatingStr.equals("continue"))
+                    {
+                        if (! scan.getNext().equals(";") && !bVerified)
+                            error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
-                    if (resCond.terminatingStr.equals("break"))
-                        break;
-                    else
-                        resCond = statements(false, "endwhile");
-                }
+                        control = null;
 
-                // make sure we ended on a 'endwhile' token
-                if (!resCond.terminatingStr.equals("endwhile") || !scan.nextToken.tokenStr.equals(";"))
-                    error("ERROR: EXPECTED 'endwhile;' FOR 'while' EXPRESSION");
+                        if (resCond.terminatingStr.equals("break"))
+                            break;
+                        else
+                            resCond = statements(false, "endwhile");
+                    }
 
-                // reset while loop token
-                scan.setTo(whileToken);
+                    // make sure we ended on a 'endwhile' token
+                    if (!bVerified && (!resCond.terminatingStr.equals("endwhile") || !scan.nextToken.tokenStr.equals(";")))
+                        error("ERROR: EXPECTED 'endwhile;' FOR 'while' EXPRESSION");
 
-                // check expression case
-                resCond = expression(false);
-            }
+                    // reset while loop token
+                    scan.setTo(whileToken);
 
-            // expr() returned false, so skip ahead to the end of the while
-            resCond = statements(false, "endwhile");
+                    // check expression case
+                    resCond = expression(false);
+                }
+
+                // expr() returned false, so skip ahead to the end of the while
+                resCond = statements(false, "endwhile");
+            }
+            finally
+            {
+                hoistValueM = outerHoistValueM;
+            }
         }
         else
         {// we are ignoring execution, so ignore conditional, true and false part
@@ -2658,7 +2904,7 @@ public class Parser
         }
 
         // did we have an endwhile;
-        if (! resCond.terminatingStr.equals("endwhile") || !scan.nextToken.tokenStr.equals(";"))
+        if (!bVerified && (! resCond.terminatingStr.equals("endwhile") || !scan.nextToken.tokenStr.equals(";")))
             error("ERROR: EXPECTED 'endwhile;' FOR 'while' EXPRESSION");
 
         return new ResultValue("", Token.SEPARATOR, ResultValue.primitive, ";");
@@ -2677,6 +2923,32 @@ public class Parser
      * @throws Exception generic Exception type to handle any processing errors
      */
     public ResultValue forStmt(Boolean bExec) throws Exception
+    {
+        if (!bExec)
+            return execFor(bExec);
+
+        // an enclosing loop keeps its hoisted operands, this one starts without
+        ResultValue[] outerHoistValueM = hoistValueM;
+        hoistValueM = null;
+        try
+        {
+            return execFor(bExec);
+        }
+        finally
+        {
+            hoistValueM = outerHoistValueM;
+        }
+    }
+
+    /**
+     * This method runs the 'for' statement at the current token for forStmt().
+     *
+     * @param bExec Tells the statement function whether we need to execute the code we find or
+     *              just look at it
+     * @return ResultValue object that contains the final result of execution
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue execFor(Boolean bExec) throws Exception
     {
         ResultValue resCond;
 
@@ -2684,6 +2956,7 @@ public class Parser
         if (bExec)
         {// we are executing, not ignoring
             Token forToken = scan.currentToken;
+            Token colonToken;       // ':' ending the header, each iteration starts after it
 
             // make sure that we don't have a break or continue outside of a loop
             if ( control != null )
@@ -2736,40 +3009,64 @@ public class Parser
                     // make sure we end on an ':'
                     if ( !scan.currentToken.tokenStr.equals(":"))
                         error("ERROR: EXPECTED ':' AFTER FOR LOOP VARIABLES");
+                    colonToken = scan.currentToken;
 
-                    // execute counting for
-                    for (int i = cv; i < ev; i += iv)
+                    // subscripts by cv can be checked once for the whole loop, see BoundsProof
+                    BoundsProof outerBounds = bounds;
+                    bounds = new BoundsProof(forToken, cv, ev, iv);
+                    try
                     {
-                        resCond = statements(true, "endfor");
+                        // execute counting for
+                        int iIterCnt = 0;       // iterations interpreted, counted for the loop compiler
+                        for (int i = cv; i < ev; i += iv)
+                        {
+                            // a hot loop is finished by compiled code, unless it deoptimizes
+                            if (loopCompiler != null && ++iIterCnt == LoopCompiler.THRESHOLD)
+                            {
+                                LoopCompiler.CompiledLoop loop = compiledLoop(forToken);
+                                if (loop != null)
+                                {
+                                    i = loop.runFor(storageManager, i, ev, iv);
+                                    if (i >= ev)
+                                        break;
+                                }
+                            }
 
+                            bounds.iIndex = i;
+                            resCond = loopBody(forToken, "endfor");
 
-                        // did statements() end on a break or continue?
-                        if (resCond.terminatingStr.equals("break")
-                         || resCond.terminatingStr.equals("continue"))
-                        {
-                            if (! scan.getNext().equals(";"))
-                                error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
-                            control = null;
+                            // did statements() end on a break or continue?
+                            if (resCond.terminatingStr.equals("break")
+                             || resCond.terminatingStr.equals("continue"))
+                            {
+                                if (! scan.getNext().equals(";") && !bVerified)
+                                    error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
-                            if (resCond.terminatingStr.equals("break"))
-                                break;
-                            else
-                                resCond = statements(false, "endfor");
-                        }
-                        // did statements() end on an endfor?
-                        if( !resCond.terminatingStr.equals("endfor") ||
-                                !scan.nextToken.tokenStr.equals(";"))
-                            error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
+                                control = null;
+
+                                if (resCond.terminatingStr.equals("break"))
+                                    break;
+                                else
+                                    resCond = statements(false, "endfor");
+                            }
+                            // did statements() end on an endfor?
+                            if(!bVerified && ( !resCond.terminatingStr.equals("endfor") ||
+                                    !scan.nextToken.tokenStr.equals(";")))
+                                error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
 
-                        // update cv in storage manager
-                        resCond = storageManager.getEntry(cvStr);
-                        resCond.value = "" + (Integer.parseInt(resCond.value) + iv);
-                        storageManager.putEntry(cvStr, resCond);
+                            // update cv in storage manager
+                            resCond = storageManager.getEntry(cvStr);
+                            resCond.value = "" + (Integer.parseInt(resCond.value) + iv);
+                            storageManager.putEntry(cvStr, resCond);
 
-                        // set position back to the beginning of the for loop
-                        scan.setTo(forToken);
-                        skipTo("for", ":");
+                            // set position back to the start of the loop body
+                            scan.setTo(colonToken);
+                        }
+                    }
+                    finally
+                    {
+                        bounds = outerBounds;
                     }
                     break;
                 // for fuck in berto
@@ -2792,16 +3089,17 @@ public class Parser
                     if ( !scan.getNext().equals(":"))
                         error("ERROR: EXPECTED ':' AFTER FOR LOOP VARIABLES\n\t" +
                                    "FOUND '%s'", scan.currentToken.tokenStr);
+                    colonToken = scan.currentToken;
 
                     // make sure we have an appropriate iterable object (array or string)
                     if ( resCond.structure == ResultValue.fixedArray
                       || resCond.structure == ResultValue.unboundedArray )
                     {// we are iterating through an array
                         // value should contain the array name in the case of an array
-                        ResultArray array = (ResultArray)storageManager.getEntry(resCond.value);
+                        ResultArray array = arrayOf(resCond);
 
                         // save the array list
-                        ArrayList<ResultValue> arrayList = array.array;
+                        ElementList arrayList = array.array;
 
                         // check if item was already declared in the scope
                         if ( storageManager.getEntry(item) == null )
@@ -2809,22 +3107,22 @@ public class Parser
                             storageManager.putEntry(item, new ResultValue("", array.type
                                     , ResultValue.primitive, "in"));
 
-                        for (ResultValue elem : arrayList)
+                        // step through the populated elements only, an unbounded array may be sparse
+                        for (int i = arrayList.nextIndex(0); i >= 0; i = arrayList.nextIndex(i + 1))
                         {
-                            if (elem == null)
-                                continue;
+                            ResultValue elem = arrayList.get(i);
 
                             // update cv in storage manager
                             resCond = storageManager.getEntry(item);
                             resCond.value = "" + elem.value;
                             storageManager.putEntry(item, resCond);
-                            resCond = statements(true, "endfor");
+                            resCond = loopBody(forToken, "endfor");
 
                             // did statements() end on a break or continue?
                             if (resCond.terminatingStr.equals("break")
                              || resCond.terminatingStr.equals("continue"))
                             {
-                                if (! scan.getNext().equals(";"))
+                                if (! scan.getNext().equals(";") && !bVerified)
                                     error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
                                 control = null;
@@ -2835,13 +3133,12 @@ public class Parser
                                     resCond = statements(false, "endfor");
                             }
                             // did statements() end on an endfor?
-                            if( !resCond.terminatingStr.equals("endfor") ||
-                                    !scan.nextToken.tokenStr.equals(";"))
+                            if(!bVerified && ( !resCond.terminatingStr.equals("endfor") ||
+                                    !scan.nextToken.tokenStr.equals(";")))
                                 error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
 
-                            // set position back to the beginning of the for loop
-                            scan.setTo(forToken);
-                            skipTo("for", ":");
+                            // set position back to the start of the loop body
+                            scan.setTo(colonToken);
                         }
                     }
                     else
@@ -2858,13 +3155,13 @@ public class Parser
                             resCond = storageManager.getEntry(item);
                             resCond.value = "" + c;
                             storageManager.putEntry(item, resCond);
-                            resCond = statements(true, "endfor");
+                            resCond = loopBody(forToken, "endfor");
 
                             // did statements() end on a break or continue?
                             if (resCond.terminatingStr.equals("break")
                                     || resCond.terminatingStr.equals("continue"))
                             {
-                                if (! scan.getNext().equals(";"))
+                                if (! scan.getNext().equals(";") && !bVerified)
                                     error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
                                 control = null;
@@ -2875,13 +3172,12 @@ public class Parser
                                     resCond = statements(false, "endfor");
                             }
                             // did statements() end on an endfor?
-                            if( !resCond.terminatingStr.equals("endfor") ||
-                                    !scan.nextToken.tokenStr.equals(";"))
+                            if(!bVerified && ( !resCond.terminatingStr.equals("endfor") ||
+                                    !scan.nextToken.tokenStr.equals(";")))
                                 error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
 
-                            // set position back to the beginning of the for loop
-                            scan.setTo(forToken);
-                            skipTo("for", ":");
+                            // set position back to the start of the loop body
+                            scan.setTo(colonToken);
                         }
                     }
                     break;
@@ -2924,6 +3220,7 @@ public class Parser
                     if ( !scan.getNext().equals(":") )
                         // make sure we have our ending ':'
                         error("ERROR: MISSING ':' SEPARATOR AT END OF FOR LOOP DECLARATION");
+                    colonToken = scan.currentToken;
 
                     // split string into an array with our delimiter
                     stringM = string.split(Pattern.quote(delimiter));
@@ -2939,13 +3236,13 @@ public class Parser
                         resCond = storageManager.getEntry(stringCV);
                         resCond.value = "" + s;
                         storageManager.putEntry(stringCV, resCond);
-                        resCond = statements(true, "endfor");
+                        resCond = loopBody(forToken, "endfor");
 
                         // did statements() end on a break or continue?
                         if (resCond.terminatingStr.equals("break")
                                 || resCond.terminatingStr.equals("continue"))
                         {
-                            if (! scan.getNext().equals(";"))
+                            if (! scan.getNext().equals(";") && !bVerified)
                                 error("ERROR: EXPECTED ';' AFTER %s", resCond.terminatingStr);
 
                             control = null;
@@ -2956,13 +3253,12 @@ public class Parser
                                 resCond = statements(false, "endfor");
                         }
                         // did statements() end on an endfor?
-                        if( !resCond.terminatingStr.equals("endfor") ||
-                                !scan.nextToken.tokenStr.equals(";"))
+                        if(!bVerified && ( !resCond.terminatingStr.equals("endfor") ||
+                                !scan.nextToken.tokenStr.equals(";")))
                             error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
 
-                        // set position back to the beginning of the for loop
-                        scan.setTo(forToken);
-                        skipTo("for", ":");
+                        // set position back to the start of the loop body
+                        scan.setTo(colonToken);
                     }
                     break;
                 // unrecognized for separator
@@ -2980,12 +3276,137 @@ public class Parser
         resCond = statements(false, "endfor");
 
         // did we have an endfor;
-        if (! resCond.terminatingStr.equals("endfor") || !scan.nextToken.tokenStr.equals(";"))
+        if (!bVerified && (! resCond.terminatingStr.equals("endfor") || !scan.nextToken.tokenStr.equals(";")))
             error("ERROR: EXPECTED 'endfor;' FOR 'while' EXPRESSION");
 
         return new ResultValue("", Token.SEPARATOR, ResultValue.primitive, ";");
     }
 
+    /**
+     * This method executes 'parallel for' statements for HavaBol. The header is that of a
+     * counting for, a for in, or a for from, and ParallelFor checks the body and runs the
+     * iterations on the ForkJoinPool.
+     * <p>
+     * If we are not executing, we will still look over the lines to catch errors
+     *
+     * @param bExec Tells the statement function whether we need to execute the code we find or
+     *              just look at it
+     * @return ResultValue object that contains the final result of execution
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    public ResultValue parallelForStmt(Boolean bExec) throws Exception
+    {
+        ResultValue resCond;
+        ParallelFor loop = null;
+
+        // advance to the 'for' that must follow
+        if (!scan.getNext().equals("for"))
+            error("ERROR: EXPECTED 'for' AFTER 'parallel' BUT FOUND '%s'", scan.currentToken.tokenStr);
+        if (!bExec)
+            return forStmt(false);
+
+        // make sure that we don't have a break or continue outside of a loop
+        if ( control != null )
+            error("ERROR: ENCOUNTERED '%s' OUTSIDE OF LOOP\n\tLINE %d"
+                    , control.tokenStr, control.iSourceLineNr+1);
+
+        // advance to the start of the control variable
+        scan.getNext();
+        if (scan.currentToken.subClassif != Token.IDENTIFIER)
+            error("ERROR: EXPECTED CONTROL VARIABLE BUT FOUND %s", scan.currentToken.tokenStr);
+        String cvStr = scan.currentToken.tokenStr;
+
+        switch (scan.nextToken.tokenStr)
+        {// =, in, from, or error
+            case "=":
+                // implicitly declare the control variable as forStmt does
+                if (storageManager.getEntry(cvStr) == null)
+                    storageManager.putEntry(cvStr, new ResultValue("", Token.INTEGER
+                            , ResultValue.primitive, "to"));
+                int cv = Integer.parseInt(assignStmt(true).value);
+
+                if ( !scan.getNext().equals("to") )
+                    error("ERROR: EXPECTED END VARIABLE BUT FOUND %s", scan.currentToken.tokenStr);
+                int ev = Integer.parseInt(expression(false).value);
+
+                int iv = 1;
+                if ( scan.getNext().equals("by"))
+                {
+                    iv = Integer.parseInt(expression(false).value);
+                    scan.getNext();
+                }
+                // the iterations must be known before they start
+                if (iv <= 0)
+                    error("ERROR: 'parallel for' NEEDS A POSITIVE INCREMENT, NOT %d", iv);
+
+                loop = new ParallelFor(this, cvStr, storageManager.getEntry(cvStr).type, cv, ev, iv);
+                break;
+            case "in":
+                scan.getNext();
+                if (scan.nextToken.primClassif != Token.OPERAND)
+                    error("ERROR: EXPECTED VARIABLE BUT FOUND %s", scan.nextToken.tokenStr);
+                resCond = expression(false);
+                scan.getNext();
+
+                ArrayList<String> valueL = new ArrayList<String>();
+                if ( resCond.structure == ResultValue.fixedArray
+                  || resCond.structure == ResultValue.unboundedArray )
+                {// the elements that were assigned
+                    ResultArray array = arrayOf(resCond);
+                    if ( storageManager.getEntry(cvStr) == null )
+                        storageManager.putEntry(cvStr, new ResultValue("", array.type
+                                , ResultValue.primitive, "in"));
+                    for (int i = array.array.nextIndex(0); i >= 0; i = array.array.nextIndex(i + 1))
+                        valueL.add(array.array.get(i).value);
+                }
+                else
+                {// the characters of a string
+                    storageManager.putEntry(cvStr, new ResultValue("", Token.STRING
+                            , ResultValue.primitive, "in"));
+                    for (char c : resCond.value.toCharArray())
+                        valueL.add("" + c);
+                }
+                loop = new ParallelFor(this, cvStr, storageManager.getEntry(cvStr).type, valueL);
+                break;
+            case "from":
+                scan.getNext();
+                if (scan.nextToken.primClassif != Token.OPERAND)
+                    error("ERROR: EXPECTED VARIABLE BUT FOUND %s", scan.nextToken.tokenStr);
+                resCond = expression(false);
+                if (resCond.structure != ResultValue.primitive)
+                    error("ERROR: INCOMPATIBLE TYPE FOR 'FOR TOKENIZER'");
+                String string = resCond.value;
+                if ( !scan.getNext().equals("by") )
+                    error("ERROR: MISSING 'BY' SEPARATOR FOR DELIMITER");
+                String delimiter = expression(false).value;
+                scan.getNext();
+
+                storageManager.putEntry(cvStr, new ResultValue("", Token.STRING
+                        , ResultValue.primitive, "from"));
+                loop = new ParallelFor(this, cvStr, Token.STRING
+                        , new ArrayList<String>(Arrays.asList(string.split(Pattern.quote(delimiter)))));
+                break;
+            default:
+                error("ERROR: UNRECOGNIZED CONTROL SEPARATOR '%s'\n\t" +
+                           "EXPECTED '=', 'in', OR 'from'", scan.nextToken.tokenStr);
+        }
+
+        // make sure we end on an ':'
+        if ( !scan.currentToken.tokenStr.equals(":"))
+            error("ERROR: EXPECTED ':' AFTER FOR LOOP VARIABLES");
+
+        loop.run(scan.currentToken);
+
+        // ignore statements
+        resCond = statements(false, "endfor");
+
+        // did we have an endfor;
+        if (!bVerified && (! resCond.terminatingStr.equals("endfor") || !scan.nextToken.tokenStr.equals(";")))
+            error("ERROR: EXPECTED 'endfor;' FOR 'for' EXPRESSION");
+
+        return new ResultValue("", Token.SEPARATOR, ResultValue.primitive, ";");
+    }
+
     /**
      * This method executes 'select' statements for HavaBol. It uses bExec and the
      * ResultValue object returned from calling expression in order to determine
@@ -3057,7 +3478,7 @@ public class Parser
                                 szTerminatingString = control.tokenStr;
 
                                 // make sure control token is ended with a ';'
-                                if (! scan.getNext().equals(";"))
+                                if (! scan.getNext().equals(";") && !bVerified)
                                     error("ERROR: EXPECTED ';' AFTER '%s' ON LINE %d"
                                             , control.tokenStr, control.iSourceLineNr+1);
 
@@ -3102,7 +3523,7 @@ public class Parser
                         control = scan.currentToken;
 
                         // make sure control token is ended with a ';'
-                        if (! scan.getNext().equals(";"))
+                        if (! scan.getNext().equals(";") && !bVerified)
                             error("ERROR: EXPECTED ';' AFTER '%s' ON LINE %d"
                                     , control.tokenStr, control.iSourceLineNr+1);
 
@@ -3133,7 +3554,7 @@ public class Parser
             if (scan.currentToken.tokenStr.equals("default"))
             {// default encountered
                 // make sure we have a ':'
-                if (!scan.getNext().equals(":"))
+                if (!scan.getNext().equals(":") && !bVerified)
                     error("ERROR: SELECT 'DEFAULT' CASE MISSING ':'");
 
                 // ignore execution
@@ -3142,21 +3563,91 @@ public class Parser
         }
 
         // did we have an 'endselect;'?
-        if (!scan.currentToken.tokenStr.equals("endselect") || !scan.nextToken.tokenStr.equals(";"))
+        if (!bVerified && (!scan.currentToken.tokenStr.equals("endselect") || !scan.nextToken.tokenStr.equals(";")))
             error("ERROR: EXPECTED 'endselect;' FOR 'select' EXPRESSION");
 
         return new ResultValue("", Token.SEPARATOR, ResultValue.primitive, szTerminatingString);
     }
 
+    /**
+     * This method is called by expression for a BSEARCH(array, value) call.
+     * <p>
+     * Assumes the current token is BSEARCH and leaves the closing ')' as the current token.
+     *
+     * @return Int position of the value in the array, -1 if it is not there
+     * @throws Exception
+     */
+    private ResultValue bsearch() throws Exception
+    {
+        if (!scan.getNext().equals("("))
+            error("ERROR: FUNCTION 'BSEARCH' REQUIRES OPENING '(' ");
+        ResultValue array = argument();
+        if (!scan.getNext().equals(","))
+            error("ERROR: BSEARCH EXPECTS AN ARRAY AND A VALUE, FOUND '%s'", scan.currentToken.tokenStr);
+        ResultValue key = argument();
+        if (!scan.getNext().equals(")"))
+            error("ERROR: FUNCTION 'BSEARCH' MISSING CLOSING ')'");
+        return ArraySort.bsearch(this, array, key);
+    }
+
+    /**
+     * This method evaluates one argument of a function with several of them.
+     * <p>
+     * The argument ends at a ',' or at the ')' that closes the call, which is left as the
+     * next token.
+     *
+     * @return Result value of the argument
+     * @throws Exception
+     */
+    private ResultValue argument() throws Exception
+    {
+        bArgument = true;
+        return expression(false);
+    }
+
     /**
      * This method is called by expression to get the result value of an encountered
-     * built in function.
+     * built in function. Records a HavaBolBuiltinCall event if a JFR recording has it enabled.
      * @param functionName name of built in function called
      * @param parameter parameter to pass into built in function
      * @return Result value of value returned by function
      * @throws Exception
      */
     private ResultValue builtInFuncs(Token functionName, ResultValue parameter) throws Exception
+    {
+        if (!HavaBolEvents.isRecording())
+            return execBuiltInFunc(functionName, parameter);
+        HavaBolEvents.BuiltinCall event = new HavaBolEvents.BuiltinCall();
+        if (!event.isEnabled())
+            return execBuiltInFunc(functionName, parameter);
+
+        event.begin();
+        try
+        {
+            return execBuiltInFunc(functionName, parameter);
+        }
+        finally
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.sourceFile = scan.sourceFileNm;
+                event.line = functionName.iSourceLineNr + 1;
+                event.function = functionName.tokenStr;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * This method computes a builtin function used in an expression for builtInFuncs().
+     *
+     * @param functionName token of the function
+     * @param parameter the value of the argument
+     * @return ResultValue object that contains the result of the function
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue execBuiltInFunc(Token functionName, ResultValue parameter) throws Exception
     {
         ResultValue res;
         String value = "";
@@ -3226,6 +3717,16 @@ public class Parser
             }
 
 
+        }
+        else if (ArraySort.isSort(functionName.tokenStr))
+        {// SORT or SORTDESC sorts the array in place and returns it
+            return ArraySort.sort(this, functionName.tokenStr, parameter);
+        }
+        else if (Aggregates.isAggregate(functionName.tokenStr))
+        {// SUM, MIN, MAX, AVG or COUNT of an array
+            res = Aggregates.evaluate(this, functionName.tokenStr, parameter);
+            value = res.value;
+            type = res.type;
         }
         else if (functionName.tokenStr.equals("dateDiff"))
         {
@@ -3253,7 +3754,8 @@ public class Parser
      * This method is provided to Parser to execute HavaBol builtin and user
      * defined functions.
      * <p>
-     * function uses bExec in order to determine if we are executing or skipping.
+     * function uses bExec in order to determine if we are executing or skipping. Executed calls
+     * record a HavaBolBuiltinCall event if a JFR recording has it enabled.
      *
      * @param bExec Tells the statement function whether we need to execute the code we find or
      *              just look at it
@@ -3261,6 +3763,42 @@ public class Parser
      * @throws Exception generic Exception type to handle any processing errors
      */
     private ResultValue function(Boolean bExec) throws Exception
+    {
+        if (!bExec || !HavaBolEvents.isRecording())
+            return execFunction(bExec);
+        HavaBolEvents.BuiltinCall event = new HavaBolEvents.BuiltinCall();
+        if (!event.isEnabled())
+            return execFunction(bExec);
+
+        String functionStr = scan.currentToken.tokenStr;
+        int iSourceLineNr = scan.currentToken.iSourceLineNr;
+        event.begin();
+        try
+        {
+            return execFunction(bExec);
+        }
+        finally
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.sourceFile = scan.sourceFileNm;
+                event.line = iSourceLineNr + 1;
+                event.function = functionStr;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * This method executes the builtin function at the current token for function().
+     *
+     * @param bExec Tells the statement function whether we need to execute the code we find or
+     *              just look at it
+     * @return ResultValue object that contains the final result of execution
+     * @throws Exception generic Exception type to handle any processing errors
+     */
+    private ResultValue execFunction(Boolean bExec) throws Exception
     {
         /**TODO
          * There is some redundancy involving built in functions right now
@@ -3300,7 +3838,7 @@ public class Parser
                             //error("ERROR: PRINT FUNCTION IS MISSING TERMINATOR ';'");
                             scan.getNext();
                         //check to see if end of file, if it is, bad
-                        if (scan.currentToken.primClassif == Token.EOF)
+                        if (!bVerified && scan.currentToken.primClassif == Token.EOF)
                             error("ERROR: MISSING ';'");
 
                         //Make token at next expression call is terminator
@@ -3313,7 +3851,9 @@ public class Parser
                         error("ERROR: FUNCTION MISSING ClOSING ')'");
 
                     //System.out.println("cur token is   " + scan.currentToken.tokenStr);
-                    System.out.println(printLine);
+                    out.append(printLine).append(System.lineSeparator());
+                    InterpreterMetrics.printLines.increment();
+                    InterpreterMetrics.printChars.add(printLine.length() + System.lineSeparator().length());
                 }
                 else if (scan.currentToken.tokenStr.equals("LENGTH"))
                 {// length function
@@ -3338,6 +3878,14 @@ public class Parser
                     value = expression(false).value;
                     type = Token.INTEGER;
                 }
+                else if (Aggregates.isAggregate(scan.currentToken.tokenStr)
+                        || ArraySort.isSort(scan.currentToken.tokenStr)
+                        || scan.currentToken.tokenStr.equals("BSEARCH"))
+                {
+                    res = expression(false);
+                    value = res.value;
+                    type = res.type;
+                }
                 else if (scan.currentToken.tokenStr.equals("dateDiff")
                         ||scan.currentToken.tokenStr.equals("dateAge")
                         ||scan.currentToken.tokenStr.equals("dateAdj"))
@@ -3438,6 +3986,145 @@ public class Parser
                 , scan.sourceFileNm);
     }
 
+    /**
+     * Shows the assignment of a primitive variable for debug Assign on, recording it if the run
+     * is traced to a file, otherwise printing it.
+     *
+     * @param variableStr name of the variable
+     * @param resExpr the value assigned
+     */
+    private void traceAssign(String variableStr, ResultValue resExpr)
+    {
+        if (scan.trace != null)
+            scan.trace.assign(scan.currentToken.iSourceLineNr, variableStr, resExpr.value);
+        else
+            System.out.println("\t\t...Variable Name: " + variableStr + " Value: " + resExpr.value);
+    }
+
+    /**
+     * Shows the assignment of an array element for debug Assign on.
+     *
+     * @param variableStr name of the array
+     * @param index subscript assigned
+     * @param resExpr the value assigned
+     */
+    private void traceAssignIndex(String variableStr, int index, ResultValue resExpr)
+    {
+        if (scan.trace != null)
+            scan.trace.assignIndex(scan.currentToken.iSourceLineNr, variableStr, index, resExpr.value);
+        else
+            System.out.println("\t\t...Variable Name: " + variableStr
+                    + " Index: " + index + " Value: " + resExpr.value);
+    }
+
+    /**
+     * Shows the assignment of a whole array for debug Assign on.
+     *
+     * @param variableStr name of the array
+     * @param resArray the array assigned
+     */
+    private void traceAssignArray(String variableStr, ResultArray resArray)
+    {
+        if (scan.trace != null)
+        {
+            StringBuilder values = new StringBuilder();
+            for (ResultValue z : resArray.array)
+                values.append(" ").append(z.value);
+            scan.trace.assignArray(scan.currentToken.iSourceLineNr, variableStr, values.toString());
+        }
+        else
+        {
+            System.out.print("\t\t...Variable Name: " + variableStr + " Values:");
+            for (ResultValue z : resArray.array)
+                System.out.print(" " + z.value);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Returns the operand after the current token, which LoopInvariants marked with hoistLast.
+     * <p>
+     * The operand is evaluated the first time it is reached in the innermost loop, and after
+     * that the scanner only skips over it. whileStmt() and forStmt() start each loop without
+     * values. An operand that is an array, such as arr * 2, is evaluated every time, since a
+     * copy of the value is cheaper to make again than to keep.
+     *
+     * @return a copy of the value of the operand
+     * @throws Exception if evaluating the operand fails
+     */
+    private ResultValue hoistedOperand() throws Exception
+    {
+        Token beforeToken = scan.currentToken;
+        int iHoistNr = beforeToken.iHoistNr;
+        if (hoistValueM == null)
+            hoistValueM = new ResultValue[iHoistNr + 1];
+        else if (iHoistNr >= hoistValueM.length)
+            hoistValueM = Arrays.copyOf(hoistValueM, iHoistNr + 1);
+
+        if (hoistValueM[iHoistNr] != null)
+        {
+            scan.setTo(beforeToken.hoistLast);
+            return hoistValueM[iHoistNr].clone();
+        }
+
+        hoistStop = beforeToken.hoistLast;
+        ResultValue hoistValue = expression(false);
+        if (hoistValue.structure != ResultValue.primitive)
+            return hoistValue;
+        hoistValueM[iHoistNr] = hoistValue;
+
+        if (scan.bShowHoist)
+            // debug Hoist on
+            traceHoist(beforeToken, hoistValue);
+
+        return hoistValue.clone();
+    }
+
+    /**
+     * Shows an operand evaluated once for a loop for debug Hoist on.
+     *
+     * @param beforeToken the token the operand follows
+     * @param res the value of the operand
+     */
+    private void traceHoist(Token beforeToken, ResultValue res)
+    {
+        if (scan.trace != null)
+            scan.trace.hoist(beforeToken.iSourceLineNr, beforeToken.tokenStr, res.value);
+        else
+            System.out.println("\t\t...Hoisted: line " + (beforeToken.iSourceLineNr + 1)
+                    + ", operand after '" + beforeToken.tokenStr + "' = " + res.value);
+    }
+
+    /**
+     * Shows the result of an expression for debug Expr on.
+     *
+     * @param res the result
+     */
+    private void traceExpr(ResultValue res)
+    {
+        if (scan.trace != null)
+            scan.trace.expr(scan.currentToken.iSourceLineNr, res.value);
+        else
+            System.out.println("\t\t...Result Value: " + res.value);
+    }
+
+    /**
+     * Returns the array a for in loop iterates.
+     * <p>
+     * A named array evaluates to the stored ResultArray, but a slice or an element-wise
+     * expression such as a * 2 evaluates to an array that is not in the storage manager.
+     *
+     * @param resCond result of the expression after 'in'
+     * @return the array to iterate
+     * @throws Exception
+     */
+    private ResultArray arrayOf(ResultValue resCond) throws Exception
+    {
+        if (resCond instanceof ResultArray)
+            return (ResultArray) resCond;
+        return (ResultArray) storageManager.getEntry(resCond.value);
+    }
+
     /**
      * This method returns a Result value object based on the current token.
      * <p>
@@ -3469,6 +4156,20 @@ public class Parser
         //Array and string handling
         if(scan.nextToken.tokenStr.equals("["))
         {   //Dealing with an array or string
+            if (operand.boundsFor != null && bounds != null && bounds.isLoop(operand.boundsFor)
+                    && !scan.bShowExpr && !scan.bShowToken)
+            {// the subscript is the control variable of this loop, maybe checked for all of it
+                ResultArray array = bounds.array(operand.tokenStr, firstResValue);
+                ResultValue element = array == null ? null : array.array.get(bounds.iIndex);
+                if (element != null)
+                {// skip '[', the subscript, and ']'
+                    scan.getNext();
+                    scan.getNext();
+                    scan.getNext();
+                    return element;
+                }
+            }
+
             //Check if it is actually array or string
             if(firstResValue.structure == ResultValue.primitive  && firstResValue.type!= Token.STRING)
             {
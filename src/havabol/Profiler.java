@@ -0,0 +1,329 @@
+package havabol;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Statement profiler turned on with 'debug Profile on' or the --profile flag.
+ * <p>
+ * Parser.statement() calls enter() and exit() around every statement while the profiler is
+ * enabled, which keeps a tree of the statements being executed: a statement nested in an if,
+ * while, for, or select body is a child of that statement's frame. Execution counts are exact:
+ * like the InterpreterMetrics counters, a statement is counted when it runs, not when a false if
+ * or a finished loop skips over it, and the ';' and end tokens of a body are not statements.
+ * <p>
+ * Time and allocated bytes are sampled instead of measured around every statement, because reading
+ * the clock costs as much as a short statement. A sampler thread wakes up every SAMPLE_NANOS and
+ * charges the time and bytes since its last sample to the statement that is running. The self
+ * time of a line is what was charged to it, and its total time also counts the statements nested in it.
+ * <p>
+ * When the run ends, report() prints the lines with the most self time and writes the tree as a
+ * collapsed stack file for flame graph tools,
+ * &lt;source&gt;.collapsed next to the source file.
+ * <p>
+ * A Profiler belongs to one interpreter run. Only the thread that created it may call enter() and exit().
+ */
+public class Profiler
+{
+    private static final long SAMPLE_NANOS = 1000000;  // 1 ms between samples
+    private static final int HOT_SPOT_CNT = 25;         // lines shown in the hot spot table
+
+    public boolean bEnabled = false;        // statements are only recorded while this is true
+    private final String sourceFileNm;      // name used for the frames of the collapsed stacks
+    private final Frame root = new Frame(-1, null);
+    private volatile Frame current = root;  // statement being executed, read by the sampler
+    private final Thread sampler;
+    private volatile boolean bStop = false;
+
+    /**
+     * Profiler constructor, starts sampling the calling thread.
+     *
+     * @param sourceFileNm name of the profiled source
+     */
+    public Profiler(String sourceFileNm)
+    {
+        this.sourceFileNm = sourceFileNm;
+
+        Thread interpreter = Thread.currentThread();
+        sampler = new Thread(() -> sample(interpreter), "havabol-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Records the start of a statement.
+     *
+     * @param iSourceLineNr line the statement starts on
+     */
+    void enter(int iSourceLineNr)
+    {
+        Frame frame = current.child(iSourceLineNr);
+        frame.lCount++;
+        current = frame;
+    }
+
+    /**
+     * Records the end of the statement started by the matching enter().
+     */
+    void exit()
+    {
+        current = current.parent;
+    }
+
+    /**
+     * Body of the sampler thread. Charges the time and bytes allocated by the interpreter thread
+     * to the frame that is current, until stop() is called.
+     *
+     * @param interpreter thread running the profiled program
+     */
+    private void sample(Thread interpreter)
+    {
+        // allocation is only available on HotSpot style JVMs
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocBean = null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            allocBean = (com.sun.management.ThreadMXBean) bean;
+            allocBean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        long lThreadId = interpreter.getId();
+        long lLastNs = System.nanoTime();
+        long lLastAlloc = allocBean == null ? 0 : allocBean.getThreadAllocatedBytes(lThreadId);
+        while (!bStop)
+        {
+            LockSupport.parkNanos(SAMPLE_NANOS);
+
+            long lNow = System.nanoTime();
+            long lAlloc = allocBean == null ? 0 : allocBean.getThreadAllocatedBytes(lThreadId);
+            Frame frame = current;
+            // time outside of any statement is not charged
+            if (frame != root)
+            {
+                frame.lSelfNs += lNow - lLastNs;
+                if (lAlloc > lLastAlloc)
+                    frame.lAlloc += lAlloc - lLastAlloc;
+            }
+            lLastNs = lNow;
+            lLastAlloc = lAlloc;
+        }
+    }
+
+    /**
+     * Stops the sampler thread and waits for it, so its samples are visible to this thread.
+     */
+    private void stop()
+    {
+        bStop = true;
+        LockSupport.unpark(sampler);
+        try
+        {
+            sampler.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops profiling, prints the hot spot table, and writes the collapsed stack file, if anything was recorded.
+     * <p>
+     * The table lists the lines with the most self time. The collapsed stacks go to
+     * &lt;source&gt;.collapsed in the directory of the source file, with the self time in
+     * microseconds as the sample count.
+     *
+     * @param sourceLineM lines of the source, shown next to the line numbers
+     * @param err         where the table is printed
+     */
+    public void report(List<String> sourceLineM, PrintStream err)
+    {
+        stop();
+
+        // sum the frames of each line
+        LineStats stats = new LineStats(sourceLineM.size());
+        for (Frame child : root.childL)
+            stats.add(child);
+
+        ArrayList<Integer> lineL = new ArrayList<Integer>();
+        long lRunNs = 0;
+        for (int i = 0; i < stats.countM.length; i++)
+        {
+            if (stats.countM[i] == 0)
+                continue;
+            lineL.add(i);
+            lRunNs += stats.selfNsM[i];
+        }
+        if (lineL.isEmpty())
+            return;
+
+        // most self time first, then most executed
+        lineL.sort((a, b) -> stats.selfNsM[a] != stats.selfNsM[b]
+                ? Long.compare(stats.selfNsM[b], stats.selfNsM[a])
+                : Long.compare(stats.countM[b], stats.countM[a]));
+
+        err.printf("Profile of %s (time and allocation sampled every %d ms)\n"
+                , sourceFileNm, SAMPLE_NANOS / 1000000);
+        err.printf("%6s %10s %10s %10s %6s %10s  %s\n"
+                , "Line", "Count", "Self ms", "Total ms", "Self%", "Alloc KB", "Source");
+        for (int i = 0; i < lineL.size() && i < HOT_SPOT_CNT; i++)
+        {
+            int iLine = lineL.get(i);
+            String sourceLine = iLine < sourceLineM.size() ? sourceLineM.get(iLine).trim() : "";
+            err.printf("%6d %10d %10.3f %10.3f %5.1f%% %10d  %s\n"
+                    , iLine + 1
+                    , stats.countM[iLine]
+                    , stats.selfNsM[iLine] / 1e6
+                    , stats.totalNsM[iLine] / 1e6
+                    , lRunNs == 0 ? 0.0 : 100.0 * stats.selfNsM[iLine] / lRunNs
+                    , stats.allocM[iLine] / 1024
+                    , sourceLine);
+        }
+
+        Path collapsed = collapsedPath();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(collapsed)))
+        {
+            for (Frame child : root.childL)
+                writeCollapsed(writer, child, "");
+            err.printf("Collapsed stacks written to %s\n", collapsed);
+        }
+        catch (IOException e)
+        {
+            err.printf("Could not write %s: %s\n", collapsed, e);
+        }
+    }
+
+    /**
+     * Returns the path of the collapsed stack file, &lt;source&gt;.collapsed beside the source file.
+     * A source that was not read from a file, like &lt;string&gt;, gets a file in the working directory.
+     *
+     * @return path of the collapsed stack file
+     */
+    private Path collapsedPath()
+    {
+        String fileNm = sourceFileNm.replaceAll(".*[/\\\\]", "");
+        String collapsedNm = fileNm.replaceAll("[^A-Za-z0-9._-]", "_") + ".collapsed";
+        try
+        {
+            return Paths.get(sourceFileNm).resolveSibling(collapsedNm);
+        }
+        catch (InvalidPathException e)
+        {
+            return Paths.get(collapsedNm);
+        }
+    }
+
+    /**
+     * Writes one collapsed stack line for the frame and each frame below it.
+     *
+     * @param writer where to write
+     * @param frame  the frame
+     * @param prefix stack of the parent frames, ending in ';' unless empty
+     */
+    private void writeCollapsed(PrintWriter writer, Frame frame, String prefix)
+    {
+        String stack = prefix + sourceFileNm + ":" + (frame.iSourceLineNr + 1);
+        long lSelfMicros = frame.lSelfNs / 1000;
+        if (lSelfMicros > 0)
+            writer.println(stack + " " + lSelfMicros);
+        for (Frame child : frame.childL)
+            writeCollapsed(writer, child, stack + ";");
+    }
+
+    /**
+     * A statement line reached through a particular chain of enclosing statements.
+     */
+    private static class Frame
+    {
+        final int iSourceLineNr;
+        final Frame parent;
+        final ArrayList<Frame> childL = new ArrayList<Frame>();
+        long lCount;            // times the statement was executed, written by the interpreter
+        long lSelfNs;           // sampled time, written by the sampler
+        long lAlloc;            // sampled allocated bytes, written by the sampler
+
+        Frame(int iSourceLineNr, Frame parent)
+        {
+            this.iSourceLineNr = iSourceLineNr;
+            this.parent = parent;
+        }
+
+        Frame child(int iSourceLineNr)
+        {
+            // a statement rarely has more than a few lines nested in it
+            for (int i = 0; i < childL.size(); i++)
+            {
+                Frame child = childL.get(i);
+                if (child.iSourceLineNr == iSourceLineNr)
+                    return child;
+            }
+            Frame child = new Frame(iSourceLineNr, this);
+            childL.add(child);
+            return child;
+        }
+    }
+
+    /**
+     * Totals per source line, summed over the frames of the line.
+     */
+    private static class LineStats
+    {
+        long[] countM;
+        long[] selfNsM;
+        long[] totalNsM;
+        long[] allocM;
+        int[] activeM;      // frames of the line on the path being summed
+
+        LineStats(int iLineCnt)
+        {
+            resize(Math.max(iLineCnt, 1));
+        }
+
+        private void resize(int iLen)
+        {
+            countM = countM == null ? new long[iLen] : Arrays.copyOf(countM, iLen);
+            selfNsM = selfNsM == null ? new long[iLen] : Arrays.copyOf(selfNsM, iLen);
+            totalNsM = totalNsM == null ? new long[iLen] : Arrays.copyOf(totalNsM, iLen);
+            allocM = allocM == null ? new long[iLen] : Arrays.copyOf(allocM, iLen);
+            activeM = activeM == null ? new int[iLen] : Arrays.copyOf(activeM, iLen);
+        }
+
+        /**
+         * Adds the frame and the frames below it.
+         *
+         * @param frame the frame
+         * @return total time of the frame and the frames below it
+         */
+        long add(Frame frame)
+        {
+            int iLine = Math.max(frame.iSourceLineNr, 0);
+            if (iLine >= countM.length)
+                resize(Math.max(iLine + 1, countM.length * 2));
+
+            countM[iLine] += frame.lCount;
+            selfNsM[iLine] += frame.lSelfNs;
+            allocM[iLine] += frame.lAlloc;
+
+            activeM[iLine]++;
+            long lTotalNs = frame.lSelfNs;
+            for (Frame child : frame.childL)
+                lTotalNs += add(child);
+            // a line nested in itself would otherwise count its time twice
+            if (--activeM[iLine] == 0)
+                totalNsM[iLine] += lTotalNs;
+            return lTotalNs;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package havabol;
+
+import havabol.SymbolTable.STControl;
+import havabol.SymbolTable.STEntry;
+import havabol.SymbolTable.STFunction;
+import havabol.SymbolTable.SymbolTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+/**
+ * Directory of compiled programs saved in a binary form, so an unchanged source does not
+ * have to be scanned again.
+ * <p>
+ * Every entry is named by the SHA-256 of FORMAT_VERSION, the classification of the
+ * reserved words and builtins, the default charset, and the bytes of the source, so a new
+ * builtin or reserved word, which changes the tokens of a source, gives it a new entry. An entry
+ * holds the source lines, the tokens with each distinct token string stored once, the marks
+ * TypeInference and LoopInvariants made on the tokens, and the errors SyntaxChecker found, so
+ * loading an entry runs none of the compile passes. Entries are memory mapped when read.
+ * <p>
+ * Entries not used for longer than the maximum age are deleted, and the least recently used
+ * entries are deleted while the directory is larger than the maximum size. Any number of
+ * processes may share one cache directory: entries are written to a temporary file and then
+ * renamed, and an unreadable entry is deleted and built again.
+ */
+public class ProgramCache
+{
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;      // 64 MB
+    public static final long DEFAULT_MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000;  // 30 days
+
+    private static final int MAGIC = 0x48424332;     // "HBC2"
+    private static final String SUFFIX = ".hbc";
+
+    // version of what an entry holds. It must change whenever the layout written by write() changes,
+    // or the scanning, TypeInference, LoopInvariants (including PURE), BoundsProof, or SyntaxChecker
+    // change what they produce for a source, since loading an entry runs none of them again
+    static final String FORMAT_VERSION = "2";
+
+    // the saved tokens also depend on the classification in the SymbolTable
+    static final String FORMAT = FORMAT_VERSION + "/" + classification();
+
+    private final Path cacheDir;
+    private final long lMaxBytes;
+    private final long lMaxAgeMillis;
+
+    /**
+     * ProgramCache constructor with the default size and age limits.
+     *
+     * @param cacheDir directory holding the entries, created if missing
+     * @throws IOException if the directory can not be created
+     */
+    public ProgramCache(Path cacheDir) throws IOException
+    {
+        this(cacheDir, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * ProgramCache constructor
+     *
+     * @param cacheDir      directory holding the entries, created if missing
+     * @param lMaxBytes     total size of the entries to keep
+     * @param lMaxAgeMillis time an entry is kept after it was last used
+     * @throws IOException if the directory can not be created
+     */
+    public ProgramCache(Path cacheDir, long lMaxBytes, long lMaxAgeMillis) throws IOException
+    {
+        this.cacheDir = cacheDir;
+        this.lMaxBytes = lMaxBytes;
+        this.lMaxAgeMillis = lMaxAgeMillis;
+        Files.createDirectories(cacheDir);
+    }
+
+    /**
+     * Returns the compiled program for the source file, from the cache when the source has not
+     * changed, otherwise by compiling it and saving the result.
+     *
+     * @param sourceFile path of the source file
+     * @return the compiled program
+     * @throws Exception if the file can not be read, is empty, or starts with an invalid token
+     */
+    public CompiledProgram compile(Path sourceFile) throws Exception
+    {
+        String sourceFileNm = sourceFile.toString();
+        byte[] sourceBytes = Files.readAllBytes(sourceFile);
+        Path entry = cacheDir.resolve(key(sourceBytes) + SUFFIX);
+
+        // use the saved tokens if there is a readable entry
+        if (Files.exists(entry))
+        {
+            try
+            {
+                CompiledProgram program = read(entry, sourceFileNm);
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return program;
+            }
+            catch (Exception e)
+            {// damaged or from another format, build it again
+                Files.deleteIfExists(entry);
+            }
+        }
+
+        // read the lines the same way the Scanner does, from the bytes that were hashed
+        ArrayList<String> sourceLineM = Scanner.readSource(
+                new java.util.Scanner(new ByteArrayInputStream(sourceBytes)));
+        CompiledProgram program = new CompiledProgram(sourceFileNm, sourceLineM);
+
+        // a lexical error has to be raised while running, so those programs are not saved
+        if (!program.hasLexError())
+        {
+            try
+            {
+                write(entry, program);
+                evict();
+            }
+            catch (IOException e)
+            {// the cache is only an optimization, the program still runs
+            }
+        }
+        return program;
+    }
+
+    /**
+     * Describes the symbols of a new SymbolTable and how each is classified, as a hash.
+     *
+     * @return hex hash of the symbols in order with their classifications
+     */
+    static String classification()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (STEntry entry : new TreeMap<String, STEntry>(new SymbolTable().ht).values())
+        {
+            sb.append(entry.symbol).append(' ').append(entry.primClassif);
+            if (entry instanceof STControl)
+                sb.append(' ').append(((STControl) entry).subClassif);
+            else if (entry instanceof STFunction)
+                sb.append(' ').append(((STFunction) entry).returnType).append(' ').append(((STFunction) entry).definedBy);
+            sb.append('\n');
+        }
+        return String.format("%08x", sb.toString().hashCode());
+    }
+
+    /**
+     * Builds the name of the entry for a source.
+     *
+     * @param sourceBytes bytes of the source file
+     * @return hex SHA-256 of the format, default charset, and source
+     * @throws Exception if SHA-256 is not available
+     */
+    static String key(byte[] sourceBytes) throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Charset.defaultCharset().name().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] hash = digest.digest(sourceBytes);
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash)
+            sb.append(String.format("%02x", b & 0xff));
+        return sb.toString();
+    }
+
+    /**
+     * Saves a compiled program as an entry.
+     * <p>
+     * Layout: magic, format, line count, lines, string count, strings, token count, then for
+     * each token its string index, primClassif, subClassif, line number, column, iStaticType,
+     * the indexes of its hoistLast and boundsFor tokens or -1, and iHoistNr; then the syntax
+     * error count, and the line number and diagnostic of each error.
+     * Strings are an int byte count followed by UTF-8 bytes.
+     *
+     * @param entry   path of the entry
+     * @param program program to save
+     * @throws Exception if the entry can not be written
+     */
+    private void write(Path entry, CompiledProgram program) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        writeString(out, FORMAT);
+
+        out.writeInt(program.sourceLineM.size());
+        for (String line : program.sourceLineM)
+            writeString(out, line);
+
+        // give every distinct token string an index
+        int iTokenCnt = program.getTokenCount();
+        HashMap<String, Integer> stringIndexM = new HashMap<String, Integer>();
+        ArrayList<String> stringL = new ArrayList<String>();
+        int[] tokenStrM = new int[iTokenCnt];
+        for (int i = 0; i < iTokenCnt; i++)
+        {
+            String tokenStr = program.getToken(i).tokenStr;
+            Integer iIndex = stringIndexM.get(tokenStr);
+            if (iIndex == null)
+            {
+                iIndex = stringL.size();
+                stringIndexM.put(tokenStr, iIndex);
+                stringL.add(tokenStr);
+            }
+            tokenStrM[i] = iIndex;
+        }
+        out.writeInt(stringL.size());
+        for (String str : stringL)
+            writeString(out, str);
+
+        // the marks of the passes refer to other tokens by their index
+        IdentityHashMap<Token, Integer> tokenIndexM = new IdentityHashMap<Token, Integer>();
+        for (int i = 0; i < iTokenCnt; i++)
+            tokenIndexM.put(program.getToken(i), i);
+
+        out.writeInt(iTokenCnt);
+        for (int i = 0; i < iTokenCnt; i++)
+        {
+            Token token = program.getToken(i);
+            out.writeInt(tokenStrM[i]);
+            out.writeByte(token.primClassif);
+            out.writeByte(token.subClassif);
+            out.writeInt(token.iSourceLineNr);
+            out.writeInt(token.iColPos);
+            out.writeByte(token.iStaticType);
+            out.writeInt(token.hoistLast == null ? -1 : tokenIndexM.get(token.hoistLast));
+            out.writeInt(token.boundsFor == null ? -1 : tokenIndexM.get(token.boundsFor));
+            out.writeInt(token.iHoistNr);
+        }
+
+        // programs with a lexical error are not saved, so every error is a ParserException
+        out.writeInt(program.getSyntaxErrors().size());
+        for (Exception e : program.getSyntaxErrors())
+        {
+            out.writeInt(((ParserException) e).iLineNr);
+            writeString(out, ((ParserException) e).diagnostic);
+        }
+        out.flush();
+
+        // write to a temporary file and rename it, so readers never see half an entry
+        Path temp = Files.createTempFile(cacheDir, "tmp", null);
+        try
+        {
+            try (OutputStream fileOut = Files.newOutputStream(temp))
+            {
+                bytes.writeTo(fileOut);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads a compiled program from an entry.
+     *
+     * @param entry        path of the entry
+     * @param sourceFileNm name of the source, used for error messages
+     * @return the compiled program
+     * @throws Exception if the entry is damaged or from another version
+     */
+    private static CompiledProgram read(Path entry, String sourceFileNm) throws Exception
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || !readString(buffer).equals(FORMAT))
+            throw new IOException("not a cache entry for this version: " + entry);
+
+        int iLineCnt = buffer.getInt();
+        ArrayList<String> sourceLineM = new ArrayList<String>(iLineCnt);
+        for (int i = 0; i < iLineCnt; i++)
+            sourceLineM.add(readString(buffer));
+
+        String[] stringM = new String[buffer.getInt()];
+        for (int i = 0; i < stringM.length; i++)
+            stringM[i] = readString(buffer);
+
+        Token[] tokenM = new Token[buffer.getInt()];
+        int[] hoistLastM = new int[tokenM.length];
+        int[] boundsForM = new int[tokenM.length];
+        for (int i = 0; i < tokenM.length; i++)
+        {
+            Token token = new Token(stringM[buffer.getInt()]);
+            token.primClassif = buffer.get();
+            token.subClassif = buffer.get();
+            token.iSourceLineNr = buffer.getInt();
+            token.iColPos = buffer.getInt();
+            token.iStaticType = buffer.get();
+            hoistLastM[i] = buffer.getInt();
+            boundsForM[i] = buffer.getInt();
+            token.iHoistNr = buffer.getInt();
+            tokenM[i] = token;
+        }
+        for (int i = 0; i < tokenM.length; i++)
+        {
+            if (hoistLastM[i] >= 0)
+                tokenM[i].hoistLast = tokenM[hoistLastM[i]];
+            if (boundsForM[i] >= 0)
+                tokenM[i].boundsFor = tokenM[boundsForM[i]];
+        }
+
+        ArrayList<ParserException> syntaxErrorL = new ArrayList<ParserException>();
+        for (int i = buffer.getInt(); i > 0; i--)
+        {
+            int iLineNr = buffer.getInt();
+            syntaxErrorL.add(new ParserException(iLineNr, readString(buffer), sourceFileNm));
+        }
+
+        if (tokenM.length == 0 || tokenM[tokenM.length - 1].primClassif != Token.EOF)
+            throw new IOException("cache entry does not end with EOF: " + entry);
+        return new CompiledProgram(sourceFileNm, sourceLineM, tokenM, syntaxErrorL);
+    }
+
+    /**
+     * Deletes entries older than the maximum age, then the least recently used entries until
+     * the directory is within the maximum size.
+     *
+     * @throws IOException if the directory can not be listed
+     */
+    public void evict() throws IOException
+    {
+        long lNow = System.currentTimeMillis();
+        ArrayList<Entry> entryL = new ArrayList<Entry>();
+        long lTotal = 0;
+
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(cacheDir, "*" + SUFFIX))
+        {
+            for (Path path : dir)
+            {
+                Entry entry = new Entry(path.toFile());
+                if (lNow - entry.lModified > lMaxAgeMillis)
+                    entry.file.delete();
+                else
+                {
+                    entryL.add(entry);
+                    lTotal += entry.lLength;
+                }
+            }
+        }
+
+        // oldest use first, by the times read above, since other processes touch entries while sorting
+        entryL.sort((a, b) -> Long.compare(a.lModified, b.lModified));
+        for (int i = 0; i < entryL.size() && lTotal > lMaxBytes; i++)
+        {
+            lTotal -= entryL.get(i).lLength;
+            entryL.get(i).file.delete();
+        }
+    }
+
+    /**
+     * An entry file with its last use time and size as they were when the directory was listed.
+     */
+    private static final class Entry
+    {
+        final File file;
+        final long lModified;
+        final long lLength;
+
+        Entry(File file)
+        {
+            this.file = file;
+            this.lModified = file.lastModified();
+            this.lLength = file.length();
+        }
+    }
+
+    /**
+     * Writes a string as an int byte count followed by UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,21 +1,27 @@
 package havabol;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by cyr471 on 4/10/17.
  */
 public class ResultArray extends ResultValue implements Cloneable
 {
-    ArrayList<ResultValue> array;
+    public static final int ascending = 1;
+    public static final int descending = -1;
+
+    ElementList array;  // dense or sparse, see ElementList
     int iPopulatedLen=0, iDeclaredLen=-1, iNegSub=0, type;
+    int iCountedLen=0;  // populated elements already counted by InterpreterMetrics
+    int iSortOrder=0;   // ascending or descending once SORT or BSEARCH has seen it sorted, else 0.
+                        // an assignment to the array stores a new ResultArray, which starts at 0
     String name;
 
-    public ResultArray(String name, ArrayList array, int type, int structure, int iPopulatedLen, int iDeclaredLen, int iNegSub)
+    public ResultArray(String name, List<ResultValue> array, int type, int structure, int iPopulatedLen, int iDeclaredLen, int iNegSub)
     {
         super(name, type, structure, ";");
         this.name = name;
-        this.array = array;
+        this.array = ElementList.of(array);
         this.type = type;
         this.iPopulatedLen = iPopulatedLen;
         this.iDeclaredLen = iDeclaredLen;
@@ -32,9 +38,9 @@ public class ResultArray extends ResultValue implements Cloneable
     {
         super(value, type, structure, terminatingStr);
     }
-    public ResultArray(ArrayList array, int type)
+    public ResultArray(List<ResultValue> array, int type)
     {
-        this.array = array;
+        this.array = ElementList.of(array);
         this.type = type;
 
     }
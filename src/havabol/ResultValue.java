@@ -16,6 +16,9 @@ public class ResultValue implements Cloneable
     int type;
     int structure;
     String terminatingStr;
+    StringBuilder buffer;   // text of a String variable edited in place, see edit()
+    String bufferText;      // value when it last matched buffer, null while buffer has newer edits
+    boolean bOwned;         // held only by its variable's entry, so += may update value in place
 
 
     /**
@@ -85,7 +88,41 @@ public class ResultValue implements Cloneable
      * @throws CloneNotSupportedException
      */
     public ResultValue clone() throws CloneNotSupportedException {
+        flush();
         ResultValue res = (ResultValue) super.clone();
+        // the buffer stays with this object
+        res.buffer = null;
+        res.bufferText = null;
+        res.bOwned = false;
         return res;
     }
+
+    /**
+     * Returns the buffer of a String variable for appending or editing in place.
+     * <p>
+     * Only the Parser assigning the variable calls this, on a ResultValue that no other variable
+     * holds, and then changes the buffer. StorageManager.getEntry flushes the changes into value
+     * before anyone reads it. If value was replaced since, the buffer starts over from it.
+     *
+     * @return the buffer, holding the text of value
+     */
+    StringBuilder edit()
+    {
+        if (buffer == null || (bufferText != null && bufferText != value))
+            buffer = new StringBuilder(value);
+        bufferText = null;
+        return buffer;
+    }
+
+    /**
+     * Copies changes made through edit() into value.
+     */
+    void flush()
+    {
+        if (buffer != null && bufferText == null)
+        {
+            value = buffer.toString();
+            bufferText = value;
+        }
+    }
 }
@@ -3,6 +3,10 @@ package havabol;
 /*
  * This is the simple Scanner class for the HavaBol programming language.
  * All errors and exceptions are thrown up to the calling method and output to stderr from there.
+ *
+ * Thread safety: a Scanner holds the position of a single interpreter run and is not thread safe.
+ * It must only be used by the thread running its Parser. Separate Scanner objects share no state,
+ * so any number of interpreters may run concurrently in one JVM.
  */
 
 import havabol.SymbolTable.STControl;
@@ -12,12 +16,13 @@ import havabol.SymbolTable.SymbolTable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Scanner
 {
     // public variables
     public static final String delimiters = " \t,;:()\'\"=!<>+-*/[]#^\n~{}"; // terminate a token
-    public static Token currentToken;       // the token established with the most recent call to getNext()
+    public Token currentToken;              // the token established with the most recent call to getNext()
     public int iSourceLineNr;              // line number in sourceLineM for current text line
     public int iColPos;                    // column position within the current text line
     public Token nextToken;                 // the token following the currentToken
@@ -25,12 +30,21 @@ public class Scanner
     public Boolean bShowToken = false;
     public Boolean bShowExpr = false;
     public Boolean bShowAssign = false;
+    public Boolean bShowHoist = false;
+    public TraceRecorder trace;             // where debug output is recorded, null to print it to STDOUT
 
 
     // private variables
     private ArrayList<String> sourceLineM;  // array list of source text lines
     private SymbolTable symbolTable;        // object responsible for providing symbol definitions
     private char[] textCharM;               // char [] for the current text line
+    private CompiledProgram program;        // tokens already built by HavaBolEngine, null when lexing lines
+    private TokenPipeline pipeline;         // tokens being built on another thread, null when not pipelined
+    private int iTokenNr;                   // index of the token in program or pipeline to use for the next nextToken
+    private int iEndLineNr;                 // line at which lexing reaches EOF, past the last line unless lexing a chunk
+    private int iFirstLineNr;               // first line lexed, iCodeEndM and iFirstColM start at it
+    private int[] iCodeEndM;                // column after the code of each line, 0 if blank or only a comment
+    private int[] iFirstColM;               // column of the first token of each line, -1 until the line is measured
 
     /**
      * Scanner constructor that takes in the source file name and simple table as
@@ -48,32 +62,134 @@ public class Scanner
      */
     public Scanner(String sourceFileNm, SymbolTable symbolTable) throws Exception
     {
-        // save source file name and symbol table object
+        this(sourceFileNm, readSource(new java.util.Scanner(new File(sourceFileNm))), symbolTable);
+    }
+
+    /**
+     * Scanner constructor that takes in the source file name, the lines that were already read from it,
+     * and the symbol table. Tokens are built from the lines as getNext() is called.
+     *
+     * @param sourceFileNm name of the source, used for error messages
+     * @param sourceLineM  lines of the source
+     * @param symbolTable  object that contains symbol definitions for our programming language
+     * @throws Exception if the source is empty or the first token is invalid
+     */
+    Scanner(String sourceFileNm, ArrayList<String> sourceLineM, SymbolTable symbolTable) throws Exception
+    {
+        // save source file name, source lines, and symbol table object
         this.sourceFileNm = sourceFileNm;
+        this.sourceLineM = sourceLineM;
         this.symbolTable = symbolTable;
 
-        // initialize variables to read in source file
-        java.util.Scanner inp = new java.util.Scanner(new File(sourceFileNm));
-
-        // initialize variables to read in source file
-        sourceLineM = new ArrayList<String>();
-
-        // read source file until EOF and populate sourceLineM (ArrayList)
-        while (inp.hasNext())
-            sourceLineM.add(inp.nextLine());
-
         // initialize variables to track position in source file
         iSourceLineNr = -1;
         iColPos = 0;
+        iEndLineNr = sourceLineM.size();
         textCharM = sourceLineM.get(0).toCharArray();
+        newLineInfo(0, iEndLineNr);
         nextToken = new Token();
 
         // check that there is a next token, of there isn't, then source file is empty
         getNext();
         if (nextToken.tokenStr.isEmpty())
             throw new HBException("Empty source file:" + sourceFileNm);
+    }
+
+    /**
+     * Scanner constructor that lexes only the lines from iFirstLineNr up to iEndLineNr, which
+     * CompiledProgram uses to lex the chunks of a large source at the same time.
+     * <p>
+     * The tokens have their line numbers in the whole source, and the scanner reaches EOF at
+     * iEndLineNr. A chunk without tokens is not an error.
+     *
+     * @param sourceFileNm name of the source, used for error messages
+     * @param sourceLineM  lines of the whole source
+     * @param symbolTable  object that contains symbol definitions for our programming language
+     * @param iFirstLineNr first line to lex
+     * @param iEndLineNr   line after the last line to lex
+     * @throws Exception if the first token is invalid
+     */
+    Scanner(String sourceFileNm, ArrayList<String> sourceLineM, SymbolTable symbolTable
+            , int iFirstLineNr, int iEndLineNr) throws Exception
+    {
+        this.sourceFileNm = sourceFileNm;
+        this.sourceLineM = sourceLineM;
+        this.symbolTable = symbolTable;
+
+        // an empty line before the first, so lexing starts by advancing to it
+        this.iSourceLineNr = iFirstLineNr - 1;
+        this.iEndLineNr = iEndLineNr;
+        iColPos = 0;
+        textCharM = new char[0];
+        newLineInfo(iFirstLineNr, iEndLineNr);
+        nextToken = new Token();
+
+        getNext();
+    }
+
+    /**
+     * Scanner constructor for a source that a TokenPipeline is lexing on another thread.
+     * <p>
+     * getNext() and setTo() hand out the tokens of the pipeline, waiting for the ones not built yet.
+     *
+     * @param pipeline    the pipeline lexing the source
+     * @param symbolTable object that contains symbol definitions for our programming language
+     * @throws Exception if the source is empty or the first token is invalid
+     */
+    Scanner(TokenPipeline pipeline, SymbolTable symbolTable) throws Exception
+    {
+        this.sourceFileNm = pipeline.sourceFileNm;
+        this.sourceLineM = pipeline.sourceLineM;
+        this.symbolTable = symbolTable;
+        this.pipeline = pipeline;
+
+        iTokenNr = 0;
+        nextToken = new Token();
+        getNext();
+    }
+
+    /**
+     * Scanner constructor for a program that was already compiled by HavaBolEngine.
+     * <p>
+     * getNext() and setTo() hand out the tokens of the program instead of lexing the source again,
+     * which lets one CompiledProgram be run many times.
+     *
+     * @param program     the compiled program to scan
+     * @param symbolTable object that contains symbol definitions for our programming language
+     * @throws Exception if the source is empty or the first token is invalid
+     */
+    public Scanner(CompiledProgram program, SymbolTable symbolTable) throws Exception
+    {
+        this.sourceFileNm = program.sourceFileNm;
+        this.sourceLineM = program.sourceLineM;
+        this.symbolTable = symbolTable;
+        this.program = program;
+
+        iTokenNr = 0;
+        nextToken = new Token();
+
+        // check that there is a next token, of there isn't, then source file is empty
+        getNext();
+        if (nextToken.tokenStr.isEmpty())
+            throw new HBException("Empty source file:" + sourceFileNm);
+    }
+
+    /**
+     * Reads every line of a source until only white space is left.
+     *
+     * @param inp scanner over the source text, it is closed when done
+     * @return array list of the source lines
+     */
+    static ArrayList<String> readSource(java.util.Scanner inp)
+    {
+        ArrayList<String> sourceLineM = new ArrayList<String>();
+
+        // read source until EOF and populate sourceLineM (ArrayList)
+        while (inp.hasNext())
+            sourceLineM.add(inp.nextLine());
 
         inp.close();
+        return sourceLineM;
     }
 
     /**
@@ -89,20 +205,66 @@ public class Scanner
      */
     public String getNext() throws Exception
     {
-        String token = "";                  // string used to create the token from the source file
-        String operator = "+-*/<>!=#^";     // list of operators
-        String separator = ",():;[]~{}";        // list of separators
-        String operators = "-+<>!=^*/";       // list of potential two character operations
-        String operations = "<= >= != == += -= *= /= ^=";
-        String escapeChars = "t\"na\\\''";
-
-        // set currentToken to nextToken object to keep track of tokens and reset nextToken
+        // set currentToken to nextToken object to keep track of tokens
         clone(nextToken);
-        nextToken = new Token("");
 
         // check if we encountered EOF
         if (currentToken.primClassif == Token.EOF)
+        {
+            nextToken = new Token("");
             return "";
+        }
+
+        if (program != null)
+            // the program was compiled, so the token is already built
+            nextToken = program.getToken(iTokenNr++);
+        else if (pipeline != null)
+            // the token was built by the pipeline's lexer thread
+            nextToken = pipeline.getToken(iTokenNr++);
+        else
+        {// build the next token from the source lines, which only counts as scanning it here
+            InterpreterMetrics.tokensScanned.increment();
+            nextToken = new Token("");
+            lexNext();
+        }
+
+        // no more tokens
+        if (nextToken.primClassif == Token.EOF)
+            return currentToken.tokenStr;
+
+        // check if debugging is on
+        if(bShowToken)
+        {// if only want one , uncomment line below
+            if (trace != null)
+                trace.token(currentToken);
+            else
+            {
+                System.out.print("\t\t...");
+                currentToken.printToken();
+            }
+
+            // bShowToken = false;
+        }
+
+        return currentToken.tokenStr;
+    }
+
+    /**
+     * This method builds nextToken from the source lines starting at the current line and column position.
+     * <p>
+     * If there are no more tokens, nextToken is set to EOF.
+     *
+     * @throws Exception generic Exception type to handle an processing errors found such as unterminated
+     *                   string literal, invalid floating point, or an invalid numeric constant
+     */
+    private void lexNext() throws Exception
+    {
+        String token;                       // string used to create the token from the source file
+        String operator = "+-*/<>!=#^";     // list of operators
+        String separator = ",():;[]~{}";        // list of separators
+        String operators = "-+<>!=^*/";       // list of potential two character operations
+        String operations = "<= >= != == += -= *= /= ^=";
+        String escapeChars = "t\"na\\\''";
 
         // Automatically advance to the next source line when necessary
         if (iColPos >= textCharM.length || iSourceLineNr == -1)
@@ -110,36 +272,17 @@ public class Scanner
           // if iSourceLineNr is equal to -1, then this is the first line.
             do
             { // find a line that is not empty
-                if (++iSourceLineNr >= sourceLineM.size())
+                if (++iSourceLineNr >= iEndLineNr)
                 { // EOF encountered, there are no more tokens
                     nextToken.primClassif = Token.EOF;
-                    return currentToken.tokenStr;
-                }
-
-                //check for comments
-                if(sourceLineM.get(iSourceLineNr).contains("//")
-                                            && !sourceLineM.get(iSourceLineNr).matches(".*['\"].*//.*['\"].*"))
-                {
-                    int index = sourceLineM.get(iSourceLineNr).indexOf("//");
-                    if(index == 0)
-                    {// check if whole line is comment
-                        if (iSourceLineNr+1 >= sourceLineM.size())
-                        {// hit EOF
-                            nextToken.primClassif = Token.EOF;
-                            return currentToken.tokenStr;
-                        }
-                        else
-                         // set line to empty
-                            sourceLineM.set(iSourceLineNr, "");
-                    }
-                    else // throw away part of line that is comment
-                        sourceLineM.set(iSourceLineNr, sourceLineM.get(iSourceLineNr).substring(0, index).trim());
+                    return;
                 }
 
-                textCharM = sourceLineM.get(iSourceLineNr).toCharArray();
-                iColPos = 0;
-            } // if the line we just grabbed is empty (no tokens), advance to next line
-            while (sourceLineM.get(iSourceLineNr).trim().length() == 0);
+                // only the code of the line is lexed, not a comment or the white space at the end
+                textCharM = codeOf(iSourceLineNr);
+                iColPos = iFirstColM[iSourceLineNr - iFirstLineNr];
+            } // if the line we just grabbed has no code (no tokens), advance to next line
+            while (textCharM.length == 0);
         }
 
         // trim white space at the beginning of the line starting from the cursor position
@@ -155,6 +298,7 @@ public class Scanner
         {// token contains a string
             // save the quote so we can find the string literal terminator
             char quote = textCharM[iColPos++];
+            StringBuilder literal = new StringBuilder();
 
             // create string literal token
             while (true)
@@ -163,32 +307,33 @@ public class Scanner
                     break;
                 else if (iColPos >= textCharM.length - 1)
                     // unterminated String literal encountered
-                    throw new HBException("Unterminated String Literal", token, sourceLineM);
+                    throw new HBException("Unterminated String Literal", literal.toString(), currentToken
+                            , sourceLineM);
 
                 // determine escape character value
                 if (textCharM[iColPos] == '\\' && escapeChars.contains(String.valueOf(textCharM[iColPos+1])))
                 {// escape char found, check to see what the next char contains to determine escaped value
                     if(textCharM[iColPos+1] == 'n')
-                        token += String.valueOf((char)0x0a);
+                        literal.append((char)0x0a);
                     else if (textCharM[iColPos+1] == 't')
-                        token += String.valueOf((char)0x09);
+                        literal.append((char)0x09);
                     else if (textCharM[iColPos+1] == 'a')
-                        token += String.valueOf((char)0x0A);
+                        literal.append((char)0x0A);
                     else if (textCharM[iColPos+1] == '\\')
-                        token += '\\';
+                        literal.append('\\');
                     else if (textCharM[iColPos+1] == '"')
-                        token += '"';
+                        literal.append('"');
                     else if (textCharM[iColPos+1] == '\'')
-                        token += '\'';
+                        literal.append('\'');
                     // increment iColPos to the next char after the escape values
                     iColPos += 2;
                 }
                 else
-                    token += textCharM[iColPos++];
+                    literal.append(textCharM[iColPos++]);
             }
             // save Token attribute type as a string and advance cursor position away from quotation mark
             iColPos++;
-            token = "\"" + token + "\"";
+            token = "\"" + literal + "\"";
 
             // if matches Date format
             if (token.matches("\"[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]\""))
@@ -199,7 +344,7 @@ public class Scanner
         }
         else if (delimiters.indexOf((textCharM[iColPos])) >= 0)
         {// token contains a delimiter
-            token += textCharM[iColPos++];
+            token = String.valueOf(textCharM[iColPos++]);
 
             // check if the delimiter we saved is an operator, if it is and we are within our boundaries,
             // then check if then next position contains an '='
@@ -207,13 +352,15 @@ public class Scanner
                 token += textCharM[iColPos++];
         }
         else
-            // token is an operand
+        {// token is an operand
+            int iStartCol = iColPos;
             for (; iColPos < textCharM.length; iColPos++)
-            {// build token until a delimiter is found
+            {// find the end of the token at a delimiter
                 if (delimiters.indexOf((textCharM[iColPos])) >= 0)
                     break;
-                token += textCharM[iColPos];
             }
+            token = new String(textCharM, iStartCol, iColPos - iStartCol);
+        }
 
         // determine token classification
         if (token.equals("debug"))
@@ -241,14 +388,14 @@ public class Scanner
                         nextToken.subClassif = Token.FLOAT;
                     else
                         //token contains an improper floating point
-                        throw new HBException("Invalid Numeric Constant:", token, sourceLineM);
+                        throw new HBException("Invalid Numeric Constant:", token, currentToken, sourceLineM);
                 }
                 else if (token.matches("^[0-9]+$"))
                     // token is an int
                     nextToken.subClassif = Token.INTEGER;
                 else
                     // token starts with a digit but contains non-digit characters
-                    throw new HBException("Invalid Numeric Constant:", token, sourceLineM);
+                    throw new HBException("Invalid Numeric Constant:", token, currentToken, sourceLineM);
             }
             else if (token.equals("T") || token.equals("F"))
                 //token is a boolean (T or F)
@@ -290,26 +437,100 @@ public class Scanner
             token = token.substring(1, token.length() - 1);
         }
 
-        // set nextToken to the token built and return the current token string
+        // set nextToken to the token built
         nextToken.tokenStr = token;
+    }
 
-        // check if debugging is on
-        if(bShowToken)
-        {// if only want one , uncomment line below
-            System.out.print("\t\t...");
-            currentToken.printToken();
+    /**
+     * Makes empty line metadata for the lines from iFirstLineNr up to iEndLineNr.
+     */
+    private void newLineInfo(int iFirstLineNr, int iEndLineNr)
+    {
+        this.iFirstLineNr = iFirstLineNr;
+        iCodeEndM = new int[Math.max(iEndLineNr - iFirstLineNr, 0)];
+        iFirstColM = new int[iCodeEndM.length];
+        Arrays.fill(iFirstColM, -1);
+    }
 
-            // bShowToken = false;
+    /**
+     * Returns the code of a source line, which is the line without its comment and without the white
+     * space at its end, measuring the line the first time it is asked for.
+     *
+     * @param iLineNr a line in the range this Scanner lexes
+     * @return the chars of the code, empty if the line is blank or only a comment
+     */
+    private char[] codeOf(int iLineNr)
+    {
+        int i = iLineNr - iFirstLineNr;
+        String line = sourceLineM.get(iLineNr);
+        if (iFirstColM[i] < 0)
+            measureLine(line, i);
+
+        char[] codeM = new char[iCodeEndM[i]];
+        line.getChars(0, iCodeEndM[i], codeM, 0);
+        return codeM;
+    }
+
+    /**
+     * Finds where the code of a source line ends and where its first token starts.
+     * <p>
+     * The line is looked at once from left to right. A "//" outside a string literal starts the
+     * comment. String literals are skipped the way lexNext builds them, so a quote or "//" inside
+     * one is part of the code. If a string literal is not terminated, the whole line is code and
+     * lexNext reports the error. The line in sourceLineM is not changed, so columns stay the same.
+     *
+     * @param line a source line
+     * @param i    index of the line in iCodeEndM and iFirstColM
+     */
+    private void measureLine(String line, int i)
+    {
+        String escapeChars = "t\"na\\\''";
+        int iLen = line.length();
+        int iFirstCol = -1;                 // column of the first char that is not white space
+        int iCodeEnd = 0;                   // column after the last code char that is not white space
+
+        for (int iCol = 0; iCol < iLen; iCol++)
+        {
+            char ch = line.charAt(iCol);
+            if (ch == '"' || ch == '\'')
+            {// skip the string literal up to its terminating quote
+                if (iFirstCol < 0)
+                    iFirstCol = iCol;
+                for (iCol++; iCol < iLen; iCol++)
+                {
+                    if (line.charAt(iCol) == ch && line.charAt(iCol - 1) != '\\')
+                        break;
+                    if (line.charAt(iCol) == '\\' && iCol + 1 < iLen
+                            && escapeChars.indexOf(line.charAt(iCol + 1)) >= 0)
+                        iCol++;
+                }
+                if (iCol >= iLen)
+                {// unterminated String literal
+                    iCodeEnd = iLen;
+                    break;
+                }
+                iCodeEnd = iCol + 1;
+            }
+            else if (ch == '/' && iCol + 1 < iLen && line.charAt(iCol + 1) == '/')
+                // the rest of the line is a comment
+                break;
+            else if (!Character.isWhitespace(ch))
+            {
+                if (iFirstCol < 0)
+                    iFirstCol = iCol;
+                iCodeEnd = iCol + 1;
+            }
         }
 
-        return currentToken.tokenStr;
+        iCodeEndM[i] = iCodeEnd;
+        iFirstColM[i] = iFirstCol < 0 ? 0 : iFirstCol;
     }
 
     /**
      * This method clones the given Token object to the currentToken object
      * <p>
-     * tokenStr, primClassif, subClassif, iSourceLineNr, iColPos, are all copied into
-     * currentToken
+     * tokenStr, primClassif, subClassif, iSourceLineNr, iColPos, and the annotations of the
+     * compile passes are all copied into currentToken
      *
      * @param token is the token in which needs to be cloned.
      */
@@ -321,6 +542,39 @@ public class Scanner
         currentToken.subClassif = token.subClassif;
         currentToken.iSourceLineNr = token.iSourceLineNr;
         currentToken.iColPos = token.iColPos;
+        currentToken.iStaticType = token.iStaticType;
+        currentToken.hoistLast = token.hoistLast;
+        currentToken.iHoistNr = token.iHoistNr;
+        currentToken.boundsFor = token.boundsFor;
+    }
+
+    /**
+     * Returns the index of a token in the compiled program being scanned.
+     *
+     * @param token a token handed out by this Scanner
+     * @return index of the token, or -1 if the source is being lexed
+     */
+    int indexOf(Token token)
+    {
+        if (program == null)
+            return -1;
+        return program.indexOf(token.iSourceLineNr, token.iColPos);
+    }
+
+    /**
+     * Returns a new Scanner over the same source, positioned at a token, so that another Parser
+     * can run part of the program on another thread.
+     *
+     * @param token a token handed out by this Scanner, which becomes the current token
+     * @return the new Scanner
+     * @throws Exception generic Exception type to handle an processing errors
+     */
+    Scanner fork(Token token) throws Exception
+    {
+        Scanner scan = program != null ? new Scanner(program, symbolTable)
+                : new Scanner(sourceFileNm, sourceLineM, symbolTable);
+        scan.setTo(token);
+        return scan;
     }
 
     /**
@@ -335,10 +589,25 @@ public class Scanner
      */
     public void setTo(Token token) throws Exception
     {
+        if (program != null)
+        {// the program was compiled, so find the token to continue from instead of the line position
+            iTokenNr = program.indexOf(token.iSourceLineNr, token.iColPos);
+            getNext();
+            getNext();
+            return;
+        }
+        if (pipeline != null)
+        {// the token was handed out before, so the pipeline still has it
+            iTokenNr = pipeline.indexOf(token.iSourceLineNr, token.iColPos);
+            getNext();
+            getNext();
+            return;
+        }
+
         // set line, column position, and the line char array to the token we are given
         this.iSourceLineNr = token.iSourceLineNr;
         this.iColPos = token.iColPos;
-        this.textCharM = sourceLineM.get(this.iSourceLineNr).toCharArray();
+        this.textCharM = codeOf(this.iSourceLineNr);
 
         // call getNext, currentToken = token that would of been next before we changed the poition
         //               nextToken = the token we are changing our position to
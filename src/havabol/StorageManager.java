@@ -1,7 +1,12 @@
 package havabol;
 
 import java.util.HashMap;
+import java.util.Map;
 
+/*
+ * Holds the values of the variables for one interpreter instance.
+ * Not thread safe, a StorageManager must only be used by the Parser it was given to.
+ */
 public class StorageManager
 {
     HashMap <String, ResultValue> sT;
@@ -28,10 +33,32 @@ public class StorageManager
      */
     public ResultValue getEntry(String key) throws Exception
     {
-            if(!sT.containsKey(key))
+            InterpreterMetrics.storageReads.increment();
+            ResultValue entry = sT.get(key);
+            if (entry == null)
                 return null;
-            //ResultValue getKey = sT.get(key);
+            // a String appended to or edited in place is read as a whole string
+            entry.flush();
+            // the caller may keep it, so a compound assignment must copy it before updating it
+            entry.bOwned = false;
 
+        return entry;
+    }
+
+    /**
+     * Returns the entry of a variable that is being assigned.
+     * <p>
+     * Unlike getEntry it leaves the entry marked as held only by its variable, as an
+     * assignment replaces or updates the entry rather than keeping it. It also leaves the edits
+     * of a String in its buffer, so s = s # piece does not copy the whole string each time; a
+     * caller that reads the value must flush() it first.
+     *
+     * @param key String to use as a key to get value from hashmap sT
+     * @return ResultValue entry from hasMap, null if there is none
+     */
+    ResultValue getTarget(String key)
+    {
+        InterpreterMetrics.storageReads.increment();
         return sT.get(key);
     }
 
@@ -47,6 +74,35 @@ public class StorageManager
      */
     public void putEntry(String key, ResultValue entry)
     {
-        sT.put(key, entry);
+        ResultValue old = sT.put(key, entry);
+        InterpreterMetrics.storageWrites.increment();
+
+        // array assignments store a new ResultArray, count the elements it added to the old one;
+        // an ElementList only holds the populated ones, however long it is
+        if (entry instanceof ResultArray && ((ResultArray) entry).array != null)
+        {
+            ResultArray resArray = (ResultArray) entry;
+            int iOldLen = old instanceof ResultArray ? ((ResultArray) old).iCountedLen : 0;
+            resArray.iCountedLen = resArray.array.populated();
+            if (resArray.iCountedLen > iOldLen)
+                InterpreterMetrics.arrayElementsAllocated.add(resArray.iCountedLen - iOldLen);
+        }
+    }
+
+    /**
+     * Returns a StorageManager for one task of a parallel for. It holds the same arrays as this
+     * one, so element assignments reach them, and copies of the other values, so assignments to
+     * those stay in the task.
+     *
+     * @return the frame
+     * @throws CloneNotSupportedException never, ResultValue is Cloneable
+     */
+    StorageManager frame() throws CloneNotSupportedException
+    {
+        StorageManager frame = new StorageManager();
+        for (Map.Entry<String, ResultValue> entry : sT.entrySet())
+            frame.sT.put(entry.getKey(), entry.getValue().structure == ResultValue.primitive
+                    ? entry.getValue().clone() : entry.getValue());
+        return frame;
     }
 }
@@ -5,6 +5,10 @@ import havabol.Token;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+/*
+ * Global symbol table for one interpreter instance.
+ * Not thread safe, declarations are added while the Parser runs, so every interpreter needs its own.
+ */
 public class SymbolTable
 {
     public HashMap <String, STEntry> ht;
@@ -62,6 +66,7 @@ public class SymbolTable
         ht.put("else", new STControl("else", Token.CONTROL, Token.END));
         ht.put("for", new STControl("for",Token.CONTROL,Token.FLOW));
         ht.put("endfor", new STControl("endfor", Token.CONTROL, Token.END));
+        ht.put("parallel", new STControl("parallel", Token.CONTROL, Token.FLOW));
         ht.put("while", new STControl("while", Token.CONTROL, Token.FLOW));
         ht.put("endwhile", new STControl("endwhile", Token.CONTROL, Token.END));
         ht.put("select", new STControl("select", Token.CONTROL, Token.FLOW));
@@ -79,6 +84,14 @@ public class SymbolTable
         ht.put("SPACES", new STFunction("SPACES", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
         ht.put("ELEM", new STFunction("ELEM", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
         ht.put("MAXELEM", new STFunction("MAXELEM", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("SUM", new STFunction("SUM", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("MIN", new STFunction("MIN", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("MAX", new STFunction("MAX", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("AVG", new STFunction("AVG", Token.FUNCTION, Token.FLOAT, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("COUNT", new STFunction("COUNT", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("SORT", new STFunction("SORT", Token.FUNCTION, Token.VOID, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("SORTDESC", new STFunction("SORTDESC", Token.FUNCTION, Token.VOID, Token.BUILTIN, VAR_ARGS, parmArgs));
+        ht.put("BSEARCH", new STFunction("BSEARCH", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
         ht.put("dateDiff", new STFunction("dateDiff", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
         ht.put("dateAdj", new STFunction("dateAdj", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
         ht.put("dateAge", new STFunction("dateAge", Token.FUNCTION, Token.INTEGER, Token.BUILTIN, VAR_ARGS, parmArgs));
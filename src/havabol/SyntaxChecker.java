@@ -0,0 +1,294 @@
+package havabol;
+
+import java.util.ArrayList;
+
+/**
+ * Pass over the tokens of a compiled program that finds its syntax errors once, before it runs.
+ * <p>
+ * The checker follows the block structure of the program: every 'if', 'while', 'for',
+ * 'parallel for' and 'select' must have a ':' after its header and end with its end token and a
+ * ';', 'else' and 'default' must be followed by ':', 'break' and 'continue' must be in a loop and
+ * followed by ';', every other statement must end with ';' before the next block token, and a
+ * builtin function called as a statement must be followed by '('. Unlike the Parser, which stops at the first error,
+ * the checker goes on after an error and reports all of them.
+ * <p>
+ * Tokens that stop before EOF were cut short by a lexical error, which is reported on its own, so
+ * nothing is reported for running into the end of them, such as the missing ';' of the statement
+ * the error is in.
+ * <p>
+ * A program without errors is run with Parser.bVerified set, which leaves these checks out of
+ * the statements and loop iterations as they run. Errors that depend on values, such as types
+ * and undeclared variables, are still found by the Parser.
+ */
+final class SyntaxChecker
+{
+    private static final Token END = new Token();     // stands for the tokens past the end
+
+    static
+    {
+        END.primClassif = Token.EOF;
+    }
+
+    private final Token[] tokenM;
+    private final String sourceFileNm;
+    private final ArrayList<ParserException> errorL = new ArrayList<ParserException>();
+
+    private final boolean bCutShort;    // tokenM stops at a lexical error instead of EOF
+    private int iPos;                   // token to check next
+    private int iLoopDepth;             // loops around the token being checked
+
+    private SyntaxChecker(Token[] tokenM, String sourceFileNm)
+    {
+        this.tokenM = tokenM;
+        this.sourceFileNm = sourceFileNm;
+        this.bCutShort = tokenM.length == 0 || tokenM[tokenM.length - 1].primClassif != Token.EOF;
+    }
+
+    /**
+     * Returns every syntax error of a program, in source order.
+     *
+     * @param tokenM       every token of the program, ending with EOF unless a lexical error stopped them
+     * @param sourceFileNm name of the source, used in the errors
+     * @return the errors, empty if the program has none
+     */
+    static ArrayList<ParserException> check(Token[] tokenM, String sourceFileNm)
+    {
+        SyntaxChecker checker = new SyntaxChecker(tokenM, sourceFileNm);
+        checker.statements(null, "");
+        return checker.errorL;
+    }
+
+    private Token peek()
+    {
+        return iPos < tokenM.length ? tokenM[iPos] : END;
+    }
+
+    private Token next()
+    {
+        Token token = peek();
+        if (iPos < tokenM.length)
+            iPos++;
+        return token;
+    }
+
+    private void error(Token token, String fmt, Object... varArgs)
+    {
+        // the lexical error that cut the tokens short is the only one reported for their end
+        if (bCutShort && iPos >= tokenM.length)
+            return;
+
+        // EOF has no line, so it is reported on the last line that has a token
+        int iLineNr = token.iSourceLineNr;
+        if (token.primClassif == Token.EOF)
+            iLineNr = tokenM.length > 1 ? tokenM[tokenM.length - 2].iSourceLineNr : 0;
+        errorL.add(new ParserException(iLineNr + 1, String.format(fmt, varArgs), sourceFileNm));
+    }
+
+    /**
+     * Tells whether a token starts or ends a block, which no simple statement or header contains.
+     */
+    private static boolean isBlockToken(Token token)
+    {
+        if (token.primClassif == Token.EOF)
+            return true;
+        if (token.primClassif != Token.CONTROL)
+            return false;
+        if (token.subClassif == Token.END)
+            return true;
+        return token.subClassif == Token.FLOW && !token.tokenStr.equals("to") && !token.tokenStr.equals("by")
+                && !token.tokenStr.equals("def");
+    }
+
+    /**
+     * Checks statements until one of the terminating tokens, which is left as the next token.
+     *
+     * @param blockToken     token that opened the block, null for the whole program
+     * @param terminatingStr the end tokens of the block, separated by spaces
+     * @return the terminating token, or EOF
+     */
+    private Token statements(Token blockToken, String terminatingStr)
+    {
+        while (true)
+        {
+            Token token = peek();
+            if (token.primClassif == Token.EOF)
+            {
+                if (blockToken != null)
+                    error(token, "ERROR: EXPECTED '%s;' FOR '%s' EXPRESSION"
+                            , terminatingStr.substring(terminatingStr.lastIndexOf(' ') + 1), blockToken.tokenStr);
+                return token;
+            }
+
+            if (token.primClassif == Token.CONTROL && token.subClassif == Token.END)
+            {
+                if (token.tokenStr.equals("break") || token.tokenStr.equals("continue"))
+                {
+                    next();
+                    if (iLoopDepth == 0)
+                        error(token, "ERROR: '%s' OUTSIDE OF A LOOP ON LINE %d"
+                                , token.tokenStr, token.iSourceLineNr + 1);
+                    expect(";", "ERROR: EXPECTED ';' AFTER %s", token.tokenStr);
+                }
+                else if ((" " + terminatingStr + " ").contains(" " + token.tokenStr + " "))
+                    return token;
+                else
+                {// an end token of some other block, skip it so checking goes on
+                    next();
+                    error(token, "ERROR: OUT OF PLACE TOKEN '%s'\n\tTOKEN NOT VALID HERE", token.tokenStr);
+                }
+                continue;
+            }
+
+            if (token.primClassif == Token.CONTROL && token.subClassif == Token.FLOW && isBlockToken(token))
+                block(next());
+            else
+                simpleStatement();
+        }
+    }
+
+    /**
+     * Checks the tokens of a statement up to and including its ';'.
+     */
+    private void simpleStatement()
+    {
+        Token token = next();
+        if (token.primClassif == Token.FUNCTION)
+            function(token);
+        while (!token.tokenStr.equals(";") || token.primClassif != Token.SEPARATOR)
+        {
+            if (isBlockToken(peek()))
+            {// the next block token is reached first, so check it and what follows
+                error(token, "ERROR: MISSING ';' AFTER '%s'", token.tokenStr);
+                return;
+            }
+            token = next();
+        }
+    }
+
+    /**
+     * Checks the header of a block up to and including its ':'.
+     *
+     * @param blockToken token that opened the block
+     */
+    private void header(Token blockToken)
+    {
+        while (true)
+        {
+            Token token = peek();
+            if (token.tokenStr.equals(":") && token.primClassif == Token.SEPARATOR)
+            {
+                next();
+                return;
+            }
+            if (isBlockToken(token) || (token.tokenStr.equals(";") && token.primClassif == Token.SEPARATOR))
+            {
+                error(token, "ERROR: EXPECTED ':' AFTER '%s' ON LINE %d"
+                        , blockToken.tokenStr, blockToken.iSourceLineNr + 1);
+                return;
+            }
+            next();
+        }
+    }
+
+    /**
+     * Checks that a builtin function called as a statement is followed by '('. In an expression
+     * the Parser also takes one operand without parentheses, such as LENGTH name.
+     */
+    private void function(Token token)
+    {
+        if (token.subClassif == Token.BUILTIN && !peek().tokenStr.equals("("))
+            error(token, "ERROR: '%s' FUNCTION IS MISSING SEPARATOR '('", token.tokenStr);
+    }
+
+    /**
+     * Takes the next token if it is the expected one, otherwise reports an error and leaves it.
+     */
+    private void expect(String tokenStr, String fmt, Object... varArgs)
+    {
+        if (peek().tokenStr.equals(tokenStr))
+            next();
+        else
+            error(peek(), fmt, varArgs);
+    }
+
+    /**
+     * Checks that a block ends with the given end token and a ';'.
+     */
+    private void end(Token blockToken, Token endToken, String endStr)
+    {
+        if (!endToken.tokenStr.equals(endStr))
+            return;     // EOF, already reported
+        next();
+        expect(";", "ERROR: EXPECTED '%s;' FOR '%s' EXPRESSION", endStr, blockToken.tokenStr);
+    }
+
+    /**
+     * Checks the header and body of a while or for loop up to its end token.
+     */
+    private void loop(Token blockToken, String endStr)
+    {
+        header(blockToken);
+        iLoopDepth++;
+        Token endToken = statements(blockToken, endStr);
+        iLoopDepth--;
+        end(blockToken, endToken, endStr);
+    }
+
+    /**
+     * Checks an if, while, for, parallel for, or select statement.
+     *
+     * @param blockToken token that opened the block
+     */
+    private void block(Token blockToken)
+    {
+        Token endToken;
+        switch (blockToken.tokenStr)
+        {
+            case "if":
+                header(blockToken);
+                endToken = statements(blockToken, "else endif");
+                if (endToken.tokenStr.equals("else"))
+                {
+                    next();
+                    expect(":", "ERROR: EXPECTED ':' AFTER ELSE");
+                    endToken = statements(blockToken, "endif");
+                }
+                end(blockToken, endToken, "endif");
+                break;
+            case "while":
+                loop(blockToken, "endwhile");
+                break;
+            case "parallel":
+                if (!peek().tokenStr.equals("for"))
+                    error(peek(), "ERROR: EXPECTED 'for' AFTER 'parallel' BUT FOUND '%s'", peek().tokenStr);
+                else
+                    // checked as the for loop it starts
+                    loop(next(), "endfor");
+                break;
+            case "for":
+                loop(blockToken, "endfor");
+                break;
+            case "select":
+                header(blockToken);
+                endToken = peek();
+                if (!endToken.tokenStr.equals("when") && !endToken.tokenStr.equals("default")
+                        && !endToken.tokenStr.equals("endselect"))
+                    endToken = statements(blockToken, "when default endselect");
+                while (endToken.tokenStr.equals("when"))
+                {
+                    header(next());
+                    endToken = statements(blockToken, "when default endselect");
+                }
+                if (endToken.tokenStr.equals("default"))
+                {
+                    next();
+                    expect(":", "ERROR: SELECT 'DEFAULT' CASE MISSING ':'");
+                    endToken = statements(blockToken, "endselect");
+                }
+                end(blockToken, endToken, "endselect");
+                break;
+            default:
+                error(blockToken, "ERROR: UNIDENTIFIED CONTROL VARIABLE %s", blockToken.tokenStr);
+        }
+    }
+}
@@ -9,6 +9,10 @@ public class Token
     public int subClassif = 0;
     public int iSourceLineNr = 0;
     public int iColPos = 0;
+    public int iStaticType = 0;     // type TypeInference proved for an operator or '=', 0 if unknown
+    public Token hoistLast = null;          // last token of the operand after this one, if LoopInvariants found it invariant
+    public int iHoistNr = 0;                // number of that operand in its loop
+    public Token boundsFor = null;          // counting for whose control variable is this array's subscript, see BoundsProof
     // Constants for primClassif
     public static final int OPERAND = 1;    // constants, identifier
     public static final int OPERATOR = 2;   // + - * / < > = !
@@ -78,6 +82,17 @@ public class Token
     }
 
     public void printToken()
+    {
+        printToken(System.out);
+    }
+
+    /**
+     * Prints the classification and string of the token to the given stream, in the format used by
+     * debug Token on.
+     *
+     * @param out stream to print to
+     */
+    public void printToken(java.io.PrintStream out)
     {
         String primClassifStr;
         String subClassifStr;
@@ -117,14 +132,14 @@ public class Token
                 subClassifStr = "-";
         }
         if(subClassif == 5 ){
-            System.out.printf("%-11s %-12s"
+            out.printf("%-11s %-12s"
                     , primClassifStr
                     , subClassifStr);
-            hexPrint(24, tokenStr);
+            hexPrint(out, 24, tokenStr);
         }
         else
         {
-            System.out.printf("%-11s %-12s %s\n", primClassifStr, subClassifStr, tokenStr);
+            out.printf("%-11s %-12s %s\n", primClassifStr, subClassifStr, tokenStr);
         }
     }
 
@@ -155,6 +170,18 @@ public class Token
 
      */
     public void hexPrint(int indent, String str)
+    {
+        hexPrint(System.out, indent, str);
+    }
+
+    /**
+     * Prints a string that may contain non-printable characters as two lines, to the given stream.
+     *
+     * @param out     stream to print to
+     * @param indent  the number of spaces to indent the second printed line
+     * @param str     the string to print which may contain non-printable characters
+     */
+    public void hexPrint(java.io.PrintStream out, int indent, String str)
     {
         int len = str.length();
         char [] charray = str.toCharArray();
@@ -164,15 +191,15 @@ public class Token
         {
             ch = charray[i];
             if (ch > 31 && ch < 127)   // ASCII printable characters
-                System.out.printf("%c", ch);
+                out.printf("%c", ch);
             else
-                System.out.printf(". ");
+                out.printf(". ");
         }
-        System.out.printf("\n");
+        out.printf("\n");
         // indent the second line to the number of specified spaces
         for (int i = 0; i < indent; i++)
         {
-            System.out.printf(" ");
+            out.printf(" ");
         }
         // print the second line.  Non-printable characters will be shown
         // as their hex value.  Printable will simply be a space
@@ -181,10 +208,10 @@ public class Token
             ch = charray[i];
             // only deal with the printable characters
             if (ch > 31 && ch < 127)   // ASCII printable characters
-                System.out.printf(" ", ch);
+                out.printf(" ", ch);
             else
-                System.out.printf("%02X", (int) ch);
+                out.printf("%02X", (int) ch);
         }
-        System.out.printf("\n");
+        out.printf("\n");
     }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+package havabol;
+
+import havabol.SymbolTable.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lexes a source on its own thread while a Parser runs it, used instead of compiling the source
+ * first when the --pipeline flag is given.
+ * <p>
+ * A lexer thread runs a Scanner over the source lines and puts each token into a ring of
+ * RING_SIZE slots. The interpreter thread takes tokens out of the ring as the Scanner it parses
+ * with asks for them, so lexing the rest of a long straight-line script overlaps with running
+ * its start. If the ring is full the lexer waits, and if it is empty the interpreter waits.
+ * <p>
+ * Every token taken out of the ring is also kept in tokenL, so a Scanner can be set back to any
+ * token it handed out, as loops and functions do. Tokens are kept in source order, which lets
+ * indexOf find a position by binary search.
+ * <p>
+ * A TokenPipeline belongs to one interpreter run; only one thread may take tokens from it.
+ */
+final class TokenPipeline
+{
+    static final int RING_SIZE = 1 << 12;
+
+    private final Token[] ringM = new Token[RING_SIZE];
+    private final ArrayList<Token> tokenL = new ArrayList<Token>();   // tokens taken from the ring
+    private final Thread lexer;
+
+    private volatile long lHead = 0;    // tokens put in the ring, only the lexer changes this
+    private volatile long lTail = 0;    // tokens taken from the ring, only the interpreter changes this
+    private volatile boolean bDone = false;     // set by the lexer after EOF or an invalid token
+    private volatile boolean bClosed = false;   // set by the interpreter when it stops reading
+    private volatile Exception lexError;        // error raised by the invalid token, or null
+
+    final String sourceFileNm;              // source file name, used for error messages
+    final ArrayList<String> sourceLineM;    // lines of the source
+
+    /**
+     * TokenPipeline constructor, starts the lexer thread.
+     *
+     * @param sourceFileNm name of the source, used for error messages
+     * @param sourceLineM  lines of the source
+     */
+    TokenPipeline(String sourceFileNm, ArrayList<String> sourceLineM)
+    {
+        this.sourceFileNm = sourceFileNm;
+        this.sourceLineM = sourceLineM;
+
+        lexer = new Thread(this::lex, "havabol-lexer");
+        lexer.setDaemon(true);
+        lexer.start();
+    }
+
+    /**
+     * Body of the lexer thread. Puts the tokens of the source in the ring until EOF, an invalid
+     * token, or the pipeline is closed.
+     */
+    private void lex()
+    {
+        try
+        {
+            // the scanner leaves the first token in nextToken
+            Scanner scan = new Scanner(sourceFileNm, sourceLineM, new SymbolTable());
+            while (true)
+            {
+                Token token = scan.nextToken;
+                if (!put(token) || token.primClassif == Token.EOF)
+                    break;
+                scan.getNext();
+            }
+        }
+        catch (Exception e)
+        {
+            lexError = e;
+        }
+        finally
+        {
+            bDone = true;
+        }
+    }
+
+    /**
+     * Puts a token in the ring, waiting while it is full.
+     *
+     * @return false if the pipeline was closed
+     */
+    private boolean put(Token token)
+    {
+        long lSlot = lHead;
+        while (lSlot - lTail >= RING_SIZE)
+        {
+            if (bClosed)
+                return false;
+            LockSupport.parkNanos(10000);
+        }
+        ringM[(int) (lSlot & (RING_SIZE - 1))] = token;
+
+        // publish the token to the interpreter
+        lHead = lSlot + 1;
+        return true;
+    }
+
+    /**
+     * Returns the token at the given index, waiting for the lexer to build it.
+     * <p>
+     * If an error was found while building the token, the error is thrown now. Past EOF, EOF is
+     * returned again.
+     *
+     * @param iTokenNr index of the token
+     * @return the token
+     * @throws Exception the error found while building the token
+     */
+    Token getToken(int iTokenNr) throws Exception
+    {
+        while (iTokenNr >= tokenL.size())
+        {
+            if (!tokenL.isEmpty() && tokenL.get(tokenL.size() - 1).primClassif == Token.EOF)
+                return tokenL.get(tokenL.size() - 1);
+
+            long lSlot = lTail;
+            if (lSlot == lHead)
+            {
+                // read bDone before checking lHead again, so a token put just before it is seen
+                if (bDone && lSlot == lHead)
+                {
+                    if (lexError != null)
+                        throw lexError;
+                    throw new HBException("Lexing stopped:" + sourceFileNm);
+                }
+                Thread.yield();
+                continue;
+            }
+
+            int iPos = (int) (lSlot & (RING_SIZE - 1));
+            tokenL.add(ringM[iPos]);
+            ringM[iPos] = null;
+            lTail = lSlot + 1;
+        }
+        return tokenL.get(iTokenNr);
+    }
+
+    /**
+     * Finds the first token already taken from the ring that starts at or after the given position.
+     *
+     * @param iSourceLineNr line number of the position
+     * @param iColPos column of the position
+     * @return index of the token
+     */
+    int indexOf(int iSourceLineNr, int iColPos)
+    {
+        // the EOF token has no position, so it only counts as being after every token
+        int iHi = tokenL.size();
+        if (iHi > 0 && tokenL.get(iHi - 1).primClassif == Token.EOF)
+            iHi--;
+
+        int iLo = 0;
+        while (iLo < iHi)
+        {
+            int iMid = (iLo + iHi) >>> 1;
+            Token token = tokenL.get(iMid);
+            if (token.iSourceLineNr < iSourceLineNr
+                    || (token.iSourceLineNr == iSourceLineNr && token.iColPos < iColPos))
+                iLo = iMid + 1;
+            else
+                iHi = iMid;
+        }
+        return iLo;
+    }
+
+    /**
+     * Stops the lexer thread if it is still running, after the interpreter is done with the source.
+     */
+    void close()
+    {
+        bClosed = true;
+    }
+}
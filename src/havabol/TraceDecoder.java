@@ -0,0 +1,132 @@
+/*
+  Prints a trace file written by TraceRecorder in the same text format as debug Token, Expr,
+  and Assign on.
+  Command Arguments:
+      java havabol.TraceDecoder arg1
+             arg1 is the trace file written by java havabol.HavaBol --trace arg1 source
+  Output:
+      The trace is printed to STDOUT.
+ */
+package havabol;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+
+public class TraceDecoder
+{
+    public static void main(String[] args)
+    {
+        try
+        {
+            decode(args[0], System.out);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Prints every record of a trace file.
+     *
+     * @param traceFileNm name of the trace file
+     * @param out         where to print the records
+     * @throws IOException if the file can not be read or is not a trace file
+     */
+    public static void decode(String traceFileNm, PrintStream out) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(traceFileNm))))
+        {
+            if (in.readInt() != TraceRecorder.MAGIC)
+                throw new IOException(traceFileNm + " is not a HavaBol trace file");
+            int iSlotSize = in.readInt();
+            byte[] slotM = new byte[iSlotSize];
+            ByteBuffer slot = ByteBuffer.wrap(slotM);
+
+            while (true)
+            {
+                try
+                {
+                    in.readFully(slotM);
+                }
+                catch (EOFException e)
+                {// a partial slot at the end is from a run that was killed
+                    break;
+                }
+
+                byte kind = slot.get(0);
+                int iPrimClassif = slot.get(1);
+                int iSubClassif = slot.get(2);
+                int iSourceLineNr = slot.getInt(4);
+                int iAux = slot.getInt(8);
+
+                // collect the text from this slot and any that continue it
+                StringBuilder text = new StringBuilder();
+                appendText(slot, text);
+                while (slot.get(3) == TraceRecorder.FLAG_MORE)
+                {
+                    in.readFully(slotM);
+                    appendText(slot, text);
+                }
+
+                print(out, kind, iPrimClassif, iSubClassif, iSourceLineNr, iAux, text.toString());
+            }
+        }
+    }
+
+    /**
+     * Adds the text chars of a slot to the text of the record.
+     */
+    private static void appendText(ByteBuffer slot, StringBuilder text)
+    {
+        int iChars = slot.getShort(12);
+        for (int i = 0; i < iChars; i++)
+            text.append(slot.getChar(TraceRecorder.HEADER_SIZE + 2 * i));
+    }
+
+    /**
+     * Prints one record the way the debug statements print it.
+     */
+    private static void print(PrintStream out, byte kind, int iPrimClassif, int iSubClassif,
+            int iSourceLineNr, int iAux, String text)
+    {
+        int iSep = text.indexOf('\0');
+        String variableStr = iSep < 0 ? "" : text.substring(0, iSep);
+        String value = iSep < 0 ? text : text.substring(iSep + 1);
+
+        switch (kind)
+        {
+            case TraceRecorder.REC_TOKEN:
+                Token token = new Token(text);
+                token.primClassif = iPrimClassif;
+                token.subClassif = iSubClassif;
+                out.print("\t\t...");
+                token.printToken(out);
+                break;
+            case TraceRecorder.REC_EXPR:
+                out.println("\t\t...Result Value: " + text);
+                break;
+            case TraceRecorder.REC_ASSIGN:
+                out.println("\t\t...Variable Name: " + variableStr + " Value: " + value);
+                break;
+            case TraceRecorder.REC_ASSIGN_INDEX:
+                out.println("\t\t...Variable Name: " + variableStr
+                        + " Index: " + iAux + " Value: " + value);
+                break;
+            case TraceRecorder.REC_ASSIGN_ARRAY:
+                out.println("\t\t...Variable Name: " + variableStr + " Values:" + value);
+                break;
+            case TraceRecorder.REC_HOIST:
+                out.println("\t\t...Hoisted: line " + (iSourceLineNr + 1)
+                        + ", operand after '" + variableStr + "' = " + value);
+                break;
+            default:
+                out.println("\t\t...**unknown trace record " + kind + "**");
+        }
+    }
+}
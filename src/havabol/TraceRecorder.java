@@ -0,0 +1,255 @@
+package havabol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary recorder for the debug Token, Expr, Assign, and Hoist traces, used instead of printing them
+ * when the --trace flag is given.
+ * <p>
+ * The interpreter thread copies each trace record into a preallocated ring of fixed size slots
+ * and returns. A drain thread writes the filled slots to the trace file, so tracing neither waits
+ * on STDOUT nor mixes with the output of the program. If the ring fills up, the interpreter waits
+ * for the drain thread instead of losing records; a record longer than the ring is handed to the
+ * drain thread a ring at a time. TraceDecoder turns a trace file back into the text debug on
+ * prints.
+ * <p>
+ * File layout: MAGIC, SLOT_SIZE, then the slots. Each slot is
+ * <pre>
+ *     byte  kind          REC_TOKEN, REC_EXPR, REC_ASSIGN, REC_ASSIGN_INDEX, REC_ASSIGN_ARRAY, REC_HOIST,
+ *                         or REC_MORE
+ *     byte  primClassif   of a token record
+ *     byte  subClassif    of a token record
+ *     byte  flags         FLAG_MORE if the text goes on in the next slot
+ *     int   line          source line number
+ *     int   aux           subscript of an REC_ASSIGN_INDEX record
+ *     short chars         number of text chars in this slot
+ *     short unused
+ *     char[SLOT_CHARS]    text
+ * </pre>
+ * Text longer than SLOT_CHARS continues in REC_MORE slots. Assignment records hold the variable
+ * name and the value separated by a '\0', hoist records the operator and the value.
+ * <p>
+ * A TraceRecorder belongs to one interpreter run; only one thread may record into it.
+ */
+public class TraceRecorder
+{
+    static final int MAGIC = 0x48425431;        // "HBT1"
+    static final int SLOT_SIZE = 64;
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_CHARS = (SLOT_SIZE - HEADER_SIZE) / 2;
+
+    static final byte REC_TOKEN = 1;
+    static final byte REC_EXPR = 2;
+    static final byte REC_ASSIGN = 3;
+    static final byte REC_ASSIGN_INDEX = 4;
+    static final byte REC_ASSIGN_ARRAY = 5;
+    static final byte REC_MORE = 6;
+    static final byte REC_HOIST = 7;
+    static final byte FLAG_MORE = 1;
+
+    private static final int SLOT_CNT = 1 << 16;    // 4 MB ring
+
+    private final byte[] ringM = new byte[SLOT_CNT * SLOT_SIZE];
+    private final ByteBuffer ring = ByteBuffer.wrap(ringM);
+    private final FileChannel channel;
+    private final Thread drainer;
+
+    private volatile long lHead = 0;    // slots written by the interpreter, only it changes this
+    private volatile long lTail = 0;    // slots written to the file, only the drainer changes this
+    private volatile boolean bClosed = false;
+    private IOException drainError;
+
+    /**
+     * TraceRecorder constructor, creates the trace file and starts the drain thread.
+     *
+     * @param traceFile path of the trace file, replaced if it exists
+     * @throws IOException if the file can not be created
+     */
+    public TraceRecorder(Path traceFile) throws IOException
+    {
+        channel = FileChannel.open(traceFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE
+                , StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(MAGIC).putInt(SLOT_SIZE).flip();
+        while (header.hasRemaining())
+            channel.write(header);
+
+        drainer = new Thread(this::drain, "havabol-trace");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Records a token built by the Scanner, for debug Token on.
+     *
+     * @param token the token
+     */
+    void token(Token token)
+    {
+        record(REC_TOKEN, token.primClassif, token.subClassif, token.iSourceLineNr, 0, token.tokenStr);
+    }
+
+    /**
+     * Records the result of an expression, for debug Expr on.
+     *
+     * @param iSourceLineNr line of the expression
+     * @param value         the result
+     */
+    void expr(int iSourceLineNr, String value)
+    {
+        record(REC_EXPR, 0, 0, iSourceLineNr, 0, value);
+    }
+
+    /**
+     * Records the assignment of a primitive variable, for debug Assign on.
+     *
+     * @param iSourceLineNr line of the assignment
+     * @param variableStr   name of the variable
+     * @param value         the value assigned
+     */
+    void assign(int iSourceLineNr, String variableStr, String value)
+    {
+        record(REC_ASSIGN, 0, 0, iSourceLineNr, 0, variableStr + '\0' + value);
+    }
+
+    /**
+     * Records the assignment of an array element, for debug Assign on.
+     *
+     * @param iSourceLineNr line of the assignment
+     * @param variableStr   name of the array
+     * @param iIndex        subscript assigned
+     * @param value         the value assigned
+     */
+    void assignIndex(int iSourceLineNr, String variableStr, int iIndex, String value)
+    {
+        record(REC_ASSIGN_INDEX, 0, 0, iSourceLineNr, iIndex, variableStr + '\0' + value);
+    }
+
+    /**
+     * Records the assignment of a whole array, for debug Assign on.
+     *
+     * @param iSourceLineNr line of the assignment
+     * @param variableStr   name of the array
+     * @param values        the element values, each preceded by a space
+     */
+    void assignArray(int iSourceLineNr, String variableStr, String values)
+    {
+        record(REC_ASSIGN_ARRAY, 0, 0, iSourceLineNr, 0, variableStr + '\0' + values);
+    }
+
+    /**
+     * Records an operand evaluated once for a loop, for debug Hoist on.
+     *
+     * @param iSourceLineNr line of the operand
+     * @param operatorStr   the token the operand follows
+     * @param value         value of the operand
+     */
+    void hoist(int iSourceLineNr, String operatorStr, String value)
+    {
+        record(REC_HOIST, 0, 0, iSourceLineNr, 0, operatorStr + '\0' + value);
+    }
+
+    /**
+     * Copies a record into as many slots as its text needs.
+     */
+    private void record(byte kind, int iPrimClassif, int iSubClassif, int iSourceLineNr, int iAux, String text)
+    {
+        int iLen = text.length();
+        int iOffset = 0;
+        long lSlot = lHead;
+        do
+        {
+            // wait for the drainer if the ring is full
+            if (lSlot - lTail >= SLOT_CNT)
+                // a record longer than the ring has to give the drainer its first slots
+                lHead = lSlot;
+            while (lSlot - lTail >= SLOT_CNT)
+            {
+                LockSupport.unpark(drainer);
+                Thread.yield();
+            }
+
+            int iChars = Math.min(SLOT_CHARS, iLen - iOffset);
+            int iPos = (int) (lSlot & (SLOT_CNT - 1)) * SLOT_SIZE;
+            ring.put(iPos, iOffset == 0 ? kind : REC_MORE);
+            ring.put(iPos + 1, (byte) iPrimClassif);
+            ring.put(iPos + 2, (byte) iSubClassif);
+            ring.put(iPos + 3, iOffset + iChars < iLen ? FLAG_MORE : 0);
+            ring.putInt(iPos + 4, iSourceLineNr);
+            ring.putInt(iPos + 8, iAux);
+            ring.putShort(iPos + 12, (short) iChars);
+            for (int i = 0; i < iChars; i++)
+                ring.putChar(iPos + HEADER_SIZE + 2 * i, text.charAt(iOffset + i));
+
+            iOffset += iChars;
+            lSlot++;
+        } while (iOffset < iLen);
+
+        // publish the slots to the drainer
+        lHead = lSlot;
+    }
+
+    /**
+     * Body of the drain thread. Writes filled slots to the file until the recorder is closed
+     * and every slot has been written.
+     */
+    private void drain()
+    {
+        try
+        {
+            while (true)
+            {
+                long lEnd = lHead;
+                long lStart = lTail;
+                if (lStart == lEnd)
+                {
+                    if (bClosed && lHead == lStart)
+                        break;
+                    LockSupport.parkNanos(1000000);
+                    continue;
+                }
+
+                // write up to the end of the ring, the rest goes on the next pass
+                int iFirst = (int) (lStart & (SLOT_CNT - 1));
+                int iCnt = (int) Math.min(lEnd - lStart, SLOT_CNT - iFirst);
+                ByteBuffer chunk = ByteBuffer.wrap(ringM, iFirst * SLOT_SIZE, iCnt * SLOT_SIZE);
+                while (chunk.hasRemaining())
+                    channel.write(chunk);
+                lTail = lStart + iCnt;
+            }
+        }
+        catch (IOException e)
+        {
+            drainError = e;
+            // let the interpreter go on without tracing rather than wait forever
+            lTail = Long.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * Waits for every record to be written and closes the trace file.
+     *
+     * @throws IOException if writing the file failed
+     */
+    public void close() throws IOException
+    {
+        bClosed = true;
+        LockSupport.unpark(drainer);
+        try
+        {
+            drainer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (drainError != null)
+            throw drainError;
+    }
+}
@@ -0,0 +1,283 @@
+package havabol;
+
+import havabol.SymbolTable.STEntry;
+import havabol.SymbolTable.STIdentifier;
+import havabol.SymbolTable.SymbolTable;
+
+import java.util.ArrayList;
+
+/**
+ * Pass over the tokens of a compiled program that finds the arithmetic whose types are known
+ * before it runs.
+ * <p>
+ * The declarations of the program give the type of every Int and Float variable that is declared
+ * only once. Using those types and the types of the numeric literals, the right side of each
+ * simple assignment 'name = expr;' is typed. An operator + - * / whose operands are both known to
+ * be Int or both Float gets that type in iStaticType, and the '=' gets the declared type when the
+ * right side already has it in the form the coercion would produce.
+ * <p>
+ * The types are hints: Parser checks the types of the actual values before it skips the type
+ * dispatch of Utilities or the coercion of assign(), so a wrong hint only loses the shortcut.
+ */
+final class TypeInference
+{
+    private static final Token END = new Token();     // stands for the tokens past the end
+
+    private final Token[] tokenM;
+    private final SymbolTable declM = new SymbolTable();    // declared type of each variable, 0 if not one type
+
+    private int iPos;                   // token being typed
+    private boolean bCanonical;         // the last value typed is in the form the coercion produces
+    private final ArrayList<Token> markL = new ArrayList<Token>();
+    private final ArrayList<Integer> markTypeL = new ArrayList<Integer>();
+
+    private TypeInference(Token[] tokenM)
+    {
+        this.tokenM = tokenM;
+    }
+
+    /**
+     * Sets iStaticType on the operators and '=' tokens of a program whose types are known.
+     *
+     * @param tokenM every token of the program, ending with EOF
+     */
+    static void annotate(Token[] tokenM)
+    {
+        TypeInference inference = new TypeInference(tokenM);
+        inference.collectDeclarations();
+        inference.typeAssignments();
+    }
+
+    /**
+     * Saves the type of every variable declared as 'Int name' or 'Float name'.
+     * Arrays and variables declared more than once with different types have no type.
+     */
+    private void collectDeclarations()
+    {
+        for (int i = 0; i + 1 < tokenM.length; i++)
+        {
+            Token token = tokenM[i];
+            Token name = tokenM[i + 1];
+            if (token.primClassif != Token.CONTROL || token.subClassif != Token.DECLARE
+                    || name.subClassif != Token.IDENTIFIER)
+                continue;
+
+            int iDclType = 0;
+            if (token.tokenStr.equals("Int"))
+                iDclType = Token.INTEGER;
+            else if (token.tokenStr.equals("Float"))
+                iDclType = Token.FLOAT;
+            // an array name is never a number
+            if (at(i + 2).tokenStr.equals("["))
+                iDclType = 0;
+
+            STEntry entry = declM.getSymbol(name.tokenStr);
+            if (entry instanceof STIdentifier && ((STIdentifier) entry).dclType != iDclType)
+                iDclType = 0;
+            declM.putSymbol(name.tokenStr, new STIdentifier(name.tokenStr, Token.OPERAND, iDclType
+                    , ResultValue.primitive, 0, 0));
+        }
+    }
+
+    /**
+     * Types the right side of each 'name = expr;' that begins a statement.
+     */
+    private void typeAssignments()
+    {
+        for (int i = 1; i < tokenM.length; i++)
+        {
+            Token token = tokenM[i];
+            if (token.primClassif != Token.OPERATOR || !token.tokenStr.equals("=")
+                    || tokenM[i - 1].subClassif != Token.IDENTIFIER || !startsStatement(i - 1))
+                continue;
+
+            markL.clear();
+            markTypeL.clear();
+            iPos = i + 1;
+            int iType = expr();
+            // only a right side that was typed completely is trusted
+            if (iType == 0 || !at(iPos).tokenStr.equals(";"))
+                continue;
+
+            for (int j = 0; j < markL.size(); j++)
+                markL.get(j).iStaticType = markTypeL.get(j);
+            if (bCanonical && iType == declaredType(tokenM[i - 1].tokenStr))
+                token.iStaticType = iType;
+        }
+    }
+
+    /**
+     * Tells whether the token at the index is the first token of a statement, or the name
+     * following the type of a declaration.
+     */
+    private boolean startsStatement(int iIndex)
+    {
+        if (iIndex == 0)
+            return true;
+        Token prev = tokenM[iIndex - 1];
+        return prev.tokenStr.equals(";") || prev.tokenStr.equals(":")
+                || (prev.primClassif == Token.CONTROL && prev.subClassif == Token.DECLARE);
+    }
+
+    /**
+     * Returns the token at the index, or END past the last token. A program with a lexical
+     * error has no EOF token.
+     */
+    private Token at(int iIndex)
+    {
+        return iIndex < tokenM.length ? tokenM[iIndex] : END;
+    }
+
+    /**
+     * Returns the declared type of a variable, 0 if it has none.
+     */
+    private int declaredType(String name)
+    {
+        STEntry entry = declM.getSymbol(name);
+        if (entry instanceof STIdentifier)
+            return ((STIdentifier) entry).dclType;
+        return 0;
+    }
+
+    /**
+     * expr := term { ('+' | '-') term }
+     *
+     * @return type of the value, 0 if unknown
+     */
+    private int expr()
+    {
+        int iType = term();
+        while (iType != 0 && isOperator("+-"))
+            iType = binary(iType);
+        return iType;
+    }
+
+    /**
+     * term := unary { ('*' | '/') unary }
+     */
+    private int term()
+    {
+        int iType = unary();
+        while (iType != 0 && isOperator("*/"))
+            iType = binary(iType);
+        return iType;
+    }
+
+    /**
+     * unary := '-' unary | primary
+     * <p>
+     * Unary minus multiplies by the Int -1, so its value is always an Int.
+     */
+    private int unary()
+    {
+        if (!isOperator("-"))
+            return primary();
+        iPos++;
+        if (unary() == 0)
+            return 0;
+        bCanonical = true;
+        return Token.INTEGER;
+    }
+
+    /**
+     * primary := Int or Float literal | declared variable | '(' expr ')'
+     */
+    private int primary()
+    {
+        Token token = at(iPos);
+        if (token.tokenStr.equals("(") && token.primClassif == Token.SEPARATOR)
+        {
+            iPos++;
+            int iType = expr();
+            if (iType == 0 || !at(iPos).tokenStr.equals(")"))
+                return 0;
+            iPos++;
+            return iType;
+        }
+        if (token.primClassif != Token.OPERAND)
+            return 0;
+
+        iPos++;
+        switch (token.subClassif)
+        {
+            case Token.INTEGER:
+                bCanonical = isCanonicalInt(token.tokenStr);
+                return bCanonical ? Token.INTEGER : 0;
+            case Token.FLOAT:
+                bCanonical = isCanonicalFloat(token.tokenStr);
+                return Token.FLOAT;
+            case Token.IDENTIFIER:
+                // elements and function results have their own types
+                if (at(iPos).tokenStr.equals("[") || at(iPos).tokenStr.equals("("))
+                    return 0;
+                bCanonical = false;
+                return declaredType(token.tokenStr);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Types the operator at iPos and its right operand.
+     * <p>
+     * Utilities gives the result the type of the left operand, converting the right one to it.
+     *
+     * @param iLeftType type of the left operand
+     * @return type of the result, 0 if unknown
+     */
+    private int binary(int iLeftType)
+    {
+        Token operator = at(iPos++);
+        int iRightType = operator.tokenStr.equals("+") || operator.tokenStr.equals("-") ? term() : unary();
+        if (iRightType == 0)
+            return 0;
+        if (iRightType == iLeftType)
+        {
+            markL.add(operator);
+            markTypeL.add(iLeftType);
+        }
+        bCanonical = true;
+        return iLeftType;
+    }
+
+    /**
+     * Tells whether the token at iPos is one of the single character operators given.
+     */
+    private boolean isOperator(String operators)
+    {
+        Token token = at(iPos);
+        return token.primClassif == Token.OPERATOR && token.tokenStr.length() == 1
+                && operators.indexOf(token.tokenStr.charAt(0)) >= 0;
+    }
+
+    /**
+     * Tells whether Utilities.toInteger would return an Int literal unchanged.
+     */
+    private static boolean isCanonicalInt(String value)
+    {
+        try
+        {
+            Integer.parseInt(value);
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether Utilities.toFloat would return a Float literal unchanged.
+     */
+    private static boolean isCanonicalFloat(String value)
+    {
+        try
+        {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+}
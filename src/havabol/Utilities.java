@@ -2,9 +2,6 @@ package havabol;
 
 
 import java.lang.reflect.Array;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 
 /* Utilities class that will handle all basic operations for the havabol programming language.
  * This class will deal with ResultValue objects and return every value as a string representation.
@@ -251,6 +248,63 @@ public class Utilities
         return res;
     }
 
+    /**
+     * This method does + - * / on two operands that TypeInference found to have the same type,
+     * without the type dispatch and coercion of add, sub, mul, and div.
+     * <p>
+     * The result is the same as theirs. If an operand does not have the inferred type or its
+     * value does not parse, null is returned and the caller uses the general method instead.
+     *
+     * @param operator one of + - * /
+     * @param firstOp first operand we will perform operation on
+     * @param secondOp second operand we will perform operation on
+     * @param type Token.INTEGER or Token.FLOAT, the type inferred for both operands
+     * @return ResultValue object which contains the result, or null if the types do not match
+     */
+    static ResultValue arith(char operator, ResultValue firstOp, ResultValue secondOp, int type)
+    {
+        if (firstOp.type != type || secondOp.type != type
+                || firstOp.structure != ResultValue.primitive || secondOp.structure != ResultValue.primitive)
+            return null;
+
+        try
+        {
+            if (type == Token.INTEGER)
+            {
+                int x = Integer.parseInt(firstOp.value);
+                int y = Integer.parseInt(secondOp.value);
+                int result;
+                switch (operator)
+                {
+                    case '+': result = x + y; break;
+                    case '-': result = x - y; break;
+                    case '*': result = x * y; break;
+                    default:  result = x / y;
+                }
+                return new ResultValue(String.valueOf(result), Token.INTEGER);
+            }
+            else
+            {
+                // toFloat's round trip through a String does not change the double
+                double x = Double.parseDouble(firstOp.value);
+                double y = Double.parseDouble(secondOp.value);
+                double result;
+                switch (operator)
+                {
+                    case '+': result = x + y; break;
+                    case '-': result = x - y; break;
+                    case '*': result = x * y; break;
+                    default:  result = x / y;
+                }
+                return new ResultValue(String.valueOf(result), Token.FLOAT);
+            }
+        }
+        catch (NumberFormatException e)
+        {// let the general method report it
+            return null;
+        }
+    }
+
     /**
      * This method is included in order to exponent two values
      * <p>
@@ -702,6 +756,12 @@ public class Utilities
         String temp;
 
         res.value = "F";
+        if (ArraySort.canSearch(list, item))
+        {// list is known to be sorted
+            if (ArraySort.contains(list, item))
+                res.value = "T";
+            return res;
+        }
         switch (item.type)
         {
             case Token.INTEGER:
@@ -771,6 +831,12 @@ public class Utilities
         String temp;
 
         res.value = "T";
+        if (ArraySort.canSearch(list, item))
+        {// list is known to be sorted
+            if (ArraySort.contains(list, item))
+                res.value = "F";
+            return res;
+        }
         switch (item.type)
         {
             case Token.INTEGER:
@@ -850,7 +916,7 @@ public class Utilities
                     res.value = "T";
                 break;
             default:
-                parser.error("ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr.value);
+                coercionError(parser, "ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr.value);
         }
         return res;
     }
@@ -883,7 +949,7 @@ public class Utilities
                     res.value = "F";
                 break;
             default:
-                parser.error("ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr1.value);
+                coercionError(parser, "ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr1.value);
         }
         return res;
     }
@@ -915,7 +981,7 @@ public class Utilities
                     res.value = "F";
                 break;
             default:
-                parser.error("ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr1.value);
+                coercionError(parser, "ERROR: CANNOT COERCE '%s' TO BOOLEAN", expr1.value);
         }
         return res;
     }
@@ -937,7 +1003,7 @@ public class Utilities
         else if (value.value.equals("F"))
             return "F";
         else
-            parser.error("ERROR: CANNOT COERCE '%s' AS BOOL", value.value);
+            coercionError(parser, "ERROR: CANNOT COERCE '%s' AS BOOL", value.value);
 
         return null;
     }
@@ -965,7 +1031,7 @@ public class Utilities
         {
             // Do nothing
         }
-        parser.error("ERROR: CANNOT COERCE '%s' AS FLOAT", value.value);
+        coercionError(parser, "ERROR: CANNOT COERCE '%s' AS FLOAT", value.value);
 
         return null;
     }
@@ -1004,7 +1070,7 @@ public class Utilities
             // Do nothing
         }
 
-        parser.error("ERROR: CANNOT COERCE '%s' AS INT", value.value);
+        coercionError(parser, "ERROR: CANNOT COERCE '%s' AS INT", value.value);
         return null;
     }
 
@@ -1023,10 +1089,24 @@ public class Utilities
         if (value.value.matches("^[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]$") && validDate(parser, value))
             return value.value;
         else
-            parser.error("ERROR: CANNOT COERCE %s AS DATE", value.value);
+            coercionError(parser, "ERROR: CANNOT COERCE %s AS DATE", value.value);
         return null;
     }
 
+    /**
+     * Raises a coercion error through the parser and counts it in InterpreterMetrics.
+     *
+     * @param parser Used for error generation
+     * @param fmt format of the error message
+     * @param varArgs values for the format
+     * @throws ParserException always
+     */
+    private static void coercionError(Parser parser, String fmt, Object... varArgs) throws Exception
+    {
+        InterpreterMetrics.coercionFailures.increment();
+        parser.error(fmt, varArgs);
+    }
+
     /**
      * Validates the date
      * <p>
@@ -1039,35 +1119,9 @@ public class Utilities
      */
     public static boolean validDate(Parser parse, ResultValue check) throws Exception
     {
-        int daysPerMonth[] =
-                { 31, 29, 31
-                  , 30, 31, 30
-                  , 31, 31, 30
-                  , 31, 30, 31 };
-
-        int iYear = Integer.parseInt(check.value.substring(0, 4));
-        int iMonth = Integer.parseInt(check.value.substring(5, 7));
-        int iDay = Integer.parseInt(check.value.substring(8));
-
-        // validate month
-        if(iMonth < 1 || iMonth > 12)
-            parse.error("ERROR: '%d' IS AN INVALID MONTH, MUST BE 1-12", iMonth);
-
-        // validate day
-        if(iDay < 1 || iDay > daysPerMonth[iMonth-1])
-            parse.error("ERROR: '%d' IS AN INVALID DAY IN '%d', MUST BE 1-%d"
-                    ,iDay, iMonth, daysPerMonth[iMonth-1]);
-
-        // check for leap year
-        if(iDay == 29 && iMonth == 2)
-        {
-            //divisible by 4, not divisbly by 400 or 100
-            if(iYear % 4 == 0 && (iYear %100 != 0 || iYear % 400 == 0))
-                return true;
-            //not valid
-            else
-                parse.error("ERROR: '%d' IS/WAS/WILL NOT (BE) A LEAP YEAR", iYear);
-        }
+        String error = HavaBolRuntime.dateError(check.value);
+        if (error != null)
+            parse.error("%s", error);
 
         return true;
     }
@@ -1230,19 +1284,7 @@ public class Utilities
         if (validDate(parser, date) != true)
             parser.error("ERROR: '%s' IS AN INVALID DATE FORMAT ", date.value);
 
-        //parse through getting year, month, and day
-        int iYear = Integer.parseInt(date.value.substring(0, 4));
-        int iMonth = Integer.parseInt(date.value.substring(5, 7));
-        int iDay = Integer.parseInt(date.value.substring(8));
-
-        //define format
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        //create calender
-        Calendar calendar = new GregorianCalendar(iYear,iMonth-1,iDay);
-        //add days
-        calendar.add(Calendar.DAY_OF_MONTH, days);
-
-        return new ResultValue(sdf.format(calendar.getTime()), Token.DATE, ResultValue.primitive, ";");
+        return new ResultValue(HavaBolRuntime.adjustDate(date.value, days), Token.DATE, ResultValue.primitive, ";");
     }
 
     /**
@@ -1282,25 +1324,6 @@ public class Utilities
      */
     public static int DateToJulian(ResultValue date)
     {
-        int iCountDays;
-        //parse through to get values
-        int iYear = Integer.parseInt(date.value.substring(0, 4));
-        int iMonth = Integer.parseInt(date.value.substring(5, 7));
-        int iDay = Integer.parseInt(date.value.substring(8));
-        // Calculate number of days since 0000-03-01
-
-        // If month is March or greater, decrease it by 3.
-        if (iMonth > 2)
-            iMonth -= 3;
-        else
-        {
-            iMonth += 9;  // adjust the month since we begin with March
-            iYear--;      // subtract 1 from year if the month was Jan or Feb
-        }
-        iCountDays = 365 * iYear                                // 365 days in a year
-                + iYear / 4 - iYear / 100 + iYear / 400   // add a day for each leap year
-                + (iMonth * 306 + 5) / 10                           // see note 4
-                + (iDay );                                          // add the days
-        return iCountDays;
+        return HavaBolRuntime.julian(date.value);
     }
 }
\ No newline at end of file